@@ -31,6 +31,7 @@ import org.restlet.ext.apispark.internal.ApiSparkConfig;
 import org.restlet.ext.apispark.internal.ApiSparkFilter;
 import org.restlet.ext.apispark.internal.agent.AgentConfigurationTimerTask;
 import org.restlet.ext.apispark.internal.firewall.rule.FirewallRule;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterSynchronizer;
 import org.restlet.routing.Filter;
 import org.restlet.service.EncoderService;
 import org.restlet.service.Service;
@@ -95,6 +96,21 @@ public class ApiSparkService extends Service {
      */
     private long agentAnalyticsPostPeriodInSecond = 60;
 
+    /**
+     * Indicates if the analytics posted to the APISpark service are
+     * compressed with GZip. False by default.
+     */
+    private boolean agentAnalyticsCompressionEnabled = false;
+
+    /**
+     * The directory where analytics that could not be posted to the APISpark
+     * service are spooled. If null, these analytics are lost.
+     */
+    private String agentAnalyticsSpoolDirectory;
+
+    /** The maximum size in bytes of the analytics spool directory. */
+    private long agentAnalyticsSpoolMaxSize = 10 * 1024 * 1024;
+
     /** The timer that triggers agent re-configuration */
     private Timer agentRefreshTimer;
 
@@ -222,6 +238,10 @@ public class ApiSparkService extends Service {
         apiSparkConfig.setReverseProxyTargetUrl(reverseProxyTargetUrl);
         apiSparkConfig.setAgentAnalyticsBufferSize(agentAnalyticsBufferSize);
         apiSparkConfig.setAgentAnalyticsPostPeriodInSecond(agentAnalyticsPostPeriodInSecond);
+        apiSparkConfig
+                .setAgentAnalyticsCompressionEnabled(agentAnalyticsCompressionEnabled);
+        apiSparkConfig.setAgentAnalyticsSpoolDirectory(agentAnalyticsSpoolDirectory);
+        apiSparkConfig.setAgentAnalyticsSpoolMaxSize(agentAnalyticsSpoolMaxSize);
 
         apiSparkFilter = new ApiSparkFilter(context, apiSparkConfig,
                 agentEnabled, firewallEnabled, firewallRules);
@@ -265,6 +285,25 @@ public class ApiSparkService extends Service {
         return agentAnalyticsPostPeriodInSecond;
     }
 
+    /**
+     * Returns the directory where analytics that could not be posted to the
+     * APISpark service are spooled.
+     * 
+     * @return The analytics spool directory or null if disabled.
+     */
+    public String getAgentAnalyticsSpoolDirectory() {
+        return agentAnalyticsSpoolDirectory;
+    }
+
+    /**
+     * Returns the maximum size in bytes of the analytics spool directory.
+     * 
+     * @return The maximum size in bytes of the analytics spool directory.
+     */
+    public long getAgentAnalyticsSpoolMaxSize() {
+        return agentAnalyticsSpoolMaxSize;
+    }
+
     /**
      * Returns the password used to connect to the APISpark platform.
      * 
@@ -337,6 +376,16 @@ public class ApiSparkService extends Service {
         return reverseProxyTargetUrl;
     }
 
+    /**
+     * Indicates if the analytics posted to the APISpark service are
+     * compressed with GZip.
+     * 
+     * @return True if the analytics are compressed.
+     */
+    public boolean isAgentAnalyticsCompressionEnabled() {
+        return agentAnalyticsCompressionEnabled;
+    }
+
     /**
      * Indicates if the APISpark agent is enabled.
      * 
@@ -480,10 +529,45 @@ public class ApiSparkService extends Service {
      * @param agentAnalyticsPostPeriodInSecond
      *            The agent Analytics module post period.
      */
+    /**
+     * Indicates if the analytics posted to the APISpark service are
+     * compressed with GZip. Only enable it if the APISpark analytics
+     * service accepts GZip encoded call logs. False by default.
+     * 
+     * @param agentAnalyticsCompressionEnabled
+     *            True if the analytics are compressed.
+     */
+    public void setAgentAnalyticsCompressionEnabled(
+            boolean agentAnalyticsCompressionEnabled) {
+        this.agentAnalyticsCompressionEnabled = agentAnalyticsCompressionEnabled;
+    }
+
     public void setAgentAnalyticsPostPeriodInSecond(long agentAnalyticsPostPeriodInSecond) {
         this.agentAnalyticsPostPeriodInSecond = agentAnalyticsPostPeriodInSecond;
     }
 
+    /**
+     * Sets the directory where analytics that could not be posted to the
+     * APISpark service are spooled.
+     * 
+     * @param agentAnalyticsSpoolDirectory
+     *            The analytics spool directory or null to disable spooling.
+     */
+    public void setAgentAnalyticsSpoolDirectory(
+            String agentAnalyticsSpoolDirectory) {
+        this.agentAnalyticsSpoolDirectory = agentAnalyticsSpoolDirectory;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the analytics spool directory.
+     * 
+     * @param agentAnalyticsSpoolMaxSize
+     *            The maximum size in bytes of the analytics spool directory.
+     */
+    public void setAgentAnalyticsSpoolMaxSize(long agentAnalyticsSpoolMaxSize) {
+        this.agentAnalyticsSpoolMaxSize = agentAnalyticsSpoolMaxSize;
+    }
+
     /**
      * Sets the password used to connect to the APISpark platform.
      * 
@@ -592,12 +676,18 @@ public class ApiSparkService extends Service {
         this.reverseProxyTargetUrl = reverseProxyTargetUrl;
     }
 
-    /** Stops the service and its timer */
+    /** Stops the service, its timer and the synchronizer of shared counters */
     @Override
     public synchronized void stop() throws Exception {
         super.stop();
         if (agentRefreshTimer != null) {
             agentRefreshTimer.cancel();
         }
+
+        CounterSynchronizer counterSynchronizer = firewallConfig
+                .getCounterSynchronizer();
+        if (counterSynchronizer != null) {
+            counterSynchronizer.stop();
+        }
     }
 }
@@ -32,6 +32,13 @@ import org.restlet.ext.apispark.internal.firewall.rule.FirewallCounterRule;
 import org.restlet.ext.apispark.internal.firewall.rule.FirewallIpFilteringRule;
 import org.restlet.ext.apispark.internal.firewall.rule.FirewallRule;
 import org.restlet.ext.apispark.internal.firewall.rule.PeriodicFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.SharedConcurrentFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.SharedPeriodicFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.SlidingWindowFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.TokenBucketFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterSynchronizer;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.HostDomainCountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.IpAddressCountingPolicy;
 import org.restlet.ext.apispark.internal.firewall.rule.policy.UserCountingPolicy;
@@ -49,6 +56,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class FirewallConfig {
 
+    /**
+     * The synchronizer of the counters shared by the nodes of a cluster, or
+     * null if the counters are local.
+     */
+    private volatile CounterSynchronizer counterSynchronizer;
+
     /** The list of associated {@link FirewallRule}. */
     private List<FirewallRule> rules;
 
@@ -81,7 +94,7 @@ public class FirewallConfig {
      *            same time.
      */
     public void addHostDomainConcurrencyCounter(int limit) {
-        FirewallCounterRule rule = new ConcurrentFirewallCounterRule(
+        FirewallCounterRule rule = createConcurrentRule("hostDomain",
                 new HostDomainCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
         add(rule);
@@ -101,11 +114,54 @@ public class FirewallConfig {
      */
     public void addHostDomainPeriodicCounter(int period, TimeUnit periodUnit,
             int limit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicRule("hostDomain", period,
                 periodUnit, new HostDomainCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
     }
 
+    /**
+     * Adds a rule that limits the number of requests on a sliding window of
+     * time by request's host domain. Contrary to periodic counters, requests of the
+     * previous period are still partially taken into account, which avoids
+     * bursts at the edges of periods.
+     * 
+     * @param period
+     *            The period of time.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param limit
+     *            The maximum number of requests allowed by host domain for the
+     *            sliding window of time.
+     */
+    public void addHostDomainSlidingWindowCounter(int period,
+            TimeUnit periodUnit, int limit) {
+        FirewallCounterRule rule = new SlidingWindowFirewallCounterRule(
+                period, periodUnit, new HostDomainCountingPolicy());
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
+        add(rule);
+    }
+
+    /**
+     * Adds a rule that limits the rate of requests by request's host domain with token
+     * buckets. Each bucket allows bursts of up to the given capacity and is
+     * continuously refilled over the given period of time.
+     * 
+     * @param capacity
+     *            The maximum number of requests allowed by host domain in a
+     *            burst.
+     * @param period
+     *            The period of time needed to refill a bucket.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     */
+    public void addHostDomainTokenBucketCounter(int capacity, int period,
+            TimeUnit periodUnit) {
+        FirewallCounterRule rule = new TokenBucketFirewallCounterRule(
+                capacity, period, periodUnit, new HostDomainCountingPolicy());
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(capacity)));
+        add(rule);
+    }
+
     /**
      * Adds a rule that forbids access to the given set of IP addresses.
      * 
@@ -124,7 +180,7 @@ public class FirewallConfig {
      *            The maximum number of accepted concurrent requests.
      */
     public void addIpAddressesConcurrencyCounter(int limit) {
-        FirewallCounterRule rule = new ConcurrentFirewallCounterRule(
+        FirewallCounterRule rule = createConcurrentRule("ipAddress",
                 new IpAddressCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
         add(rule);
@@ -144,12 +200,55 @@ public class FirewallConfig {
      */
     public void addIpAddressesPeriodicCounter(int period, TimeUnit periodUnit,
             int limit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicRule("ipAddress", period,
                 periodUnit, new IpAddressCountingPolicy());
         rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
         add(rule);
     }
 
+    /**
+     * Adds a rule that limits the number of requests on a sliding window of
+     * time by IP address of the request's client. Contrary to periodic counters, requests of the
+     * previous period are still partially taken into account, which avoids
+     * bursts at the edges of periods.
+     * 
+     * @param period
+     *            The period of time.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param limit
+     *            The maximum number of requests allowed by IP address for the
+     *            sliding window of time.
+     */
+    public void addIpAddressesSlidingWindowCounter(int period,
+            TimeUnit periodUnit, int limit) {
+        FirewallCounterRule rule = new SlidingWindowFirewallCounterRule(
+                period, periodUnit, new IpAddressCountingPolicy());
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(limit)));
+        add(rule);
+    }
+
+    /**
+     * Adds a rule that limits the rate of requests by IP address of the request's client with token
+     * buckets. Each bucket allows bursts of up to the given capacity and is
+     * continuously refilled over the given period of time.
+     * 
+     * @param capacity
+     *            The maximum number of requests allowed by IP address in a
+     *            burst.
+     * @param period
+     *            The period of time needed to refill a bucket.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     */
+    public void addIpAddressesTokenBucketCounter(int capacity, int period,
+            TimeUnit periodUnit) {
+        FirewallCounterRule rule = new TokenBucketFirewallCounterRule(
+                capacity, period, periodUnit, new IpAddressCountingPolicy());
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(capacity)));
+        add(rule);
+    }
+
     /**
      * Adds a rule that restricts access to the given set of IP addresses.
      * 
@@ -185,7 +284,7 @@ public class FirewallConfig {
      */
     public void addRolesConcurrencyCounter(Map<String, Integer> limitsPerRole,
             int defaultLimit) {
-        FirewallCounterRule rule = new ConcurrentFirewallCounterRule(
+        FirewallCounterRule rule = createConcurrentRule("user",
                 new UserCountingPolicy());
         rule.addHandler(new BlockingHandler(new RoleLimitPolicy(limitsPerRole,
                 defaultLimit)));
@@ -226,10 +325,123 @@ public class FirewallConfig {
      */
     public void addRolesPeriodicCounter(int period, TimeUnit periodUnit,
             Map<String, Integer> limitsPerRole, int defaultLimit) {
-        FirewallCounterRule rule = new PeriodicFirewallCounterRule(period,
+        FirewallCounterRule rule = createPeriodicRule("user", period,
                 periodUnit, new UserCountingPolicy());
         rule.addHandler(new BlockingHandler(new RoleLimitPolicy(limitsPerRole,
                 defaultLimit)));
         add(rule);
     }
+
+    /**
+     * Adds a rule that restricts access according to the {@link Role} of the
+     * current authenticated {@link User}. Each role is defined a limit in terms
+     * of requests on a sliding window of time, in any other case a default
+     * limit is applied.
+     * 
+     * @param period
+     *            The period of time.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param limitsPerRole
+     *            The limit assigned per role's name.
+     * @param defaultLimit
+     *            The limit assigned for any other roles, or for user without
+     *            assigned role.
+     */
+    public void addRolesSlidingWindowCounter(int period, TimeUnit periodUnit,
+            Map<String, Integer> limitsPerRole, int defaultLimit) {
+        FirewallCounterRule rule = new SlidingWindowFirewallCounterRule(
+                period, periodUnit, new UserCountingPolicy());
+        rule.addHandler(new BlockingHandler(new RoleLimitPolicy(limitsPerRole,
+                defaultLimit)));
+        add(rule);
+    }
+
+    /**
+     * Creates a rule counting concurrent requests, either locally or with
+     * shared counters if a {@link CounterStore} has been set.
+     * 
+     * @param name
+     *            The name of the counted values.
+     * @param countingPolicy
+     *            The counting policy.
+     * @return The new rule.
+     */
+    private FirewallCounterRule createConcurrentRule(String name,
+            CountingPolicy countingPolicy) {
+        CounterSynchronizer synchronizer = counterSynchronizer;
+
+        if (synchronizer == null) {
+            return new ConcurrentFirewallCounterRule(countingPolicy);
+        }
+
+        return new SharedConcurrentFirewallCounterRule("concurrent/" + name,
+                countingPolicy, synchronizer);
+    }
+
+    /**
+     * Creates a rule counting requests by period of time, either locally or
+     * with shared counters if a {@link CounterStore} has been set.
+     * 
+     * @param name
+     *            The name of the counted values.
+     * @param period
+     *            The period of time.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param countingPolicy
+     *            The counting policy.
+     * @return The new rule.
+     */
+    private FirewallCounterRule createPeriodicRule(String name, int period,
+            TimeUnit periodUnit, CountingPolicy countingPolicy) {
+        CounterSynchronizer synchronizer = counterSynchronizer;
+
+        if (synchronizer == null) {
+            return new PeriodicFirewallCounterRule(period, periodUnit,
+                    countingPolicy);
+        }
+
+        return new SharedPeriodicFirewallCounterRule("periodic/" + name + "/"
+                + periodUnit.toMillis(period), period, periodUnit,
+                countingPolicy, synchronizer);
+    }
+
+    /**
+     * Returns the synchronizer of the counters shared by the nodes of a
+     * cluster, or null if the counters are local.
+     * 
+     * @return The synchronizer of the shared counters.
+     */
+    public CounterSynchronizer getCounterSynchronizer() {
+        return counterSynchronizer;
+    }
+
+    /**
+     * Sets the store of the counters shared by the nodes of a cluster. The
+     * concurrency and periodic counters of the rules added afterwards are
+     * synchronized with this store in batches, instead of being only kept in
+     * local memory. Previously added rules are not affected.
+     * 
+     * @param counterStore
+     *            The shared store, or null to use local counters.
+     */
+    public void setCounterStore(CounterStore counterStore) {
+        setCounterSynchronizer((counterStore == null) ? null
+                : new CounterSynchronizer(counterStore));
+    }
+
+    /**
+     * Sets the synchronizer of the counters shared by the nodes of a cluster.
+     * The synchronizer is started and stopped with the firewall filter
+     * applying the rules added afterwards.
+     * 
+     * @param counterSynchronizer
+     *            The synchronizer of the shared counters, or null to use local
+     *            counters.
+     * @see #setCounterStore(CounterStore)
+     */
+    public void setCounterSynchronizer(CounterSynchronizer counterSynchronizer) {
+        this.counterSynchronizer = counterSynchronizer;
+    }
 }
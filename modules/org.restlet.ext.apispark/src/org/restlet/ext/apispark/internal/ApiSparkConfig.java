@@ -50,6 +50,12 @@ public class ApiSparkConfig {
 
     private long agentAnalyticsPostPeriodInSecond;
 
+    private boolean agentAnalyticsCompressionEnabled;
+
+    private String agentAnalyticsSpoolDirectory;
+
+    private long agentAnalyticsSpoolMaxSize;
+
     public String getAgentPassword() {
         return agentPassword != null ? new String(agentPassword) : null;
     }
@@ -127,4 +133,30 @@ public class ApiSparkConfig {
         this.agentAnalyticsPostPeriodInSecond = agentAnalyticsPostPeriodInSecond;
     }
 
+    public boolean isAgentAnalyticsCompressionEnabled() {
+        return agentAnalyticsCompressionEnabled;
+    }
+
+    public void setAgentAnalyticsCompressionEnabled(
+            boolean agentAnalyticsCompressionEnabled) {
+        this.agentAnalyticsCompressionEnabled = agentAnalyticsCompressionEnabled;
+    }
+
+    public String getAgentAnalyticsSpoolDirectory() {
+        return agentAnalyticsSpoolDirectory;
+    }
+
+    public void setAgentAnalyticsSpoolDirectory(
+            String agentAnalyticsSpoolDirectory) {
+        this.agentAnalyticsSpoolDirectory = agentAnalyticsSpoolDirectory;
+    }
+
+    public long getAgentAnalyticsSpoolMaxSize() {
+        return agentAnalyticsSpoolMaxSize;
+    }
+
+    public void setAgentAnalyticsSpoolMaxSize(long agentAnalyticsSpoolMaxSize) {
+        this.agentAnalyticsSpoolMaxSize = agentAnalyticsSpoolMaxSize;
+    }
+
 }
@@ -24,6 +24,7 @@
 
 package org.restlet.ext.apispark.internal;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -53,13 +54,13 @@ public class ApiSparkFilter extends Filter {
             .getName());
 
     /** Default next restlet of filter. */
-    private Restlet agentFirstRestlet;
+    private volatile Restlet agentFirstRestlet;
 
     /** First restlet of the agent filter. */
     private Restlet filterNext;
 
     /** Last restlet of the agent filter. */
-    private Restlet agentLastRestlet;
+    private volatile Restlet agentLastRestlet;
 
     /** Modules settings of the agent */
     private ModulesSettings modulesSettings;
@@ -131,13 +132,19 @@ public class ApiSparkFilter extends Filter {
     }
 
     /**
-     * Updates the filter with its modules settings.
+     * Updates the filter with its modules settings. The new chain of modules,
+     * including the firewall rules and their compiled IP filters, is fully
+     * built before replacing the current one atomically, so that requests
+     * being handled keep using a consistent chain.
      */
-    public void refreshApiSparkFilter() {
+    public synchronized void refreshApiSparkFilter() {
 
         boolean authenticationEnabled = false;
         RestletChain restletChain = new RestletChain();
 
+        // The agent rules are rebuilt at each refresh
+        List<FirewallRule> rules = new ArrayList<FirewallRule>(firewallRules);
+
         if (agentEnabled) {
 
             if (modulesSettings.isAuthenticationModuleEnabled()) {
@@ -160,8 +167,7 @@ public class ApiSparkFilter extends Filter {
                 firewallEnabled = true;
                 FirewallModule firewallModule = new FirewallModule(
                         apiSparkConfig, modulesSettings);
-                FirewallConfig firewallConfig = new FirewallConfig(
-                        firewallRules);
+                FirewallConfig firewallConfig = new FirewallConfig(rules);
                 firewallModule.updateFirewallConfig(firewallConfig);
             }
 
@@ -174,7 +180,7 @@ public class ApiSparkFilter extends Filter {
 
         if (firewallEnabled) {
             LOGGER.info("Add firewall module");
-            restletChain.add(new FirewallFilter(context, firewallRules));
+            restletChain.add(new FirewallFilter(context, rules));
         }
 
         if (apiSparkConfig.isReverseProxyEnabled()) {
@@ -190,8 +196,12 @@ public class ApiSparkFilter extends Filter {
             LOGGER.warning("No modules are enabled.");
         }
 
-        agentFirstRestlet = restletChain.getFirst();
+        if (filterNext != null && restletChain.getLast() instanceof Filter) {
+            ((Filter) restletChain.getLast()).setNext(filterNext);
+        }
+
         agentLastRestlet = restletChain.getLast();
+        agentFirstRestlet = restletChain.getFirst();
     }
 
     @Override
@@ -200,7 +210,7 @@ public class ApiSparkFilter extends Filter {
     }
 
     @Override
-    public void setNext(Restlet next) {
+    public synchronized void setNext(Restlet next) {
         filterNext = next;
         // If the agent has any restlet components, set the next on the last
         // one.
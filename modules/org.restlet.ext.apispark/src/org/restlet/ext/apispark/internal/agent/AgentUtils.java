@@ -40,23 +40,21 @@ import org.restlet.util.Series;
 public abstract class AgentUtils {
 
     /**
-     * Returns a client resource configured to communicate with the APISpark
+     * Creates a client resource configured to communicate with the APISpark
      * connector cell.
      * 
      * @param apiSparkConfig
      *            The agent configuration.
      * @param modulesSettings
      *            The optional modules settings.
-     * @param resourceClass
-     *            The resource class.
      * @param resourcePath
      *            The resource path.
      * 
      * @return A client resource configured to communicate with the apispark
      *         connector cell.
      */
-    public static <T> T getClientResource(ApiSparkConfig apiSparkConfig,
-            ModulesSettings modulesSettings, Class<T> resourceClass,
+    public static ClientResource createClientResource(
+            ApiSparkConfig apiSparkConfig, ModulesSettings modulesSettings,
             String resourcePath) {
 
         ClientResource clientResource = new ClientResource(buildResourcePath(
@@ -79,6 +77,31 @@ public abstract class AgentUtils {
                     modulesSettings.getCellRevision());
         }
 
+        return clientResource;
+    }
+
+    /**
+     * Returns a client resource configured to communicate with the APISpark
+     * connector cell.
+     * 
+     * @param apiSparkConfig
+     *            The agent configuration.
+     * @param modulesSettings
+     *            The optional modules settings.
+     * @param resourceClass
+     *            The resource class.
+     * @param resourcePath
+     *            The resource path.
+     * 
+     * @return A client resource configured to communicate with the apispark
+     *         connector cell.
+     */
+    public static <T> T getClientResource(ApiSparkConfig apiSparkConfig,
+            ModulesSettings modulesSettings, Class<T> resourceClass,
+            String resourcePath) {
+
+        ClientResource clientResource = createClientResource(apiSparkConfig,
+                modulesSettings, resourcePath);
         return clientResource.wrap(resourceClass, AgentUtils.class.getClassLoader());
     }
 
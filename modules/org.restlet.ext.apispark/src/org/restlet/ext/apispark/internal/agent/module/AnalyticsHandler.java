@@ -21,12 +21,10 @@
  * 
  * Restlet is a registered trademark of Restlet S.A.S.
  */
-
 package org.restlet.ext.apispark.internal.agent.module;
 
-import java.util.Collections;
+import java.io.File;
 import java.util.Date;
-import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
@@ -34,18 +32,22 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Encoding;
+import org.restlet.engine.application.EncodeRepresentation;
 import org.restlet.ext.apispark.internal.ApiSparkConfig;
 import org.restlet.ext.apispark.internal.agent.AgentUtils;
 import org.restlet.ext.apispark.internal.agent.bean.CallLog;
 import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
 import org.restlet.ext.apispark.internal.agent.bean.ModulesSettings;
-import org.restlet.ext.apispark.internal.agent.resource.AnalyticsResource;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
 
-import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class AnalyticsHandler {
@@ -57,6 +59,12 @@ public class AnalyticsHandler {
     /** Maximum number of concurrent call logs post threads */
     private static final int THREAD_MAX_NUMBER = 3;
 
+    /**
+     * Minimum number of call logs that can be buffered, whatever the number of
+     * call logs triggering a post.
+     */
+    private static final int MIN_CAPACITY = 1024;
+
     /**
      * Number of buffered calls. Asynchronous post of analytics is triggered
      * either every POST_PERIOD or when the buffer exceeds this number.
@@ -88,17 +96,47 @@ public class AnalyticsHandler {
      */
     private static final long MAX_TIME = TimeUnit.SECONDS.toMillis(10);
 
+    /** The agent configuration. */
+    private final ApiSparkConfig apiSparkConfig;
+
     /** Timer trigerring call logs post to APISpark */
     private Timer asyncPostTimer;
 
-    /** Client resourceused to post call logs to APISpark */
-    private AnalyticsResource analyticsClientResource;
+    /** Buffer of call logs */
+    private final CallLogBuffer callLogs;
+
+    /** Indicates if the posted call logs are compressed. */
+    private final boolean compressionEnabled;
 
     /** Executor service used for async tasks */
     private ExecutorService executorService;
 
-    /** List of call logs */
-    private final List<CallLog> callLogs;
+    /** Indicates if a thread is currently flushing the call logs. */
+    private final AtomicBoolean flushing;
+
+    /** Number of call logs dropped when the buffer was last flushed. */
+    private long lastDropped;
+
+    /** Duration in milliseconds of the last successful post. */
+    private volatile long lastPostDuration;
+
+    /** Number of call logs that could neither be posted nor spooled. */
+    private final AtomicLong lostCallLogs;
+
+    /** Maximum duration in milliseconds of a successful post. */
+    private final AtomicLong maxPostDuration;
+
+    /** The modules settings. */
+    private final ModulesSettings modulesSettings;
+
+    /** Number of call logs posted to APISpark. */
+    private final AtomicLong postedCallLogs;
+
+    /** Spool of the call logs that could not be posted, or null. */
+    private final CallLogSpool spool;
+
+    /** Number of call logs spooled on disk since the creation. */
+    private final AtomicLong spooledCallLogs;
 
     /**
      * Create a new analytics handler with the specified settings.
@@ -110,19 +148,29 @@ public class AnalyticsHandler {
      */
     public AnalyticsHandler(ApiSparkConfig apiSparkConfig,
             ModulesSettings modulesSettings) {
-        analyticsClientResource = AgentUtils.getClientResource(apiSparkConfig,
-                modulesSettings, AnalyticsResource.class,
-                AnalyticsModule.ANALYTICS_PATH);
-        callLogs = Collections.synchronizedList(Lists
-                .<CallLog> newArrayListWithExpectedSize(bufferSize));
-
-        bufferSize = apiSparkConfig.getAgentAnalyticsBufferSize();
+        this.apiSparkConfig = apiSparkConfig;
+        this.modulesSettings = modulesSettings;
+        this.compressionEnabled = apiSparkConfig
+                .isAgentAnalyticsCompressionEnabled();
+        this.flushing = new AtomicBoolean();
+        this.lostCallLogs = new AtomicLong();
+        this.maxPostDuration = new AtomicLong();
+        this.postedCallLogs = new AtomicLong();
+        this.spooledCallLogs = new AtomicLong();
+
+        bufferSize = Math.max(1, apiSparkConfig.getAgentAnalyticsBufferSize());
+        callLogs = new CallLogBuffer(Math.max(MIN_CAPACITY, 16 * bufferSize));
         executorService = new ThreadPoolExecutor(1, THREAD_MAX_NUMBER, 0L,
                 TimeUnit.SECONDS,
                 new LinkedBlockingQueue<Runnable>(bufferSize),
                 new ThreadFactoryBuilder().setNameFormat("analytics-poster-%d")
                         .build());
 
+        spool = (apiSparkConfig.getAgentAnalyticsSpoolDirectory() == null) ? null
+                : new CallLogSpool(new File(
+                        apiSparkConfig.getAgentAnalyticsSpoolDirectory()),
+                        apiSparkConfig.getAgentAnalyticsSpoolMaxSize());
+
         postPeriodInSecond = apiSparkConfig.getAgentAnalyticsPostPeriodInSecond();
         long postPeriodInMs = TimeUnit.SECONDS.toMillis(postPeriodInSecond);
 
@@ -138,7 +186,9 @@ public class AnalyticsHandler {
     }
 
     /**
-     * Generates a CallLog for the request and adds it to the buffer.
+     * Generates a CallLog for the request and adds it to the buffer. If the
+     * buffer is full, the call log is dropped and counted in
+     * {@link #getDroppedCallLogs()}.
      * 
      * @param request
      *            The Request object associated with the request.
@@ -173,24 +223,106 @@ public class AnalyticsHandler {
     }
 
     /**
-     * Creates a new Thread that asynchronously posts call logs to APISpark
+     * Posts the buffered call logs asynchronously to APISpark, by batches of
+     * the buffer size. Does nothing if another thread is already flushing
+     * them.
      */
     public void flushLogs() {
-        if (callLogs.isEmpty()) {
+        if (callLogs.size() == 0 || !flushing.compareAndSet(false, true)) {
             return;
         }
 
-        CallLogs logsToPost;
-        synchronized (callLogs) {
-            if (callLogs.isEmpty()) {
-                return;
+        try {
+            long dropped = callLogs.getDropped();
+
+            if (dropped > lastDropped) {
+                LOGGER.warning((dropped - lastDropped)
+                        + " call logs dropped because the buffer was full.");
+                lastDropped = dropped;
+            }
+
+            CallLogs logsToPost = callLogs.drain(bufferSize);
+
+            while (!logsToPost.isEmpty()) {
+                postLogs(logsToPost);
+                logsToPost = callLogs.drain(bufferSize);
             }
-            logsToPost = new CallLogs(callLogs.size());
-            logsToPost.addAll(callLogs);
-            callLogs.clear();
+        } finally {
+            flushing.set(false);
         }
+    }
+
+    /**
+     * Returns the number of call logs dropped because the buffer was full.
+     * 
+     * @return The number of call logs dropped because the buffer was full.
+     */
+    public long getDroppedCallLogs() {
+        return callLogs.getDropped();
+    }
+
+    /**
+     * Returns the duration in milliseconds of the last successful post.
+     * 
+     * @return The duration in milliseconds of the last successful post.
+     */
+    public long getLastPostDuration() {
+        return lastPostDuration;
+    }
+
+    /**
+     * Returns the number of call logs that could neither be posted nor
+     * spooled.
+     * 
+     * @return The number of lost call logs.
+     */
+    public long getLostCallLogs() {
+        return lostCallLogs.get();
+    }
+
+    /**
+     * Returns the maximum duration in milliseconds of a successful post.
+     * 
+     * @return The maximum duration in milliseconds of a successful post.
+     */
+    public long getMaxPostDuration() {
+        return maxPostDuration.get();
+    }
+
+    /**
+     * Returns the number of call logs posted to APISpark.
+     * 
+     * @return The number of call logs posted to APISpark.
+     */
+    public long getPostedCallLogs() {
+        return postedCallLogs.get();
+    }
 
-        postLogs(logsToPost);
+    /**
+     * Returns the number of call logs spooled on disk since the creation of
+     * the handler, including the ones posted since then.
+     * 
+     * @return The number of call logs spooled on disk.
+     */
+    public long getSpooledCallLogs() {
+        return spooledCallLogs.get();
+    }
+
+    /**
+     * Handles call logs that could not be posted. They are spooled on disk if
+     * a spool is configured and has enough space left, otherwise they are
+     * lost.
+     * 
+     * @param logsToPost
+     *            The call logs that could not be posted.
+     */
+    private void postFailed(CallLogs logsToPost) {
+        if (spool != null && spool.store(logsToPost)) {
+            spooledCallLogs.addAndGet(logsToPost.size());
+        } else {
+            lostCallLogs.addAndGet(logsToPost.size());
+            errorSendLog(logsToPost);
+        }
     }
 
     /**
@@ -198,7 +330,8 @@ public class AnalyticsHandler {
      * analytics service.
      * 
      * If the executor service cannot satisfy the request, the call logs are
-     * lost and an error message is logged with the reason of the failure.
+     * spooled or lost and an error message is logged with the reason of the
+     * failure.
      * 
      * @param logsToPost
      *            The call logs to post to the APISpark analytics service.
@@ -208,14 +341,40 @@ public class AnalyticsHandler {
             executorService.execute(new AsyncCallLogsPostTask(logsToPost));
         } catch (RejectedExecutionException e) {
             LOGGER.severe("Posting " + logsToPost.size()
-                    + " call logs failed permanently due to \""
-                    + e.getCause().getMessage() + "\".");
-            errorSendLog(logsToPost);
+                    + " call logs failed because \"" + e.getMessage() + "\".");
+            postFailed(logsToPost);
         }
     }
 
     /**
-     * Called on permanent errors. Override to add your own behavior.
+     * Posts call logs to the APISpark analytics service, compressing them if
+     * enabled.
+     * 
+     * @param logsToPost
+     *            The call logs to post.
+     * @throws Exception
+     */
+    private void send(CallLogs logsToPost) throws Exception {
+        ClientResource clientResource = AgentUtils.createClientResource(
+                apiSparkConfig, modulesSettings,
+                AnalyticsModule.ANALYTICS_PATH);
+
+        try {
+            Representation entity = clientResource.toRepresentation(logsToPost);
+
+            if (compressionEnabled) {
+                entity = new EncodeRepresentation(Encoding.GZIP, entity);
+            }
+
+            clientResource.post(entity);
+        } finally {
+            clientResource.release();
+        }
+    }
+
+    /**
+     * Called on permanent errors, when the call logs can't be spooled.
+     * Override to add your own behavior.
      * 
      * @param logsToPost
      *            The list of logs that were not posted.
@@ -226,7 +385,8 @@ public class AnalyticsHandler {
 
     /**
      * Asynchronous task posting the call logs to APISpark and implementing
-     * fall-back methods if attempts are not successful.
+     * fall-back methods if attempts are not successful. After a successful
+     * post, the spooled call logs are posted too.
      * 
      * @author Cyprien Quilici
      * 
@@ -241,21 +401,58 @@ public class AnalyticsHandler {
 
         @Override
         public void run() {
-            for (int attemptNumber = 1; attemptNumber <= MAX_ATTEMPTS + 1; attemptNumber++) {
+            if (!post(logsToPost)) {
+                postFailed(logsToPost);
+                return;
+            }
+
+            CallLogs spooled = (spool == null) ? null : spool.poll();
+
+            while (spooled != null) {
+                if (!post(spooled)) {
+                    postFailed(spooled);
+                    return;
+                }
+
+                spooled = spool.poll();
+            }
+        }
+
+        /**
+         * Posts call logs with several attempts.
+         * 
+         * @param callLogs
+         *            The call logs to post.
+         * @return True if the call logs were posted.
+         */
+        private boolean post(CallLogs callLogs) {
+            for (int attemptNumber = 1; attemptNumber <= MAX_ATTEMPTS; attemptNumber++) {
+                long start = System.currentTimeMillis();
+
                 try {
-                    analyticsClientResource.postLogs(logsToPost);
-                    LOGGER.fine(logsToPost.size()
-                            + " call logs sent to the analytics service.");
-                    break;
+                    send(callLogs);
+                    long duration = System.currentTimeMillis() - start;
+                    lastPostDuration = duration;
+
+                    long max = maxPostDuration.get();
+                    while (duration > max
+                            && !maxPostDuration.compareAndSet(max, duration)) {
+                        max = maxPostDuration.get();
+                    }
+
+                    postedCallLogs.addAndGet(callLogs.size());
+                    LOGGER.fine(callLogs.size()
+                            + " call logs sent to the analytics service in "
+                            + duration + " ms.");
+                    return true;
                 } catch (Exception e) {
                     if (attemptNumber == MAX_ATTEMPTS) {
-                        LOGGER.severe("Posting " + logsToPost.size()
+                        LOGGER.severe("Posting " + callLogs.size()
                                 + " call logs failed permanently after "
                                 + MAX_ATTEMPTS + " attempts.");
-                        errorSendLog(logsToPost);
                     } else {
                         LOGGER.warning("Error sending "
-                                + logsToPost.size()
+                                + callLogs.size()
                                 + " call logs to the analytics service during attempt n°"
                                 + attemptNumber + " because \""
                                 + e.getMessage() + "\".");
@@ -267,6 +464,8 @@ public class AnalyticsHandler {
                     }
                 }
             }
+
+            return false;
         }
 
         /**
@@ -290,6 +489,7 @@ public class AnalyticsHandler {
 
     public synchronized void stop() throws Exception {
         asyncPostTimer.cancel();
+        flushLogs();
         executorService.shutdown();
     }
 }
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.agent.module;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.restlet.ext.apispark.internal.agent.bean.CallLog;
+import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
+
+/**
+ * Bounded buffer of call logs, with many producers and a single consumer.
+ * Producers never lock: they reserve a slot of a ring of call logs with a
+ * compare-and-set operation, or drop the call log if the ring is full. The
+ * consumer drains the published call logs in batches.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallLogBuffer {
+
+    /** The number of call logs dropped because the buffer was full. */
+    private final AtomicLong dropped;
+
+    /** The sequence of the next call log to drain. */
+    private final AtomicLong head;
+
+    /** The mask giving the slot of a sequence. */
+    private final int mask;
+
+    /** The ring of call logs. */
+    private final AtomicReferenceArray<CallLog> slots;
+
+    /** The sequence of the next call log to add. */
+    private final AtomicLong tail;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The minimum capacity, rounded to the next power of two.
+     */
+    public CallLogBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.dropped = new AtomicLong();
+        this.head = new AtomicLong();
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<CallLog>(size);
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Adds a call log to the buffer, unless it is full.
+     * 
+     * @param callLog
+     *            The call log to add.
+     * @return True if the call log was added, false if it was dropped.
+     */
+    public boolean add(CallLog callLog) {
+        long sequence;
+
+        do {
+            sequence = tail.get();
+
+            if (sequence - head.get() > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        slots.lazySet((int) sequence & mask, callLog);
+        return true;
+    }
+
+    /**
+     * Removes up to the given number of call logs from the buffer. Call logs
+     * whose slot is reserved but not published yet are left for the next
+     * drain. Only one thread may drain the buffer at a time.
+     * 
+     * @param maxSize
+     *            The maximum number of call logs to remove.
+     * @return The removed call logs, possibly empty.
+     */
+    public CallLogs drain(int maxSize) {
+        long sequence = head.get();
+        int size = (int) Math.min(maxSize, tail.get() - sequence);
+        CallLogs result = new CallLogs(Math.max(0, size));
+
+        for (int i = 0; i < size; i++) {
+            int index = (int) sequence & mask;
+            CallLog callLog = slots.get(index);
+
+            if (callLog == null) {
+                break;
+            }
+
+            slots.lazySet(index, null);
+            result.add(callLog);
+            head.lazySet(++sequence);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the capacity of the buffer.
+     * 
+     * @return The capacity of the buffer.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of call logs dropped because the buffer was full.
+     * 
+     * @return The number of dropped call logs.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the approximate number of call logs in the buffer.
+     * 
+     * @return The approximate number of call logs in the buffer.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.agent.module;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.restlet.data.MediaType;
+import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
+import org.restlet.ext.jackson.JacksonRepresentation;
+import org.restlet.representation.InputRepresentation;
+
+/**
+ * Bounded on-disk spool of call logs batches that could not be posted to the
+ * APISpark analytics service. Each batch is stored in its own file as the
+ * compressed JSON representation of the call logs, the one posted to the
+ * service, so that batches spooled by a previous run of the agent are posted
+ * again too. Unlike Java serialization, reading a spool file can only create
+ * call logs.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallLogSpool {
+
+    /** Internal logger. */
+    private static final Logger LOGGER = Logger.getLogger(CallLogSpool.class
+            .getName());
+
+    /** The prefix of the spool files. */
+    private static final String PREFIX = "calllogs-";
+
+    /** The suffix of the spool files. */
+    private static final String SUFFIX = ".gz";
+
+    /** The spool directory. */
+    private final File directory;
+
+    /** The maximum size of the spool in bytes. */
+    private final long maxSize;
+
+    /** The sequence of the spool files. */
+    private final AtomicLong sequence;
+
+    /** The current size of the spool in bytes. */
+    private final AtomicLong size;
+
+    /**
+     * Constructor.
+     * 
+     * @param directory
+     *            The spool directory, created if needed.
+     * @param maxSize
+     *            The maximum size of the spool in bytes.
+     */
+    public CallLogSpool(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+        this.size = new AtomicLong();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warning("Unable to create the call logs spool directory "
+                    + directory);
+        }
+
+        for (File file : listFiles()) {
+            size.addAndGet(file.length());
+        }
+    }
+
+    /**
+     * Returns the current size of the spool in bytes.
+     * 
+     * @return The current size of the spool in bytes.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the spool files, oldest first.
+     * 
+     * @return The spool files, oldest first.
+     */
+    private File[] listFiles() {
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+
+        for (File file : files) {
+            if (file.getName().startsWith(PREFIX)
+                    && file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+
+        files = Arrays.copyOf(files, count);
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Removes the oldest batch from the spool.
+     * 
+     * @return The oldest batch or null if the spool is empty.
+     */
+    public synchronized CallLogs poll() {
+        for (File file : listFiles()) {
+            long length = file.length();
+            CallLogs result = null;
+
+            try {
+                result = read(file);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Discarding the unreadable call logs "
+                        + "spool file " + file, e);
+            }
+
+            if (file.delete()) {
+                size.addAndGet(-length);
+            }
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads a batch from a spool file.
+     * 
+     * @param file
+     *            The spool file.
+     * @return The batch.
+     * @throws IOException
+     */
+    private CallLogs read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            return new JacksonRepresentation<CallLogs>(new InputRepresentation(
+                    new GZIPInputStream(in), MediaType.APPLICATION_JSON),
+                    CallLogs.class).getObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Stores a batch in the spool, unless it would exceed the maximum size.
+     * 
+     * @param callLogs
+     *            The batch to store.
+     * @return True if the batch was stored.
+     */
+    public boolean store(CallLogs callLogs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            OutputStream out = new GZIPOutputStream(bytes);
+            new JacksonRepresentation<CallLogs>(MediaType.APPLICATION_JSON,
+                    callLogs).write(out);
+            out.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to serialize call logs", e);
+            return false;
+        }
+
+        long current;
+
+        do {
+            current = size.get();
+
+            if (current + bytes.size() > maxSize) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + bytes.size()));
+
+        String name = PREFIX + sequence.incrementAndGet();
+        File temporary = new File(directory, name + ".tmp");
+
+        try {
+            OutputStream out = new FileOutputStream(temporary);
+
+            try {
+                bytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+
+            if (temporary.renameTo(new File(directory, name + SUFFIX))) {
+                return true;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to spool call logs", e);
+        }
+
+        temporary.delete();
+        size.addAndGet(-bytes.size());
+        return false;
+    }
+
+}
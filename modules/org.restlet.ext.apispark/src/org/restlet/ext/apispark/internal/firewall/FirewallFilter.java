@@ -83,4 +83,32 @@ public class FirewallFilter extends Filter {
         return result;
     }
 
+    /**
+     * Starts the filter and its rules.
+     */
+    @Override
+    public synchronized void start() throws Exception {
+        if (isStopped()) {
+            for (FirewallRule rule : rules) {
+                rule.start();
+            }
+        }
+
+        super.start();
+    }
+
+    /**
+     * Stops the filter and its rules.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        if (isStarted()) {
+            for (FirewallRule rule : rules) {
+                rule.stop();
+            }
+        }
+
+        super.stop();
+    }
+
 }
@@ -123,6 +123,7 @@ public abstract class FirewallCounterRule extends FirewallRule {
         for (ThresholdHandler handler : handlers) {
             int result = handler.handle(request, response, counterResult);
             if (result != Filter.CONTINUE) {
+                refundCounter(countedValue, counterResult);
                 return result;
             }
         }
@@ -171,6 +172,20 @@ public abstract class FirewallCounterRule extends FirewallRule {
         return blockingUnknownCountedValue;
     }
 
+    /**
+     * Method called when a {@link ThresholdHandler} refused the request after
+     * the counter related to the given countedValue was increased. Does
+     * nothing by default, so that refused requests are counted.
+     * 
+     * @param countedValue
+     *            Value returned by the attached {@link CountingPolicy}
+     * @param counterResult
+     *            The result of the increment.
+     */
+    protected void refundCounter(String countedValue,
+            CounterResult counterResult) {
+    }
+
     /**
      * Indicates if an unknown counted value should be blocked by default.
      * 
@@ -25,6 +25,7 @@
 package org.restlet.ext.apispark.internal.firewall.rule;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
@@ -37,23 +38,50 @@ import org.restlet.routing.Filter;
 
 /**
  * Filters requests by testing the presence of the user IP address from a white
- * list or a black list.
+ * list or a black list. Lists contain single IPv4 or IPv6 addresses or ranges
+ * in CIDR notation, compiled into an {@link IpAddressTrie}. Lists can be
+ * replaced at any time without disturbing the requests being filtered.
  * 
  * @author Manuel Boillod
  */
 public class FirewallIpFilteringRule extends FirewallRule {
 
-    private Set<String> filteredAddresses;
+    /**
+     * Compiles a list of addresses and ranges.
+     * 
+     * @param filteredAddresses
+     *            The list of addresses and ranges.
+     * @return The compiled list.
+     */
+    private static IpAddressTrie compile(Collection<String> filteredAddresses) {
+        IpAddressTrie result = new IpAddressTrie();
+
+        for (String filteredAddress : filteredAddresses) {
+            if (!result.add(filteredAddress)) {
+                Context.getCurrentLogger().log(
+                        Level.WARNING,
+                        "Ignoring the invalid IP address or range \""
+                                + filteredAddress + "\".");
+            }
+        }
+
+        return result;
+    }
+
+    private volatile Set<String> filteredAddresses;
+
+    /** The compiled list of addresses and ranges. */
+    private volatile IpAddressTrie trie;
 
     private boolean whiteList;
 
     public FirewallIpFilteringRule() {
-
+        this(Collections.<String> emptySet(), false);
     }
 
     public FirewallIpFilteringRule(Collection<String> filteredAddresses,
             boolean whiteList) {
-        this.filteredAddresses = new HashSet<>(filteredAddresses);
+        setFilteredAddresses(new HashSet<>(filteredAddresses));
         this.whiteList = whiteList;
     }
 
@@ -69,7 +97,7 @@ public class FirewallIpFilteringRule extends FirewallRule {
     public int beforeHandle(Request request, Response response) {
         String address = request.getClientInfo().getUpstreamAddress();
 
-        if (filteredAddresses.contains(address)) {
+        if (address != null && trie.contains(address)) {
             if (!whiteList) {
                 Context.getCurrentLogger().log(
                         Level.FINE,
@@ -101,7 +129,15 @@ public class FirewallIpFilteringRule extends FirewallRule {
         return whiteList;
     }
 
+    /**
+     * Sets the list of addresses and ranges. The list is compiled before
+     * replacing the current one atomically.
+     * 
+     * @param filteredAddresses
+     *            The list of addresses and ranges.
+     */
     public void setFilteredAddresses(Set<String> filteredAddresses) {
+        this.trie = compile(filteredAddresses);
         this.filteredAddresses = filteredAddresses;
     }
 
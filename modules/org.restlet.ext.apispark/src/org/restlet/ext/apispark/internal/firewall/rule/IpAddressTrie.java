@@ -0,0 +1,501 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.Arrays;
+
+/**
+ * Compressed binary trie of IPv4 and IPv6 address ranges in CIDR notation,
+ * such as "192.168.0.0/16" or "2001:db8::/32". Single addresses are ranges
+ * covering all the bits of the address. Each node of the trie holds a whole
+ * prefix, so that chains of nodes with a single child are collapsed and a
+ * lookup visits at most one node per distinct prefix length on its path.<br>
+ * <br>
+ * IPv4-mapped IPv6 addresses are handled as IPv4 addresses. Adding ranges is
+ * not thread-safe, but lookups of a trie that is no longer modified can be
+ * done concurrently.
+ * 
+ * @author Jerome Louvel
+ */
+public class IpAddressTrie {
+
+    /**
+     * Node of the trie.
+     */
+    private static class Node {
+
+        /** The children of the node, indexed by their first bit. */
+        private final Node[] children = new Node[2];
+
+        /** The prefix, with all bits beyond its length cleared. */
+        private final byte[] key;
+
+        /** The length of the prefix in bits. */
+        private final int length;
+
+        /** Indicates if the prefix is a range of the trie. */
+        private boolean terminal;
+
+        /**
+         * Constructor.
+         * 
+         * @param key
+         *            The address whose prefix is kept.
+         * @param length
+         *            The length of the prefix in bits.
+         * @param terminal
+         *            Indicates if the prefix is a range of the trie.
+         */
+        private Node(byte[] key, int length, boolean terminal) {
+            this.key = mask(key, length);
+            this.length = length;
+            this.terminal = terminal;
+        }
+    }
+
+    /**
+     * Returns the bit of an address at the given index.
+     * 
+     * @param address
+     *            The address.
+     * @param index
+     *            The index of the bit.
+     * @return The bit at the given index.
+     */
+    private static int getBit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * Returns the length of the prefix shared by two addresses, up to the
+     * given length.
+     * 
+     * @param a
+     *            The first address.
+     * @param b
+     *            The second address.
+     * @param from
+     *            The number of bits already known to be shared.
+     * @param to
+     *            The maximum length in bits.
+     * @return The length of the shared prefix.
+     */
+    private static int getCommonLength(byte[] a, byte[] b, int from, int to) {
+        int index = from;
+
+        while (index < to) {
+            int diff = (a[index >>> 3] ^ b[index >>> 3]) & 0xff;
+
+            if (diff == 0) {
+                index = (index | 7) + 1;
+            } else {
+                int bit = index & 7;
+                diff &= 0xff >>> bit;
+
+                if (diff != 0) {
+                    return Math.min(to,
+                            (index & ~7) + Integer.numberOfLeadingZeros(diff)
+                                    - 24);
+                }
+
+                index = (index | 7) + 1;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Returns a copy of an address whose bits beyond the given length are
+     * cleared.
+     * 
+     * @param address
+     *            The address.
+     * @param length
+     *            The length in bits.
+     * @return The masked copy.
+     */
+    private static byte[] mask(byte[] address, int length) {
+        byte[] result = Arrays.copyOf(address, address.length);
+
+        for (int i = length; i < result.length * 8; i = (i | 7) + 1) {
+            result[i >>> 3] &= (byte) ~(0xff >>> (i & 7));
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address literal. Host names are never resolved.
+     * IPv4-mapped IPv6 addresses are returned as IPv4 addresses.
+     * 
+     * @param address
+     *            The address literal.
+     * @return The address bytes or null if the literal is not valid.
+     */
+    public static byte[] parse(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+
+        String value = address;
+
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+
+        int zone = value.indexOf('%');
+
+        if (zone >= 0) {
+            value = value.substring(0, zone);
+        }
+
+        if (value.indexOf(':') < 0) {
+            return parseIpv4(value);
+        }
+
+        byte[] result = parseIpv6(value);
+
+        if (result != null) {
+            boolean mapped = (result[10] == (byte) 0xff)
+                    && (result[11] == (byte) 0xff);
+
+            for (int i = 0; mapped && i < 10; i++) {
+                mapped = (result[i] == 0);
+            }
+
+            if (mapped) {
+                return Arrays.copyOfRange(result, 12, 16);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses an IPv4 address literal in dotted decimal notation.
+     * 
+     * @param address
+     *            The address literal.
+     * @return The 4 address bytes or null if the literal is not valid.
+     */
+    private static byte[] parseIpv4(String address) {
+        byte[] result = new byte[4];
+        int part = 0;
+        int value = -1;
+
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                value = ((value < 0) ? 0 : value * 10) + (c - '0');
+
+                if (value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && value >= 0 && part < 3) {
+                result[part++] = (byte) value;
+                value = -1;
+            } else {
+                return null;
+            }
+        }
+
+        if (part != 3 || value < 0) {
+            return null;
+        }
+
+        result[3] = (byte) value;
+        return result;
+    }
+
+    /**
+     * Parses an IPv6 address literal, possibly compressed with "::" and
+     * ending with an IPv4 address.
+     * 
+     * @param address
+     *            The address literal.
+     * @return The 16 address bytes or null if the literal is not valid.
+     */
+    private static byte[] parseIpv6(String address) {
+        int compression = address.indexOf("::");
+
+        if (compression >= 0 && address.indexOf("::", compression + 1) >= 0) {
+            return null;
+        }
+
+        byte[] result = new byte[16];
+        int[] head = parseIpv6Groups((compression < 0) ? address : address
+                .substring(0, compression));
+        int[] tail = (compression < 0) ? new int[0]
+                : parseIpv6Groups(address.substring(compression + 2));
+
+        if (head == null || tail == null) {
+            return null;
+        }
+
+        int count = head.length + tail.length;
+
+        if ((compression < 0) ? (count != 16) : (count > 14)) {
+            return null;
+        }
+
+        for (int i = 0; i < head.length; i++) {
+            result[i] = (byte) head[i];
+        }
+
+        for (int i = 0; i < tail.length; i++) {
+            result[16 - tail.length + i] = (byte) tail[i];
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses colon separated groups of an IPv6 address. The last group may
+     * be an IPv4 address.
+     * 
+     * @param groups
+     *            The groups, possibly empty.
+     * @return The bytes of the groups or null if they are not valid.
+     */
+    private static int[] parseIpv6Groups(String groups) {
+        if (groups.isEmpty()) {
+            return new int[0];
+        }
+
+        String[] parts = groups.split(":", -1);
+        int[] result = new int[parts.length * 2 + 2];
+        int length = 0;
+
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+
+            if (i == parts.length - 1 && part.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(part);
+
+                if (ipv4 == null) {
+                    return null;
+                }
+
+                for (byte b : ipv4) {
+                    result[length++] = b & 0xff;
+                }
+            } else if (part.isEmpty() || part.length() > 4) {
+                return null;
+            } else {
+                int value = 0;
+
+                for (int j = 0; j < part.length(); j++) {
+                    int digit = Character.digit(part.charAt(j), 16);
+
+                    if (digit < 0) {
+                        return null;
+                    }
+
+                    value = (value << 4) | digit;
+                }
+
+                result[length++] = value >>> 8;
+                result[length++] = value & 0xff;
+            }
+        }
+
+        return Arrays.copyOf(result, length);
+    }
+
+    /** The root of the IPv4 ranges. */
+    private final Node ipv4Root;
+
+    /** The root of the IPv6 ranges. */
+    private final Node ipv6Root;
+
+    /** The number of nodes. */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public IpAddressTrie() {
+        this.ipv4Root = new Node(new byte[4], 0, false);
+        this.ipv6Root = new Node(new byte[16], 0, false);
+    }
+
+    /**
+     * Adds a range in CIDR notation or a single address.
+     * 
+     * @param range
+     *            The range in CIDR notation or the single address.
+     * @return True if the range was valid and added.
+     */
+    public boolean add(String range) {
+        int slash = (range == null) ? -1 : range.indexOf('/');
+        byte[] address = parse((slash < 0) ? range : range.substring(0,
+                slash));
+
+        if (address == null) {
+            return false;
+        }
+
+        int length = address.length * 8;
+
+        if (slash >= 0) {
+            try {
+                int prefix = Integer.parseInt(range.substring(slash + 1));
+
+                // IPv4-mapped ranges are converted to IPv4 ones
+                if (address.length == 4 && range.indexOf(':') >= 0) {
+                    prefix -= 96;
+                }
+
+                if (prefix < 0 || prefix > length) {
+                    return false;
+                }
+
+                length = prefix;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        add(address, length);
+        return true;
+    }
+
+    /**
+     * Adds a range.
+     * 
+     * @param address
+     *            The first address of the range.
+     * @param length
+     *            The length of the prefix in bits.
+     */
+    private void add(byte[] address, int length) {
+        Node node = (address.length == 4) ? ipv4Root : ipv6Root;
+
+        while (!node.terminal) {
+            if (node.length == length) {
+                // Narrower ranges are covered by this one
+                node.terminal = true;
+                size -= countNodes(node.children[0])
+                        + countNodes(node.children[1]);
+                node.children[0] = null;
+                node.children[1] = null;
+                return;
+            }
+
+            int bit = getBit(address, node.length);
+            Node child = node.children[bit];
+
+            if (child == null) {
+                node.children[bit] = new Node(address, length, true);
+                size++;
+                return;
+            }
+
+            int common = getCommonLength(address, child.key, node.length,
+                    Math.min(length, child.length));
+
+            if (common == child.length) {
+                node = child;
+            } else {
+                Node parent = new Node(address, common, common == length);
+                parent.children[getBit(child.key, common)] = child;
+
+                if (common < length) {
+                    parent.children[getBit(address, common)] = new Node(
+                            address, length, true);
+                    size++;
+                }
+
+                node.children[bit] = parent;
+                size++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Indicates if an address belongs to one of the ranges.
+     * 
+     * @param address
+     *            The address literal.
+     * @return True if the address belongs to one of the ranges.
+     */
+    public boolean contains(String address) {
+        byte[] bytes = parse(address);
+        return (bytes != null) && contains(bytes);
+    }
+
+    /**
+     * Indicates if an address belongs to one of the ranges.
+     * 
+     * @param address
+     *            The address bytes, 4 for IPv4 or 16 for IPv6.
+     * @return True if the address belongs to one of the ranges.
+     */
+    public boolean contains(byte[] address) {
+        Node node = (address.length == 4) ? ipv4Root : ipv6Root;
+        int checked = 0;
+
+        while (node != null) {
+            if (getCommonLength(address, node.key, checked, node.length) < node.length) {
+                return false;
+            } else if (node.terminal) {
+                return true;
+            } else if (node.length == address.length * 8) {
+                return false;
+            }
+
+            checked = node.length;
+            node = node.children[getBit(address, checked)];
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts the nodes of a subtree.
+     * 
+     * @param node
+     *            The root of the subtree.
+     * @return The number of nodes.
+     */
+    private int countNodes(Node node) {
+        return (node == null) ? 0 : 1 + countNodes(node.children[0])
+                + countNodes(node.children[1]);
+    }
+
+    /**
+     * Returns the number of nodes of the trie, excluding the roots.
+     * 
+     * @return The number of nodes of the trie.
+     */
+    public int size() {
+        return size;
+    }
+
+}
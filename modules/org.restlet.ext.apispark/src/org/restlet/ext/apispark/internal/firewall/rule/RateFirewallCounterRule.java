@@ -0,0 +1,214 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.ext.apispark.internal.firewall.rule.counter.RateCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
+
+/**
+ * {@link FirewallCounterRule} that limits the rate of requests with lock-free
+ * {@link RateCounter} instances. For each countedValue (value returned by the
+ * {@link CountingPolicy}), a {@link RateCounter} is associated. Requests
+ * refused by a handler are not counted.<br>
+ * <br>
+ * Idle counters are periodically removed. Once the purge period has elapsed,
+ * each request thread inspects at most {@link #PURGE_BATCH_SIZE} counters
+ * until all of them have been inspected, so that no request pays for a scan
+ * of all the counters.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class RateFirewallCounterRule extends FirewallCounterRule {
+
+    /** The minimum purge period in nanoseconds. */
+    private static final long MIN_PURGE_PERIOD = TimeUnit.MINUTES.toNanos(1);
+
+    /** The maximum number of counters inspected by a request thread. */
+    public static final int PURGE_BATCH_SIZE = 64;
+
+    /** The counters by counted value. */
+    private final ConcurrentMap<String, RateCounter> counters;
+
+    /** Time of the next purge in nanoseconds. */
+    private final AtomicLong nextPurge;
+
+    /** The purge in progress, or null. */
+    private volatile Iterator<Map.Entry<String, RateCounter>> purgeIterator;
+
+    /** The purge period in nanoseconds. */
+    private final long purgePeriod;
+
+    /** Indicates if a request thread is purging counters. */
+    private final AtomicBoolean purging;
+
+    /**
+     * Constructor.
+     * 
+     * @param period
+     *            The period associated to the rule.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param countingPolicy
+     *            The associated counting policy.
+     */
+    public RateFirewallCounterRule(long period, TimeUnit periodUnit,
+            CountingPolicy countingPolicy) {
+        super(countingPolicy);
+        this.counters = new ConcurrentHashMap<String, RateCounter>();
+        this.purgePeriod = Math.max(MIN_PURGE_PERIOD,
+                2 * periodUnit.toNanos(period));
+        this.nextPurge = new AtomicLong(System.nanoTime() + purgePeriod);
+        this.purging = new AtomicBoolean();
+    }
+
+    /**
+     * Creates a new counter.
+     * 
+     * @return A new counter.
+     */
+    protected abstract RateCounter createCounter();
+
+    /**
+     * Does nothing.
+     */
+    @Override
+    protected void decrementCounter(String countedValue) {
+    }
+
+    /**
+     * Returns the number of counters currently in memory.
+     * 
+     * @return The number of counters currently in memory.
+     */
+    public int getCounterCount() {
+        return counters.size();
+    }
+
+    @Override
+    protected CounterResult incrementCounter(String countedValue) {
+        long now = System.nanoTime();
+
+        if ((now - nextPurge.get()) >= 0) {
+            purgeBatch(now);
+        }
+
+        CounterResult result = null;
+
+        while (result == null) {
+            RateCounter counter = counters.get(countedValue);
+
+            if (counter == null) {
+                RateCounter created = createCounter();
+                counter = counters.putIfAbsent(countedValue, created);
+
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+
+            result = counter.increment(now);
+
+            if (result == null) {
+                // The counter has just been expired by a purge
+                counters.remove(countedValue, counter);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes all the idle counters.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     */
+    public void purge(long now) {
+        for (Map.Entry<String, RateCounter> entry : counters.entrySet()) {
+            if (entry.getValue().expire(now)) {
+                counters.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the idle counters among the next {@link #PURGE_BATCH_SIZE}
+     * counters of the purge in progress, starting a new purge if needed. Once
+     * all the counters have been inspected, the next purge is scheduled after
+     * the purge period. Does nothing if another thread is purging.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     */
+    private void purgeBatch(long now) {
+        if (purging.compareAndSet(false, true)) {
+            try {
+                Iterator<Map.Entry<String, RateCounter>> iterator = purgeIterator;
+
+                if (iterator == null) {
+                    iterator = counters.entrySet().iterator();
+                }
+
+                for (int i = 0; (i < PURGE_BATCH_SIZE)
+                        && iterator.hasNext(); i++) {
+                    Map.Entry<String, RateCounter> entry = iterator.next();
+
+                    if (entry.getValue().expire(now)) {
+                        counters.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                if (iterator.hasNext()) {
+                    purgeIterator = iterator;
+                } else {
+                    purgeIterator = null;
+                    nextPurge.set(now + purgePeriod);
+                }
+            } finally {
+                purging.set(false);
+            }
+        }
+    }
+
+    @Override
+    protected void refundCounter(String countedValue,
+            CounterResult counterResult) {
+        RateCounter counter = counters.get(countedValue);
+
+        if (counter != null) {
+            counter.refund(counterResult, System.nanoTime());
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterSynchronizer;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
+
+/**
+ * {@link FirewallCounterRule} counting concurrent requests with counters
+ * shared by all the nodes of a cluster.
+ * 
+ * @author Jerome Louvel
+ */
+public class SharedConcurrentFirewallCounterRule extends FirewallCounterRule {
+
+    /** The time a shared counter is kept after its last update. */
+    private static final long EXPIRATION = TimeUnit.MINUTES.toMillis(2);
+
+    /** The name of the rule, unique in the cluster. */
+    private final String name;
+
+    /** The synchronizer of the shared counters. */
+    private final CounterSynchronizer synchronizer;
+
+    /**
+     * Constructor.
+     * 
+     * @param name
+     *            The name of the rule, unique in the cluster and used to
+     *            prefix the keys of the shared counters.
+     * @param countingPolicy
+     *            The associated counting policy.
+     * @param synchronizer
+     *            The synchronizer of the shared counters.
+     */
+    public SharedConcurrentFirewallCounterRule(String name,
+            CountingPolicy countingPolicy, CounterSynchronizer synchronizer) {
+        super(countingPolicy);
+        this.name = name;
+        this.synchronizer = synchronizer;
+    }
+
+    @Override
+    protected void decrementCounter(String countedValue) {
+        synchronizer.add(name + '/' + countedValue, -1,
+                System.currentTimeMillis() + EXPIRATION);
+    }
+
+    @Override
+    protected CounterResult incrementCounter(String countedValue) {
+        long consumed = synchronizer.add(name + '/' + countedValue, 1,
+                System.currentTimeMillis() + EXPIRATION);
+        CounterResult counterResult = new CounterResult();
+        counterResult.setConsumed((int) Math.min(Integer.MAX_VALUE, consumed));
+        return counterResult;
+    }
+
+    /**
+     * Starts the rule and the synchronizer of the shared counters.
+     */
+    @Override
+    public synchronized void start() throws Exception {
+        synchronizer.start();
+        super.start();
+    }
+
+    /**
+     * Stops the rule and the synchronizer of the shared counters, flushing
+     * their pending increments.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        super.stop();
+        synchronizer.stop();
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.counter.RateCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.SlidingWindowCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
+
+/**
+ * {@link FirewallCounterRule} specialized in counting requests on a sliding
+ * window of time. For each countedValue (value returned by the
+ * {@link CountingPolicy}), a {@link SlidingWindowCounter} is associated.
+ * 
+ * @author Jerome Louvel
+ */
+public class SlidingWindowFirewallCounterRule extends RateFirewallCounterRule {
+
+    /** The period associated to the rule. */
+    private final long period;
+
+    /** The period time unit. */
+    private final TimeUnit periodUnit;
+
+    /**
+     * Constructor.
+     * 
+     * @param period
+     *            Period associated to the rule. Each created
+     *            {@link SlidingWindowCounter} will have this one.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param countingPolicy
+     *            The associated counting policy.
+     */
+    public SlidingWindowFirewallCounterRule(int period, TimeUnit periodUnit,
+            CountingPolicy countingPolicy) {
+        super(period, periodUnit, countingPolicy);
+        this.period = period;
+        this.periodUnit = periodUnit;
+    }
+
+    @Override
+    protected RateCounter createCounter() {
+        return new SlidingWindowCounter(period, periodUnit);
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.counter.RateCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.TokenBucketCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.CountingPolicy;
+
+/**
+ * {@link FirewallCounterRule} specialized in limiting requests with token
+ * buckets. For each countedValue (value returned by the {@link CountingPolicy}
+ * ), a {@link TokenBucketCounter} is associated. The capacity of the buckets
+ * should be used as the limit of the attached handlers.
+ * 
+ * @author Jerome Louvel
+ */
+public class TokenBucketFirewallCounterRule extends RateFirewallCounterRule {
+
+    /** The maximum number of tokens of each bucket. */
+    private final int capacity;
+
+    /** The period needed to refill a bucket. */
+    private final long period;
+
+    /** The period time unit. */
+    private final TimeUnit periodUnit;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The maximum number of tokens of each bucket.
+     * @param period
+     *            The period needed to refill a bucket.
+     * @param periodUnit
+     *            Period time unit associated to the rule.
+     * @param countingPolicy
+     *            The associated counting policy.
+     */
+    public TokenBucketFirewallCounterRule(int capacity, int period,
+            TimeUnit periodUnit, CountingPolicy countingPolicy) {
+        super(period, periodUnit, countingPolicy);
+        this.capacity = capacity;
+        this.period = period;
+        this.periodUnit = periodUnit;
+    }
+
+    @Override
+    protected RateCounter createCounter() {
+        return new TokenBucketCounter(capacity, period, periodUnit);
+    }
+
+    /**
+     * Returns the maximum number of tokens of each bucket.
+     * 
+     * @return The maximum number of tokens of each bucket.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
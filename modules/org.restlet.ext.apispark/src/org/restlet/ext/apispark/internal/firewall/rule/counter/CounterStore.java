@@ -0,0 +1,53 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.Map;
+
+/**
+ * Stores counters shared by several nodes of a cluster, so that the limits of
+ * the firewall rules apply to the whole cluster instead of each node. Stores
+ * are updated in batches by a {@link CounterSynchronizer}.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class CounterStore {
+
+    /**
+     * Atomically adds the given deltas to the shared counters and returns
+     * their new values. Counters that do not exist yet start from zero. The
+     * counters must be kept at least until the given expiration time.
+     * 
+     * @param deltas
+     *            The values to add, by counter key.
+     * @param expirationTime
+     *            The expiration time in milliseconds since the epoch.
+     * @return The new values of the updated counters, by counter key.
+     */
+    public abstract Map<String, Long> add(Map<String, Long> deltas,
+            long expirationTime);
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Form;
+import org.restlet.data.Method;
+import org.restlet.data.Parameter;
+import org.restlet.data.Status;
+
+/**
+ * Restlet exposing a {@link CounterStore} to the {@link RemoteCounterStore}
+ * instances of other nodes. POST requests carry a form of deltas and the
+ * expiration time as a query parameter, and receive a form of new values.
+ * 
+ * @author Jerome Louvel
+ */
+public class CounterStoreRestlet extends Restlet {
+
+    /** The name of the query parameter giving the expiration time. */
+    public static final String EXPIRATION_PARAMETER = "expiration";
+
+    /** The exposed store. */
+    private final CounterStore store;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param store
+     *            The exposed store.
+     */
+    public CounterStoreRestlet(Context context, CounterStore store) {
+        super(context);
+        this.store = store;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+
+        if (!Method.POST.equals(request.getMethod())) {
+            response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+            response.getAllowedMethods().add(Method.POST);
+            return;
+        }
+
+        Map<String, Long> deltas = new LinkedHashMap<String, Long>();
+        long expirationTime;
+
+        try {
+            for (Parameter parameter : new Form(request.getEntity())) {
+                deltas.put(parameter.getName(),
+                        Long.valueOf(parameter.getValue()));
+            }
+
+            expirationTime = Long.parseLong(request.getResourceRef()
+                    .getQueryAsForm().getFirstValue(EXPIRATION_PARAMETER, "0"));
+        } catch (NumberFormatException e) {
+            response.setStatus(Status.CLIENT_ERROR_BAD_REQUEST, e);
+            return;
+        }
+
+        Form result = new Form();
+
+        for (Map.Entry<String, Long> value : store.add(deltas, expirationTime)
+                .entrySet()) {
+            result.add(value.getKey(), Long.toString(value.getValue()));
+        }
+
+        response.setEntity(result.getWebRepresentation());
+    }
+
+}
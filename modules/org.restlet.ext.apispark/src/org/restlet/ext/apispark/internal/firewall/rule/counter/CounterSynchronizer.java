@@ -0,0 +1,345 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+
+/**
+ * Synchronizes local counters with a {@link CounterStore}. Increments are
+ * aggregated locally and flushed in batches every few milliseconds by a
+ * background timer. In between, the value of a counter is approximated by
+ * the last value known from the store plus the local increments not flushed
+ * yet, so that requests never wait for the store. Only the counters with
+ * pending increments are sent on each flush, the values of the other ones
+ * are refreshed at a slower rate.<br>
+ * <br>
+ * The timer is started and stopped with the shared firewall rules using this
+ * synchronizer.
+ * 
+ * @author Jerome Louvel
+ */
+public class CounterSynchronizer {
+
+    /**
+     * The local view of a shared counter.
+     */
+    private static class SharedCount {
+
+        /** The expiration time in milliseconds since the epoch. */
+        private volatile long expirationTime;
+
+        /**
+         * The local increments not flushed yet, or {@link #REMOVED} once the
+         * counter is removed.
+         */
+        private final AtomicLong pending = new AtomicLong();
+
+        /** The last value known from the store. */
+        private volatile long total;
+    }
+
+    /** The default flush period in milliseconds. */
+    public static final long DEFAULT_FLUSH_PERIOD = 10;
+
+    /** The default refresh period in milliseconds. */
+    public static final long DEFAULT_REFRESH_PERIOD = 1000;
+
+    /** The pending value marking a counter removed by a flush. */
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    /** The local counters by key. */
+    private final ConcurrentMap<String, SharedCount> counts;
+
+    /** The flush period in milliseconds. */
+    private final long flushPeriod;
+
+    /** The time of the last refresh of all the counters. */
+    private long lastRefresh;
+
+    /** The refresh period in milliseconds. */
+    private final long refreshPeriod;
+
+    /** The shared store. */
+    private final CounterStore store;
+
+    /** The timer triggering the flushes. */
+    private volatile Timer timer;
+
+    /**
+     * Constructor using the default flush period.
+     * 
+     * @param store
+     *            The shared store.
+     */
+    public CounterSynchronizer(CounterStore store) {
+        this(store, DEFAULT_FLUSH_PERIOD);
+    }
+
+    /**
+     * Constructor using the default refresh period.
+     * 
+     * @param store
+     *            The shared store.
+     * @param flushPeriod
+     *            The flush period in milliseconds. If zero or negative, the
+     *            counters are only flushed by explicit calls to
+     *            {@link #flush()}.
+     */
+    public CounterSynchronizer(CounterStore store, long flushPeriod) {
+        this(store, flushPeriod, DEFAULT_REFRESH_PERIOD);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param store
+     *            The shared store.
+     * @param flushPeriod
+     *            The flush period in milliseconds. If zero or negative, the
+     *            counters are only flushed by explicit calls to
+     *            {@link #flush()}.
+     * @param refreshPeriod
+     *            The minimum period in milliseconds between two refreshes of
+     *            the counters without pending increments. If zero or
+     *            negative, they are refreshed by each flush.
+     */
+    public CounterSynchronizer(CounterStore store, long flushPeriod,
+            long refreshPeriod) {
+        this.counts = new ConcurrentHashMap<String, SharedCount>();
+        this.flushPeriod = flushPeriod;
+        this.refreshPeriod = refreshPeriod;
+        this.store = store;
+    }
+
+    /**
+     * Adds a delta to a counter and returns its approximate value. The
+     * delta will be sent to the store by the next flush.
+     * 
+     * @param key
+     *            The counter key, unique in the cluster.
+     * @param delta
+     *            The value to add.
+     * @param expirationTime
+     *            The time in milliseconds since the epoch until which the
+     *            counter must be kept.
+     * @return The approximate value of the counter.
+     */
+    public long add(String key, long delta, long expirationTime) {
+        for (;;) {
+            SharedCount count = counts.get(key);
+
+            if (count == null) {
+                SharedCount created = new SharedCount();
+                count = counts.putIfAbsent(key, created);
+
+                if (count == null) {
+                    count = created;
+                }
+            }
+
+            if (count.expirationTime < expirationTime) {
+                count.expirationTime = expirationTime;
+            }
+
+            long pending = count.pending.get();
+
+            if (pending == REMOVED) {
+                // Removed by a concurrent flush, retry with a new counter
+                counts.remove(key, count);
+            } else if (count.pending.compareAndSet(pending, pending + delta)) {
+                return count.total + pending + delta;
+            }
+        }
+    }
+
+    /**
+     * Sends the pending increments to the store and refreshes the local
+     * values of the flushed counters with the ones of the store, which
+     * include the increments of the other nodes. The counters without pending
+     * increments are only refreshed once per refresh period. Expired counters
+     * are removed after their last increments are sent. If the store fails,
+     * the increments are kept for the next flush.
+     */
+    public synchronized void flush() {
+        long now = System.currentTimeMillis();
+        boolean refresh = (now - lastRefresh >= refreshPeriod);
+        Map<String, Long> deltas = new HashMap<String, Long>();
+        Map<String, SharedCount> flushed = new HashMap<String, SharedCount>();
+        Map<String, Long> expired = new HashMap<String, Long>();
+        long expirationTime = now;
+
+        for (Map.Entry<String, SharedCount> entry : counts.entrySet()) {
+            SharedCount count = entry.getValue();
+
+            if (count.expirationTime < now) {
+                if (counts.remove(entry.getKey(), count)) {
+                    // Claims the last increments, later ones are retried by
+                    // add() on a new counter
+                    long pending = count.pending.getAndSet(REMOVED);
+
+                    if (pending != 0) {
+                        deltas.put(entry.getKey(), pending);
+                        expired.put(entry.getKey(), count.expirationTime);
+                    }
+                }
+            } else {
+                long pending = count.pending.get();
+
+                if (refresh || pending != 0) {
+                    deltas.put(entry.getKey(), pending);
+                    flushed.put(entry.getKey(), count);
+                    expirationTime = Math.max(expirationTime,
+                            count.expirationTime);
+                }
+            }
+        }
+
+        if (deltas.isEmpty()) {
+            if (refresh) {
+                lastRefresh = now;
+            }
+
+            return;
+        }
+
+        Map<String, Long> totals;
+
+        try {
+            totals = store.add(deltas, expirationTime);
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to synchronize the firewall counters", e);
+
+            // Keeps the increments of the expired counters for the next flush
+            for (Map.Entry<String, Long> entry : expired.entrySet()) {
+                SharedCount created = new SharedCount();
+                created.expirationTime = entry.getValue();
+                SharedCount count = counts.putIfAbsent(entry.getKey(),
+                        created);
+
+                if (count == null) {
+                    count = created;
+                }
+
+                count.pending.addAndGet(deltas.get(entry.getKey()));
+            }
+
+            return;
+        }
+
+        if (refresh) {
+            lastRefresh = now;
+        }
+
+        for (Map.Entry<String, SharedCount> entry : flushed.entrySet()) {
+            Long total = totals.get(entry.getKey());
+
+            if (total != null) {
+                // Briefly overestimates rather than underestimates the value
+                entry.getValue().total = total;
+                entry.getValue().pending.addAndGet(-deltas.get(entry
+                        .getKey()));
+            }
+        }
+    }
+
+    /**
+     * Returns the approximate value of a counter.
+     * 
+     * @param key
+     *            The counter key.
+     * @return The approximate value of the counter.
+     */
+    public long get(String key) {
+        SharedCount count = counts.get(key);
+        long pending = (count == null) ? REMOVED : count.pending.get();
+        return (pending == REMOVED) ? 0 : count.total + pending;
+    }
+
+    /**
+     * Returns the flush period in milliseconds.
+     * 
+     * @return The flush period in milliseconds.
+     */
+    public long getFlushPeriod() {
+        return flushPeriod;
+    }
+
+    /**
+     * Returns the refresh period in milliseconds.
+     * 
+     * @return The refresh period in milliseconds.
+     */
+    public long getRefreshPeriod() {
+        return refreshPeriod;
+    }
+
+    /**
+     * Returns the shared store.
+     * 
+     * @return The shared store.
+     */
+    public CounterStore getStore() {
+        return store;
+    }
+
+    /**
+     * Starts the timer flushing the counters periodically.
+     */
+    public synchronized void start() {
+        if (timer == null && flushPeriod > 0) {
+            timer = new Timer("Firewall counters synchronizer", true);
+            timer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, flushPeriod, flushPeriod);
+        }
+    }
+
+    /**
+     * Stops the timer and flushes the pending increments.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+
+        flush();
+    }
+
+}
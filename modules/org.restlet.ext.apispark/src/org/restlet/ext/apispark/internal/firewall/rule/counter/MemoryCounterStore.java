@@ -0,0 +1,131 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CounterStore} keeping the shared counters in the memory of the
+ * current process. It can be shared by several synchronizers of the same JVM,
+ * or exposed to other nodes with a {@link CounterStoreRestlet}.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemoryCounterStore extends CounterStore {
+
+    /**
+     * A stored counter.
+     */
+    private static class Entry {
+
+        /** The expiration time in milliseconds since the epoch. */
+        private volatile long expirationTime;
+
+        /** The counter value. */
+        private final AtomicLong value = new AtomicLong();
+    }
+
+    /** The period between two purges of the expired counters. */
+    private static final long PURGE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    /** The stored counters. */
+    private final ConcurrentMap<String, Entry> entries;
+
+    /** Time of the next purge in milliseconds since the epoch. */
+    private final AtomicLong nextPurge;
+
+    /**
+     * Constructor.
+     */
+    public MemoryCounterStore() {
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.nextPurge = new AtomicLong(System.currentTimeMillis()
+                + PURGE_PERIOD);
+    }
+
+    @Override
+    public Map<String, Long> add(Map<String, Long> deltas, long expirationTime) {
+        long now = System.currentTimeMillis();
+        long purge = nextPurge.get();
+
+        if (now >= purge && nextPurge.compareAndSet(purge, now + PURGE_PERIOD)) {
+            purge(now);
+        }
+
+        Map<String, Long> result = new HashMap<String, Long>();
+
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            Entry entry = entries.get(delta.getKey());
+
+            if (entry == null) {
+                Entry created = new Entry();
+                entry = entries.putIfAbsent(delta.getKey(), created);
+
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+
+            if (entry.expirationTime < expirationTime) {
+                entry.expirationTime = expirationTime;
+            }
+
+            result.put(delta.getKey(),
+                    entry.value.addAndGet(delta.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of stored counters.
+     * 
+     * @return The number of stored counters.
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Removes the expired counters.
+     * 
+     * @param now
+     *            The current time in milliseconds since the epoch.
+     */
+    public void purge(long now) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().expirationTime < now) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.restlet.ext.apispark.internal.firewall.rule.CounterResult;
+
+/**
+ * {@link Counter} which limits the rate of requests without locking. The whole
+ * state of the counter is packed into a single long value updated through
+ * compare-and-set operations, so that a counter only costs a few bytes of
+ * memory per counted value.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class RateCounter extends Counter {
+
+    /** The state of a counter that has been removed from its rule. */
+    protected static final long EXPIRED = Long.MIN_VALUE;
+
+    /** Updates the state field atomically. */
+    private static final AtomicLongFieldUpdater<RateCounter> STATE = AtomicLongFieldUpdater
+            .newUpdater(RateCounter.class, "state");
+
+    /** The packed state of the counter. */
+    private volatile long state;
+
+    /**
+     * Constructor.
+     * 
+     * @param state
+     *            The initial state.
+     */
+    protected RateCounter(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Atomically sets the state of the counter if it still has the expected
+     * value.
+     * 
+     * @param expected
+     *            The expected state.
+     * @param update
+     *            The new state.
+     * @return True if the state was updated.
+     */
+    protected boolean compareAndSetState(long expected, long update) {
+        return STATE.compareAndSet(this, expected, update);
+    }
+
+    /**
+     * Does nothing.
+     */
+    @Override
+    public void decrement() {
+    }
+
+    /**
+     * Marks the counter as expired if it is idle, meaning that its removal
+     * would not change the next results. Once expired, the counter refuses
+     * increments and must be replaced.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @return True if the counter is expired.
+     */
+    public boolean expire(long now) {
+        long current;
+
+        do {
+            current = getState();
+
+            if (current == EXPIRED) {
+                return true;
+            } else if (!isIdle(current, now)) {
+                return false;
+            }
+        } while (!compareAndSetState(current, EXPIRED));
+
+        return true;
+    }
+
+    /**
+     * Returns the packed state of the counter.
+     * 
+     * @return The packed state of the counter.
+     */
+    protected long getState() {
+        return state;
+    }
+
+    @Override
+    public CounterResult increment() {
+        return increment(System.nanoTime());
+    }
+
+    /**
+     * Increments the counter value at the given time.
+     * 
+     * @param now
+     *            The current time in nanoseconds.
+     * @return The counter's value or null if the counter is expired.
+     */
+    public abstract CounterResult increment(long now);
+
+    /**
+     * Cancels an increment made at the given time, for a request that was
+     * refused, so that refused requests don't count against the limit.
+     * 
+     * @param counterResult
+     *            The result of the increment.
+     * @param now
+     *            The current time in nanoseconds.
+     */
+    public abstract void refund(CounterResult counterResult, long now);
+
+    /**
+     * Indicates if the given state is equivalent to the initial state of a
+     * counter at the given time.
+     * 
+     * @param state
+     *            The packed state.
+     * @param now
+     *            The current time in nanoseconds.
+     * @return True if the given state is idle.
+     */
+    protected abstract boolean isIdle(long state, long now);
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Form;
+import org.restlet.data.Method;
+import org.restlet.data.Parameter;
+import org.restlet.data.Reference;
+import org.restlet.resource.ResourceException;
+
+/**
+ * {@link CounterStore} delegating to a remote store exposed by a
+ * {@link CounterStoreRestlet}. The deltas are posted as a form and the new
+ * values are returned as a form too.
+ * 
+ * @author Jerome Louvel
+ */
+public class RemoteCounterStore extends CounterStore {
+
+    /** The Restlet handling the requests, usually a client connector. */
+    private final Restlet next;
+
+    /** The reference of the remote store. */
+    private final Reference reference;
+
+    /**
+     * Constructor.
+     * 
+     * @param next
+     *            The Restlet handling the requests, usually a client
+     *            connector.
+     * @param reference
+     *            The reference of the remote store.
+     */
+    public RemoteCounterStore(Restlet next, Reference reference) {
+        this.next = next;
+        this.reference = reference;
+    }
+
+    @Override
+    public Map<String, Long> add(Map<String, Long> deltas, long expirationTime) {
+        Form form = new Form();
+
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            form.add(delta.getKey(), Long.toString(delta.getValue()));
+        }
+
+        Reference target = new Reference(reference);
+        target.addQueryParameter(CounterStoreRestlet.EXPIRATION_PARAMETER,
+                Long.toString(expirationTime));
+        Response response = next.handle(new Request(Method.POST, target, form
+                .getWebRepresentation()));
+
+        if (!response.getStatus().isSuccess()) {
+            throw new ResourceException(response.getStatus());
+        }
+
+        Map<String, Long> result = new HashMap<String, Long>();
+
+        for (Parameter parameter : new Form(response.getEntity())) {
+            result.put(parameter.getName(), Long.valueOf(parameter.getValue()));
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.CounterResult;
+
+/**
+ * {@link RateCounter} which counts requests on a sliding window. The number of
+ * requests of the previous period is weighted by the part of this period that
+ * still overlaps the sliding window, which avoids the bursts allowed at the
+ * edges of the fixed periods of the {@link PeriodicCounter}.<br>
+ * <br>
+ * The state packs the index of the current period (24 bits), the number of
+ * requests of the previous period (20 bits) and the number of requests of the
+ * current period (20 bits). Numbers of requests saturate at
+ * {@link #MAX_COUNT}.
+ * 
+ * @author Jerome Louvel
+ */
+public class SlidingWindowCounter extends RateCounter {
+
+    /** The number of bits used for each number of requests. */
+    private static final int COUNT_BITS = 20;
+
+    /** The maximum number of requests counted per period. */
+    public static final int MAX_COUNT = (1 << COUNT_BITS) - 1;
+
+    /** The mask of the period index. */
+    private static final long WINDOW_MASK = (1L << 24) - 1;
+
+    /**
+     * Returns the number of requests of the current period.
+     * 
+     * @param state
+     *            The packed state.
+     * @return The number of requests of the current period.
+     */
+    private static int getCurrent(long state) {
+        return (int) (state & MAX_COUNT);
+    }
+
+    /**
+     * Returns the number of requests of the previous period.
+     * 
+     * @param state
+     *            The packed state.
+     * @return The number of requests of the previous period.
+     */
+    private static int getPrevious(long state) {
+        return (int) ((state >>> COUNT_BITS) & MAX_COUNT);
+    }
+
+    /**
+     * Returns the index of the current period.
+     * 
+     * @param state
+     *            The packed state.
+     * @return The index of the current period.
+     */
+    private static long getWindow(long state) {
+        return (state >>> (2 * COUNT_BITS)) & WINDOW_MASK;
+    }
+
+    /**
+     * Packs a state.
+     * 
+     * @param window
+     *            The index of the current period.
+     * @param previous
+     *            The number of requests of the previous period.
+     * @param current
+     *            The number of requests of the current period.
+     * @return The packed state.
+     */
+    private static long pack(long window, int previous, int current) {
+        return ((window & WINDOW_MASK) << (2 * COUNT_BITS))
+                | ((long) previous << COUNT_BITS) | current;
+    }
+
+    /**
+     * Shifts a state to the period of the given index. The requests of the
+     * current period become the ones of the previous period, or are
+     * forgotten if the state is older.
+     * 
+     * @param state
+     *            The packed state.
+     * @param window
+     *            The index of the period.
+     * @return The shifted state.
+     */
+    private static long shift(long state, long window) {
+        long distance = (window - getWindow(state)) & WINDOW_MASK;
+
+        if (distance == 0) {
+            return state;
+        } else if (distance == 1) {
+            return pack(window, getCurrent(state), 0);
+        }
+
+        return pack(window, 0, 0);
+    }
+
+    /** The period in nanoseconds. */
+    private final long period;
+
+    /**
+     * Constructor.
+     * 
+     * @param period
+     *            The period associated to the counter.
+     * @param periodUnit
+     *            The period time unit.
+     */
+    public SlidingWindowCounter(long period, TimeUnit periodUnit) {
+        super(0);
+        this.period = Math.max(1, periodUnit.toNanos(period));
+    }
+
+    /**
+     * Returns the index of the period containing the given time.
+     * 
+     * @param now
+     *            The time in nanoseconds.
+     * @return The index of the period.
+     */
+    private long getWindowIndex(long now) {
+        long window = now / period;
+        return (now - (window * period)) < 0 ? window - 1 : window;
+    }
+
+    @Override
+    public CounterResult increment(long now) {
+        long window = getWindowIndex(now);
+        long offset = now - (window * period);
+
+        long current;
+        long update;
+
+        do {
+            current = getState();
+
+            if (current == EXPIRED) {
+                return null;
+            }
+
+            update = shift(current, window);
+
+            if (getCurrent(update) < MAX_COUNT) {
+                update++;
+            }
+        } while (!compareAndSetState(current, update));
+
+        double overlap = (double) (period - offset) / period;
+        long consumed = getCurrent(update)
+                + (long) Math.ceil(getPrevious(update) * overlap);
+
+        CounterResult counterResult = new CounterResult();
+        counterResult.setConsumed((int) Math.min(Integer.MAX_VALUE, consumed));
+        counterResult.setElapsed(TimeUnit.NANOSECONDS.toSeconds(offset));
+        counterResult.setReset(TimeUnit.MILLISECONDS.toSeconds(System
+                .currentTimeMillis()
+                + TimeUnit.NANOSECONDS.toMillis(period - offset)));
+        return counterResult;
+    }
+
+    @Override
+    protected boolean isIdle(long state, long now) {
+        long shifted = shift(state, getWindowIndex(now));
+        return getCurrent(shifted) == 0 && getPrevious(shifted) == 0;
+    }
+
+    /**
+     * Removes one request from the current period, or from the previous one
+     * if the period changed since the increment.
+     */
+    @Override
+    public void refund(CounterResult counterResult, long now) {
+        long window = getWindowIndex(now);
+        long current;
+        long update;
+
+        do {
+            current = getState();
+
+            if (current == EXPIRED) {
+                return;
+            }
+
+            update = shift(current, window);
+
+            if (getCurrent(update) > 0) {
+                update--;
+            } else if (getPrevious(update) > 0) {
+                update -= 1L << COUNT_BITS;
+            } else {
+                return;
+            }
+        } while (!compareAndSetState(current, update));
+    }
+
+}
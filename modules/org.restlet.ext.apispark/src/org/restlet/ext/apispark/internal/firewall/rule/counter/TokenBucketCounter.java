@@ -0,0 +1,128 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.apispark.internal.firewall.rule.counter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.ext.apispark.internal.firewall.rule.CounterResult;
+
+/**
+ * {@link RateCounter} implementing a token bucket. The bucket holds up to a
+ * given number of tokens that are continuously refilled over the period, each
+ * request consuming one token.<br>
+ * <br>
+ * The state is the theoretical arrival time of the next request, which is
+ * equivalent to the number of available tokens but can be updated with a
+ * single compare-and-set operation. The number of consumed tokens reported to
+ * the handlers exceeds the capacity of the bucket only when the bucket is
+ * empty, in which case the request does not consume any token.
+ * 
+ * @author Jerome Louvel
+ */
+public class TokenBucketCounter extends RateCounter {
+
+    /** The maximum number of tokens. */
+    private final int capacity;
+
+    /** The time needed to refill one token, in nanoseconds. */
+    private final long interval;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The maximum number of tokens.
+     * @param period
+     *            The period needed to refill the whole bucket.
+     * @param periodUnit
+     *            The period time unit.
+     */
+    public TokenBucketCounter(int capacity, long period, TimeUnit periodUnit) {
+        super(EXPIRED + 1);
+        this.capacity = Math.max(1, capacity);
+        this.interval = Math.max(1, periodUnit.toNanos(period) / this.capacity);
+    }
+
+    @Override
+    public CounterResult increment(long now) {
+        long current;
+        long update;
+        long consumed;
+
+        do {
+            current = getState();
+
+            if (current == EXPIRED) {
+                return null;
+            }
+
+            update = Math.max(current, now) + interval;
+            consumed = (update - now + interval - 1) / interval;
+
+            if (consumed > capacity) {
+                update = current;
+                break;
+            }
+        } while (!compareAndSetState(current, update));
+
+        CounterResult counterResult = new CounterResult();
+        counterResult.setConsumed((int) Math.min(consumed, capacity + 1L));
+        counterResult.setReset(TimeUnit.MILLISECONDS.toSeconds(System
+                .currentTimeMillis()
+                + TimeUnit.NANOSECONDS.toMillis(Math.max(0, update - now))));
+        return counterResult;
+    }
+
+    @Override
+    protected boolean isIdle(long state, long now) {
+        return state <= now;
+    }
+
+    /**
+     * Gives back the token consumed by the increment, unless the bucket was
+     * empty, in which case no token was consumed.
+     */
+    @Override
+    public void refund(CounterResult counterResult, long now) {
+        if (counterResult.getConsumed() > capacity) {
+            return;
+        }
+
+        long current;
+        long update;
+
+        do {
+            current = getState();
+
+            if ((current == EXPIRED) || (current <= now)) {
+                return;
+            }
+
+            update = Math.max(now, current - interval);
+        } while (!compareAndSetState(current, update));
+    }
+
+}
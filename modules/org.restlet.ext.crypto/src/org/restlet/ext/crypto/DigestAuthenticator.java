@@ -56,6 +56,9 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
     /** Lifespan of nonce in milliseconds */
     private volatile long maxServerNonceAge;
 
+    /** The optional store of nonce counts, used to detect replays. */
+    private volatile NonceStore nonceStore;
+
     /** The secret key known only to server. */
     private volatile String serverKey;
 
@@ -168,6 +171,19 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
         return this.maxServerNonceAge;
     }
 
+    /**
+     * Returns the optional store of received nonce counts. When set, the
+     * verifier rejects requests reusing a nonce count with a stale challenge,
+     * asking the client to retry with a fresh nonce. Requests without quality
+     * of protection, and therefore without nonce count, can only use a nonce
+     * once. By default, no store is set and only the age of nonces is checked.
+     * 
+     * @return The store of received nonce counts or null.
+     */
+    public NonceStore getNonceStore() {
+        return this.nonceStore;
+    }
+
     /**
      * Returns the secret key known only by server.
      * 
@@ -204,6 +220,20 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
         this.maxServerNonceAge = maxServerNonceAge;
     }
 
+    /**
+     * Sets the optional store of received nonce counts. The store should
+     * track nonces at least as old as the {@link #getMaxServerNonceAge()}
+     * value, for example:
+     * <code>setNonceStore(new NonceStore(getMaxServerNonceAge()))</code>.
+     * 
+     * @param nonceStore
+     *            The store of received nonce counts or null.
+     * @see #getNonceStore()
+     */
+    public void setNonceStore(NonceStore nonceStore) {
+        this.nonceStore = nonceStore;
+    }
+
     /**
      * Sets the secret key known only by server.
      * 
@@ -28,6 +28,10 @@ import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -42,6 +46,68 @@ import org.restlet.engine.util.Base64;
  */
 public class DigestUtils {
 
+    /**
+     * Key of the per-thread {@link Mac} cache, made of the MAC algorithm name
+     * and of the secret key bytes.
+     */
+    private static final class MacKey {
+
+        /** The MAC algorithm name. */
+        private final String algorithm;
+
+        /** The precomputed hash code. */
+        private final int hashCode;
+
+        /** The secret key bytes. */
+        private final byte[] secretKey;
+
+        /**
+         * Constructor.
+         * 
+         * @param algorithm
+         *            The MAC algorithm name.
+         * @param secretKey
+         *            The secret key bytes.
+         */
+        private MacKey(String algorithm, byte[] secretKey) {
+            this.algorithm = algorithm;
+            this.secretKey = secretKey;
+            this.hashCode = 31 * algorithm.hashCode()
+                    + Arrays.hashCode(secretKey);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof MacKey)) {
+                return false;
+            }
+
+            MacKey that = (MacKey) object;
+            return this.algorithm.equals(that.algorithm)
+                    && Arrays.equals(this.secretKey, that.secretKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    /**
+     * The per-thread message digests, by algorithm name. {@link MessageDigest}
+     * instances aren't thread-safe but are cheap to reuse once created.
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = new ThreadLocal<Map<String, MessageDigest>>() {
+        @Override
+        protected Map<String, MessageDigest> initialValue() {
+            return new HashMap<String, MessageDigest>();
+        }
+    };
+
     /**
      * General regex pattern to extract comma separated name-value components.
      * This pattern captures one name and value per match(), and is repeatedly
@@ -51,6 +117,28 @@ public class DigestUtils {
      */
     private static final char[] HEXDIGITS = "0123456789abcdef".toCharArray();
 
+    /**
+     * The maximum number of initialized {@link Mac} instances kept per thread.
+     * Servers usually sign with a few fixed secrets, so a small LRU map avoids
+     * the cost of the provider lookup and of the key initialization.
+     */
+    private static final int MAC_CACHE_SIZE = 16;
+
+    /** The per-thread initialized MACs, by algorithm and secret key. */
+    private static final ThreadLocal<Map<MacKey, Mac>> MACS = new ThreadLocal<Map<MacKey, Mac>>() {
+        @Override
+        protected Map<MacKey, Mac> initialValue() {
+            return new LinkedHashMap<MacKey, Mac>(MAC_CACHE_SIZE, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+                    return size() > MAC_CACHE_SIZE;
+                }
+            };
+        }
+    };
+
     /**
      * Returns the digest of the target string. Target is decoded to bytes using
      * the US-ASCII charset. Supports MD5 and SHA-1 algorithms.
@@ -85,6 +173,62 @@ public class DigestUtils {
         throw new IllegalArgumentException("Unsupported algorithm.");
     };
 
+    /**
+     * Returns a MAC initialized with the given secret key, reused by the
+     * current thread for later calls with the same algorithm and key.
+     * 
+     * @param algorithm
+     *            The MAC algorithm name.
+     * @param secretKey
+     *            The secret key bytes.
+     * @return The initialized MAC, ready to be used by the current thread.
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeyException
+     */
+    private static Mac getMac(String algorithm, byte[] secretKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Map<MacKey, Mac> macs = MACS.get();
+        MacKey key = new MacKey(algorithm, secretKey.clone());
+        Mac result = macs.get(key);
+
+        if (result == null) {
+            result = Mac.getInstance(algorithm);
+            result.init(new SecretKeySpec(secretKey, algorithm));
+            macs.put(key, result);
+        } else {
+            // Discards any state left by an interrupted computation
+            result.reset();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a message digest for the given algorithm, reused by the current
+     * thread for later calls.
+     * 
+     * @param algorithm
+     *            The digest algorithm name.
+     * @return The reset message digest, ready to be used by the current
+     *         thread.
+     * @throws NoSuchAlgorithmException
+     */
+    private static MessageDigest getMessageDigest(String algorithm)
+            throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest result = digests.get(algorithm);
+
+        if (result == null) {
+            result = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, result);
+        } else {
+            // Discards any state left by an interrupted computation
+            result.reset();
+        }
+
+        return result;
+    }
+
     /**
      * Converts a source string to its HMAC/SHA-1 value.
      * 
@@ -98,12 +242,8 @@ public class DigestUtils {
         byte[] result = null;
 
         try {
-            // Create the HMAC/SHA1 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey, "HmacSHA1");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(signingKey);
+            // Get the message authentication code (MAC) for this key
+            Mac mac = getMac("HmacSHA1", secretKey);
 
             // Compute the HMAC value
             result = mac.doFinal(source.getBytes());
@@ -146,13 +286,8 @@ public class DigestUtils {
         byte[] result = null;
 
         try {
-            // Create the HMAC/SHA256 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey,
-                    "HmacSHA256");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(signingKey);
+            // Get the message authentication code (MAC) for this key
+            Mac mac = getMac("HmacSHA256", secretKey);
 
             // Compute the HMAC value
             result = mac.doFinal(source.getBytes("UTF-8"));
@@ -249,7 +384,7 @@ public class DigestUtils {
     public static String toMd5(String target, String charsetName)
             throws UnsupportedEncodingException {
         try {
-            final byte[] md5 = MessageDigest.getInstance("MD5").digest(
+            final byte[] md5 = getMessageDigest("MD5").digest(
                     target.getBytes(charsetName));
             final char[] md5Chars = new char[32];
             int i = 0;
@@ -298,7 +433,7 @@ public class DigestUtils {
             throws UnsupportedEncodingException {
         try {
             return Base64.encode(
-                    MessageDigest.getInstance("SHA1").digest(
+                    getMessageDigest("SHA1").digest(
                             target.getBytes(charsetName)), false);
         } catch (NoSuchAlgorithmException nsae) {
             throw new RuntimeException(
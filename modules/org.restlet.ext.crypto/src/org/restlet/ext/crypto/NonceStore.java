@@ -0,0 +1,251 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.crypto;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Store of the nonce counts received by a {@link DigestAuthenticator}, used to
+ * detect replayed HTTP DIGEST requests. Nonces are grouped in time buckets
+ * based on their creation time. The buckets form a ring covering the maximum
+ * nonce age, so the counts of expired nonces are dropped in one step when
+ * their bucket is reused, keeping memory bounded. As the same server nonce
+ * can be sent to several clients, the counts sent with a client nonce are
+ * tracked separately for each client nonce.<br>
+ * <br>
+ * This class is thread-safe. Threads verifying distinct nonces don't contend,
+ * and updates of the count of a given nonce are done with compare-and-set
+ * operations.
+ * 
+ * @see DigestAuthenticator#setNonceStore(NonceStore)
+ * @author Jerome Louvel
+ */
+public class NonceStore {
+
+    /**
+     * Bucket of nonce counts for nonces created during the same period.
+     */
+    private static final class Bucket {
+
+        /** The highest nonce count received, by nonce and client nonce. */
+        private final ConcurrentMap<String, AtomicInteger> counts;
+
+        /** The period index of the bucket. */
+        private final long period;
+
+        /**
+         * Constructor.
+         * 
+         * @param period
+         *            The period index of the bucket.
+         */
+        private Bucket(long period) {
+            this.counts = new ConcurrentHashMap<String, AtomicInteger>();
+            this.period = period;
+        }
+    }
+
+    /** The default number of time buckets. */
+    public static final int DEFAULT_BUCKET_COUNT = 16;
+
+    /** The duration of a time bucket in milliseconds. */
+    private final long bucketDuration;
+
+    /** The ring of time buckets. */
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * Constructor using the default number of buckets.
+     * 
+     * @param maxNonceAge
+     *            The maximum age of the tracked nonces in milliseconds.
+     */
+    public NonceStore(long maxNonceAge) {
+        this(maxNonceAge, DEFAULT_BUCKET_COUNT);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxNonceAge
+     *            The maximum age of the tracked nonces in milliseconds.
+     * @param bucketCount
+     *            The number of time buckets, at least 2.
+     */
+    public NonceStore(long maxNonceAge, int bucketCount) {
+        if (bucketCount < 2) {
+            throw new IllegalArgumentException(
+                    "At least two buckets are required");
+        }
+
+        // The ring must still hold the bucket of the oldest valid nonce
+        // while the bucket of the current period is being filled
+        this.bucketDuration = Math.max(1L,
+                (maxNonceAge + bucketCount - 2) / (bucketCount - 1));
+        this.buckets = new AtomicReferenceArray<Bucket>(bucketCount);
+    }
+
+    /**
+     * Removes all the tracked nonce counts.
+     */
+    public void clear() {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the bucket for the given period, replacing the bucket of an
+     * older period sharing the same slot if needed.
+     * 
+     * @param period
+     *            The period index.
+     * @return The bucket or null if the period is older than the tracked
+     *         ones.
+     */
+    private Bucket getBucket(long period) {
+        int index = (int) (period % this.buckets.length());
+        Bucket result = this.buckets.get(index);
+
+        while ((result == null) || (result.period < period)) {
+            Bucket bucket = new Bucket(period);
+
+            if (this.buckets.compareAndSet(index, result, bucket)) {
+                result = bucket;
+            } else {
+                result = this.buckets.get(index);
+            }
+        }
+
+        return (result.period == period) ? result : null;
+    }
+
+    /**
+     * Returns the duration of a time bucket in milliseconds.
+     * 
+     * @return The duration of a time bucket in milliseconds.
+     */
+    public long getBucketDuration() {
+        return this.bucketDuration;
+    }
+
+    /**
+     * Returns the number of tracked nonces.
+     * 
+     * @return The number of tracked nonces.
+     */
+    public int size() {
+        int result = 0;
+
+        for (int i = 0; i < this.buckets.length(); i++) {
+            Bucket bucket = this.buckets.get(i);
+
+            if (bucket != null) {
+                result += bucket.counts.size();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a nonce count received for a given nonce. The update is only
+     * accepted if the count is strictly greater than the counts previously
+     * received for the same nonce, as required by section 3.2.2 of RFC 2617.
+     * 
+     * @param nonce
+     *            The server nonce.
+     * @param nonceTime
+     *            The creation time of the nonce in milliseconds.
+     * @param nonceCount
+     *            The nonce count sent by the client.
+     * @return True if the nonce count was accepted, false if it is a replay or
+     *         if the nonce is too old to be tracked.
+     */
+    public boolean update(String nonce, long nonceTime, int nonceCount) {
+        return update(nonce, null, nonceTime, nonceCount);
+    }
+
+    /**
+     * Records a nonce count received for a given nonce and client nonce. The
+     * update is only accepted if the count is strictly greater than the counts
+     * previously received for the same nonce and client nonce, as required by
+     * section 3.2.2 of RFC 2617. Clients sharing a server nonce are told apart
+     * by their client nonces.
+     * 
+     * @param nonce
+     *            The server nonce.
+     * @param clientNonce
+     *            The client nonce or null if the client didn't send one.
+     * @param nonceTime
+     *            The creation time of the nonce in milliseconds.
+     * @param nonceCount
+     *            The nonce count sent by the client.
+     * @return True if the nonce count was accepted, false if it is a replay or
+     *         if the nonce is too old to be tracked.
+     */
+    public boolean update(String nonce, String clientNonce, long nonceTime,
+            int nonceCount) {
+        if ((nonce == null) || (nonceTime < 0) || (nonceCount <= 0)) {
+            return false;
+        }
+
+        Bucket bucket = getBucket(nonceTime / this.bucketDuration);
+
+        if (bucket == null) {
+            return false;
+        }
+
+        // Base64 server nonces never contain a colon
+        String key = (clientNonce == null) ? nonce : nonce + ':' + clientNonce;
+        AtomicInteger count = bucket.counts.get(key);
+
+        if (count == null) {
+            count = bucket.counts.putIfAbsent(key, new AtomicInteger(
+                    nonceCount));
+
+            if (count == null) {
+                return true;
+            }
+        }
+
+        int last;
+
+        do {
+            last = count.get();
+
+            if (nonceCount <= last) {
+                return false;
+            }
+        } while (!count.compareAndSet(last, nonceCount));
+
+        return true;
+    }
+
+}
@@ -53,6 +53,25 @@ import org.restlet.util.Series;
  */
 public class HttpDigestHelper extends AuthenticatorHelper {
 
+    /**
+     * Returns the creation time of a nonce generated by
+     * {@link CryptoUtils#makeNonce(String)}.
+     * 
+     * @param nonce
+     *            The nonce value.
+     * @return The creation time of the nonce in milliseconds, or -1 if it
+     *         can't be parsed.
+     */
+    public static long getNonceTime(String nonce) {
+        try {
+            String decodedNonce = new String(Base64.decode(nonce));
+            return Long.parseLong(decodedNonce.substring(0,
+                    decodedNonce.indexOf(':')));
+        } catch (Exception e) {
+            return -1L;
+        }
+    }
+
     /**
      * Checks whether the specified nonce is valid with respect to the specified
      * secretKey, and further confirms that the nonce was generated less than
@@ -32,6 +32,7 @@ import org.restlet.data.Reference;
 import org.restlet.engine.security.AuthenticatorUtils;
 import org.restlet.ext.crypto.DigestAuthenticator;
 import org.restlet.ext.crypto.DigestUtils;
+import org.restlet.ext.crypto.NonceStore;
 import org.restlet.security.LocalVerifier;
 import org.restlet.security.User;
 
@@ -188,6 +189,20 @@ public class HttpDigestVerifier extends
                 }
             }
 
+            if (result == RESULT_VALID) {
+                NonceStore nonceStore = getDigestAuthenticator()
+                        .getNonceStore();
+
+                // Without quality of protection, a nonce can only be used once
+                if ((nonceStore != null)
+                        && !nonceStore.update(nonce, (qop == null) ? null
+                                : cnonce, HttpDigestHelper.getNonceTime(nonce),
+                                (qop == null) ? 1 : nc)) {
+                    // Replayed nonce count, ask for a fresh nonce
+                    result = RESULT_STALE;
+                }
+            }
+
             if (result == RESULT_VALID) {
                 request.getClientInfo().setUser(new User(username));
             }
@@ -562,7 +562,9 @@ public class JaxRsRestlet extends Restlet {
         //
         // (b) Else if the class is annotated with @Produces, set P = {V
         // (class)}.
-        Collection<MediaType> p = resourceMethod.getProducedMimes();
+        // The produced mimes of resource methods are sorted once for all
+        Collection<MediaType> p = resourceMethod
+                .getProducedMimesByConcreteness();
 
         // (c) Else set P = {V (writers)} where 'writers' is the set of
         // MessageBodyWriter that support the class of the returned entity
@@ -570,13 +572,13 @@ public class JaxRsRestlet extends Restlet {
         if (p.isEmpty()) {
             p = providers.writerSubSet(entityClass, genericReturnType)
                     .getAllProducibleMediaTypes();
-        }
 
-        // 3. If P = {}, set P = {'*/*'}
-        if (p.isEmpty())
-            return MediaType.ALL;
-        else
-            p = sortByConcreteness(p);
+            // 3. If P = {}, set P = {'*/*'}
+            if (p.isEmpty())
+                return MediaType.ALL;
+            else
+                p = sortByConcreteness(p);
+        }
 
         // 4. Obtain the acceptable media types A. If A = {}, set A = {'*/*'}
         SortedMetadata<MediaType> a = callContext.getAccMediaTypes();
@@ -916,7 +918,9 @@ public class JaxRsRestlet extends Restlet {
         // Map<UriTemplateRegExp, Class> eAndCs = new HashMap();
         Collection<RootResourceClass> eAndCs = new ArrayList<RootResourceClass>();
         // (a) and (b) and (c) Filter E
-        for (RootResourceClass rootResourceClass : this.resourceClasses.roots()) {
+        // Only the classes whose path could match U are checked
+        for (RootResourceClass rootResourceClass : this.resourceClasses
+                .roots(u)) {
             // Map.Entry<UriTemplateRegExp, Class> eAndC = eAndCIter.next();
             // UriTemplateRegExp regExp = eAndC.getKey();
             // Class clazz = eAndC.getValue();
@@ -1112,7 +1116,7 @@ public class JaxRsRestlet extends Restlet {
             // (c) and (d) Filter E: remove members do not match U or final
             // match not empty
             for (ResourceMethodOrLocator methodOrLocator : resClass
-                    .getResourceMethodsAndLocators()) {
+                    .getResourceMethodsAndLocators(u)) {
                 PathRegExp pathRegExp = methodOrLocator.getPathRegExp();
                 MatchingResult matchingResult = pathRegExp.match(u);
                 if (matchingResult == null)
@@ -0,0 +1,399 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.jaxrs.internal.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a method, a constructor or a field setter through a
+ * {@link MethodHandle} resolved once, instead of going through the reflection
+ * API on each call. The handle takes the target object and the arguments as
+ * an array, like {@link Method#invoke(Object, Object...)}, and the exceptions
+ * are reported the same way: the exceptions thrown by the invoked member are
+ * wrapped in an {@link InvocationTargetException} and the invalid arguments
+ * cause an {@link IllegalArgumentException}.<br>
+ * If the handle can't be resolved, the reflection API is used. This is also
+ * the case when the java.lang.invoke package isn't available, as on Android
+ * before API level 26, as all the references to this package are confined to
+ * a nested class that is only loaded when first used.
+ * 
+ * @author Jerome Louvel
+ */
+public class Invoker {
+
+    /**
+     * Resolves and invokes the method handles. Only loaded when first used,
+     * so that a missing java.lang.invoke package causes a
+     * {@link LinkageError} that can be recovered from.
+     */
+    private static final class Handles {
+
+        /** Wraps the exceptions thrown by the invoked member. */
+        private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+        static {
+            try {
+                WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(
+                        Handles.class, "wrapTargetException",
+                        MethodType.methodType(Object.class, Throwable.class));
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            } catch (IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * Adapts the given handle to the generic type (Object,
+         * Object[])Object.
+         * 
+         * @param target
+         *            the handle of the member.
+         * @param withReceiver
+         *            true if the first parameter of the handle is the target
+         *            object.
+         * @return the adapted handle.
+         */
+        private static MethodHandle compile(MethodHandle target,
+                boolean withReceiver) {
+            MethodHandle handle = target.asFixedArity();
+
+            if (!withReceiver) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+
+            handle = handle.asType(handle.type()
+                    .changeReturnType(Object.class));
+
+            // Only the exceptions of the member itself are wrapped, not the
+            // ones of the argument conversions added below
+            handle = MethodHandles.catchException(handle, Throwable.class,
+                    MethodHandles.dropArguments(WRAP_TARGET_EXCEPTION, 1,
+                            handle.type().parameterList()));
+            final int argCount = handle.type().parameterCount() - 1;
+            return handle.asType(MethodType.genericMethodType(argCount + 1))
+                    .asSpreader(Object[].class, argCount);
+        }
+
+        /**
+         * Resolves the handle of the given constructor.
+         * 
+         * @param constructor
+         *            the constructor.
+         * @return the handle of type (Object, Object[])Object.
+         * @throws IllegalAccessException
+         *             if the constructor is not accessible.
+         */
+        private static Object forConstructor(Constructor<?> constructor)
+                throws IllegalAccessException {
+            return compile(
+                    MethodHandles.lookup().unreflectConstructor(constructor),
+                    false);
+        }
+
+        /**
+         * Resolves the handle of the given method.
+         * 
+         * @param method
+         *            the method.
+         * @return the handle of type (Object, Object[])Object.
+         * @throws IllegalAccessException
+         *             if the method is not accessible.
+         */
+        private static Object forMethod(Method method)
+                throws IllegalAccessException {
+            return compile(MethodHandles.lookup().unreflect(method),
+                    !Modifier.isStatic(method.getModifiers()));
+        }
+
+        /**
+         * Resolves the handle setting the given field.
+         * 
+         * @param field
+         *            the field.
+         * @return the handle of type (Object, Object[])Object.
+         * @throws IllegalAccessException
+         *             if the field is not accessible.
+         */
+        private static Object forSetter(Field field)
+                throws IllegalAccessException {
+            return compile(MethodHandles.lookup().unreflectSetter(field),
+                    !Modifier.isStatic(field.getModifiers()));
+        }
+
+        /**
+         * Invokes a compiled handle.
+         * 
+         * @param handle
+         *            the handle of type (Object, Object[])Object.
+         * @param member
+         *            the invoked member, for the error messages.
+         * @param target
+         *            the target object, ignored for constructors.
+         * @param args
+         *            the arguments.
+         * @return the returned value.
+         * @throws IllegalArgumentException
+         *             if the target or the arguments don't match the member.
+         * @throws InvocationTargetException
+         *             if the invoked member throws an exception.
+         */
+        private static Object invoke(Object handle, AccessibleObject member,
+                Object target, Object[] args) throws IllegalArgumentException,
+                InvocationTargetException {
+            try {
+                return (Object) ((MethodHandle) handle).invokeExact(target,
+                        args);
+            } catch (InvocationTargetException e) {
+                throw e;
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException("Invalid argument for "
+                        + member, e);
+            } catch (NullPointerException e) {
+                throw new IllegalArgumentException("Invalid argument for "
+                        + member, e);
+            } catch (WrongMethodTypeException e) {
+                throw new IllegalArgumentException("Invalid argument for "
+                        + member, e);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * Wraps the given exception thrown by the invoked member.
+         * 
+         * @param throwable
+         *            the exception thrown by the invoked member.
+         * @return never returns.
+         * @throws InvocationTargetException
+         *             always.
+         */
+        @SuppressWarnings("unused")
+        private static Object wrapTargetException(Throwable throwable)
+                throws InvocationTargetException {
+            throw new InvocationTargetException(throwable);
+        }
+    }
+
+    /**
+     * Indicates if the method handles are available, false once their
+     * resolution failed with a {@link LinkageError}.
+     */
+    private static volatile boolean handlesAvailable = true;
+
+    /**
+     * Creates an invoker for the given constructor.
+     * 
+     * @param constructor
+     *            the constructor.
+     * @return the invoker.
+     */
+    public static Invoker forConstructor(Constructor<?> constructor) {
+        Object handle = null;
+
+        if (handlesAvailable) {
+            try {
+                handle = Handles.forConstructor(constructor);
+            } catch (IllegalAccessException e) {
+                handle = null;
+            } catch (LinkageError e) {
+                handlesAvailable = false;
+            }
+        }
+
+        return new Invoker(constructor, handle);
+    }
+
+    /**
+     * Creates an invoker for the given method.
+     * 
+     * @param method
+     *            the method.
+     * @return the invoker.
+     */
+    public static Invoker forMethod(Method method) {
+        Object handle = null;
+
+        if (handlesAvailable) {
+            try {
+                handle = Handles.forMethod(method);
+            } catch (IllegalAccessException e) {
+                handle = null;
+            } catch (LinkageError e) {
+                handlesAvailable = false;
+            }
+        }
+
+        return new Invoker(method, handle);
+    }
+
+    /**
+     * Creates an invoker for the given field or bean setter. It expects the
+     * value to set as single argument.
+     * 
+     * @param fieldOrBeanSetter
+     *            the {@link Field} or the bean setter {@link Method}.
+     * @return the invoker.
+     */
+    public static Invoker forSetter(AccessibleObject fieldOrBeanSetter) {
+        if (fieldOrBeanSetter instanceof Method) {
+            return forMethod((Method) fieldOrBeanSetter);
+        } else if (!(fieldOrBeanSetter instanceof Field)) {
+            throw new IllegalArgumentException(
+                    "The fieldOrBeanSetter must be a java.lang.reflect.Field or a java.lang.reflect.Method");
+        }
+
+        final Field field = (Field) fieldOrBeanSetter;
+        Object handle = null;
+
+        if (handlesAvailable) {
+            try {
+                handle = Handles.forSetter(field);
+            } catch (IllegalAccessException e) {
+                handle = null;
+            } catch (LinkageError e) {
+                handlesAvailable = false;
+            }
+        }
+
+        return new Invoker(field, handle);
+    }
+
+    /**
+     * The {@link MethodHandle} of type (Object, Object[])Object, or null to
+     * use the reflection API. Typed as an object so that this class doesn't
+     * depend on the java.lang.invoke package.
+     */
+    private final Object handle;
+
+    /** The invoked constructor, method or field. */
+    private final AccessibleObject member;
+
+    /**
+     * Constructor.
+     * 
+     * @param member
+     *            the invoked constructor, method or field.
+     * @param handle
+     *            the handle of type (Object, Object[])Object, or null.
+     */
+    private Invoker(AccessibleObject member, Object handle) {
+        this.member = member;
+        this.handle = handle;
+    }
+
+    /**
+     * Returns the invoked constructor, method or field.
+     * 
+     * @return the invoked constructor, method or field.
+     */
+    public AccessibleObject getMember() {
+        return this.member;
+    }
+
+    /**
+     * Invokes the method or sets the field on the given object.
+     * 
+     * @param target
+     *            the object to invoke the method on, or null for a static
+     *            member.
+     * @param args
+     *            the arguments, or the value to set.
+     * @return the value returned by the method, or null.
+     * @throws IllegalAccessException
+     *             if the member is not accessible.
+     * @throws IllegalArgumentException
+     *             if the target or the arguments don't match the member.
+     * @throws InvocationTargetException
+     *             if the invoked method throws an exception.
+     */
+    public Object invoke(Object target, Object... args)
+            throws IllegalAccessException, IllegalArgumentException,
+            InvocationTargetException {
+        if (this.handle != null) {
+            return Handles.invoke(this.handle, this.member, target, args);
+        } else if (this.member instanceof Field) {
+            ((Field) this.member).set(target, args[0]);
+            return null;
+        }
+
+        return ((Method) this.member).invoke(target, args);
+    }
+
+    /**
+     * Indicates if the member is invoked through a method handle.
+     * 
+     * @return true if the member is invoked through a method handle, false if
+     *         the reflection API is used.
+     */
+    public boolean isCompiled() {
+        return this.handle != null;
+    }
+
+    /**
+     * Invokes the constructor.
+     * 
+     * @param args
+     *            the arguments.
+     * @return the created object.
+     * @throws InstantiationException
+     *             if the class is abstract.
+     * @throws IllegalAccessException
+     *             if the constructor is not accessible.
+     * @throws IllegalArgumentException
+     *             if the arguments don't match the constructor.
+     * @throws InvocationTargetException
+     *             if the constructor throws an exception.
+     */
+    public Object newInstance(Object... args) throws InstantiationException,
+            IllegalAccessException, IllegalArgumentException,
+            InvocationTargetException {
+        if (this.handle != null) {
+            return Handles.invoke(this.handle, this.member, null, args);
+        }
+
+        return ((Constructor<?>) this.member).newInstance(args);
+    }
+
+    @Override
+    public String toString() {
+        return "Invoker[" + this.member + "]";
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.jaxrs.internal.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.ext.jaxrs.internal.wrappers.RrcOrRml;
+
+/**
+ * Immutable index of root resource classes, sub resource methods or sub
+ * resource locators by the literal first segment of their path. For a given
+ * remaining path, it returns the members that could match it: the ones with
+ * the same literal first segment and the ones without a literal first segment.
+ * The candidates keep the order given to the constructor, so that selecting
+ * among the matching candidates gives the same result as selecting among all
+ * the members.
+ * 
+ * @param <R>
+ *            the type of the indexed members.
+ * @author Jerome Louvel
+ * @see PathRegExp#getFirstLiteralSegment()
+ */
+public class PathIndex<R extends RrcOrRml> {
+
+    /** The candidates by literal first segment. */
+    private final Map<String, List<R>> candidates;
+
+    /** The members without literal first segment. */
+    private final List<R> wildcards;
+
+    /**
+     * Creates a new index.
+     * 
+     * @param members
+     *            the members to index, in matching order.
+     */
+    public PathIndex(Iterable<? extends R> members) {
+        final List<R> wildcards = new ArrayList<R>();
+        final Map<String, List<R>> candidates = new HashMap<String, List<R>>();
+        for (final R member : members) {
+            final String segment = member.getPathRegExp()
+                    .getFirstLiteralSegment();
+            if (segment == null) {
+                // Also a candidate for all the literal segments
+                wildcards.add(member);
+                for (final List<R> list : candidates.values())
+                    list.add(member);
+            } else {
+                List<R> list = candidates.get(segment);
+                if (list == null) {
+                    list = new ArrayList<R>(wildcards);
+                    candidates.put(segment, list);
+                }
+                list.add(member);
+            }
+        }
+        for (final Map.Entry<String, List<R>> entry : candidates.entrySet())
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        this.candidates = candidates;
+        this.wildcards = Collections.unmodifiableList(wildcards);
+    }
+
+    /**
+     * Returns the members that could match the given remaining path, in
+     * matching order.
+     * 
+     * @param remainingPath
+     *            the remaining path.
+     * @return an unmodifiable list of candidates.
+     */
+    public List<R> getCandidates(RemainingPath remainingPath) {
+        final String path = remainingPath.getWithoutParams();
+        final int slash = path.indexOf('/');
+        final List<R> result = this.candidates.get((slash < 0) ? path : path
+                .substring(0, slash));
+        return (result == null) ? this.wildcards : result;
+    }
+
+}
@@ -131,8 +131,42 @@ public class PathRegExp {
         }
     }
 
+    /**
+     * Extracts the first segment of the given path template if it only
+     * contains unreserved literal characters.
+     * 
+     * @param pathTemplate
+     *            the path template.
+     * @param start
+     *            the index of the first character after the leading slash.
+     * @return the literal first segment, or null.
+     */
+    private static String getFirstLiteralSegment(String pathTemplate,
+            int start) {
+        int end = pathTemplate.indexOf('/', start);
+        if (end < 0)
+            end = pathTemplate.length();
+        if (end == start)
+            return null;
+        for (int i = start; i < end; i++) {
+            final char c = pathTemplate.charAt(i);
+            // '.' is left unescaped in the pattern and matches any character
+            if (!(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))
+                    || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '_')
+                    || (c == '~')))
+                return null;
+        }
+        return pathTemplate.substring(start, end);
+    }
+
     private final boolean emptyOrSlash;
 
+    /**
+     * The first segment of the path template if it only contains unreserved
+     * literal characters, null otherwise.
+     */
+    private final String firstLiteralSegment;
+
     /** Contains the number of literal chars in this Regular Expression */
     private final Integer noLitChars;
 
@@ -224,6 +258,8 @@ public class PathRegExp {
 
         this.pattern = Pattern.compile(pathPattern.toString());
         this.emptyOrSlash = Util.isEmptyOrSlash(pathTemplate);
+        this.firstLiteralSegment = getFirstLiteralSegment(pathTemplate,
+                forStart);
         if (l > 0) {
             if (pathTemplate.charAt(0) != '/') {
                 pathTemplate = '/' + pathTemplate;
@@ -253,6 +289,19 @@ public class PathRegExp {
         return this.pattern.pattern().equals(otherRegExp.pattern.pattern());
     }
 
+    /**
+     * Returns the first segment of the path template if it only contains
+     * unreserved literal characters, so that it has to be found as is at the
+     * start of any matching path. Returns null if the first segment contains a
+     * template variable, an escaped or reserved character, or if the template
+     * is empty.
+     * 
+     * @return the literal first segment, or null.
+     */
+    public String getFirstLiteralSegment() {
+        return this.firstLiteralSegment;
+    }
+
     /**
      * @return the number of capturing groups with regular expressions that are
      *         not the default.
@@ -1519,6 +1519,44 @@ public class Util {
         }
     }
 
+    /**
+     * Injects the given toInject in the resource with the given field or bean
+     * setter invoker.
+     * 
+     * @param resource
+     *            the concrete Object to inject the other object in.
+     * @param fieldOrBeanSetter
+     *            the invoker of the field or of the bean setter.
+     * @param toInject
+     *            the object to inject in the first parameter object.
+     * @throws InvocationTargetException
+     *             if the bean setter throws an exception.
+     * @throws IllegalArgumentException
+     * @throws InjectException
+     *             if the injection was not possible. See
+     *             {@link InjectException#getCause()} for the reason.
+     * @see Invoker#forSetter(AccessibleObject)
+     */
+    public static void inject(Object resource, Invoker fieldOrBeanSetter,
+            Object toInject) throws InvocationTargetException,
+            IllegalArgumentException, InjectException {
+        final AccessibleObject member = fieldOrBeanSetter.getMember();
+        try {
+            fieldOrBeanSetter.invoke(resource, toInject);
+        } catch (IllegalAccessException e) {
+            throw new InjectException("Could not inject the "
+                    + toInject.getClass() + " into " + member + " of object "
+                    + resource, e);
+        } catch (RuntimeException e) {
+            if (member instanceof Method) {
+                throw e;
+            }
+            throw new InjectException("Could not inject the "
+                    + toInject.getClass() + " into field " + member
+                    + " of object " + resource, e);
+        }
+    }
+
     /**
      * Invokes the given method without parameters. This constraint is not
      * checked; but the method could also be called, if access is normally not
@@ -99,7 +99,8 @@ public class PerRequestRootResourceClass extends RootResourceClass {
         if (instance == null) {
             try {
                 final Object[] args = this.constructorParameters.get();
-                instance = WrapperUtil.createInstance(this.constructor, args);
+                instance = WrapperUtil.createInstance(
+                        this.constructorInvoker, args);
             } catch (ConvertRepresentationException e) {
                 // is (or should be :-) ) not possible
                 throw new ImplementationException("Must not be possible", e);
@@ -32,11 +32,11 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,6 +50,7 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalParamTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathOnClassException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathOnMethodException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
+import org.restlet.ext.jaxrs.internal.util.PathIndex;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
 import org.restlet.ext.jaxrs.internal.util.RemainingPath;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
@@ -68,7 +69,13 @@ public class ResourceClass extends AbstractJaxRsWrapper {
     /**
      * Caches the allowed methods (unmodifiable) for given remainingParts.
      */
-    private final Map<RemainingPath, Set<org.restlet.data.Method>> allowedMethods = new HashMap<RemainingPath, Set<org.restlet.data.Method>>();
+    private final Map<RemainingPath, Set<org.restlet.data.Method>> allowedMethods = new ConcurrentHashMap<RemainingPath, Set<org.restlet.data.Method>>();
+
+    /**
+     * The resource methods with an empty path, see
+     * {@link #getMethodsForPath(RemainingPath)}.
+     */
+    private final List<ResourceMethod> emptyPathMethods = new ArrayList<ResourceMethod>();
 
     protected final Class<?> jaxRsClass;
 
@@ -78,6 +85,17 @@ public class ResourceClass extends AbstractJaxRsWrapper {
      */
     private final boolean leaveEncoded;
 
+    /**
+     * The index of the resource methods, built once all methods are known.
+     */
+    private final PathIndex<ResourceMethod> methodIndex;
+
+    /**
+     * The index of the sub resource methods and locators, built once all
+     * methods are known.
+     */
+    private final PathIndex<ResourceMethodOrLocator> methodOrLocatorIndex;
+
     /**
      * The resource methods of this resource class. (It is initialized in
      * method.)
@@ -128,6 +146,9 @@ public class ResourceClass extends AbstractJaxRsWrapper {
         this.jaxRsClass = jaxRsClass;
         this.initResourceMethodsAndLocators(tlContext, jaxRsProviders,
                 extensionBackwardMapping, logger);
+        this.methodIndex = new PathIndex<ResourceMethod>(this.resourceMethods);
+        this.methodOrLocatorIndex = new PathIndex<ResourceMethodOrLocator>(
+                this.resourceMethodsAndLocators);
     }
 
     /**
@@ -157,6 +178,9 @@ public class ResourceClass extends AbstractJaxRsWrapper {
         this.jaxRsClass = jaxRsClass;
         initResourceMethodsAndLocators(tlContext, jaxRsProviders,
                 extensionBackwardMapping, logger);
+        this.methodIndex = new PathIndex<ResourceMethod>(this.resourceMethods);
+        this.methodOrLocatorIndex = new PathIndex<ResourceMethodOrLocator>(
+                this.resourceMethodsAndLocators);
     }
 
     /**
@@ -301,19 +325,14 @@ public class ResourceClass extends AbstractJaxRsWrapper {
      */
     public Collection<ResourceMethod> getMethodsForPath(
             RemainingPath remainingPath) {
-        // NICE results may be chached, if any method is returned.
-        // The 404 case will be called rarely and produce a lot of cached data.
+        if (remainingPath.isEmptyOrSlash()) {
+            return new ArrayList<ResourceMethod>(this.emptyPathMethods);
+        }
         final List<ResourceMethod> resourceMethods = new ArrayList<ResourceMethod>();
-        for (final ResourceMethod method : this.resourceMethods) {
-            final PathRegExp methodPath = method.getPathRegExp();
-            if (remainingPath.isEmptyOrSlash()) {
-                if (methodPath.isEmptyOrSlash()) {
-                    resourceMethods.add(method);
-                }
-            } else {
-                if (methodPath.matchesWithEmpty(remainingPath)) {
-                    resourceMethods.add(method);
-                }
+        for (final ResourceMethod method : this.methodIndex
+                .getCandidates(remainingPath)) {
+            if (method.getPathRegExp().matchesWithEmpty(remainingPath)) {
+                resourceMethods.add(method);
             }
         }
         return resourceMethods;
@@ -340,6 +359,21 @@ public class ResourceClass extends AbstractJaxRsWrapper {
         return this.resourceMethodsAndLocators;
     }
 
+    /**
+     * Returns the sub resource methods and locators that could match the given
+     * remaining path, in declaration order. It is a subset of
+     * {@link #getResourceMethodsAndLocators()} built from a precompiled index
+     * of the first literal path segments.
+     * 
+     * @param remainingPath
+     *            the remaining path
+     * @return Returns the candidate sub resource methods and locators.
+     */
+    public final List<ResourceMethodOrLocator> getResourceMethodsAndLocators(
+            RemainingPath remainingPath) {
+        return this.methodOrLocatorIndex.getCandidates(remainingPath);
+    }
+
     /**
      * @return Returns the sub resource locators of the given class.
      */
@@ -398,6 +432,9 @@ public class ResourceClass extends AbstractJaxRsWrapper {
                     }
                     this.resourceMethods.add(subResMeth);
                     this.resourceMethodsAndLocators.add(subResMeth);
+                    if (subResMeth.getPathRegExp().isEmptyOrSlash()) {
+                        this.emptyPathMethods.add(subResMeth);
+                    }
                     checkForPrimitiveParameters(execMethod, logger);
                 } else {
                     if (path != null) {
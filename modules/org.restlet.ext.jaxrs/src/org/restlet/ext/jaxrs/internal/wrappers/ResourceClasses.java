@@ -25,9 +25,11 @@
 package org.restlet.ext.jaxrs.internal.wrappers;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,7 +45,9 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathParamTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.InjectException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingConstructorException;
+import org.restlet.ext.jaxrs.internal.util.PathIndex;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
+import org.restlet.ext.jaxrs.internal.util.RemainingPath;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.JaxRsProviders;
 
@@ -60,7 +64,14 @@ public class ResourceClasses {
 
     private final Logger logger;
 
-    private final Map<Class<?>, ResourceClass> resourceClasses = new HashMap<Class<?>, ResourceClass>();
+    private final ConcurrentMap<Class<?>, ResourceClass> resourceClasses = new ConcurrentHashMap<Class<?>, ResourceClass>();
+
+    /**
+     * The precompiled index of the root resource classes, rebuilt each time a
+     * root resource class is added.
+     */
+    private volatile PathIndex<RootResourceClass> rootIndex = new PathIndex<RootResourceClass>(
+            Collections.<RootResourceClass> emptyList());
 
     /**
      * This set must only changed by adding a root resource class to this
@@ -157,6 +168,7 @@ public class ResourceClasses {
             }
         }
         rootResourceClasses.add(newRrc);
+        updateRootIndex();
         return true;
     }
 
@@ -241,6 +253,7 @@ public class ResourceClasses {
             }
         }
         rootResourceClasses.add(newRrc);
+        updateRootIndex();
         return true;
     }
 
@@ -282,17 +295,16 @@ public class ResourceClasses {
      */
     ResourceClass getResourceClass(Class<?> jaxRsResourceClass)
             throws IllegalArgumentException, MissingAnnotationException {
-        ResourceClass rc;
-        // NICE thread save Map access without synchronized?
-        synchronized (this.resourceClasses) {
-            rc = this.resourceClasses.get(jaxRsResourceClass);
-        }
+        ResourceClass rc = this.resourceClasses.get(jaxRsResourceClass);
         if (rc == null) {
             rc = new ResourceClass(jaxRsResourceClass, this.tlContext,
                     this.jaxRsProviders, this.extensionBackwardMapping,
                     Context.getCurrentLogger());
-            synchronized (this.resourceClasses) {
-                this.resourceClasses.put(jaxRsResourceClass, rc);
+            // Keeps the first wrapper if another thread was faster
+            final ResourceClass existing = this.resourceClasses.putIfAbsent(
+                    jaxRsResourceClass, rc);
+            if (existing != null) {
+                rc = existing;
             }
         }
         return rc;
@@ -331,4 +343,24 @@ public class ResourceClasses {
     public Iterable<RootResourceClass> roots() {
         return this.rootResourceClasses;
     }
+
+    /**
+     * Returns the root resource classes that could match the given remaining
+     * path, in the order of {@link #roots()}.
+     * 
+     * @param remainingPath
+     *            the remaining path after the base ref
+     * @return the candidate root resource classes
+     */
+    public List<RootResourceClass> roots(RemainingPath remainingPath) {
+        return this.rootIndex.getCandidates(remainingPath);
+    }
+
+    /**
+     * Rebuilds the index of the root resource classes.
+     */
+    private synchronized void updateRootIndex() {
+        this.rootIndex = new PathIndex<RootResourceClass>(
+                this.rootResourceClasses);
+    }
 }
@@ -56,6 +56,7 @@ import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
 import org.restlet.ext.jaxrs.internal.exceptions.NoMessageBodyReaderException;
 import org.restlet.ext.jaxrs.internal.util.Converter;
 import org.restlet.ext.jaxrs.internal.util.SortedMetadata;
+import org.restlet.ext.jaxrs.internal.util.Util;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.JaxRsProviders;
 
@@ -89,6 +90,13 @@ public class ResourceMethod extends AbstractMethodWrapper implements
     /** @see Produces */
     private final List<MediaType> producedMimes;
 
+    /**
+     * The produced mimes sorted by concreteness.
+     * 
+     * @see #getProducedMimesByConcreteness()
+     */
+    private final List<MediaType> producedMimesByConcreteness;
+
     /**
      * Contains the list of supported {@link Variant}s (lazy initialized by
      * {@link #getSupportedVariants()}.
@@ -143,6 +151,8 @@ public class ResourceMethod extends AbstractMethodWrapper implements
         }
         this.consumedMimes = createConsumedMimes();
         this.producedMimes = createProducedMimes();
+        this.producedMimesByConcreteness = Collections.unmodifiableList(Util
+                .sortByConcreteness(this.producedMimes));
         this.supportedVariants = createSupportedVariants();
     }
 
@@ -249,6 +259,18 @@ public class ResourceMethod extends AbstractMethodWrapper implements
         return this.producedMimes;
     }
 
+    /**
+     * Returns the produced mimes, sorted by concreteness once for all.
+     * 
+     * @return an unmodifiable List of the produced MediaTypes, concrete ones
+     *         first.
+     * @see #getProducedMimes()
+     * @see Util#sortByConcreteness(java.util.Collection)
+     */
+    public List<MediaType> getProducedMimesByConcreteness() {
+        return this.producedMimesByConcreteness;
+    }
+
     /**
      * Returns the {@link Variant}s supported by this resource method.
      * 
@@ -43,6 +43,7 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathParamTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingConstructorException;
+import org.restlet.ext.jaxrs.internal.util.Invoker;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
 import org.restlet.ext.jaxrs.internal.util.Util;
 import org.restlet.ext.jaxrs.internal.wrappers.params.IntoRrcInjector;
@@ -91,6 +92,9 @@ public abstract class RootResourceClass extends ResourceClass implements
 
     protected final Constructor<?> constructor;
 
+    /** Invokes the {@link #constructor} through a method handle. */
+    protected final Invoker constructorInvoker;
+
     protected final ParameterList constructorParameters;
 
     /**
@@ -142,6 +146,7 @@ public abstract class RootResourceClass extends ResourceClass implements
                 isLeaveEncoded(), jaxRsProviders, extensionBackwardMapping);
         this.constructor = WrapperUtil.findJaxRsConstructor(getJaxRsClass(),
                 "root resource class");
+        this.constructorInvoker = Invoker.forConstructor(this.constructor);
         final boolean constructorLeaveEncoded = isLeaveEncoded()
                 || constructor.isAnnotationPresent(Encoded.class);
         try {
@@ -48,6 +48,7 @@ import org.restlet.data.MediaType;
 import org.restlet.ext.jaxrs.InstantiateException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingConstructorException;
+import org.restlet.ext.jaxrs.internal.util.Invoker;
 import org.restlet.util.NamedValue;
 
 /**
@@ -199,6 +200,37 @@ public class WrapperUtil {
         }
     }
 
+    /**
+     * Creates an instance with the given constructor invoker.
+     * 
+     * @param constructorInvoker
+     *            the invoker of the constructor.
+     * @param args
+     * @return the created instance
+     * @throws InvocationTargetException
+     * @throws InstantiateException
+     * @see Invoker#forConstructor(Constructor)
+     */
+    public static Object createInstance(Invoker constructorInvoker,
+            Object... args) throws InvocationTargetException,
+            InstantiateException {
+        try {
+            return constructorInvoker.newInstance(args);
+        } catch (IllegalArgumentException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + ((Constructor<?>) constructorInvoker.getMember())
+                            .getDeclaringClass(), e);
+        } catch (InstantiationException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + ((Constructor<?>) constructorInvoker.getMember())
+                            .getDeclaringClass(), e);
+        } catch (IllegalAccessException e) {
+            throw new InstantiateException("Could not instantiate "
+                    + ((Constructor<?>) constructorInvoker.getMember())
+                            .getDeclaringClass(), e);
+        }
+    }
+
     /**
      * Finds the constructor to use by the JAX-RS runtime.
      * 
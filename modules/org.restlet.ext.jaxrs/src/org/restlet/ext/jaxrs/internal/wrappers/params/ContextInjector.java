@@ -54,6 +54,7 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.ImplementationException;
 import org.restlet.ext.jaxrs.internal.exceptions.InjectException;
 import org.restlet.ext.jaxrs.internal.todo.NotYetImplementedException;
+import org.restlet.ext.jaxrs.internal.util.Invoker;
 import org.restlet.ext.jaxrs.internal.util.Util;
 import org.restlet.ext.jaxrs.internal.wrappers.params.ParameterList.AbstractParamGetter;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
@@ -70,9 +71,12 @@ public class ContextInjector {
 
         private final Method beanSetter;
 
+        private final Invoker invoker;
+
         private BeanSetter(Method beanSetter) {
             this.beanSetter = beanSetter;
             this.beanSetter.setAccessible(true);
+            this.invoker = Invoker.forSetter(beanSetter);
         }
 
         /**
@@ -84,7 +88,7 @@ public class ContextInjector {
         public void injectInto(Object resource, Object toInject,
                 boolean allMustBeAvailable) throws IllegalArgumentException,
                 InjectException, InvocationTargetException {
-            Util.inject(resource, this.beanSetter, toInject);
+            Util.inject(resource, this.invoker, toInject);
         }
 
     }
@@ -142,9 +146,12 @@ public class ContextInjector {
 
         private final Field field;
 
+        private final Invoker invoker;
+
         private FieldWrapper(Field field) {
             this.field = field;
             this.field.setAccessible(true);
+            this.invoker = Invoker.forSetter(field);
         }
 
         /**
@@ -156,7 +163,7 @@ public class ContextInjector {
         public void injectInto(Object resource, Object toInject,
                 boolean allMustBeAvailable) throws IllegalArgumentException,
                 InjectException, InvocationTargetException {
-            Util.inject(resource, this.field, toInject);
+            Util.inject(resource, this.invoker, toInject);
         }
     }
 
@@ -232,12 +239,15 @@ public class ContextInjector {
 
         private final AccessibleObject fieldOrBeanSetter;
 
+        private final Invoker invoker;
+
         private final AbstractParamGetter iog;
 
         ParamValueInjector(AccessibleObject fieldOrBeanSetter,
                 AbstractParamGetter iog) {
             this.fieldOrBeanSetter = fieldOrBeanSetter;
             this.fieldOrBeanSetter.setAccessible(true);
+            this.invoker = Invoker.forSetter(fieldOrBeanSetter);
             this.iog = iog;
         }
 
@@ -248,8 +258,7 @@ public class ContextInjector {
         public void injectInto(Object resource, boolean allMustBeAvailable)
                 throws IllegalArgumentException, InjectException,
                 InvocationTargetException {
-            Util.inject(resource, this.fieldOrBeanSetter,
-                    this.iog.getParamValue());
+            Util.inject(resource, this.invoker, this.iog.getParamValue());
         }
     }
 
@@ -34,6 +34,7 @@ import javax.ws.rs.WebApplicationException;
 
 import org.restlet.Request;
 import org.restlet.ext.jaxrs.internal.exceptions.ConvertRepresentationException;
+import org.restlet.ext.jaxrs.internal.util.Invoker;
 import org.restlet.ext.jaxrs.internal.wrappers.params.ParameterList.ParamGetter;
 import org.restlet.representation.Representation;
 
@@ -60,7 +61,8 @@ public abstract class ReprEntityGetter implements ParamGetter {
         Representation createInstance(Representation entity)
                 throws IllegalArgumentException, InstantiationException,
                 IllegalAccessException, InvocationTargetException {
-            return this.constr.newInstance(this.clazz, entity);
+            return (Representation) this.invoker.newInstance(this.clazz,
+                    entity);
         }
 
     }
@@ -97,7 +99,8 @@ public abstract class ReprEntityGetter implements ParamGetter {
         Representation createInstance(Representation entity)
                 throws IllegalArgumentException, InstantiationException,
                 IllegalAccessException, InvocationTargetException {
-            return this.constr.newInstance(entity, this.clazz);
+            return (Representation) this.invoker.newInstance(entity,
+                    this.clazz);
         }
 
     }
@@ -118,7 +121,7 @@ public abstract class ReprEntityGetter implements ParamGetter {
         Representation createInstance(Representation entity)
                 throws IllegalArgumentException, InstantiationException,
                 IllegalAccessException, InvocationTargetException {
-            return this.constr.newInstance(entity);
+            return (Representation) this.invoker.newInstance(entity);
         }
 
     }
@@ -183,9 +186,13 @@ public abstract class ReprEntityGetter implements ParamGetter {
 
     final Constructor<? extends Representation> constr;
 
+    /** Invokes the {@link #constr} through a method handle. */
+    final Invoker invoker;
+
     @SuppressWarnings("unchecked")
     ReprEntityGetter(Constructor<?> constr) {
         this.constr = (Constructor<? extends Representation>) constr;
+        this.invoker = Invoker.forConstructor(constr);
     }
 
     abstract Representation createInstance(Representation entity)
@@ -25,8 +25,6 @@
 package org.restlet.ext.oauth;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -44,6 +42,7 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
 import org.restlet.engine.util.Base64;
+import org.restlet.ext.oauth.internal.StripedSecureRandom;
 import org.restlet.ext.oauth.internal.Token;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
@@ -103,7 +102,7 @@ public class OAuthProxy extends Filter implements OAuthResourceDefs {
 
     private String clientSecret;
 
-    private final SecureRandom random;
+    private final StripedSecureRandom random;
 
     private String redirectURI;
 
@@ -154,11 +153,8 @@ public class OAuthProxy extends Filter implements OAuthResourceDefs {
         setContext(ctx);
         no.add(CacheDirective.noStore());
         this.cc = requestClient;
-        try {
-            random = SecureRandom.getInstance("SHA1PRNG");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException(ex);
-        }
+        random = new StripedSecureRandom(
+                StripedSecureRandom.DEFAULT_RESEED_INTERVAL);
     }
 
     @Override
@@ -386,8 +382,7 @@ public class OAuthProxy extends Filter implements OAuthResourceDefs {
     private String setupState(Response response) {
         String sessionId = UUID.randomUUID().toString();
 
-        byte[] secret = new byte[20];
-        random.nextBytes(secret);
+        byte[] secret = random.nextBytes(20);
         String state = Base64.encode(secret, false);
 
         CookieSetting cs = new CookieSetting("_state", sessionId);
@@ -24,8 +24,6 @@
 
 package org.restlet.ext.oauth.internal;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -51,20 +49,14 @@ public abstract class AbstractClientManager implements ClientManager {
 
     public static final int RESEED_CLIENTS = 100;
 
-    private volatile int count = 0;
-
     private Map<ClientType, Object[]> defaultSupportedFlow;
 
     private boolean issueClientSecretToPublicClients = false;
 
-    private SecureRandom random;
+    private final StripedSecureRandom random;
 
     public AbstractClientManager() {
-        try {
-            random = SecureRandom.getInstance("SHA1PRNG");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException(ex);
-        }
+        random = new StripedSecureRandom(RESEED_CLIENTS);
         defaultSupportedFlow = new EnumMap<ClientType, Object[]>(
                 ClientType.class);
         defaultSupportedFlow.put(ClientType.PUBLIC,
@@ -105,12 +97,7 @@ public abstract class AbstractClientManager implements ClientManager {
         if (clientType == ClientType.CONFIDENTIAL
                 || (clientType == ClientType.PUBLIC && isIssueClientSecretToPublicClients())) {
             // Issue a client secret to the confidential client.
-            if (count++ > RESEED_CLIENTS) {
-                count = 0;
-                random.setSeed(random.generateSeed(20));
-            }
-            byte[] secret = new byte[20];
-            random.nextBytes(secret);
+            byte[] secret = random.nextBytes(20);
             clientSecret = Base64.encode(secret, false).toCharArray();
         }
 
@@ -24,9 +24,6 @@
 
 package org.restlet.ext.oauth.internal;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-
 import org.restlet.ext.oauth.OAuthException;
 
 /**
@@ -39,33 +36,25 @@ public abstract class AbstractTokenManager implements TokenManager {
 
     public static final int RESEED_TOKENS = 1000;
 
+    private static final char[] HEXDIGITS = "0123456789abcdef".toCharArray();
+
     protected static String toHex(byte[] input) {
-        StringBuilder sb = new StringBuilder();
+        char[] result = new char[input.length * 2];
         for (int i = 0; i < input.length; i++) {
-            String d = Integer
-                    .toHexString(new Byte(input[i]).intValue() & 0xFF);
-            if (d.length() == 1) {
-                sb.append('0');
-            }
-            sb.append(d);
+            result[2 * i] = HEXDIGITS[(input[i] >> 4) & 0xF];
+            result[2 * i + 1] = HEXDIGITS[input[i] & 0xF];
         }
-        return sb.toString();
+        return new String(result);
     }
 
-    private volatile int count = 0;
-
     private int expirePeriod = DEFAULT_TOKEN_EXPIRE_PERIOD;
 
-    private SecureRandom random;
+    private final StripedSecureRandom random;
 
     private boolean updateRefreshToken = true;
 
     public AbstractTokenManager() {
-        try {
-            random = SecureRandom.getInstance("SHA1PRNG");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException(ex);
-        }
+        random = new StripedSecureRandom(RESEED_TOKENS);
     }
 
     public Token findToken(Client client) {
@@ -73,13 +62,7 @@ public abstract class AbstractTokenManager implements TokenManager {
     }
 
     protected String generate(int len) {
-        if (count++ > RESEED_TOKENS) {
-            count = 0;
-            random.setSeed(random.generateSeed(20));
-        }
-        byte[] token = new byte[len];
-        random.nextBytes(token);
-        return toHex(token);
+        return toHex(random.nextBytes(len));
     }
 
     protected String generateRawCode() {
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.oauth.internal;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Striped source of secure random bytes used to generate tokens, codes and
+ * secrets. Each stripe has its own {@link SecureRandom} instance, reseeded
+ * periodically, and a buffer of pre-generated random bytes. Threads are
+ * spread over the stripes, so concurrent callers rarely contend and the
+ * generator is only invoked once per buffer refill. Served bytes are cleared
+ * from the buffer.
+ * 
+ * @author Jerome Louvel
+ */
+public class StripedSecureRandom {
+
+    /**
+     * Stripe holding a generator and its buffer of random bytes.
+     */
+    private static final class Stripe {
+
+        private final byte[] buffer;
+
+        private int count;
+
+        private int position;
+
+        private final SecureRandom random;
+
+        private Stripe(SecureRandom random, int bufferSize) {
+            this.buffer = new byte[bufferSize];
+            this.count = 0;
+            this.position = bufferSize;
+            this.random = random;
+        }
+    }
+
+    /** The default generator algorithm. */
+    public static final String DEFAULT_ALGORITHM = "SHA1PRNG";
+
+    /** The default size of the buffer of each stripe. */
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /** The default number of requests served between reseedings. */
+    public static final int DEFAULT_RESEED_INTERVAL = 1000;
+
+    /** The number of requests served by a stripe between reseedings. */
+    private final int reseedInterval;
+
+    /** The stripes. */
+    private final Stripe[] stripes;
+
+    /**
+     * Constructor using the default algorithm and buffer size, with one
+     * stripe per available processor.
+     * 
+     * @param reseedInterval
+     *            The number of requests served by a stripe between
+     *            reseedings.
+     */
+    public StripedSecureRandom(int reseedInterval) {
+        this(DEFAULT_ALGORITHM, reseedInterval, Runtime.getRuntime()
+                .availableProcessors(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param algorithm
+     *            The generator algorithm.
+     * @param reseedInterval
+     *            The number of requests served by a stripe between
+     *            reseedings.
+     * @param stripeCount
+     *            The number of stripes.
+     * @param bufferSize
+     *            The size of the buffer of each stripe.
+     */
+    public StripedSecureRandom(String algorithm, int reseedInterval,
+            int stripeCount, int bufferSize) {
+        this.reseedInterval = reseedInterval;
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+
+        try {
+            for (int i = 0; i < this.stripes.length; i++) {
+                this.stripes[i] = new Stripe(SecureRandom.getInstance(algorithm),
+                        Math.max(1, bufferSize));
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the stripe of the current thread.
+     * 
+     * @return The stripe of the current thread.
+     */
+    private Stripe getStripe() {
+        long id = Thread.currentThread().getId();
+        return this.stripes[(int) ((id ^ (id >>> 32)) & 0x7FFFFFFF)
+                % this.stripes.length];
+    }
+
+    /**
+     * Fills the given array with random bytes.
+     * 
+     * @param bytes
+     *            The array to fill.
+     */
+    public void nextBytes(byte[] bytes) {
+        Stripe stripe = getStripe();
+
+        synchronized (stripe) {
+            if (++stripe.count > this.reseedInterval) {
+                // Discards the buffered bytes generated before reseeding
+                stripe.count = 0;
+                stripe.random.setSeed(stripe.random.generateSeed(20));
+                Arrays.fill(stripe.buffer, (byte) 0);
+                stripe.position = stripe.buffer.length;
+            }
+
+            int offset = 0;
+
+            while (offset < bytes.length) {
+                if (stripe.position == stripe.buffer.length) {
+                    stripe.random.nextBytes(stripe.buffer);
+                    stripe.position = 0;
+                }
+
+                int length = Math.min(bytes.length - offset,
+                        stripe.buffer.length - stripe.position);
+                System.arraycopy(stripe.buffer, stripe.position, bytes,
+                        offset, length);
+                Arrays.fill(stripe.buffer, stripe.position, stripe.position
+                        + length, (byte) 0);
+                stripe.position += length;
+                offset += length;
+            }
+        }
+    }
+
+    /**
+     * Returns an array of random bytes.
+     * 
+     * @param length
+     *            The number of bytes.
+     * @return The random bytes.
+     */
+    public byte[] nextBytes(int length) {
+        byte[] result = new byte[length];
+        nextBytes(result);
+        return result;
+    }
+
+}
@@ -39,6 +39,9 @@ public class MemoryToken implements ServerToken {
 
     private int expirePeriod;
 
+    /** The scheduled eviction of the token, cancelled when it is removed. */
+    private volatile TimeWheel.Timeout<MemoryToken> expiration;
+
     private String refreshToken;
 
     private String[] scope;
@@ -67,6 +70,13 @@ public class MemoryToken implements ServerToken {
         return clientId;
     }
 
+    /**
+     * @return the scheduled eviction of the token
+     */
+    TimeWheel.Timeout<MemoryToken> getExpiration() {
+        return expiration;
+    }
+
     /**
      * @return the expirePeriod
      */
@@ -88,6 +98,13 @@ public class MemoryToken implements ServerToken {
         return scope;
     }
 
+    /**
+     * @return the creation time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     /**
      * @return the tokenType
      */
@@ -127,6 +144,14 @@ public class MemoryToken implements ServerToken {
         this.clientId = clientId;
     }
 
+    /**
+     * @param expiration
+     *            the scheduled eviction of the token
+     */
+    void setExpiration(TimeWheel.Timeout<MemoryToken> expiration) {
+        this.expiration = expiration;
+    }
+
     /**
      * @param expirePeriod
      *            the expirePeriod to set
@@ -26,8 +26,11 @@ package org.restlet.ext.oauth.internal.memory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.restlet.ext.oauth.OAuthError;
 import org.restlet.ext.oauth.OAuthException;
@@ -38,60 +41,183 @@ import org.restlet.ext.oauth.internal.Client;
 import org.restlet.ext.oauth.internal.Token;
 
 /**
- * Memory implementation of TokenManager interface.
+ * Memory implementation of TokenManager interface. Tokens are indexed by
+ * access token, refresh token, client identifier and username, and expired
+ * tokens and sessions are evicted by timing wheels, so that lookups and
+ * updates don't depend on the number of live tokens.
  * 
  * @author Shotaro Uchida <fantom@xmaker.mx>
  */
 public class MemoryTokenManager extends AbstractTokenManager {
 
-    private final Map<String, AuthSession> sessions = new ConcurrentHashMap<String, AuthSession>();
+    /** The default refresh token lifetime in seconds (14 days). */
+    public static final int DEFAULT_REFRESH_TOKEN_EXPIRE_PERIOD = 14 * 24 * 3600;
 
-    private final Map<String, MemoryToken> tokens = new ConcurrentHashMap<String, MemoryToken>();
+    /**
+     * Adds a token to a multi-valued index.
+     * 
+     * @param index
+     *            The index.
+     * @param key
+     *            The index key.
+     * @param token
+     *            The token to add.
+     */
+    private static void addToIndex(
+            ConcurrentMap<String, Set<MemoryToken>> index, String key,
+            MemoryToken token) {
+        for (;;) {
+            Set<MemoryToken> set = index.get(key);
 
-    public Token findToken(Client client, String username) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getClientId().equals(client.getClientId())
-                    && ((username == null && token.getUsername() == null) || (username != null && username
-                            .equals(token.getUsername())))) {
-                return token;
+            if (set == null) {
+                Set<MemoryToken> newSet = new HashSet<MemoryToken>();
+                set = index.putIfAbsent(key, newSet);
+
+                if (set == null) {
+                    set = newSet;
+                }
+            }
+
+            synchronized (set) {
+                // The set might have been removed once empty
+                if (index.get(key) == set) {
+                    set.add(token);
+                    return;
+                }
             }
         }
-        return null;
     }
 
-    protected MemoryToken findTokenByRefreshToken(String refreshToken) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getRefreshToken().equals(refreshToken)) {
-                return token;
-            }
+    /**
+     * Returns the tokens of a multi-valued index.
+     * 
+     * @param index
+     *            The index.
+     * @param key
+     *            The index key.
+     * @return The indexed tokens.
+     */
+    private static Token[] getFromIndex(
+            ConcurrentMap<String, Set<MemoryToken>> index, String key) {
+        Set<MemoryToken> set = (key == null) ? null : index.get(key);
+
+        if (set == null) {
+            return new Token[0];
+        }
+
+        synchronized (set) {
+            return set.toArray(new Token[set.size()]);
         }
-        return null;
     }
 
-    public Token[] findTokens(Client client) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getClientId().equals(client.getClientId())) {
-                list.add(token);
+    /**
+     * Removes a token from a multi-valued index.
+     * 
+     * @param index
+     *            The index.
+     * @param key
+     *            The index key.
+     * @param token
+     *            The token to remove.
+     */
+    private static void removeFromIndex(
+            ConcurrentMap<String, Set<MemoryToken>> index, String key,
+            MemoryToken token) {
+        Set<MemoryToken> set = index.get(key);
+
+        if (set != null) {
+            synchronized (set) {
+                if (set.remove(token) && set.isEmpty()) {
+                    index.remove(key, set);
+                }
             }
         }
-        return list.toArray(new Token[list.size()]);
     }
 
-    public Token[] findTokens(String username) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getUsername() != null && token.getUsername().equals(username)) {
-                list.add(token);
-            }
+    /** The tokens by client identifier. */
+    private final ConcurrentMap<String, Set<MemoryToken>> clientTokens = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
+    /** The tokens by client identifier and username. */
+    private final ConcurrentMap<List<String>, MemoryToken> ownerTokens = new ConcurrentHashMap<List<String>, MemoryToken>();
+
+    /** The refresh token lifetime in seconds. */
+    private volatile int refreshExpirePeriod = DEFAULT_REFRESH_TOKEN_EXPIRE_PERIOD;
+
+    /** The tokens by refresh token. */
+    private final ConcurrentMap<String, MemoryToken> refreshTokens = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** The expiration wheel of the session codes. */
+    private final TimeWheel<String> sessionExpirations = new TimeWheel<String>();
+
+    private final ConcurrentMap<String, AuthSession> sessions = new ConcurrentHashMap<String, AuthSession>();
+
+    /** The expiration wheel of the tokens. */
+    private final TimeWheel<MemoryToken> tokenExpirations = new TimeWheel<MemoryToken>();
+
+    /** The tokens by access token. */
+    private final ConcurrentMap<String, MemoryToken> tokens = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** The tokens by username. */
+    private final ConcurrentMap<String, Set<MemoryToken>> userTokens = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
+    /**
+     * Schedules the eviction of a new token, once both the access token and
+     * the refresh token have expired, and indexes it. The eviction is
+     * cancelled if the token is removed earlier.
+     * 
+     * @param token
+     *            The token to add.
+     */
+    private void addToken(MemoryToken token) {
+        long lifetime = Math.max(token.getExpirePeriod(),
+                getRefreshExpirePeriod());
+        token.setExpiration(tokenExpirations.schedule(token,
+                token.getTimestamp() + (lifetime + 1) * 1000L));
+
+        tokens.put(token.getAccessToken(), token);
+        refreshTokens.put(token.getRefreshToken(), token);
+        ownerTokens.put(getOwnerKey(token), token);
+        addToIndex(clientTokens, token.getClientId(), token);
+
+        if (token.getUsername() != null) {
+            addToIndex(userTokens, token.getUsername(), token);
+        }
+    }
+
+    /**
+     * Evicts the expired tokens and sessions.
+     */
+    protected void evictExpired() {
+        long now = System.currentTimeMillis();
+
+        for (MemoryToken token : tokenExpirations.advance(now)) {
+            removeToken(token);
+        }
+
+        for (String code : sessionExpirations.advance(now)) {
+            sessions.remove(code);
         }
-        return list.toArray(new Token[list.size()]);
+    }
+
+    public Token findToken(Client client, String username) {
+        return ownerTokens.get(Arrays.asList(client.getClientId(), username));
+    }
+
+    protected MemoryToken findTokenByRefreshToken(String refreshToken) {
+        return (refreshToken == null) ? null : refreshTokens.get(refreshToken);
+    }
+
+    public Token[] findTokens(Client client) {
+        return getFromIndex(clientTokens, client.getClientId());
+    }
+
+    public Token[] findTokens(String username) {
+        return getFromIndex(userTokens, username);
     }
 
     public Token generateToken(Client client, String username, String[] scope)
             throws OAuthException {
+        evictExpired();
         revokeToken(client, username);
         MemoryToken token = new MemoryToken();
         token.setClientId(client.getClientId());
@@ -101,12 +227,31 @@ public class MemoryTokenManager extends AbstractTokenManager {
         token.setTokenType(OAuthResourceDefs.TOKEN_TYPE_BEARER);
         token.setAccessToken(generateRawToken());
         token.setRefreshToken(generateRawToken());
-        tokens.put(token.getAccessToken(), token);
+        addToken(token);
         return token;
     }
 
+    /**
+     * Returns the index key of the token owner.
+     * 
+     * @param token
+     *            The token.
+     * @return The client identifier and username pair.
+     */
+    private List<String> getOwnerKey(MemoryToken token) {
+        return Arrays.asList(token.getClientId(), token.getUsername());
+    }
+
+    /**
+     * @return the refresh token lifetime in seconds
+     */
+    public int getRefreshExpirePeriod() {
+        return refreshExpirePeriod;
+    }
+
     public Token refreshToken(Client client, String refreshToken, String[] scope)
             throws OAuthException {
+        evictExpired();
         MemoryToken token = findTokenByRefreshToken(refreshToken);
         if (token == null) {
             throw new OAuthException(OAuthError.invalid_grant,
@@ -119,6 +264,12 @@ public class MemoryTokenManager extends AbstractTokenManager {
                     "The refresh token was not issued to the client.", null);
         }
 
+        long elapsedTime = System.currentTimeMillis() - token.getTimestamp();
+        if ((elapsedTime / 1000) > getRefreshExpirePeriod()) {
+            throw new OAuthException(OAuthError.invalid_grant,
+                    "The refresh token expired.", null);
+        }
+
         String[] newScope;
         /*
          * The requested scope MUST NOT include any scope not originally granted
@@ -152,17 +303,45 @@ public class MemoryTokenManager extends AbstractTokenManager {
             newToken.setRefreshToken(token.getRefreshToken());
         }
 
-        synchronized (this) {
-            if (tokens.remove(token.getAccessToken()) != null) {
-                tokens.put(newToken.getAccessToken(), newToken);
-                return newToken;
-            }
+        // Only one of concurrent refreshes can consume the previous token
+        if (!removeToken(token)) {
+            throw new OAuthException(OAuthError.invalid_grant,
+                    "The refresh token was already used.", null);
+        }
+
+        addToken(newToken);
+        return newToken;
+    }
+
+    /**
+     * Removes a token from all the indexes and cancels its scheduled eviction.
+     * 
+     * @param token
+     *            The token to remove.
+     * @return True if the token was removed by this call.
+     */
+    private boolean removeToken(MemoryToken token) {
+        if (!tokens.remove(token.getAccessToken(), token)) {
+            return false;
+        }
+
+        refreshTokens.remove(token.getRefreshToken(), token);
+        ownerTokens.remove(getOwnerKey(token), token);
+        removeFromIndex(clientTokens, token.getClientId(), token);
+
+        if (token.getUsername() != null) {
+            removeFromIndex(userTokens, token.getUsername(), token);
         }
 
-        return null; // FIXME
+        if (token.getExpiration() != null) {
+            token.getExpiration().cancel();
+        }
+
+        return true;
     }
 
     public AuthSession restoreSession(String code) throws OAuthException {
+        evictExpired();
         AuthSession session = sessions.remove(code);
         if (session == null) {
             throw new OAuthException(OAuthError.invalid_grant, "Invalid code.",
@@ -173,30 +352,42 @@ public class MemoryTokenManager extends AbstractTokenManager {
 
     public void revokeAllTokens(Client client) {
         for (Token token : findTokens(client)) {
-            tokens.remove(token.getAccessToken());
+            removeToken((MemoryToken) token);
         }
     }
 
     public void revokeAllTokens(String username) {
         for (Token token : findTokens(username)) {
-            tokens.remove(token.getAccessToken());
+            removeToken((MemoryToken) token);
         }
     }
 
     public void revokeToken(Client client, String username) {
         Token token = findToken(client, username);
         if (token != null) {
-            tokens.remove(token.getAccessToken());
+            removeToken((MemoryToken) token);
         }
     }
 
+    /**
+     * @param refreshExpirePeriod
+     *            the refresh token lifetime in seconds
+     */
+    public void setRefreshExpirePeriod(int refreshExpirePeriod) {
+        this.refreshExpirePeriod = refreshExpirePeriod;
+    }
+
     public String storeSession(AuthSession session) throws OAuthException {
+        evictExpired();
         String code = generateRawCode();
         sessions.put(code, session);
+        sessionExpirations.schedule(code, System.currentTimeMillis()
+                + (session.getSessionTimeout() + 1) * 1000L);
         return code;
     }
 
     public Token validateToken(String accessToken) throws OAuthException {
+        evictExpired();
         MemoryToken token = tokens.get(accessToken);
         if (token == null) {
             throw new OAuthException(OAuthError.invalid_token,
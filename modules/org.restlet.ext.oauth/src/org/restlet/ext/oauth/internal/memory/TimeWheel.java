@@ -0,0 +1,249 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.oauth.internal.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hashed timing wheel tracking the expiration of items. Items are scheduled in
+ * the slot of their deadline tick and collected once this tick has elapsed.
+ * Items whose deadline lies beyond one rotation of the wheel are rescheduled
+ * when their slot is visited, so scheduling is O(1) and advancing the wheel
+ * only visits the slots of the elapsed ticks. Scheduled items can be
+ * cancelled, which releases them immediately and drops their entry when its
+ * slot is visited.
+ * 
+ * @param <T>
+ *            The type of items.
+ * @author Jerome Louvel
+ */
+public class TimeWheel<T> {
+
+    /**
+     * Scheduled item, which can be cancelled.
+     * 
+     * @param <T>
+     *            The type of item.
+     */
+    public static final class Timeout<T> {
+
+        /** The expiration time of the item in milliseconds. */
+        private final long deadline;
+
+        /** The item, or null once cancelled. */
+        private volatile T item;
+
+        /**
+         * Constructor.
+         * 
+         * @param item
+         *            The item.
+         * @param deadline
+         *            The expiration time of the item in milliseconds.
+         */
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the expiration of the item, so that it is never returned
+         * by {@link TimeWheel#advance(long)}.
+         */
+        public void cancel() {
+            this.item = null;
+        }
+
+        /**
+         * Indicates if the expiration was cancelled.
+         * 
+         * @return True if the expiration was cancelled.
+         */
+        public boolean isCancelled() {
+            return this.item == null;
+        }
+    }
+
+    /** The default number of slots. */
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+
+    /** The default duration of a tick in milliseconds. */
+    public static final long DEFAULT_TICK_DURATION = 1000L;
+
+    /** Indicates if a thread is advancing the wheel. */
+    private final AtomicBoolean advancing;
+
+    /** The first tick not elapsed yet. */
+    private volatile long currentTick;
+
+    /** The slots of the wheel. */
+    private final List<Queue<Timeout<T>>> slots;
+
+    /** The duration of a tick in milliseconds. */
+    private final long tickDuration;
+
+    /**
+     * Constructor using the default tick duration and number of slots.
+     */
+    public TimeWheel() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param tickDuration
+     *            The duration of a tick in milliseconds.
+     * @param slotCount
+     *            The number of slots.
+     */
+    public TimeWheel(long tickDuration, int slotCount) {
+        this(tickDuration, slotCount, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param tickDuration
+     *            The duration of a tick in milliseconds.
+     * @param slotCount
+     *            The number of slots.
+     * @param startTime
+     *            The time from which the wheel advances, in milliseconds.
+     */
+    public TimeWheel(long tickDuration, int slotCount, long startTime) {
+        if ((tickDuration <= 0) || (slotCount <= 0)) {
+            throw new IllegalArgumentException(
+                    "The tick duration and slot count must be positive");
+        }
+
+        this.advancing = new AtomicBoolean();
+        this.currentTick = startTime / tickDuration;
+        this.slots = new ArrayList<Queue<Timeout<T>>>(slotCount);
+        this.tickDuration = tickDuration;
+
+        for (int i = 0; i < slotCount; i++) {
+            this.slots.add(new ConcurrentLinkedQueue<Timeout<T>>());
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time and returns the items whose
+     * deadline has passed. If another thread is already advancing the wheel,
+     * returns an empty list.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @return The expired items.
+     */
+    public List<T> advance(long now) {
+        List<T> result = new ArrayList<T>();
+        long target = now / this.tickDuration;
+
+        if ((target > this.currentTick)
+                && this.advancing.compareAndSet(false, true)) {
+            try {
+                long from = this.currentTick;
+                long to = Math.min(target, from + this.slots.size());
+                List<Timeout<T>> pending = new ArrayList<Timeout<T>>();
+
+                for (long tick = from; tick < to; tick++) {
+                    Queue<Timeout<T>> slot = getSlot(tick);
+                    Timeout<T> entry = slot.poll();
+
+                    while (entry != null) {
+                        T item = entry.item;
+
+                        // Cancelled entries are dropped
+                        if (item != null) {
+                            if (entry.deadline < target * this.tickDuration) {
+                                result.add(item);
+                            } else {
+                                pending.add(entry);
+                            }
+                        }
+
+                        entry = slot.poll();
+                    }
+                }
+
+                this.currentTick = target;
+
+                // Reschedule the items due in a later rotation
+                for (Timeout<T> entry : pending) {
+                    getSlot(getTick(entry.deadline)).add(entry);
+                }
+            } finally {
+                this.advancing.set(false);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the slot of a given tick.
+     * 
+     * @param tick
+     *            The tick.
+     * @return The slot of the tick.
+     */
+    private Queue<Timeout<T>> getSlot(long tick) {
+        return this.slots.get((int) (tick % this.slots.size()));
+    }
+
+    /**
+     * Returns the tick of a given deadline, or the current tick if the
+     * deadline has already passed.
+     * 
+     * @param deadline
+     *            The deadline in milliseconds.
+     * @return The tick of the deadline.
+     */
+    private long getTick(long deadline) {
+        return Math.max(deadline / this.tickDuration, this.currentTick);
+    }
+
+    /**
+     * Schedules the expiration of an item.
+     * 
+     * @param item
+     *            The item.
+     * @param deadline
+     *            The expiration time of the item in milliseconds.
+     * @return The timeout, which can be cancelled.
+     */
+    public Timeout<T> schedule(T item, long deadline) {
+        Timeout<T> result = new Timeout<T>(item, deadline);
+        getSlot(getTick(deadline)).add(result);
+        return result;
+    }
+
+}
@@ -40,6 +40,7 @@ import org.restlet.ext.atom.Link;
 import org.restlet.ext.atom.Relation;
 import org.restlet.ext.odata.internal.EntryContentHandler;
 import org.restlet.ext.odata.internal.FeedContentHandler;
+import org.restlet.ext.odata.internal.FeedIterator;
 import org.restlet.ext.odata.internal.edm.EntityType;
 import org.restlet.ext.odata.internal.edm.Metadata;
 import org.restlet.representation.Representation;
@@ -196,6 +197,9 @@ public class Query<T> implements Iterable<T> {
     /** The reference to the next page (used in server-paging mode). */
     private Reference nextPage;
 
+    /** True if the next page is read while the current one is consumed. */
+    private boolean prefetch;
+
     /** The query string. */
     private String query;
 
@@ -257,6 +261,7 @@ public class Query<T> implements Iterable<T> {
         } else {
             result.setQuery(getQuery() + "&" + name + "=" + value);
         }
+        result.prefetch = this.prefetch;
 
         return result;
     }
@@ -293,6 +298,7 @@ public class Query<T> implements Iterable<T> {
         } else {
             result.setQuery(getQuery() + "&" + builder.toString());
         }
+        result.prefetch = this.prefetch;
 
         return result;
     }
@@ -386,10 +392,11 @@ public class Query<T> implements Iterable<T> {
                 case TYPE_UNKNOWN:
                     // Guess the type of query based on the returned
                     // representation
-                    Representation rep = new StringRepresentation(
-                            result.getText());
-                    String string = rep.getText().substring(0,
-                            Math.min(100, rep.getText().length()));
+                    String text = result.getText();
+                    Representation rep = new StringRepresentation(text,
+                            result.getMediaType());
+                    String string = text.substring(0,
+                            Math.min(100, text.length()));
                     if (string.contains("<feed")) {
                         feedContentHandler = new FeedContentHandler<T>(
                                 entityClass, entityType, metadata, getLogger());
@@ -520,7 +527,10 @@ public class Query<T> implements Iterable<T> {
     }
 
     /**
-     * Return the reference to the next page (used in server-paging mode).
+     * Return the reference to the next page (used in server-paging mode). When
+     * the entities are parsed on the fly by the iterator, it is updated as the
+     * pages are consumed and refers to the page following the last one
+     * consumed.
      * 
      * @return The reference to the next page (used in server-paging mode).
      */
@@ -632,34 +642,64 @@ public class Query<T> implements Iterable<T> {
         return executed;
     }
 
+    /**
+     * Returns true if the next page of an entity set is read while the
+     * entities of the current one are consumed.
+     * 
+     * @return True if the next page is read while the current one is
+     *         consumed.
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
     /**
      * Returns an iterator over a set of elements of type T. It returns null if
-     * the query does not retrieve elements.
+     * the query does not retrieve elements. When the query targets an entity
+     * set and has not been executed yet, the entities are parsed on the fly
+     * and the next pages are transparently retrieved, keeping at most one
+     * page in memory.
      * 
      * @return an Iterator or null if the query does not retrieve elements.
+     * @see #prefetch(boolean)
      */
     public Iterator<T> iterator() {
         Iterator<T> result = null;
 
         try {
-            execute();
-            result = entities.iterator();
+            String targetUri = createTargetUri();
 
-            // result = new FeedParser<T>(getFeed(), this.entityClass,
-            // ((Metadata) getService().getMetadata())).parse();
-            // Detect server-paging mode.
-            setNextPage(null);
+            if (!isExecuted() && (guessType(targetUri) == TYPE_ENTITY_SET)) {
+                Metadata metadata = (Metadata) service.getMetadata();
+                if (metadata == null) {
+                    throw new Exception(
+                            "Can't execute the query without the service's metadata.");
+                }
 
-            for (Link link : getFeed().getLinks()) {
-                if (Relation.NEXT.equals(link.getRel())) {
-                    setNextPage(link.getHref());
-                    break;
+                setNextPage(null);
+                result = new FeedIterator<T>(this, this.service,
+                        new Reference(targetUri), entityClass, entityType,
+                        metadata, this.prefetch, getLogger());
+            } else {
+                execute();
+                result = entities.iterator();
+
+                // result = new FeedParser<T>(getFeed(), this.entityClass,
+                // ((Metadata) getService().getMetadata())).parse();
+                // Detect server-paging mode.
+                setNextPage(null);
+
+                for (Link link : getFeed().getLinks()) {
+                    if (Relation.NEXT.equals(link.getRel())) {
+                        setNextPage(link.getHref());
+                        break;
+                    }
                 }
-            }
 
-            if (getNextPage() != null) {
-                result = new EntryIterator<T>(this.service, result,
-                        getNextPage(), entityClass);
+                if (getNextPage() != null) {
+                    result = new EntryIterator<T>(this.service, result,
+                            getNextPage(), entityClass);
+                }
             }
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
@@ -683,6 +723,28 @@ public class Query<T> implements Iterable<T> {
         return addParameter("$orderby", criteria);
     }
 
+    /**
+     * Creates a new Query<T> that reads the next page of an entity set while
+     * the entities of the current one are consumed, instead of waiting for
+     * them to be consumed. This reduces the latency of the iteration, the
+     * number of entities read in advance being bounded in any case.
+     * 
+     * @param prefetch
+     *            True if the next page is read while the current one is
+     *            consumed.
+     * @return A new Query<T> with the prefetch mode set.
+     */
+    @SuppressWarnings("unchecked")
+    public Query<T> prefetch(boolean prefetch) {
+        Query<T> result = new Query<T>(this.getService(), this.getSubpath(),
+                (Class<T>) this.entityClass);
+        result.setQuery(getQuery());
+        result.inlineCount = this.inlineCount;
+        result.prefetch = prefetch;
+
+        return result;
+    }
+
     /**
      * Creates a new Query<T> with the $select option set in the URI generated
      * by the returned query.
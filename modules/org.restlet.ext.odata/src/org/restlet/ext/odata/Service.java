@@ -55,9 +55,9 @@ import org.restlet.ext.atom.Feed;
 import org.restlet.ext.atom.Link;
 import org.restlet.ext.atom.Relation;
 import org.restlet.ext.odata.internal.EntryContentHandler;
+import org.restlet.ext.odata.internal.MetadataCache;
 import org.restlet.ext.odata.internal.edm.AssociationEnd;
 import org.restlet.ext.odata.internal.edm.ComplexProperty;
-import org.restlet.ext.odata.internal.edm.EntityContainer;
 import org.restlet.ext.odata.internal.edm.EntityType;
 import org.restlet.ext.odata.internal.edm.FunctionImport;
 import org.restlet.ext.odata.internal.edm.Metadata;
@@ -462,7 +462,9 @@ public class Service {
     }
 
     /**
-     * Returns the metadata document related to the current service.
+     * Returns the metadata document related to the current service. It is
+     * shared with the other services targeting the same URI through the
+     * {@link MetadataCache}.
      * 
      * @return The metadata document related to the current service.
      */
@@ -475,8 +477,7 @@ public class Service {
                         Level.INFO,
                         "Get the metadata for " + getServiceRef() + " at "
                                 + resource.getReference());
-                Representation rep = resource.get(MediaType.APPLICATION_XML);
-                this.metadata = new Metadata(rep, resource.getReference());
+                this.metadata = MetadataCache.getInstance().get(resource);
             } catch (ResourceException e) {
                 getLogger().log(
                         Level.SEVERE,
@@ -826,18 +827,7 @@ public class Service {
         Metadata metadata = (Metadata) getMetadata();
         if (metadata != null && service != null) {
             // Look for the FunctionImport element.
-            FunctionImport function = null;
-            for (EntityContainer container : metadata.getContainers()) {
-                for (FunctionImport f : container.getFunctionImports()) {
-                    if (service.equals(f.getName())) {
-                        function = f;
-                        break;
-                    }
-                }
-                if (function != null) {
-                    break;
-                }
-            }
+            FunctionImport function = metadata.getFunctionImport(service);
 
             if (function != null) {
                 ClientResource resource = createResource(service);
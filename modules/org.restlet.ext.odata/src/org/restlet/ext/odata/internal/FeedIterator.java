@@ -0,0 +1,551 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.atom.Feed;
+import org.restlet.ext.atom.Link;
+import org.restlet.ext.atom.Relation;
+import org.restlet.ext.odata.Query;
+import org.restlet.ext.odata.Service;
+import org.restlet.ext.odata.internal.edm.EntityType;
+import org.restlet.ext.odata.internal.edm.Metadata;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
+
+/**
+ * Iterator over the entities of an entity set that parses them on the fly and
+ * transparently follows the links to the next pages (server-side paging). The
+ * pages are read by a background task with a {@link FeedContentHandler} that
+ * hands out each entity as soon as it is parsed, through a bounded buffer, so
+ * that the memory used doesn't depend on the size of the entity set. The task
+ * runs on the executor service of the current context if any, or else on a
+ * daemon thread.<br>
+ * <br>
+ * When prefetching is enabled, the next page is requested as soon as the
+ * current one is parsed. Otherwise, it is requested once all the entities of
+ * the current page have been consumed. The reading stops when the iterator is
+ * no longer referenced.<br>
+ * <br>
+ * When no background task can be started, for example on Google App Engine,
+ * each page is read entirely by the consuming thread once the entities of the
+ * previous one have been consumed, so that at most one page is kept in
+ * memory.
+ * 
+ * @author Jerome Louvel
+ * @param <T>
+ *            The type of the parsed entities.
+ */
+public class FeedIterator<T> implements Iterator<T> {
+
+    /**
+     * Marks the end of a page in the buffer.
+     */
+    private static final class PageEnd {
+
+        /** The error that interrupted the reading of the page, if any. */
+        private final Exception error;
+
+        /** The reference to the next page, if any. */
+        private final Reference nextPage;
+
+        /**
+         * Constructor.
+         * 
+         * @param nextPage
+         *            The reference to the next page, if any.
+         * @param error
+         *            The error that interrupted the reading of the page, if
+         *            any.
+         */
+        private PageEnd(Reference nextPage, Exception error) {
+            this.nextPage = nextPage;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reads the pages and puts the parsed entities in the buffer, either in a
+     * background task or on demand.
+     * 
+     * @param <T>
+     *            The type of the parsed entities.
+     */
+    private static final class PageReader<T> implements Runnable {
+
+        /** The buffer shared with the iterator. */
+        private final BlockingQueue<Object> buffer;
+
+        /** The class of the parsed entities. */
+        private final Class<?> entityClass;
+
+        /** The OData type of the parsed entities. */
+        private final EntityType entityType;
+
+        /** True once the background task stopped. */
+        private volatile boolean finished;
+
+
+        /** The logger. */
+        private final Logger logger;
+
+        /** The metadata of the OData service. */
+        private final Metadata metadata;
+
+        /** The reference to the next page to read, or null. */
+        private volatile Reference nextPage;
+
+        /** The iterator, weakly referenced to detect when it is abandoned. */
+        private final WeakReference<FeedIterator<T>> owner;
+
+        /** The permits to read the next page, unless prefetching. */
+        private final Semaphore pageRequests;
+
+        /** True if the next page is read without waiting for a permit. */
+        private final boolean prefetch;
+
+        /** The underlying service. */
+        private final Service service;
+
+        /**
+         * Constructor.
+         * 
+         * @param owner
+         *            The iterator.
+         * @param buffer
+         *            The buffer shared with the iterator.
+         * @param service
+         *            The underlying service.
+         * @param firstPage
+         *            The reference to the first page.
+         * @param entityClass
+         *            The class of the parsed entities.
+         * @param entityType
+         *            The OData type of the parsed entities.
+         * @param metadata
+         *            The metadata of the OData service.
+         * @param logger
+         *            The logger.
+         */
+        private PageReader(FeedIterator<T> owner, BlockingQueue<Object> buffer,
+                Service service, Reference firstPage, Class<?> entityClass,
+                EntityType entityType, Metadata metadata, Logger logger) {
+            this.owner = new WeakReference<FeedIterator<T>>(owner);
+            this.buffer = buffer;
+            this.pageRequests = owner.pageRequests;
+            this.prefetch = owner.prefetch;
+            this.service = service;
+            this.nextPage = firstPage;
+            this.entityClass = entityClass;
+            this.entityType = entityType;
+            this.metadata = metadata;
+            this.logger = logger;
+        }
+
+        /**
+         * Throws a {@link CancellationException} if the iterator is no longer
+         * referenced.
+         */
+        private void checkOwner() {
+            if (this.owner.get() == null) {
+                throw new CancellationException(
+                        "The feed iterator was abandoned");
+            }
+        }
+
+        /**
+         * Puts an item in the buffer, waiting for some space.
+         * 
+         * @param item
+         *            The entity or {@link PageEnd} marker.
+         * @throws InterruptedException
+         */
+        private void put(Object item) throws InterruptedException {
+            while (!this.buffer.offer(item, POLL_PERIOD, TimeUnit.MILLISECONDS)) {
+                checkOwner();
+            }
+        }
+
+        /**
+         * Reads a page and puts its entities in the buffer.
+         * 
+         * @param page
+         *            The reference of the page.
+         * @return The reference to the next page, if any.
+         * @throws Exception
+         */
+        private Reference read(Reference page) throws Exception {
+            ClientResource resource = this.service.createResource(page);
+            Representation result = resource.get(MediaType.APPLICATION_ATOM);
+            Reference nextPage = null;
+
+            try {
+                if (resource.getStatus().isSuccess() && (result != null)) {
+                    FeedContentHandler<T> handler = new FeedContentHandler<T>(
+                            this.entityClass, this.entityType, this.metadata,
+                            this.logger) {
+                        /** The parsed feed. */
+                        private Feed feed;
+
+                        @Override
+                        protected void addEntity(T entity) {
+                            // Only the entity being handed out is kept
+                            this.feed.getEntries().clear();
+
+                            try {
+                                put(entity);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new CancellationException(
+                                        "The feed reading was interrupted");
+                            }
+                        }
+
+                        @Override
+                        public void startFeed(Feed feed) {
+                            super.startFeed(feed);
+                            this.feed = feed;
+                        }
+                    };
+
+                    Feed feed = new Feed(result, handler);
+
+                    for (Link link : feed.getLinks()) {
+                        if (Relation.NEXT.equals(link.getRel())) {
+                            nextPage = resolve(link.getHref());
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                if (result != null) {
+                    result.release();
+                }
+            }
+
+            this.service.setLatestRequest(resource.getRequest());
+            this.service.setLatestResponse(resource.getResponse());
+            return nextPage;
+        }
+
+        /**
+         * Resolves the reference to a next page, relatively to the service
+         * URI if needed.
+         * 
+         * @param href
+         *            The reference to resolve.
+         * @return The absolute reference.
+         */
+        private Reference resolve(Reference href) {
+            if (href.isAbsolute()) {
+                return href;
+            }
+
+            String base = this.service.getServiceRef().toString();
+            String path = href.toString();
+
+            if (base.endsWith("/") && path.startsWith("/")) {
+                path = path.substring(1);
+            } else if (!base.endsWith("/") && !path.startsWith("/")) {
+                path = "/" + path;
+            }
+
+            return new Reference(base + path);
+        }
+
+        /**
+         * Reads the next page and puts its entities in the buffer, followed by
+         * a {@link PageEnd} marker.
+         * 
+         * @return True if there is another page to read.
+         * @throws InterruptedException
+         */
+        private boolean readNextPage() throws InterruptedException {
+            Reference nextPage = null;
+            Exception error = null;
+
+            try {
+                nextPage = read(this.nextPage);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                error = e;
+            }
+
+            put(new PageEnd(nextPage, error));
+            this.nextPage = (error == null) ? nextPage : null;
+            return this.nextPage != null;
+        }
+
+        public void run() {
+            try {
+                boolean more = (this.nextPage != null);
+
+                while (more) {
+                    if (!this.prefetch) {
+                        while (!this.pageRequests.tryAcquire(POLL_PERIOD,
+                                TimeUnit.MILLISECONDS)) {
+                            checkOwner();
+                        }
+                    }
+
+                    more = readNextPage();
+                }
+            } catch (CancellationException e) {
+                // The iterator was abandoned
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Lets the iterator detect an unexpected end of the task
+                this.finished = true;
+            }
+        }
+    }
+
+    /** The maximum number of parsed entities waiting to be handed out. */
+    public static final int BUFFER_SIZE = 64;
+
+    /**
+     * The period in milliseconds after which the reading thread checks that
+     * the iterator is still referenced.
+     */
+    private static final long POLL_PERIOD = 1000;
+
+    /**
+     * Starts a background task, on the executor service of the current
+     * context if any, or else on a daemon thread.
+     * 
+     * @param task
+     *            The task to start.
+     * @return True if the task was started.
+     */
+    private static boolean start(Runnable task) {
+        Context context = Context.getCurrent();
+        ExecutorService executor = (context == null) ? null : context
+                .getExecutorService();
+
+        if (executor != null) {
+            try {
+                executor.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // Try with a dedicated thread
+            }
+        }
+
+        try {
+            Thread thread = new Thread(task, "OData feed reader");
+            thread.setDaemon(true);
+            thread.start();
+            return true;
+        } catch (SecurityException e) {
+            // Threads can't be created, for example on Google App Engine
+            return false;
+        }
+    }
+
+    /** The buffer of parsed entities and end of page markers. */
+    private final BlockingQueue<Object> buffer;
+
+    /** True if all the pages have been consumed. */
+    private boolean done;
+
+    /** The logger. */
+    private final Logger logger;
+
+    /** The next entity to hand out. */
+    private T next;
+
+    /** The permits to read the next page, unless prefetching. */
+    private final Semaphore pageRequests;
+
+    /** True if the next page is read as soon as the current one is parsed. */
+    private final boolean prefetch;
+
+    /** The query updated with the reference to the next page, if any. */
+    private final Query<?> query;
+
+    /** The reader of the pages. */
+    private final PageReader<T> reader;
+
+    /** True if the pages are read on demand by the consuming thread. */
+    private final boolean synchronous;
+
+    /**
+     * Constructor. Starts the reading of the first page.
+     * 
+     * @param query
+     *            The query updated with the reference to the next page of
+     *            the last page consumed, or null.
+     * @param service
+     *            The underlying service.
+     * @param firstPage
+     *            The reference to the first page.
+     * @param entityClass
+     *            The class of the parsed entities.
+     * @param entityType
+     *            The OData type of the parsed entities.
+     * @param metadata
+     *            The metadata of the OData service.
+     * @param prefetch
+     *            True if the next page is read as soon as the current one is
+     *            parsed.
+     * @param logger
+     *            The logger.
+     */
+    public FeedIterator(Query<?> query, Service service, Reference firstPage,
+            Class<?> entityClass, EntityType entityType, Metadata metadata,
+            boolean prefetch, Logger logger) {
+        this.done = false;
+        this.logger = logger;
+        this.next = null;
+        this.pageRequests = new Semaphore(1);
+        this.prefetch = prefetch;
+        this.query = query;
+
+        BlockingQueue<Object> buffer = new ArrayBlockingQueue<Object>(
+                BUFFER_SIZE);
+        PageReader<T> reader = new PageReader<T>(this, buffer, service,
+                firstPage, entityClass, entityType, metadata, logger);
+        this.synchronous = !start(reader);
+
+        if (this.synchronous) {
+            // Each page is entirely buffered when read on demand
+            buffer = new LinkedBlockingQueue<Object>();
+            reader = new PageReader<T>(this, buffer, service, firstPage,
+                    entityClass, entityType, metadata, logger);
+        }
+
+        this.buffer = buffer;
+        this.reader = reader;
+    }
+
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        while ((this.next == null) && !this.done) {
+            Object item;
+
+            try {
+                item = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.done = true;
+                break;
+            }
+
+            if (item == null) {
+                this.logger
+                        .warning("The reading of the feed stopped before its end");
+                this.done = true;
+            } else if (item instanceof PageEnd) {
+                PageEnd pageEnd = (PageEnd) item;
+
+                if (pageEnd.error != null) {
+                    this.logger.log(Level.WARNING,
+                            "Can't parse the content of the feed",
+                            pageEnd.error);
+                    this.done = true;
+                } else {
+                    if (this.query != null) {
+                        this.query.setNextPage(pageEnd.nextPage);
+                    }
+
+                    if (pageEnd.nextPage == null) {
+                        this.done = true;
+                    } else if (!this.prefetch && !this.synchronous) {
+                        // Get the next page
+                        this.pageRequests.release();
+                    }
+                }
+            } else {
+                this.next = (T) item;
+            }
+        }
+
+        return this.next != null;
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T result = this.next;
+        this.next = null;
+        return result;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Takes the next item of the buffer. If the pages are read on demand, the
+     * next page is read first when the buffer is empty.
+     * 
+     * @return The next entity or {@link PageEnd} marker, or null if the
+     *         background task stopped before the end of the feed.
+     * @throws InterruptedException
+     */
+    private Object take() throws InterruptedException {
+        Object result = this.buffer.poll();
+
+        while (result == null) {
+            if (this.synchronous) {
+                // The page is always followed by a marker
+                this.reader.readNextPage();
+                result = this.buffer.poll();
+            } else {
+                // Items put before the end of the task are polled first
+                boolean finished = this.reader.finished;
+                result = this.buffer.poll(POLL_PERIOD, TimeUnit.MILLISECONDS);
+
+                if ((result == null) && finished) {
+                    return null;
+                }
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata.internal;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.ext.odata.internal.edm.Metadata;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
+
+/**
+ * Process-wide cache of the parsed metadata of OData services, keyed by the
+ * URI of the metadata resource. It prevents short-lived services from
+ * downloading and parsing the same schema again and again.<br>
+ * <br>
+ * Once its maximum age is reached, an entry is revalidated with a conditional
+ * request based on the entity tag or the modification date sent by the
+ * remote service, the parsed metadata being reused if it has not been
+ * modified. By default, the maximum age is zero meaning that each new service
+ * revalidates the metadata.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetadataCache {
+
+    /**
+     * Entry of the cache.
+     */
+    private static final class CachedMetadata {
+
+        /** The time after which the metadata must be revalidated. */
+        private final long expirationTime;
+
+        /** The parsed metadata. */
+        private final Metadata metadata;
+
+        /** The modification date sent by the remote service. */
+        private final Date modificationDate;
+
+        /** The entity tag sent by the remote service. */
+        private final Tag tag;
+
+        /**
+         * Constructor.
+         * 
+         * @param metadata
+         *            The parsed metadata.
+         * @param tag
+         *            The entity tag sent by the remote service.
+         * @param modificationDate
+         *            The modification date sent by the remote service.
+         * @param expirationTime
+         *            The time after which the metadata must be revalidated.
+         */
+        private CachedMetadata(Metadata metadata, Tag tag,
+                Date modificationDate, long expirationTime) {
+            this.metadata = metadata;
+            this.tag = tag;
+            this.modificationDate = modificationDate;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /** The unique instance. */
+    private static final MetadataCache INSTANCE = new MetadataCache();
+
+    /**
+     * Returns the unique instance.
+     * 
+     * @return The unique instance.
+     */
+    public static MetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /** The entries by URI of the metadata resource. */
+    private final ConcurrentMap<String, CachedMetadata> entries;
+
+    /** The delay in milliseconds during which entries are not revalidated. */
+    private volatile long maxAge;
+
+    /**
+     * Constructor.
+     */
+    public MetadataCache() {
+        this.entries = new ConcurrentHashMap<String, CachedMetadata>();
+        this.maxAge = 0;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the metadata of the given resource, either from the cache or by
+     * retrieving and parsing it.
+     * 
+     * @param resource
+     *            The metadata resource.
+     * @return The parsed metadata.
+     * @throws Exception
+     */
+    public Metadata get(ClientResource resource) throws Exception {
+        String key = resource.getReference().getTargetRef().toString();
+        CachedMetadata cached = this.entries.get(key);
+
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expirationTime) {
+                return cached.metadata;
+            }
+
+            if (cached.tag != null) {
+                resource.getConditions().getNoneMatch().add(cached.tag);
+            } else {
+                resource.getConditions().setModifiedSince(
+                        cached.modificationDate);
+            }
+        }
+
+        Representation rep = resource.get(MediaType.APPLICATION_XML);
+        long expirationTime = System.currentTimeMillis() + getMaxAge();
+        Metadata result = null;
+
+        if ((cached != null)
+                && Status.REDIRECTION_NOT_MODIFIED.equals(resource.getStatus())) {
+            if (rep != null) {
+                rep.release();
+            }
+
+            result = cached.metadata;
+            this.entries.put(key, new CachedMetadata(result, cached.tag,
+                    cached.modificationDate, expirationTime));
+        } else {
+            Tag tag = rep.getTag();
+            Date modificationDate = rep.getModificationDate();
+            result = new Metadata(rep, resource.getReference());
+
+            if ((tag != null) || (modificationDate != null)
+                    || (getMaxAge() > 0)) {
+                this.entries.put(key, new CachedMetadata(result, tag,
+                        modificationDate, expirationTime));
+            } else {
+                // Can't be revalidated
+                this.entries.remove(key);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the delay in milliseconds during which the entries are used
+     * without being revalidated.
+     * 
+     * @return The delay in milliseconds during which the entries are not
+     *         revalidated.
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Removes the entry of the given metadata resource.
+     * 
+     * @param metadataRef
+     *            The URI of the metadata resource.
+     */
+    public void remove(Reference metadataRef) {
+        this.entries.remove(metadataRef.getTargetRef().toString());
+    }
+
+    /**
+     * Sets the delay in milliseconds during which the entries are used without
+     * being revalidated.
+     * 
+     * @param maxAge
+     *            The delay in milliseconds during which the entries are not
+     *            revalidated.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+}
@@ -27,8 +27,10 @@ package org.restlet.ext.odata.internal.edm;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.restlet.data.Reference;
 import org.restlet.ext.xml.SaxRepresentation;
@@ -41,9 +43,107 @@ import org.restlet.representation.Representation;
  */
 public class Metadata extends SaxRepresentation {
 
+    /**
+     * Lookup maps computed once from the containers and schemas, in order to
+     * avoid scanning them for each call.
+     */
+    private static final class Index {
+
+        /** The complex types by simple class name. */
+        private final Map<String, ComplexType> complexTypes;
+
+        /** The entity sets by name. */
+        private final Map<String, EntitySet> entitySets;
+
+        /** The entity sets by simple class name of their entity type. */
+        private final Map<String, EntitySet> entitySetsByClassName;
+
+        /** The entity sets by entity type. */
+        private final Map<EntityType, EntitySet> entitySetsByType;
+
+        /** The entity types by simple class name. */
+        private final Map<String, EntityType> entityTypes;
+
+        /** The function imports by name. */
+        private final Map<String, FunctionImport> functionImports;
+
+        /**
+         * Constructor.
+         * 
+         * @param metadata
+         *            The metadata to index.
+         */
+        private Index(Metadata metadata) {
+            this.complexTypes = new HashMap<String, ComplexType>();
+            this.entitySets = new HashMap<String, EntitySet>();
+            this.entitySetsByClassName = new HashMap<String, EntitySet>();
+            this.entitySetsByType = new HashMap<EntityType, EntitySet>();
+            this.entityTypes = new HashMap<String, EntityType>();
+            this.functionImports = new HashMap<String, FunctionImport>();
+
+            // The first declared types and function imports prevail, whereas
+            // the last declared entity sets prevail, as with the former scans.
+            for (Schema schema : metadata.getSchemas()) {
+                for (ComplexType type : schema.getComplexTypes()) {
+                    if (!this.complexTypes.containsKey(type.getClassName())) {
+                        this.complexTypes.put(type.getClassName(), type);
+                    }
+                }
+            }
+
+            for (EntityContainer entityContainer : metadata.getContainers()) {
+                for (EntitySet entitySet : entityContainer.getEntities()) {
+                    EntityType type = entitySet.getType();
+
+                    if (!this.entitySets.containsKey(entitySet.getName())) {
+                        this.entitySets.put(entitySet.getName(), entitySet);
+                    }
+
+                    if (type != null) {
+                        if (!this.entityTypes.containsKey(type.getClassName())) {
+                            this.entityTypes.put(type.getClassName(), type);
+                        }
+
+                        this.entitySetsByClassName.put(type.getClassName(),
+                                entitySet);
+                        this.entitySetsByType.put(type, entitySet);
+                    }
+                }
+
+                for (FunctionImport function : entityContainer
+                        .getFunctionImports()) {
+                    if (!this.functionImports.containsKey(function.getName())) {
+                        this.functionImports.put(function.getName(), function);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the given class without its package.
+     * 
+     * @param entityClass
+     *            The class.
+     * @return The name of the given class without its package.
+     */
+    private static String getClassName(Class<?> entityClass) {
+        String result = entityClass.getName();
+        int index = result.lastIndexOf(".");
+
+        if (index != -1) {
+            result = result.substring(index + 1);
+        }
+
+        return result;
+    }
+
     /** The list of entity containers. */
     private List<EntityContainer> containers;
 
+    /** The lookup maps, lazily computed. */
+    private volatile Index index;
+
     /** The list of declared property mappings. */
     private List<Mapping> mappings;
 
@@ -68,6 +168,9 @@ public class Metadata extends SaxRepresentation {
         setNamespaceAware(true);
         this.metadataRef = metadataRef;
         parse(new MetadataReader(this));
+
+        // Lookups made while parsing may have indexed partial lists
+        this.index = null;
     }
 
     /**
@@ -102,28 +205,8 @@ public class Metadata extends SaxRepresentation {
      * @return The ComplexType that corresponds to a given entity class.
      */
     public ComplexType getComplexType(Class<?> entityClass) {
-        ComplexType result = null;
-
         // Try to match the entity class names (without package);
-        String className = entityClass.getName();
-        int index = className.lastIndexOf(".");
-        if (index != -1) {
-            className = className.substring(index + 1);
-        }
-
-        for (Iterator<Schema> iec = getSchemas().iterator(); result == null
-                && iec.hasNext();) {
-            Schema schema = iec.next();
-            for (Iterator<ComplexType> ies = schema.getComplexTypes()
-                    .iterator(); result == null && ies.hasNext();) {
-                ComplexType type = ies.next();
-                if (type.getClassName().equals(className)) {
-                    result = type;
-                }
-            }
-        }
-
-        return result;
+        return getIndex().complexTypes.get(getClassName(entityClass));
     }
 
     /**
@@ -152,19 +235,25 @@ public class Metadata extends SaxRepresentation {
             return result;
         }
 
-        // Try to match the entity class names (without package);
-        for (EntityContainer entityContainer : getContainers()) {
-            for (EntitySet entitySet : entityContainer.getEntities()) {
-                EntityType type = entitySet.getType();
-                if (type.equals(entityType)) {
-                    result = "/" + entitySet.getName();
-                }
-            }
+        EntitySet entitySet = getIndex().entitySetsByType.get(entityType);
+        if (entitySet != null) {
+            result = "/" + entitySet.getName();
         }
 
         return result;
     }
 
+    /**
+     * Returns the entity set with the given name.
+     * 
+     * @param name
+     *            The name of the entity set.
+     * @return The entity set with the given name or null.
+     */
+    public EntitySet getEntitySet(String name) {
+        return getIndex().entitySets.get(name);
+    }
+
     /**
      * Returns the entityType that corresponds to a given entity class.
      * 
@@ -173,26 +262,32 @@ public class Metadata extends SaxRepresentation {
      * @return The entityType that corresponds to a given entity class.
      */
     public EntityType getEntityType(Class<?> entityClass) {
-        EntityType result = null;
-
         // Try to match the entity class names (without package);
-        String className = entityClass.getName();
-        int index = className.lastIndexOf(".");
-        if (index != -1) {
-            className = className.substring(index + 1);
-        }
+        return getIndex().entityTypes.get(getClassName(entityClass));
+    }
 
-        for (Iterator<EntityContainer> iec = getContainers().iterator(); result == null
-                && iec.hasNext();) {
-            EntityContainer entityContainer = iec.next();
-            for (Iterator<EntitySet> ies = entityContainer.getEntities()
-                    .iterator(); result == null && ies.hasNext();) {
-                EntitySet entitySet = ies.next();
-                EntityType type = entitySet.getType();
-                if (type.getClassName().equals(className)) {
-                    result = type;
-                }
-            }
+    /**
+     * Returns the function import with the given name.
+     * 
+     * @param name
+     *            The name of the function import.
+     * @return The function import with the given name or null.
+     */
+    public FunctionImport getFunctionImport(String name) {
+        return getIndex().functionImports.get(name);
+    }
+
+    /**
+     * Returns the lookup maps, computing them if needed.
+     * 
+     * @return The lookup maps.
+     */
+    private Index getIndex() {
+        Index result = this.index;
+
+        if (result == null) {
+            result = new Index(this);
+            this.index = result;
         }
 
         return result;
@@ -374,22 +469,13 @@ public class Metadata extends SaxRepresentation {
         }
 
         // Try to match the entity class names (without package);
-        String entityClass = entity.getClass().getName();
-        int index = entityClass.lastIndexOf(".");
-        if (index != -1) {
-            entityClass = entityClass.substring(index + 1);
-        }
-
-        for (EntityContainer entityContainer : getContainers()) {
-            for (EntitySet entitySet : entityContainer.getEntities()) {
-                EntityType type = entitySet.getType();
+        EntitySet entitySet = getIndex().entitySetsByClassName
+                .get(getClassName(entity.getClass()));
 
-                if (type.getClassName().equals(entityClass)) {
-                    String value = getKeyValue(type, entity);
-                    if (value != null) {
-                        result = "/" + entitySet.getName() + "(" + value + ")";
-                    }
-                }
+        if (entitySet != null) {
+            String value = getKeyValue(entitySet.getType(), entity);
+            if (value != null) {
+                result = "/" + entitySet.getName() + "(" + value + ")";
             }
         }
 
@@ -437,6 +523,7 @@ public class Metadata extends SaxRepresentation {
      */
     public void setContainers(List<EntityContainer> containers) {
         this.containers = containers;
+        this.index = null;
     }
 
     /**
@@ -447,6 +534,7 @@ public class Metadata extends SaxRepresentation {
      */
     public void setSchemas(List<Schema> schemas) {
         this.schemas = schemas;
+        this.index = null;
     }
 
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.rdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.data.Reference;
+
+/**
+ * Graph handler that receives the detected links by batches rather than one
+ * by one, reducing the cost of processing large graphs. The last batch is
+ * received when the end of the graph is reached, so {@link #endGraph()} or
+ * {@link #flush()} must be called once the last link is detected. Links with
+ * a missing source, type or target are ignored.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class BatchGraphHandler extends GraphHandler {
+
+    /** The default maximum number of links in a batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /** The links waiting to be handled. */
+    private final List<Link> batch;
+
+    /** The maximum number of links in a batch. */
+    private final int batchSize;
+
+    /**
+     * Default constructor.
+     */
+    public BatchGraphHandler() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param batchSize
+     *            The maximum number of links in a batch.
+     */
+    public BatchGraphHandler(int batchSize) {
+        super();
+        this.batch = new ArrayList<Link>(batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds a link to the current batch, handling the batch once it is full.
+     * 
+     * @param link
+     *            The link to add.
+     */
+    private void add(Link link) {
+        this.batch.add(link);
+
+        if (this.batch.size() >= this.batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void endGraph() throws IOException {
+        flush();
+    }
+
+    /**
+     * Handles the current batch of links, if any.
+     */
+    public void flush() {
+        if (!this.batch.isEmpty()) {
+            link(this.batch);
+            this.batch.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of links in a batch.
+     * 
+     * @return The maximum number of links in a batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void link(Graph source, Reference typeRef, Literal target) {
+        if (source != null && typeRef != null && target != null) {
+            add(new Link(source, typeRef, target));
+        }
+    }
+
+    @Override
+    public void link(Graph source, Reference typeRef, Reference target) {
+        if (source != null && typeRef != null && target != null) {
+            add(new Link(source, typeRef, target));
+        }
+    }
+
+    /**
+     * Callback method used when a batch of links is detected. The list is
+     * cleared and reused after the call, so its content must be copied if it
+     * needs to be kept.
+     * 
+     * @param links
+     *            The batch of links.
+     */
+    public abstract void link(List<Link> links);
+
+    @Override
+    public void link(Reference source, Reference typeRef, Literal target) {
+        if (source != null && typeRef != null && target != null) {
+            add(new Link(source, typeRef, target));
+        }
+    }
+
+    @Override
+    public void link(Reference source, Reference typeRef, Reference target) {
+        if (source != null && typeRef != null && target != null) {
+            add(new Link(source, typeRef, target));
+        }
+    }
+
+}
@@ -24,7 +24,19 @@
 
 package org.restlet.ext.rdf;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
@@ -32,18 +44,202 @@ import org.restlet.representation.Representation;
 
 /**
  * Graph composed of links. This also called a set of RDF statements or a RDF
- * model.
+ * model.<br>
+ * <br>
+ * The links are indexed by source, type and target so that adding a link and
+ * looking up the links matching a pattern don't require to scan the whole
+ * graph. Equal references and literals are shared by the links of a graph,
+ * the ones of an added link being replaced if needed. As a consequence, links
+ * must not be modified while they belong to a graph. Iterations are done on a
+ * snapshot of the graph and are not affected by concurrent modifications.
  * 
  * @author Jerome Louvel
+ * @see #getLinks(Object, Reference, Object)
  */
-public class Graph extends CopyOnWriteArraySet<Link> {
+public class Graph extends AbstractSet<Link> implements Serializable {
+
+    /**
+     * Wraps a graph or a link so that it is indexed by identity.
+     */
+    private static final class Identity {
+
+        /** The wrapped graph or link. */
+        private final Object target;
+
+        /**
+         * Constructor.
+         * 
+         * @param target
+         *            The wrapped graph or link.
+         */
+        private Identity(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Identity)
+                    && (((Identity) other).target == this.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.target);
+        }
+    }
+
+    /**
+     * Index of links by two successive terms.
+     */
+    private static final class Index {
+
+        /** The links by first then second term. */
+        private final Map<Object, Map<Object, List<Link>>> links;
+
+        /**
+         * Constructor.
+         */
+        private Index() {
+            this.links = new HashMap<Object, Map<Object, List<Link>>>();
+        }
+
+        /**
+         * Indexes a link.
+         * 
+         * @param first
+         *            The key of the first term.
+         * @param second
+         *            The key of the second term.
+         * @param link
+         *            The link to index.
+         */
+        private void add(Object first, Object second, Link link) {
+            Map<Object, List<Link>> seconds = this.links.get(first);
+
+            if (seconds == null) {
+                seconds = new HashMap<Object, List<Link>>();
+                this.links.put(first, seconds);
+            }
+
+            List<Link> list = seconds.get(second);
+
+            if (list == null) {
+                list = new ArrayList<Link>(2);
+                seconds.put(second, list);
+            }
+
+            list.add(link);
+        }
+
+        /**
+         * Collects the links matching the given terms.
+         * 
+         * @param first
+         *            The key of the first term.
+         * @param second
+         *            The key of the second term or null to match any term.
+         * @param result
+         *            The list to update.
+         */
+        private void collect(Object first, Object second, List<Link> result) {
+            Map<Object, List<Link>> seconds = this.links.get(first);
+
+            if (seconds != null) {
+                if (second == null) {
+                    for (List<Link> list : seconds.values()) {
+                        result.addAll(list);
+                    }
+                } else {
+                    List<Link> list = seconds.get(second);
+
+                    if (list != null) {
+                        result.addAll(list);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes a link from the index.
+         * 
+         * @param first
+         *            The key of the first term.
+         * @param second
+         *            The key of the second term.
+         * @param link
+         *            The link to remove.
+         */
+        private void remove(Object first, Object second, Link link) {
+            Map<Object, List<Link>> seconds = this.links.get(first);
+
+            if (seconds != null) {
+                List<Link> list = seconds.get(second);
+
+                if (list != null) {
+                    for (int i = 0; i < list.size(); i++) {
+                        if (list.get(i) == link) {
+                            list.remove(i);
+                            break;
+                        }
+                    }
+
+                    if (list.isEmpty()) {
+                        seconds.remove(second);
+
+                        if (seconds.isEmpty()) {
+                            this.links.remove(first);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** The key of missing terms. */
+    private static final Object NULL_KEY = new Object();
 
     /** The serialization unique identifier. */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Returns the key used to index a term. References and literals are
+     * compared by value, graphs and links by identity.
+     * 
+     * @param term
+     *            The term.
+     * @return The key used to index a term.
+     */
+    private static Object getKey(Object term) {
+        if (term == null) {
+            return NULL_KEY;
+        } else if ((term instanceof Reference) || (term instanceof Literal)) {
+            return term;
+        }
+
+        return new Identity(term);
+    }
+
     /** The default link that is used to complete new links. */
     private Link defaultLink;
 
+    /** The links in the order of their addition. */
+    private transient LinkedHashSet<Link> links;
+
+    /** The cached array of links used by iterators. */
+    private transient Link[] snapshot;
+
+    /** The index of links by source, type then target. */
+    private transient Index sourceIndex;
+
+    /** The index of links by target, source then type. */
+    private transient Index targetIndex;
+
+    /** The shared references and literals. */
+    private transient Map<Object, Object> terms;
+
+    /** The index of links by type, target then source. */
+    private transient Index typeIndex;
+
     /**
      * Default constructor.
      */
@@ -59,6 +255,30 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      */
     public Graph(Link defaultLink) {
         this.defaultLink = defaultLink;
+        initialize();
+    }
+
+    /**
+     * Adds a link if it is not already in the graph.
+     * 
+     * @param link
+     *            The link to add.
+     * @return True if the link was added.
+     */
+    @Override
+    public synchronized boolean add(Link link) {
+        if (link == null) {
+            throw new IllegalArgumentException("Can't add a null link");
+        }
+
+        boolean result = this.links.add(link);
+
+        if (result) {
+            index(link);
+            this.snapshot = null;
+        }
+
+        return result;
     }
 
     /**
@@ -233,6 +453,36 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return add(new Reference(sourceRef), new Reference(typeRef), targetRef);
     }
 
+    /**
+     * Adds a set of links in a single step, which is more efficient than
+     * adding them one by one.
+     * 
+     * @param links
+     *            The links to add.
+     * @return True if at least one link was added.
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends Link> links) {
+        boolean result = false;
+
+        for (Link link : links) {
+            if (link == null) {
+                throw new IllegalArgumentException("Can't add a null link");
+            }
+
+            if (this.links.add(link)) {
+                index(link);
+                result = true;
+            }
+        }
+
+        if (result) {
+            this.snapshot = null;
+        }
+
+        return result;
+    }
+
     /**
      * Creates then adds a link. If one of the parameter is null, the value from
      * {@link #getDefaultLink()} is used instead if possible.
@@ -300,6 +550,16 @@ public class Graph extends CopyOnWriteArraySet<Link> {
                 new Reference(targetRef));
     }
 
+    @Override
+    public synchronized void clear() {
+        initialize();
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return this.links.contains(o);
+    }
+
     /**
      * Returns the default link that is used to complete new links.
      * 
@@ -309,6 +569,55 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return defaultLink;
     }
 
+    /**
+     * Returns the links matching the given pattern. Each null parameter
+     * matches any value. Equal references and literals match, whereas graphs
+     * and links only match themselves.
+     * 
+     * @param source
+     *            The source reference, graph or link.
+     * @param typeRef
+     *            The type reference.
+     * @param target
+     *            The target reference, literal, graph or link.
+     * @return The list of matching links.
+     */
+    public synchronized List<Link> getLinks(Object source, Reference typeRef,
+            Object target) {
+        List<Link> result = new ArrayList<Link>();
+
+        if (source != null) {
+            Object sourceKey = getKey(source);
+
+            if ((typeRef != null) && (target != null)) {
+                List<Link> candidates = new ArrayList<Link>();
+                this.sourceIndex.collect(sourceKey, typeRef, candidates);
+                Object targetKey = getKey(target);
+
+                for (Link link : candidates) {
+                    if (targetKey.equals(getKey(link.getTarget()))) {
+                        result.add(link);
+                    }
+                }
+            } else if (typeRef != null) {
+                this.sourceIndex.collect(sourceKey, typeRef, result);
+            } else if (target != null) {
+                this.targetIndex.collect(getKey(target), sourceKey, result);
+            } else {
+                this.sourceIndex.collect(sourceKey, null, result);
+            }
+        } else if (typeRef != null) {
+            this.typeIndex.collect(typeRef,
+                    (target == null) ? null : getKey(target), result);
+        } else if (target != null) {
+            this.targetIndex.collect(getKey(target), null, result);
+        } else {
+            result.addAll(this.links);
+        }
+
+        return result;
+    }
+
     /**
      * Returns a representation in the RDF/n3 format.
      * 
@@ -345,6 +654,23 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return new RdfRepresentation(this, MediaType.TEXT_XML);
     }
 
+    /**
+     * Returns the cached array of links used by iterators, creating it if
+     * needed.
+     * 
+     * @return The cached array of links.
+     */
+    private synchronized Link[] getSnapshot() {
+        Link[] result = this.snapshot;
+
+        if (result == null) {
+            result = this.links.toArray(new Link[this.links.size()]);
+            this.snapshot = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the source reference, either the one given in the sourceRef
      * parameter or if it is null, the source reference of the default link.
@@ -435,6 +761,155 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return result;
     }
 
+    /**
+     * Shares the equal references and literals of the given link then indexes
+     * it.
+     * 
+     * @param link
+     *            The link to index.
+     */
+    private void index(Link link) {
+        Object source = intern(link.getSource());
+        if (source != link.getSource()) {
+            link.setSource((Reference) source);
+        }
+
+        Reference typeRef = (Reference) intern(link.getTypeRef());
+        if (typeRef != link.getTypeRef()) {
+            link.setTypeRef(typeRef);
+        }
+
+        Object target = intern(link.getTarget());
+        if (target != link.getTarget()) {
+            if (target instanceof Literal) {
+                link.setTarget((Literal) target);
+            } else {
+                link.setTarget((Reference) target);
+            }
+        }
+
+        Object sourceKey = getKey(source);
+        Object typeKey = getKey(typeRef);
+        Object targetKey = getKey(target);
+        this.sourceIndex.add(sourceKey, typeKey, link);
+        this.typeIndex.add(typeKey, targetKey, link);
+        this.targetIndex.add(targetKey, sourceKey, link);
+    }
+
+    /**
+     * Resets the links and indexes.
+     */
+    private void initialize() {
+        this.links = new LinkedHashSet<Link>();
+        this.snapshot = null;
+        this.sourceIndex = new Index();
+        this.targetIndex = new Index();
+        this.terms = new HashMap<Object, Object>();
+        this.typeIndex = new Index();
+    }
+
+    /**
+     * Returns the shared term equal to the given one.
+     * 
+     * @param term
+     *            The term.
+     * @return The shared term, or the given one if it is not a reference or a
+     *         literal.
+     */
+    private Object intern(Object term) {
+        Object result = term;
+
+        if ((term instanceof Reference) || (term instanceof Literal)) {
+            Object known = this.terms.get(term);
+
+            if (known == null) {
+                this.terms.put(term, term);
+            } else {
+                result = known;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the links. Its remove() method
+     * removes the current link from the graph.
+     * 
+     * @return An iterator over a snapshot of the links.
+     */
+    @Override
+    public Iterator<Link> iterator() {
+        final Link[] links = getSnapshot();
+
+        return new Iterator<Link>() {
+            /** The last returned link. */
+            private Link current;
+
+            /** The index of the next link. */
+            private int index;
+
+            public boolean hasNext() {
+                return this.index < links.length;
+            }
+
+            public Link next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                this.current = links[this.index++];
+                return this.current;
+            }
+
+            public void remove() {
+                if (this.current == null) {
+                    throw new IllegalStateException();
+                }
+
+                Graph.this.remove(this.current);
+                this.current = null;
+            }
+        };
+    }
+
+    /**
+     * Reads the links after the default fields.
+     * 
+     * @param in
+     *            The input stream.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        initialize();
+        int size = in.readInt();
+
+        for (int i = 0; i < size; i++) {
+            add((Link) in.readObject());
+        }
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        boolean result = this.links.remove(o);
+
+        if (result) {
+            Link link = (Link) o;
+            Object sourceKey = getKey(link.getSource());
+            Object typeKey = getKey(link.getTypeRef());
+            Object targetKey = getKey(link.getTarget());
+            this.sourceIndex.remove(sourceKey, typeKey, link);
+            this.typeIndex.remove(typeKey, targetKey, link);
+            this.targetIndex.remove(targetKey, sourceKey, link);
+            this.snapshot = null;
+        }
+
+        return result;
+    }
+
     /**
      * Sets the default link that is used to complete new links.
      * 
@@ -445,4 +920,26 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         this.defaultLink = defaultLink;
     }
 
+    @Override
+    public synchronized int size() {
+        return this.links.size();
+    }
+
+    /**
+     * Writes the links after the default fields.
+     * 
+     * @param out
+     *            The output stream.
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Link[] links = getSnapshot();
+        out.defaultWriteObject();
+        out.writeInt(links.length);
+
+        for (Link link : links) {
+            out.writeObject(link);
+        }
+    }
+
 }
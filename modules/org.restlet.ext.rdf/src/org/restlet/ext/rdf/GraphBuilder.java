@@ -21,16 +21,22 @@
  * 
  * Restlet is a registered trademark of Restlet S.A.S.
  */
-
 package org.restlet.ext.rdf;
 
-import org.restlet.data.Reference;
+import java.util.List;
 
 /**
  * Graph handler used when parsing an RDF representation. It completes the inner
- * set of links with all detected ones.
+ * set of links with all detected ones, by batches.<br>
+ * <br>
+ * Note that the links are only added to the graph when a batch is full, or
+ * when {@link #flush()} or {@link #endGraph()} is called. This is done by
+ * {@link RdfRepresentation#parse(GraphHandler)}, but code invoking the
+ * handler directly must call {@link #endGraph()} or {@link #flush()} once the
+ * last link is detected, otherwise up to {@link #getBatchSize()} - 1 links
+ * are missing from the graph.
  */
-public class GraphBuilder extends GraphHandler {
+public class GraphBuilder extends BatchGraphHandler {
 
     /** The inner graph of links. */
     private Graph linkSet;
@@ -46,31 +52,8 @@ public class GraphBuilder extends GraphHandler {
     }
 
     @Override
-    public void link(Graph source, Reference typeRef, Literal target) {
-        if (source != null && typeRef != null && target != null) {
-            this.linkSet.add(source, typeRef, target);
-        }
-    }
-
-    @Override
-    public void link(Graph source, Reference typeRef, Reference target) {
-        if (source != null && typeRef != null && target != null) {
-            this.linkSet.add(source, typeRef, target);
-        }
-    }
-
-    @Override
-    public void link(Reference source, Reference typeRef, Literal target) {
-        if (source != null && typeRef != null && target != null) {
-            this.linkSet.add(source, typeRef, target);
-        }
-    }
-
-    @Override
-    public void link(Reference source, Reference typeRef, Reference target) {
-        if (source != null && typeRef != null && target != null) {
-            this.linkSet.add(source, typeRef, target);
-        }
+    public void link(List<Link> links) {
+        this.linkSet.addAll(links);
     }
 
 }
@@ -26,6 +26,7 @@ package org.restlet.ext.rdf;
 
 import org.restlet.data.Language;
 import org.restlet.data.Reference;
+import org.restlet.engine.util.SystemUtils;
 
 /**
  * Literal as defined by RDF. Composed of the literal value, optional datatype
@@ -84,6 +85,21 @@ public class Literal {
         this.language = language;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        boolean result = (this == other);
+
+        if (!result && (other instanceof Literal)) {
+            Literal literal = (Literal) other;
+            result = SystemUtils.equals(getValue(), literal.getValue())
+                    && SystemUtils.equals(getDatatypeRef(),
+                            literal.getDatatypeRef())
+                    && SystemUtils.equals(getLanguage(), literal.getLanguage());
+        }
+
+        return result;
+    }
+
     /**
      * Returns the optional datatype reference.
      * 
@@ -111,6 +127,12 @@ public class Literal {
         return value;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return SystemUtils.hashCode(getValue(), getDatatypeRef(), getLanguage());
+    }
+
     /**
      * Indicates if the literal is plain. Plain literals have a value and an
      * optional language tag.
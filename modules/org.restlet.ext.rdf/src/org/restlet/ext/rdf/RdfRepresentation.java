@@ -26,6 +26,7 @@ package org.restlet.ext.rdf;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Iterator;
 import java.util.logging.Level;
 
 import org.restlet.Context;
@@ -46,7 +47,8 @@ import org.restlet.representation.WriterRepresentation;
  * Generic RDF representation. Provides support for the Resource Description
  * Framework (RDF) Semantic Web standard. It supports major RDF serialization
  * formats (n3, Turtle, N-Triples and RDF/XML) and is able to both serialize and
- * deserialize a {@link Graph}.
+ * deserialize a {@link Graph}. Links can also be written on the fly from any
+ * source, without building a graph first.
  * 
  * @author Jerome Louvel
  */
@@ -55,6 +57,9 @@ public class RdfRepresentation extends WriterRepresentation {
     /** The inner graph of links. */
     private Graph graph;
 
+    /** The links to write when no graph is set. */
+    private Iterable<Link> links;
+
     /** The inner RDF representation. */
     private Representation rdfRepresentation;
 
@@ -78,6 +83,21 @@ public class RdfRepresentation extends WriterRepresentation {
         this.graph = linkSet;
     }
 
+    /**
+     * Constructor that writes the given links on the fly, in the order of the
+     * iteration. As opposed to graphs, no preliminary iteration is done in
+     * order to discover the namespaces.
+     * 
+     * @param links
+     *            The links to write.
+     * @param mediaType
+     *            The representation's mediaType.
+     */
+    public RdfRepresentation(Iterable<Link> links, MediaType mediaType) {
+        super(mediaType);
+        this.links = links;
+    }
+
     /**
      * Constructor with argument.
      * 
@@ -217,7 +237,9 @@ public class RdfRepresentation extends WriterRepresentation {
 
     /**
      * Parses the inner RDF representation. The given graph handler is invoked
-     * each time a link is detected.
+     * each time a link is detected, between the calls to its
+     * {@link GraphHandler#startGraph()} and {@link GraphHandler#endGraph()}
+     * methods.
      * 
      * @param graphHandler
      *            The graph handler.
@@ -225,6 +247,8 @@ public class RdfRepresentation extends WriterRepresentation {
      */
     public void parse(GraphHandler graphHandler) throws IOException {
         if (rdfRepresentation != null) {
+            graphHandler.startGraph();
+
             if (MediaType.TEXT_RDF_N3.equals(rdfRepresentation.getMediaType())) {
                 new RdfN3Reader(rdfRepresentation, graphHandler).parse();
             } else if (MediaType.TEXT_XML.equals(rdfRepresentation
@@ -248,6 +272,8 @@ public class RdfRepresentation extends WriterRepresentation {
                 new RdfN3Reader(rdfRepresentation, graphHandler).parse();
             }
             // Parsing for other media types goes here.
+
+            graphHandler.endGraph();
         }
     }
 
@@ -262,58 +288,20 @@ public class RdfRepresentation extends WriterRepresentation {
     }
 
     /**
-     * Writes the
+     * Writes the inner graph, or the links given to the constructor, with the
+     * given graph handler.
      * 
      * @param graphHandler
+     *            The graph handler.
      * @throws IOException
      */
     public void write(GraphHandler graphHandler) throws IOException {
         try {
             if (graph != null) {
                 discoverNamespaces(graph, graphHandler);
-                graphHandler.startGraph();
-
-                for (Link link : graph) {
-                    if (link.hasReferenceSource()) {
-                        if (link.hasReferenceTarget()) {
-                            graphHandler.link(link.getSourceAsReference(),
-                                    link.getTypeRef(),
-                                    link.getTargetAsReference());
-                        } else if (link.hasLiteralTarget()) {
-                            graphHandler.link(link.getSourceAsReference(),
-                                    link.getTypeRef(),
-                                    link.getTargetAsLiteral());
-                        } else if (link.hasLinkTarget()) {
-                            Context.getCurrentLogger()
-                                    .warning(
-                                            "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
-                        } else {
-                            Context.getCurrentLogger()
-                                    .warning(
-                                            "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
-                        }
-                    } else if (link.hasGraphSource()) {
-                        if (link.hasReferenceTarget()) {
-                            graphHandler.link(link.getSourceAsGraph(),
-                                    link.getTypeRef(),
-                                    link.getTargetAsReference());
-                        } else if (link.hasLiteralTarget()) {
-                            graphHandler.link(link.getSourceAsGraph(),
-                                    link.getTypeRef(),
-                                    link.getTargetAsLiteral());
-                        } else if (link.hasLinkTarget()) {
-                            Context.getCurrentLogger()
-                                    .warning(
-                                            "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
-                        } else {
-                            Context.getCurrentLogger()
-                                    .warning(
-                                            "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
-                        }
-                    }
-                }
-
-                graphHandler.endGraph();
+                write(graph.iterator(), graphHandler);
+            } else if (links != null) {
+                write(links.iterator(), graphHandler);
             }
         } catch (Exception e) {
             Context.getCurrentLogger()
@@ -323,6 +311,52 @@ public class RdfRepresentation extends WriterRepresentation {
         }
     }
 
+    /**
+     * Writes the given links.
+     * 
+     * @param links
+     *            The links to write.
+     * @param graphHandler
+     *            The graph handler.
+     * @throws IOException
+     */
+    private void write(Iterator<Link> links, GraphHandler graphHandler)
+            throws IOException {
+        graphHandler.startGraph();
+
+        while (links.hasNext()) {
+            Link link = links.next();
+
+            if (link.hasReferenceSource()) {
+                if (link.hasReferenceTarget()) {
+                    graphHandler.link(link.getSourceAsReference(),
+                            link.getTypeRef(), link.getTargetAsReference());
+                } else if (link.hasLiteralTarget()) {
+                    graphHandler.link(link.getSourceAsReference(),
+                            link.getTypeRef(), link.getTargetAsLiteral());
+                } else {
+                    Context.getCurrentLogger()
+                            .warning(
+                                    "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
+                }
+            } else if (link.hasGraphSource()) {
+                if (link.hasReferenceTarget()) {
+                    graphHandler.link(link.getSourceAsGraph(),
+                            link.getTypeRef(), link.getTargetAsReference());
+                } else if (link.hasLiteralTarget()) {
+                    graphHandler.link(link.getSourceAsGraph(),
+                            link.getTypeRef(), link.getTargetAsLiteral());
+                } else {
+                    Context.getCurrentLogger()
+                            .warning(
+                                    "Cannot write the representation of a statement due to the fact that the object is neither a Reference nor a literal.");
+                }
+            }
+        }
+
+        graphHandler.endGraph();
+    }
+
     @Override
     public void write(Writer writer) throws IOException {
         write(createWriter(getMediaType(), writer));
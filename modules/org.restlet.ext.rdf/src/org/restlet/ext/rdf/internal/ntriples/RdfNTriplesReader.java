@@ -24,13 +24,14 @@
 
 package org.restlet.ext.rdf.internal.ntriples;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.restlet.data.Language;
 import org.restlet.data.Reference;
-import org.restlet.engine.io.IoUtils;
 import org.restlet.ext.rdf.GraphHandler;
 import org.restlet.ext.rdf.Link;
 import org.restlet.ext.rdf.Literal;
@@ -38,24 +39,33 @@ import org.restlet.ext.rdf.internal.RdfReader;
 import org.restlet.representation.Representation;
 
 /**
- * Handler of RDF content according to the N-Triples notation.
+ * Handler of RDF content according to the N-Triples notation. The content is
+ * read by blocks into a character array that is compacted and refilled as the
+ * parsing goes, only keeping the current token and the last characters
+ * needed to step back.
  * 
  * @author Thierry Boileau
  */
 public class RdfNTriplesReader extends RdfReader {
 
-    /** Internal buffered reader. */
-    private BufferedReader br;
+    /** Initial size of the reading buffer. */
+    private static final int BUFFER_SIZE = 8192;
 
-    /** The reading buffer. */
-    private final char[] buffer;
+    /** Number of characters kept before the current one to step back. */
+    private static final int STEP_BACK_SIZE = 8;
 
-    /** Size of the reading buffer. */
-    private final int BUFFER_SIZE = 4096;
+    /** The reading buffer. */
+    private char[] buffer;
 
     /** End of reading buffer marker. */
     public final int EOF = 0;
 
+    /** The number of characters available in the reading buffer. */
+    private int limit;
+
+    /** The character reader. */
+    private final Reader reader;
+
     /**
      * Index that discovers the end of the current token and the beginning of
      * the futur one.
@@ -78,15 +88,11 @@ public class RdfNTriplesReader extends RdfReader {
             GraphHandler graphHandler) throws IOException {
         super(rdfRepresentation, graphHandler);
 
-        // Initialize the buffer in two parts
-        this.buffer = new char[(BUFFER_SIZE + 1) * 2];
-        // Mark the upper index of each part.
-        this.buffer[BUFFER_SIZE] = this.buffer[2 * BUFFER_SIZE + 1] = EOF;
-        this.scoutIndex = 2 * BUFFER_SIZE;
+        this.buffer = new char[BUFFER_SIZE];
+        this.limit = 0;
+        this.scoutIndex = -1;
         this.startTokenIndex = 0;
-
-        this.br = new BufferedReader(getRdfRepresentation().getReader(),
-                IoUtils.BUFFER_SIZE);
+        this.reader = getRdfRepresentation().getReader();
     }
 
     /**
@@ -128,13 +134,47 @@ public class RdfNTriplesReader extends RdfReader {
         startTokenIndex = scoutIndex;
     }
 
+    /**
+     * Reads the next block of characters into the buffer, after having
+     * discarded the characters that are no longer needed.
+     * 
+     * @return False if the end of the content is reached.
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        // Keep the current token and a few characters to step back
+        int keep = Math.max(0,
+                Math.min(startTokenIndex, scoutIndex - STEP_BACK_SIZE));
+
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            limit -= keep;
+            scoutIndex -= keep;
+            startTokenIndex -= keep;
+        }
+
+        if (limit == buffer.length) {
+            // The current token is larger than the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int len = this.reader.read(buffer, limit, buffer.length - limit);
+
+        if (len > 0) {
+            limit += len;
+        }
+
+        return len > 0;
+    }
+
     /**
      * Returns the current parsed character.
      * 
      * @return The current parsed character.
      */
     protected char getChar() {
-        return buffer[scoutIndex];
+        return ((scoutIndex >= 0) && (scoutIndex < limit)) ? buffer[scoutIndex]
+                : (char) EOF;
     }
 
     /**
@@ -143,43 +183,11 @@ public class RdfNTriplesReader extends RdfReader {
      * @return The current token.
      */
     protected String getCurrentToken() {
-        StringBuilder builder = new StringBuilder();
-        if (startTokenIndex <= scoutIndex) {
-            if (scoutIndex <= BUFFER_SIZE) {
-                for (int i = startTokenIndex; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            } else {
-                for (int i = startTokenIndex; i < BUFFER_SIZE; i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = BUFFER_SIZE + 1; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            }
-        } else {
-            if (startTokenIndex <= BUFFER_SIZE) {
-                for (int i = startTokenIndex; i < BUFFER_SIZE; i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = BUFFER_SIZE + 1; i < (2 * BUFFER_SIZE + 1); i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = 0; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            } else {
-                for (int i = startTokenIndex; i < (2 * BUFFER_SIZE + 1); i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = 0; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            }
-        }
+        String result = (startTokenIndex < scoutIndex) ? new String(buffer,
+                startTokenIndex, scoutIndex - startTokenIndex) : "";
         // the current token is consumed.
         startTokenIndex = scoutIndex;
-        return builder.toString();
+        return result;
     }
 
     /**
@@ -210,14 +218,10 @@ public class RdfNTriplesReader extends RdfReader {
         sb.append(scoutIndex);
         sb.append("] near ");
 
-        if (startTokenIndex < 25) {
-            sb.append(buffer, buffer.length - 30, 28);
-            sb.append(buffer, 0, 25);
-        } else if (startTokenIndex > (buffer.length - 25)) {
-            sb.append(buffer, buffer.length - 30, 28);
-            sb.append(buffer, 0, 20);
-        } else {
-            sb.append(buffer, startTokenIndex - 25, 50);
+        int start = Math.max(0, Math.min(startTokenIndex, limit) - 25);
+        int end = Math.min(limit, start + 50);
+        if (start < end) {
+            sb.append(buffer, start, end - start);
         }
 
         return sb.toString();
@@ -300,6 +304,93 @@ public class RdfNTriplesReader extends RdfReader {
         discard();
     }
 
+    /**
+     * Returns the value of the current literal, including its optional
+     * language tag or datatype. The escaped characters are decoded.
+     * 
+     * @return The current literal.
+     * @throws IOException
+     */
+    protected Literal parseLiteral() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        // Suppose the current character is '"'.
+        int c = step();
+
+        while (!isEndOfFile(c) && (c != '"')) {
+            if (c == '\\') {
+                c = step();
+
+                switch (c) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 'u':
+                    builder.append((char) parseHexadecimal(4));
+                    break;
+                case 'U':
+                    builder.appendCodePoint(parseHexadecimal(8));
+                    break;
+                default:
+                    builder.append((char) c);
+                    break;
+                }
+            } else {
+                builder.append((char) c);
+            }
+
+            c = step();
+        }
+
+        // Set the cursor at the right of the literal.
+        step();
+        discard();
+        Reference datatypeRef = null;
+        Language language = null;
+
+        if (getChar() == '@') {
+            step();
+            discard();
+            language = Language.valueOf(parseToken());
+        } else if ((getChar() == '^') && (step() == '^') && (step() == '<')) {
+            datatypeRef = new Reference(parseUri());
+        }
+
+        discard();
+        return new Literal(builder.toString(), datatypeRef, language);
+    }
+
+    /**
+     * Returns the value of the given number of hexadecimal digits, read after
+     * the current character.
+     * 
+     * @param digits
+     *            The number of digits.
+     * @return The parsed value.
+     * @throws IOException
+     */
+    private int parseHexadecimal(int digits) throws IOException {
+        int result = 0;
+
+        for (int i = 0; i < digits; i++) {
+            int digit = Character.digit(step(), 16);
+
+            if (digit == -1) {
+                throw new IOException("Invalid escaped character. "
+                        + getParsingMessage());
+            }
+
+            result = (result << 4) + digit;
+        }
+
+        return result;
+    }
+
     /**
      * Reads the current statement until its end, and parses it.
      * 
@@ -308,8 +399,8 @@ public class RdfNTriplesReader extends RdfReader {
      * @throws IOException
      */
     protected void parseStatement() throws IOException {
-        List<Reference> lexicalUnits = new ArrayList<Reference>();
-        String object = null;
+        List<Reference> lexicalUnits = new ArrayList<Reference>(3);
+        Literal object = null;
         do {
             consumeWhiteSpaces();
             switch (getChar()) {
@@ -317,17 +408,14 @@ public class RdfNTriplesReader extends RdfReader {
                 lexicalUnits.add(new Reference(parseUri()));
                 break;
             case '_':
-                lexicalUnits.add(Link.createBlankRef(parseToken()));
+                String token = parseToken();
+                if (token.startsWith("_:")) {
+                    token = token.substring(2);
+                }
+                lexicalUnits.add(Link.createBlankRef(token));
                 break;
             case '"':
-                int c = step();
-                discard();
-                while (!isEndOfFile(c) && (c != '"')) {
-                    c = step();
-                }
-                object = getCurrentToken();
-                step();
-                discard();
+                object = parseLiteral();
                 break;
             case '.':
                 break;
@@ -346,12 +434,16 @@ public class RdfNTriplesReader extends RdfReader {
 
         // Generate the links
         if (!lexicalUnits.isEmpty()) {
-            if (object != null) {
+            if ((object != null) && (lexicalUnits.size() == 2)) {
                 getGraphHandler().link(lexicalUnits.get(0),
-                        lexicalUnits.get(1), new Literal(object));
-            } else {
+                        lexicalUnits.get(1), object);
+            } else if ((object == null) && (lexicalUnits.size() == 3)) {
                 getGraphHandler().link(lexicalUnits.get(0),
                         lexicalUnits.get(1), lexicalUnits.get(2));
+            } else {
+                throw new IOException(
+                        "This statement does not seem to follow the N-Triples syntax. "
+                                + getParsingMessage());
             }
         }
     }
@@ -404,33 +496,13 @@ public class RdfNTriplesReader extends RdfReader {
      * @throws IOException
      */
     protected int step() throws IOException {
-        scoutIndex++;
-        if (buffer[scoutIndex] == EOF) {
-            if (scoutIndex == BUFFER_SIZE) {
-                // Reached the end of the first part of the buffer, read into
-                // the second one.
-                scoutIndex++;
-                int len = this.br.read(buffer, 0, BUFFER_SIZE);
-                if (len == -1) {
-                    // End of the stream reached
-                    buffer[scoutIndex] = EOF;
-                } else {
-                    buffer[BUFFER_SIZE + len + 1] = EOF;
-                }
-            } else if (scoutIndex == (2 * BUFFER_SIZE + 1)) {
-                scoutIndex = 0;
-                // Reached the end of the second part of the buffer, read into
-                // the first one.
-                int len = this.br.read(buffer, 0, BUFFER_SIZE);
-                if (len == -1) {
-                    // End of the stream reached
-                    buffer[scoutIndex] = EOF;
-                } else {
-                    buffer[len] = EOF;
-                }
-            } else {
-                // Reached the end of the stream.
-            }
+        if (scoutIndex < limit) {
+            scoutIndex++;
+        }
+
+        if ((scoutIndex == limit) && !fill()) {
+            // Reached the end of the stream.
+            return EOF;
         }
 
         return buffer[scoutIndex];
@@ -464,10 +536,7 @@ public class RdfNTriplesReader extends RdfReader {
      *            The number of steps to go back.
      */
     protected void stepBack(int n) {
-        scoutIndex -= n;
-        if (scoutIndex < 0) {
-            scoutIndex = BUFFER_SIZE * 2 + 1 - scoutIndex;
-        }
+        scoutIndex = Math.max(0, scoutIndex - n);
     }
 
 }
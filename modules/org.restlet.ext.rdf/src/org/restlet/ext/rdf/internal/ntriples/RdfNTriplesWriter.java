@@ -24,10 +24,12 @@
 
 package org.restlet.ext.rdf.internal.ntriples;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
 
 import org.restlet.data.Reference;
+import org.restlet.engine.io.IoUtils;
 import org.restlet.ext.rdf.Graph;
 import org.restlet.ext.rdf.GraphHandler;
 import org.restlet.ext.rdf.Link;
@@ -44,7 +46,8 @@ public class RdfNTriplesWriter extends GraphHandler {
     private Writer writer;
 
     /**
-     * Constructor.
+     * Constructor. The written characters are buffered until the end of the
+     * graph.
      * 
      * @param writer
      *            The character writer.
@@ -52,7 +55,7 @@ public class RdfNTriplesWriter extends GraphHandler {
      */
     public RdfNTriplesWriter(Writer writer) throws IOException {
         super();
-        this.writer = writer;
+        this.writer = new BufferedWriter(writer, IoUtils.BUFFER_SIZE);
     }
 
     @Override
@@ -113,9 +116,51 @@ public class RdfNTriplesWriter extends GraphHandler {
      */
     private void write(Literal literal) throws IOException {
         // Write it as a string
-        this.writer.write("\"");
-        this.writer.write(literal.getValue());
-        this.writer.write("\"");
+        this.writer.write('"');
+        String value = literal.getValue();
+        int start = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escaped = null;
+
+            switch (c) {
+            case '"':
+                escaped = "\\\"";
+                break;
+            case '\\':
+                escaped = "\\\\";
+                break;
+            case '\n':
+                escaped = "\\n";
+                break;
+            case '\r':
+                escaped = "\\r";
+                break;
+            case '\t':
+                escaped = "\\t";
+                break;
+            default:
+                break;
+            }
+
+            if (escaped != null) {
+                this.writer.write(value, start, i - start);
+                this.writer.write(escaped);
+                start = i + 1;
+            }
+        }
+
+        this.writer.write(value, start, value.length() - start);
+        this.writer.write('"');
+
+        if (literal.getLanguage() != null) {
+            this.writer.write('@');
+            this.writer.write(literal.getLanguage().getName());
+        } else if (literal.getDatatypeRef() != null) {
+            this.writer.write("^^");
+            write(literal.getDatatypeRef());
+        }
     }
 
     /**
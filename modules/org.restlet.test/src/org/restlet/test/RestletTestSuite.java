@@ -70,9 +70,11 @@ import org.restlet.test.routing.FilterTestCase;
 import org.restlet.test.routing.RedirectTestCase;
 import org.restlet.test.routing.RouteListTestCase;
 import org.restlet.test.routing.ValidatorTestCase;
+import org.restlet.test.routing.VirtualHostTestCase;
 import org.restlet.test.security.HttpBasicTestCase;
 import org.restlet.test.security.RoleTestCase;
 import org.restlet.test.security.SecurityTestCase;
+import org.restlet.test.security.VerifierTestCase;
 import org.restlet.test.service.ServiceTestSuite;
 import org.restlet.test.util.TemplateTestCase;
 
@@ -125,6 +127,8 @@ public class RestletTestSuite extends TestSuite {
         addTestSuite(TemplateTestCase.class);
         addTestSuite(ValidatorTestCase.class);
         addTestSuite(VelocityTestCase.class);
+        addTestSuite(VerifierTestCase.class);
+        addTestSuite(VirtualHostTestCase.class);
         addTest(RegressionTestSuite.suite());
         addTest(CryptoTestSuite.suite());
         addTest(ApiSparkTestSuite.suite());
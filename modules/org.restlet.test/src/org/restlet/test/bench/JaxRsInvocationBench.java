@@ -0,0 +1,171 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.UriInfo;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.ext.jaxrs.JaxRsRestlet;
+import org.restlet.ext.jaxrs.internal.util.Invoker;
+import org.restlet.service.MetadataService;
+
+/**
+ * Micro-benchmark of the per-request instantiation of a JAX-RS root resource
+ * class. It measures the complete request handling by a {@link JaxRsRestlet},
+ * then the creation, injection and invocation of the resource object alone,
+ * with the compiled {@link Invoker}s and with plain reflection.
+ * 
+ * @author Jerome Louvel
+ */
+public class JaxRsInvocationBench {
+
+    /**
+     * Per-request root resource class with injected fields.
+     */
+    @Path("bench/{id}")
+    public static class BenchResource {
+
+        @QueryParam("q")
+        private String query;
+
+        @Context
+        private UriInfo uriInfo;
+
+        public BenchResource() {
+        }
+
+        @GET
+        @Produces("text/plain")
+        public String get(@PathParam("id") String id) {
+            return id + this.query;
+        }
+    }
+
+    private static interface Instantiation {
+        int instantiate() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0])
+                : 200000;
+
+        final JaxRsRestlet restlet = new JaxRsRestlet(new org.restlet.Context(),
+                new MetadataService());
+        restlet.addClass(BenchResource.class);
+
+        Instantiation request = new Instantiation() {
+            public int instantiate() {
+                Request request = new Request(Method.GET,
+                        "http://localhost/bench/42?q=x");
+                request.getResourceRef().setBaseRef("http://localhost/");
+                request.setOriginalRef(request.getResourceRef().getTargetRef());
+                Response response = new Response(request);
+                restlet.handle(request, response);
+
+                if (!response.getStatus().isSuccess()) {
+                    throw new IllegalStateException("Unexpected status "
+                            + response.getStatus());
+                }
+
+                return response.getEntityAsText().length();
+            }
+        };
+
+        final Constructor<BenchResource> constructor = BenchResource.class
+                .getConstructor();
+        final Field query = BenchResource.class.getDeclaredField("query");
+        query.setAccessible(true);
+        final Field uriInfo = BenchResource.class.getDeclaredField("uriInfo");
+        uriInfo.setAccessible(true);
+        final java.lang.reflect.Method get = BenchResource.class.getMethod(
+                "get", String.class);
+
+        Instantiation reflection = new Instantiation() {
+            public int instantiate() throws Exception {
+                Object resource = constructor.newInstance();
+                query.set(resource, "x");
+                uriInfo.set(resource, null);
+                return ((String) get.invoke(resource, "42")).length();
+            }
+        };
+
+        final Invoker constructorInvoker = Invoker.forConstructor(constructor);
+        final Invoker querySetter = Invoker.forSetter(query);
+        final Invoker uriInfoSetter = Invoker.forSetter(uriInfo);
+        final Invoker getInvoker = Invoker.forMethod(get);
+
+        Instantiation compiled = new Instantiation() {
+            public int instantiate() throws Exception {
+                Object resource = constructorInvoker.newInstance();
+                querySetter.invoke(resource, "x");
+                uriInfoSetter.invoke(resource, (Object) null);
+                return ((String) getInvoker.invoke(resource, "42")).length();
+            }
+        };
+
+        // Warm-up
+        run(request, iterations / 10);
+        run(reflection, iterations / 10);
+        run(compiled, iterations / 10);
+
+        System.out.println("JaxRsRestlet request: "
+                + run(request, iterations / 10) + " ns/request");
+        System.out.println("Resource with reflection: "
+                + run(reflection, iterations) + " ns/instance");
+        System.out.println("Resource with invokers: "
+                + run(compiled, iterations) + " ns/instance");
+    }
+
+    private static long run(Instantiation instantiation, int iterations)
+            throws Exception {
+        long checksum = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            checksum += instantiation.instantiate();
+        }
+
+        long duration = System.nanoTime() - start;
+
+        if (checksum == 0) {
+            throw new IllegalStateException("Unexpected checksum");
+        }
+
+        return duration / iterations;
+    }
+
+}
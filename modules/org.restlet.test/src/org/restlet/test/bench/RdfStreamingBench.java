@@ -0,0 +1,214 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.rdf.BatchGraphHandler;
+import org.restlet.ext.rdf.Link;
+import org.restlet.ext.rdf.Literal;
+import org.restlet.ext.rdf.RdfRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.ReaderRepresentation;
+import org.restlet.representation.Representation;
+
+/**
+ * Benchmark of the streaming N-Triples parsing and writing. The parsing is
+ * measured on the N-Triples file given as first argument, typically a large
+ * dump, or else on generated content. Links are counted by batches without
+ * building a graph. The writing streams generated links to a discarding
+ * writer.
+ * 
+ * @author Jerome Louvel
+ */
+public class RdfStreamingBench {
+
+    /**
+     * Batch handler counting the links.
+     */
+    private static class CountingHandler extends BatchGraphHandler {
+        private long count;
+
+        @Override
+        public void link(List<Link> links) {
+            this.count += links.size();
+        }
+    }
+
+    /**
+     * Writer counting then discarding the characters.
+     */
+    private static class CountingWriter extends Writer {
+        private long count;
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            this.count += len;
+        }
+    }
+
+    /**
+     * Reader generating N-Triples content on the fly.
+     */
+    private static class GeneratingReader extends Reader {
+        private String line = "";
+
+        private int lineIndex;
+
+        private long remaining;
+
+        private GeneratingReader(long triples) {
+            this.remaining = triples;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            int result = 0;
+
+            while (result < len) {
+                if (this.lineIndex == this.line.length()) {
+                    if (this.remaining == 0) {
+                        break;
+                    }
+
+                    this.line = "<http://example.com/resource/" + this.remaining
+                            + "> <http://example.com/vocabulary#label> \"Label "
+                            + this.remaining + " \\\"quoted\\\"\"@en .\n";
+                    this.lineIndex = 0;
+                    this.remaining--;
+                }
+
+                int count = Math.min(len - result, this.line.length()
+                        - this.lineIndex);
+                this.line.getChars(this.lineIndex, this.lineIndex + count,
+                        cbuf, off + result);
+                this.lineIndex += count;
+                result += count;
+            }
+
+            return (result == 0) ? -1 : result;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long triples = 2000000;
+        File dump = null;
+
+        if (args.length > 0) {
+            if (new File(args[0]).isFile()) {
+                dump = new File(args[0]);
+            } else {
+                triples = Long.parseLong(args[0]);
+            }
+        }
+
+        // Warm-up
+        parse(new ReaderRepresentation(new GeneratingReader(triples / 10),
+                MediaType.TEXT_RDF_NTRIPLES));
+        write(triples / 10);
+
+        long start = System.nanoTime();
+        long count = (dump == null) ? parse(new ReaderRepresentation(
+                new GeneratingReader(triples), MediaType.TEXT_RDF_NTRIPLES))
+                : parse(new FileRepresentation(dump,
+                        MediaType.TEXT_RDF_NTRIPLES));
+        long duration = System.nanoTime() - start;
+        System.out.println("Parsing: " + count + " triples, "
+                + (count * 1000000000L / Math.max(1, duration))
+                + " triples/s");
+
+        start = System.nanoTime();
+        long chars = write(triples);
+        duration = System.nanoTime() - start;
+        System.out.println("Writing: " + triples + " triples, "
+                + (triples * 1000000000L / Math.max(1, duration))
+                + " triples/s, " + (chars / 1024 / 1024) + " MB of text");
+    }
+
+    private static long parse(Representation representation)
+            throws IOException {
+        CountingHandler handler = new CountingHandler();
+        new RdfRepresentation(representation).parse(handler);
+        return handler.count;
+    }
+
+    private static long write(final long triples) throws IOException {
+        final Reference typeRef = new Reference(
+                "http://example.com/vocabulary#label");
+        Iterable<Link> links = new Iterable<Link>() {
+            public Iterator<Link> iterator() {
+                return new Iterator<Link>() {
+                    private long index;
+
+                    public boolean hasNext() {
+                        return this.index < triples;
+                    }
+
+                    public Link next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        this.index++;
+                        return new Link(new Reference(
+                                "http://example.com/resource/" + this.index),
+                                typeRef, new Literal("Label " + this.index));
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        CountingWriter writer = new CountingWriter();
+        new RdfRepresentation(links, MediaType.TEXT_RDF_NTRIPLES)
+                .write(writer);
+        return writer.count;
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.connector.HttpServerHelper;
+import org.restlet.engine.util.VirtualThreadExecutorService;
+
+/**
+ * Load benchmark of the internal HTTP server connector servicing blocking
+ * calls, comparing the default thread pool with the virtual thread mode
+ * enabled by the "useVirtualThreads" parameter. Each call sleeps for a given
+ * time to simulate a blocking resource.
+ * 
+ * @author Jerome Louvel
+ */
+public class ServerLoadBench {
+
+    public static void main(String[] args) throws Exception {
+        int clients = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        int blockingMs = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+
+        Engine.getInstance().getRegisteredServers()
+                .add(0, new HttpServerHelper(null));
+        System.out.println("Virtual threads supported: "
+                + VirtualThreadExecutorService.isSupported());
+
+        run(false, clients, calls, blockingMs);
+        run(true, clients, calls, blockingMs);
+    }
+
+    /**
+     * Starts a server in the given mode and loads it with concurrent clients.
+     * 
+     * @param virtualThreads
+     *            True if the virtual thread mode is enabled.
+     * @param clients
+     *            The number of concurrent clients.
+     * @param calls
+     *            The number of calls per client.
+     * @param blockingMs
+     *            The blocking time of each call.
+     */
+    private static void run(boolean virtualThreads, final int clients,
+            final int calls, final int blockingMs) throws Exception {
+        Server server = new Server(new Context(), Protocol.HTTP, 0,
+                new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        try {
+                            Thread.sleep(blockingMs);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        response.setEntity("hello, world!",
+                                MediaType.TEXT_PLAIN);
+                    }
+                });
+        server.getContext().getParameters()
+                .add("useVirtualThreads", Boolean.toString(virtualThreads));
+        server.getContext().getParameters().add("maxQueued", "-1");
+        server.start();
+
+        final URL url = new URL("http://localhost:" + server.getActualPort()
+                + "/");
+        final CountDownLatch done = new CountDownLatch(clients);
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicLong maxLatency = new AtomicLong();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < clients; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    byte[] buffer = new byte[1024];
+
+                    for (int j = 0; j < calls; j++) {
+                        long callStart = System.nanoTime();
+
+                        try {
+                            HttpURLConnection connection = (HttpURLConnection) url
+                                    .openConnection();
+                            InputStream in = connection.getInputStream();
+
+                            while (in.read(buffer) != -1) {
+                                // Consume the entity
+                            }
+
+                            in.close();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+
+                        long latency = System.nanoTime() - callStart;
+                        long max = maxLatency.get();
+
+                        while ((latency > max)
+                                && !maxLatency.compareAndSet(max, latency)) {
+                            max = maxLatency.get();
+                        }
+                    }
+
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+        long duration = System.nanoTime() - start;
+        server.stop();
+
+        int total = clients * calls;
+        System.out.println((virtualThreads ? "Virtual threads" : "Thread pool")
+                + ": " + total + " calls in " + (duration / 1000000L)
+                + " ms, " + (total * 1000000000L / duration)
+                + " calls/s, max latency " + (maxLatency.get() / 1000000L)
+                + " ms, " + errors.get() + " errors");
+    }
+
+}
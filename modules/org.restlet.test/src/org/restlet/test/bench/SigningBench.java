@@ -0,0 +1,102 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import org.restlet.Request;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.engine.header.ChallengeWriter;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.Base64;
+import org.restlet.ext.crypto.internal.AwsUtils;
+import org.restlet.ext.crypto.internal.HttpAzureSharedKeyHelper;
+import org.restlet.util.Series;
+
+/**
+ * Micro-benchmark of the AWS and Azure request signing helpers, which compute
+ * one HMAC per signed request with a fixed server secret.
+ * 
+ * @author Jerome Louvel
+ */
+public class SigningBench {
+
+    private static final char[] AWS_SECRET = "wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY"
+            .toCharArray();
+
+    private static final String AZURE_SECRET = Base64.encode(
+            "azure-storage-account-shared-key-0123456789".getBytes(), false);
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0])
+                : 200000;
+
+        // Warm-up
+        run(iterations / 10);
+
+        long start = System.nanoTime();
+        long checksum = run(iterations);
+        long duration = System.nanoTime() - start;
+
+        System.out.println("Checksum: " + checksum);
+        System.out.println("Iterations: " + iterations + " in "
+                + (duration / 1000000) + " ms ("
+                + (duration / (iterations * 3L)) + " ns/signature)");
+    }
+
+    private static long run(int iterations) {
+        Request request = new Request(Method.GET,
+                "http://johnsmith.s3.amazonaws.com/photos/puppy.jpg");
+        Series<Header> headers = new Series<Header>(Header.class);
+        headers.add(HeaderConstants.HEADER_DATE,
+                "Tue, 27 Mar 2007 19:36:42 +0000");
+        headers.add("x-amz-meta-reviewedby", "joe@johnsmith.net");
+        request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                headers);
+
+        ChallengeResponse azureChallenge = new ChallengeResponse(
+                ChallengeScheme.HTTP_AZURE_SHAREDKEY, "myaccount",
+                AZURE_SECRET);
+        HttpAzureSharedKeyHelper azureHelper = new HttpAzureSharedKeyHelper();
+        long checksum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            checksum += AwsUtils.getS3Signature(request, headers, AWS_SECRET)
+                    .length();
+            checksum += AwsUtils.getHmacSha256Signature(
+                    "GET\nsdb.amazonaws.com\n/\nAction=ListDomains&Timestamp="
+                            + i, AWS_SECRET).length();
+
+            ChallengeWriter cw = new ChallengeWriter();
+            azureHelper.formatResponse(cw, azureChallenge, request, headers);
+            checksum += cw.toString().length();
+        }
+
+        return checksum;
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.security.SecureRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.ext.oauth.internal.memory.MemoryTokenManager;
+
+/**
+ * Micro-benchmark of the OAuth raw token generation under concurrency,
+ * compared with a single shared {@link SecureRandom} instance.
+ * 
+ * @author Jerome Louvel
+ */
+public class TokenGenerationBench {
+
+    /**
+     * Token manager exposing the raw token generation.
+     */
+    private static class BenchTokenManager extends MemoryTokenManager {
+        public static String hex(byte[] input) {
+            return toHex(input);
+        }
+
+        @Override
+        public String generateRawToken() {
+            return super.generateRawToken();
+        }
+    }
+
+    private static interface Generator {
+        int generate();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0])
+                : 200000;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors() * 2;
+
+        final BenchTokenManager manager = new BenchTokenManager();
+        final SecureRandom shared = SecureRandom.getInstance("SHA1PRNG");
+
+        Generator striped = new Generator() {
+            public int generate() {
+                return manager.generateRawToken().length();
+            }
+        };
+
+        Generator baseline = new Generator() {
+            public int generate() {
+                byte[] token = new byte[40];
+                shared.nextBytes(token);
+                return BenchTokenManager.hex(token).length();
+            }
+        };
+
+        // Warm-up
+        run(striped, 1, iterations / 10);
+        run(baseline, 1, iterations / 10);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.println(threads + " thread(s): striped "
+                    + run(striped, threads, iterations) + " ns/token, shared "
+                    + run(baseline, threads, iterations) + " ns/token");
+        }
+    }
+
+    private static long run(final Generator generator, int threads,
+            final int iterations) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong checksum = new AtomicLong();
+        final int perThread = iterations / threads;
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    long sum = 0;
+
+                    try {
+                        start.await();
+
+                        for (int j = 0; j < perThread; j++) {
+                            sum += generator.generate();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        checksum.addAndGet(sum);
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long duration = System.nanoTime() - begin;
+
+        if (checksum.get() != (long) perThread * threads * 80) {
+            throw new IllegalStateException("Unexpected token length");
+        }
+
+        return duration / ((long) perThread * threads);
+    }
+
+}
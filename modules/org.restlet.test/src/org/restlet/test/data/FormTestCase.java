@@ -25,10 +25,18 @@
 package org.restlet.test.data;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.restlet.data.CharacterSet;
 import org.restlet.data.Form;
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
 import org.restlet.engine.util.FormReader;
+import org.restlet.engine.util.FormUtils;
+import org.restlet.engine.util.LazyForm;
+import org.restlet.engine.util.ParameterHandler;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.test.RestletTestCase;
 
 /**
@@ -73,4 +81,56 @@ public class FormTestCase extends RestletTestCase {
         assertNull(form.getFirstValue("unknownParam"));
     }
 
+    public void testLazyForm() {
+        String query = "a=1&&b=x+y%26z&c&a=2&%61=3&=4&d=5";
+        Form form = new LazyForm(query, CharacterSet.UTF_8, '&', true);
+
+        // Lookups scan the query string
+        assertEquals("1", form.getFirstValue("a"));
+        assertEquals("x y&z", form.getFirstValue("b"));
+        assertEquals("1", form.getFirstValue("A", true));
+        assertNull(form.getFirst("A"));
+        assertNotNull(form.getFirst("c"));
+        assertNull(form.getFirstValue("c"));
+        assertNull(form.getFirst("d"));
+        assertTrue(form.contains(new Parameter("a", "2")));
+        assertTrue(form.contains(new Parameter("a", "3")));
+        assertFalse(form.contains(new Parameter("a", "4")));
+
+        // Scanning and parsing give the same results
+        Form parsed = new Form(query);
+        assertEquals(parsed.size(), form.size());
+        assertEquals(parsed, form);
+        assertEquals("1", form.getFirstValue("a"));
+        assertNull(form.getFirst("d"));
+
+        // Modifications apply to the parsed parameters
+        form = new LazyForm(query, CharacterSet.UTF_8, '&', true);
+        form.add("e", "6");
+        assertEquals(parsed.size() + 1, form.size());
+        assertEquals("6", form.getFirstValue("e"));
+
+        // Empty queries
+        form = new LazyForm(null, CharacterSet.UTF_8, '&', true);
+        assertNull(form.getFirst("a"));
+        assertTrue(form.isEmpty());
+    }
+
+    public void testParameterHandler() throws IOException {
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        StringRepresentation post = new StringRepresentation(
+                "a=1&b=2&c=3&d=4", MediaType.APPLICATION_WWW_FORM);
+
+        FormUtils.read(post, true, new ParameterHandler() {
+            public boolean handle(Parameter parameter) {
+                parameters.add(parameter);
+                return !"b".equals(parameter.getName());
+            }
+        });
+
+        assertEquals(2, parameters.size());
+        assertEquals(new Parameter("a", "1"), parameters.get(0));
+        assertEquals(new Parameter("b", "2"), parameters.get(1));
+    }
+
 }
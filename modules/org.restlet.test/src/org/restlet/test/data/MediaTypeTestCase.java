@@ -24,9 +24,14 @@
 
 package org.restlet.test.data;
 
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Encoding;
 import org.restlet.data.Form;
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
+import org.restlet.data.Method;
 import org.restlet.data.Parameter;
+import org.restlet.engine.header.ContentType;
 import org.restlet.test.RestletTestCase;
 import org.restlet.util.Series;
 
@@ -342,8 +347,9 @@ public class MediaTypeTestCase extends RestletTestCase {
         assertEquals("x-restlet-test", newType.getSubType());
         assertEquals("application/x-restlet-test", newType.getName());
 
-        // Should not have got registered by call to valueOf() alone
-        assertNotSame(newType, MediaType.valueOf("application/x-restlet-test"));
+        // Should not have got registered by call to valueOf() alone, but the
+        // instance is shared by later calls
+        assertSame(newType, MediaType.valueOf("application/x-restlet-test"));
 
         final MediaType registeredType = MediaType.register(
                 "application/x-restlet-test", "Restlet testcase");
@@ -364,6 +370,33 @@ public class MediaTypeTestCase extends RestletTestCase {
         assertEquals(MediaType.APPLICATION_ATOM, mediaType.getParent());
     }
 
+    /**
+     * Testing the shared instances returned for parsed metadata.
+     */
+    public void testValueOfInterning() {
+        MediaType html = MediaType.valueOf("text/html; charset=UTF-8");
+        assertSame(html, MediaType.valueOf("text/html; charset=UTF-8"));
+        assertEquals("UTF-8", html.getParameters().getFirstValue("charset"));
+        assertTrue(html.includes(html, false));
+        assertTrue(html.isCompatible(html));
+        assertTrue(MediaType.TEXT_HTML.includes(html));
+
+        assertSame(CharacterSet.UTF_8, CharacterSet.valueOf("utf-8"));
+        assertSame(CharacterSet.valueOf("x-restlet-test"),
+                CharacterSet.valueOf("x-restlet-test"));
+        assertSame(Language.valueOf("fr-ca"), Language.valueOf("fr-ca"));
+        assertSame(Encoding.GZIP, Encoding.valueOf("gzip"));
+        assertSame(Method.GET, Method.valueOf("get"));
+        assertSame(Method.valueOf("X-RESTLET"), Method.valueOf("X-RESTLET"));
+
+        ContentType contentType = new ContentType("text/plain; charset=UTF-8");
+        assertSame(contentType.getMediaType(), new ContentType(
+                "text/plain; charset=UTF-8").getMediaType());
+        assertEquals(CharacterSet.UTF_8, contentType.getCharacterSet());
+        assertSame(MediaType.TEXT_PLAIN,
+                new ContentType("text/plain").getMediaType());
+    }
+
     @SuppressWarnings("unchecked")
     public void testUnmodifiable() {
         Form form = new Form();
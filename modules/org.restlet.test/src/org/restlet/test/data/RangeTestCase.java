@@ -24,7 +24,10 @@
 
 package org.restlet.test.data;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.channels.Channels;
 import java.util.Arrays;
 import java.util.List;
 
@@ -43,8 +46,11 @@ import org.restlet.data.Protocol;
 import org.restlet.data.Range;
 import org.restlet.data.Status;
 import org.restlet.data.Tag;
+import org.restlet.engine.application.ByteRangesRepresentation;
+import org.restlet.engine.application.RangeRepresentation;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.engine.util.SystemUtils;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Directory;
 import org.restlet.routing.Router;
@@ -443,14 +449,102 @@ public class RangeTestCase extends RestletTestCase {
         assertTrue(response.getStatus().isSuccess());
         response.getEntity().exhaust();
 
-        // Multiple ranges are not supported yet.
-        // request = new Request(Method.GET, "http://localhost:" + TEST_PORT
-        // + "/test?range=500-1000&range=500-");
-        // request.setRanges(Arrays.asList(new Range(500, 500), new Range(500,
-        // Range.SIZE_MAX)));
-        // assertTrue(client.handle(request).getStatus().isSuccess());
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/test?range=500-1000&range=500-");
+        request.setRanges(Arrays.asList(new Range(500, 500), new Range(500,
+                Range.SIZE_MAX)));
+        response = client.handle(request);
+        assertTrue(response.getStatus().isSuccess());
+        response.getEntity().exhaust();
+
+        client.stop();
+    }
+
+    /**
+     * Tests seeking the ranges of file representations.
+     * 
+     * @throws Exception
+     */
+    public void testFileRanges() throws Exception {
+        File file = File.createTempFile("rangeTestCase", ".txt");
+
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            fos.write("1234567890".getBytes("US-ASCII"));
+            fos.close();
+
+            FileRepresentation entity = new FileRepresentation(file,
+                    MediaType.TEXT_PLAIN);
+            assertEquals("890", new RangeRepresentation(entity, new Range(
+                    Range.INDEX_LAST, 3)).getText());
+            assertEquals("4567", new RangeRepresentation(entity, new Range(3,
+                    4)).getText());
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new RangeRepresentation(entity, new Range(6, Range.SIZE_MAX))
+                    .write(Channels.newChannel(baos));
+            assertEquals("7890", baos.toString("US-ASCII"));
+
+            List<Range> ranges = ByteRangesRepresentation.getSatisfiableRanges(
+                    Arrays.asList(new Range(8, 1), new Range(Range.INDEX_LAST,
+                            1), new Range(0, 2), new Range(20, 2)), 10);
+            assertEquals(2, ranges.size());
+            assertEquals(0, ranges.get(0).getIndex());
+            assertEquals(2, ranges.get(0).getSize());
+            assertEquals(8, ranges.get(1).getIndex());
+            assertEquals(2, ranges.get(1).getSize());
+
+            ByteRangesRepresentation multipart = new ByteRangesRepresentation(
+                    entity, ranges, "BOUNDARY");
+            String expected = "--BOUNDARY\r\nContent-Type: text/plain\r\n"
+                    + "Content-Range: bytes 0-1/10\r\n\r\n12\r\n"
+                    + "--BOUNDARY\r\nContent-Type: text/plain\r\n"
+                    + "Content-Range: bytes 8-9/10\r\n\r\n90\r\n"
+                    + "--BOUNDARY--\r\n";
+            assertEquals(expected, multipart.getText());
+            assertEquals(expected.length(), multipart.getSize());
+        } finally {
+            file.delete();
+        }
+    }
 
-        // client.stop();
+    /**
+     * Tests multiple ranges requests.
+     * 
+     * @throws Exception
+     */
+    public void testMultipleRanges() throws Exception {
+        Client client = new Client(Protocol.HTTP);
+        Request request = new Request(Method.GET, "http://localhost:"
+                + TEST_PORT + "/testGet");
+        request.setRanges(Arrays.asList(new Range(0, 2), new Range(
+                Range.INDEX_LAST, 3)));
+        Response response = client.handle(request);
+        assertEquals(Status.SUCCESS_PARTIAL_CONTENT, response.getStatus());
+        assertTrue(MediaType.MULTIPART_BYTERANGES.equals(response.getEntity()
+                .getMediaType(), true));
+        String boundary = response.getEntity().getMediaType().getParameters()
+                .getFirstValue("boundary");
+        assertNotNull(boundary);
+        String text = response.getEntity().getText();
+        assertTrue(text.startsWith("--" + boundary + "\r\n"));
+        assertTrue(text.contains("Content-Range: bytes 0-1/10\r\n\r\n12\r\n"));
+        assertTrue(text
+                .contains("Content-Range: bytes 7-9/10\r\n\r\n890\r\n"));
+        assertTrue(text.endsWith("--" + boundary + "--\r\n"));
+
+        // Overlapping ranges are coalesced
+        request.setRanges(Arrays.asList(new Range(0, 4), new Range(2, 4)));
+        response = client.handle(request);
+        assertEquals(Status.SUCCESS_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("123456", response.getEntity().getText());
 
+        // Unsatisfiable ranges
+        request.setRanges(Arrays.asList(new Range(20, 2), new Range(30, 2)));
+        response = client.handle(request);
+        assertEquals(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+                response.getStatus());
+
+        client.stop();
     }
 }
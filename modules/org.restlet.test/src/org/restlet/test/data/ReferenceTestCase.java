@@ -657,6 +657,59 @@ public class ReferenceTestCase extends RestletTestCase {
                 targetRef.toString());
     }
 
+    /**
+     * Tests that the cached components and target reference follow the
+     * modifications of the reference and of its base reference.
+     */
+    public void testCachedComponents() {
+        Reference baseRef = new Reference("http://Restlet.ORG/a/b/");
+        Reference ref = new Reference(baseRef, "c/../d%20e?x=1");
+
+        assertEquals("c/../d%20e", ref.getPath());
+        assertEquals("c/../d e", ref.getPath(true));
+        assertEquals("x=1", ref.getQuery());
+
+        Reference targetRef = ref.getTargetRef();
+        assertEquals("http://restlet.org/a/b/d%20e?x=1", targetRef.toString());
+        assertEquals("/a/b/d%20e", targetRef.getPath());
+
+        // The returned target reference can be safely modified
+        targetRef.setPath("/z");
+        assertEquals("http://restlet.org/a/b/d%20e?x=1", ref.getTargetRef()
+                .toString());
+
+        ref.setQuery("y=2");
+        assertEquals("y=2", ref.getQuery());
+        assertEquals("http://restlet.org/a/b/d%20e?y=2", ref.getTargetRef()
+                .toString());
+
+        baseRef.setPath("/f/");
+        assertEquals("http://restlet.org/f/d%20e?y=2", ref.getTargetRef()
+                .toString());
+
+        ref.setPath("g");
+        assertEquals("g", ref.getPath(true));
+        assertEquals("http://restlet.org/f/g?y=2", ref.getTargetRef()
+                .toString());
+    }
+
+    /**
+     * Tests the normalization of references.
+     */
+    public void testNormalize() {
+        assertEquals("http://restlet.org/a/g", new Reference(
+                "HTTP://Restlet.org:80/a/b/c/./../../g").normalize().toString());
+        assertEquals("http://restlet.org/a/", new Reference(
+                "http://restlet.org/a/b/..").normalize().toString());
+        assertEquals("http://restlet.org/a/b/", new Reference(
+                "http://restlet.org/a/b/.").normalize().toString());
+        assertEquals("http://restlet.org/a/.b/..c", new Reference(
+                "http://restlet.org/a/.b/..c").normalize().toString());
+        assertEquals("http://restlet.org:8080/a?b=../c", new Reference(
+                "http://restlet.org:8080/a?b=../c").normalize().toString());
+        assertEquals("g", new Reference("./g").normalize().toString());
+    }
+
     /**
      * Test references that are unequal.
      */
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.engine.connector;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Protocol;
+import org.restlet.engine.connector.AdmissionController;
+import org.restlet.engine.connector.HttpServerHelper;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the admission control of the internal server connector.
+ * 
+ * @author Jerome Louvel
+ */
+public class AdmissionControllerTestCase extends RestletTestCase {
+
+    public void testLanes() {
+        AdmissionController controller = new AdmissionController(10, 1, 10,
+                2.0);
+        controller.getHighPriorityRoutes().add(Pattern.compile(".*/admin/.*"));
+        controller.getLowPriorityRoutes().add(
+                Pattern.compile("reports\\.example\\.com(:\\d+)?/.*"));
+
+        assertEquals(AdmissionController.PRIORITY_HIGH,
+                controller.getPriority("api.example.com/admin/users"));
+        assertEquals(AdmissionController.PRIORITY_LOW,
+                controller.getPriority("reports.example.com:8182/daily"));
+        assertEquals(AdmissionController.PRIORITY_NORMAL,
+                controller.getPriority("api.example.com/orders"));
+
+        // Low priority calls may only use half of the limit
+        for (int i = 0; i < 5; i++) {
+            assertTrue(controller.tryAcquire(AdmissionController.PRIORITY_LOW));
+        }
+
+        assertFalse(controller.tryAcquire(AdmissionController.PRIORITY_LOW));
+
+        // Normal priority calls may use 90% of the limit
+        for (int i = 0; i < 4; i++) {
+            assertTrue(controller
+                    .tryAcquire(AdmissionController.PRIORITY_NORMAL));
+        }
+
+        assertFalse(controller.tryAcquire(AdmissionController.PRIORITY_NORMAL));
+        assertTrue(controller.tryAcquire(AdmissionController.PRIORITY_HIGH));
+        assertFalse(controller.tryAcquire(AdmissionController.PRIORITY_HIGH));
+
+        assertEquals(10, controller.getInFlightCount());
+        assertEquals(10, controller.getAdmittedCount());
+        assertEquals(3, controller.getRejectedCount());
+        assertEquals(1,
+                controller.getRejectedCount(AdmissionController.PRIORITY_LOW));
+    }
+
+    public void testLimitAdaptation() {
+        AdmissionController controller = new AdmissionController(10, 2, 20,
+                2.0);
+
+        // Increases while the latency is stable and the limit used
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 10; j++) {
+                controller.tryAcquire(AdmissionController.PRIORITY_HIGH);
+            }
+
+            for (int j = 0; j < 10; j++) {
+                controller.release(1000000L);
+            }
+        }
+
+        int limit = controller.getLimit();
+        assertTrue(limit > 10);
+        assertTrue(limit <= 20);
+        assertEquals(0, controller.getInFlightCount());
+
+        // Decreases when the latency degrades, down to the minimum
+        for (int i = 0; i < 100; i++) {
+            controller.tryAcquire(AdmissionController.PRIORITY_HIGH);
+            controller.release(1000000000L);
+        }
+
+        assertTrue(controller.getLimit() < limit);
+
+        for (int i = 0; i < 100; i++) {
+            controller.tryAcquire(AdmissionController.PRIORITY_HIGH);
+            controller.release(1000000000000L);
+        }
+
+        assertEquals(2, controller.getLimit());
+    }
+
+    public void testServiceUnavailable() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Server server = new Server(new Context(), Protocol.HTTP, 0,
+                new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        blocked.countDown();
+
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+        server.getContext().getParameters().add("admissionControl", "true");
+        server.getContext().getParameters().add("admissionInitialLimit", "1");
+        server.getContext().getParameters().add("admissionMaxLimit", "1");
+        server.getContext().getParameters().add("retryAfter", "3");
+        HttpServerHelper helper = new HttpServerHelper(server);
+        helper.start();
+
+        try {
+            final URL url = new URL("http://localhost:"
+                    + helper.getAttributes().get("ephemeralPort") + "/");
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        ((HttpURLConnection) url.openConnection())
+                                .getResponseCode();
+                    } catch (Exception e) {
+                        // Ignore
+                    }
+                }
+            }).start();
+
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            HttpURLConnection connection = (HttpURLConnection) url
+                    .openConnection();
+            assertEquals(503, connection.getResponseCode());
+            assertEquals("3", connection.getHeaderField("Retry-After"));
+            assertEquals(1, helper.getAdmissionController().getRejectedCount());
+        } finally {
+            release.countDown();
+            helper.stop();
+        }
+    }
+
+}
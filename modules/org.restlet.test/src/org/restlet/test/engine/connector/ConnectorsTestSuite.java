@@ -49,6 +49,7 @@ public class ConnectorsTestSuite extends TestSuite {
 
         // [ifdef jse]
         // addTestSuite(AsynchroneTestCase.class);
+        addTestSuite(AdmissionControllerTestCase.class);
         addTestSuite(ChunkedEncodingPutTestCase.class);
         addTestSuite(ChunkedEncodingTestCase.class);
         addTestSuite(GetTestCase.class);
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.apispark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.restlet.engine.io.IoUtils;
+import org.restlet.ext.apispark.internal.agent.bean.CallLog;
+import org.restlet.ext.apispark.internal.agent.bean.CallLogs;
+import org.restlet.ext.apispark.internal.agent.module.CallLogBuffer;
+import org.restlet.ext.apispark.internal.agent.module.CallLogSpool;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the buffer and the spool of the analytics call logs.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallLogBufferTestCase extends RestletTestCase {
+
+    /**
+     * Creates call logs.
+     * 
+     * @param count
+     *            The number of call logs.
+     * @return The call logs.
+     */
+    private static CallLogs createCallLogs(int count) {
+        CallLogs result = new CallLogs(count);
+
+        for (int i = 0; i < count; i++) {
+            CallLog callLog = new CallLog();
+            callLog.setDate(new Date(i * 1000L));
+            callLog.setPath("/test/" + i);
+            callLog.setStatusCode(200);
+            result.add(callLog);
+        }
+
+        return result;
+    }
+
+    public void testBuffer() {
+        CallLogBuffer buffer = new CallLogBuffer(5);
+        assertEquals(8, buffer.getCapacity());
+
+        for (CallLog callLog : createCallLogs(10)) {
+            buffer.add(callLog);
+        }
+
+        assertEquals(8, buffer.size());
+        assertEquals(2, buffer.getDropped());
+
+        CallLogs drained = buffer.drain(3);
+        assertEquals(3, drained.size());
+        assertEquals("/test/0", drained.get(0).getPath());
+        assertTrue(buffer.add(new CallLog()));
+        assertEquals(6, buffer.drain(10).size());
+        assertEquals(0, buffer.drain(10).size());
+    }
+
+    public void testBufferConcurrency() throws Exception {
+        final CallLogBuffer buffer = new CallLogBuffer(1024);
+        final int producers = 4;
+        final int count = 100000;
+        Thread[] threads = new Thread[producers];
+
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < count; j++) {
+                        buffer.add(new CallLog());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        long drained = 0;
+        boolean running = true;
+
+        while (running) {
+            running = false;
+
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+
+            drained += buffer.drain(100).size();
+        }
+
+        drained += buffer.drain(Integer.MAX_VALUE).size();
+        assertEquals(producers * count, drained + buffer.getDropped());
+    }
+
+    public void testSpool() throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"),
+                "CallLogBufferTestCase-" + System.currentTimeMillis());
+
+        try {
+            CallLogSpool spool = new CallLogSpool(directory, 100000);
+            assertNull(spool.poll());
+            assertTrue(spool.store(createCallLogs(10)));
+            assertTrue(spool.store(createCallLogs(20)));
+            assertTrue(spool.getSize() > 0);
+
+            // Unreadable spool files are discarded
+            OutputStream out = new FileOutputStream(new File(directory,
+                    "calllogs-0.gz"));
+            out.write("Not call logs".getBytes());
+            out.close();
+
+            // Spooled batches are kept across restarts
+            spool = new CallLogSpool(directory, spool.getSize());
+            assertFalse(spool.store(createCallLogs(1)));
+            assertEquals(10, spool.poll().size());
+            CallLogs callLogs = spool.poll();
+            assertEquals(20, callLogs.size());
+            assertEquals("/test/19", callLogs.get(19).getPath());
+            assertEquals(new Date(19000), callLogs.get(19).getDate());
+            assertEquals(200, callLogs.get(19).getStatusCode());
+            assertNull(spool.poll());
+            assertEquals(0, spool.getSize());
+        } finally {
+            IoUtils.delete(directory, true);
+        }
+    }
+
+}
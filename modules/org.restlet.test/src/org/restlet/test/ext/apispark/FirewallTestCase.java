@@ -0,0 +1,469 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.apispark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.ext.apispark.FirewallConfig;
+import org.restlet.ext.apispark.internal.firewall.handler.BlockingHandler;
+import org.restlet.ext.apispark.internal.firewall.handler.policy.UniqueLimitPolicy;
+import org.restlet.ext.apispark.internal.firewall.rule.CounterResult;
+import org.restlet.ext.apispark.internal.firewall.rule.FirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.FirewallIpFilteringRule;
+import org.restlet.ext.apispark.internal.firewall.rule.FirewallRule;
+import org.restlet.ext.apispark.internal.firewall.rule.IpAddressTrie;
+import org.restlet.ext.apispark.internal.firewall.rule.SlidingWindowFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.TokenBucketFirewallCounterRule;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterStoreRestlet;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.CounterSynchronizer;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.MemoryCounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.RateCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.RemoteCounterStore;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.SlidingWindowCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.counter.TokenBucketCounter;
+import org.restlet.ext.apispark.internal.firewall.rule.policy.IpAddressCountingPolicy;
+import org.restlet.routing.Filter;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the firewall counters and rules.
+ * 
+ * @author Jerome Louvel
+ */
+public class FirewallTestCase extends RestletTestCase {
+
+    /** One second in nanoseconds. */
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Handles a request from the given address with the given rule.
+     * 
+     * @param rule
+     *            The rule.
+     * @param address
+     *            The client address.
+     * @return The continuation status.
+     */
+    private static int handle(FirewallCounterRule rule, String address) {
+        Request request = new Request(Method.GET, "http://localhost/test");
+        request.getClientInfo().setAddress(address);
+        Response response = new Response(request);
+        int result = rule.beforeHandle(request, response);
+        assertEquals(result == Filter.CONTINUE, response.getStatus()
+                .isSuccess());
+        return result;
+    }
+
+    /**
+     * Creates a rule limiting requests by IP address on a period of one hour,
+     * with counters shared through the given synchronizer.
+     * 
+     * @param synchronizer
+     *            The synchronizer of the shared counters.
+     * @param limit
+     *            The limit.
+     * @return The rule.
+     */
+    private static FirewallCounterRule createSharedRule(
+            CounterSynchronizer synchronizer, int limit) {
+        List<FirewallRule> rules = new ArrayList<FirewallRule>();
+        FirewallConfig config = new FirewallConfig(rules);
+        config.setCounterSynchronizer(synchronizer);
+        config.addIpAddressesPeriodicCounter(1, TimeUnit.HOURS, limit);
+        return (FirewallCounterRule) rules.get(0);
+    }
+
+    /**
+     * Formats an IPv4 address.
+     * 
+     * @param address
+     *            The address.
+     * @return The dotted decimal notation of the address.
+     */
+    private static String toString(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "."
+                + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+
+    public void testIpAddressTrie() {
+        IpAddressTrie trie = new IpAddressTrie();
+        assertTrue(trie.add("192.168.0.0/16"));
+        assertTrue(trie.add("10.1.2.3"));
+        assertTrue(trie.add("2001:db8::/32"));
+        assertTrue(trie.add("::1"));
+        assertFalse(trie.add("10.0.0.0/33"));
+        assertFalse(trie.add("256.0.0.1"));
+        assertFalse(trie.add("1:2:3:4:5:6:7:8:9"));
+        assertFalse(trie.add("localhost"));
+
+        assertTrue(trie.contains("192.168.12.34"));
+        assertFalse(trie.contains("192.169.0.1"));
+        assertTrue(trie.contains("10.1.2.3"));
+        assertFalse(trie.contains("10.1.2.4"));
+        assertTrue(trie.contains("2001:DB8:1::42"));
+        assertTrue(trie.contains("[2001:db8::1%eth0]"));
+        assertFalse(trie.contains("2001:db9::1"));
+        assertTrue(trie.contains("0:0:0:0:0:0:0:1"));
+        assertTrue(trie.contains("::ffff:192.168.1.1"));
+        assertFalse(trie.contains("::192.168.1.1"));
+        assertFalse(trie.contains("unknown"));
+
+        // Narrower ranges are covered by wider ones
+        int size = trie.size();
+        assertTrue(trie.add("192.168.1.0/24"));
+        assertEquals(size, trie.size());
+        assertTrue(trie.add("10.0.0.0/8"));
+        assertTrue(trie.contains("10.200.0.1"));
+    }
+
+    public void testIpAddressTrieRandom() {
+        Random random = new Random(42);
+        IpAddressTrie trie = new IpAddressTrie();
+        int[] addresses = new int[2000];
+        int[] lengths = new int[addresses.length];
+
+        for (int i = 0; i < addresses.length; i++) {
+            lengths[i] = 8 + random.nextInt(25);
+            addresses[i] = random.nextInt() & (-1 << (32 - lengths[i]));
+            assertTrue(trie.add(toString(addresses[i]) + "/" + lengths[i]));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            int address = (i % 2 == 0) ? random.nextInt()
+                    : addresses[random.nextInt(addresses.length)]
+                            | random.nextInt(256);
+            boolean expected = false;
+
+            for (int j = 0; !expected && j < addresses.length; j++) {
+                expected = ((address ^ addresses[j]) & (-1 << (32 - lengths[j]))) == 0;
+            }
+
+            assertEquals(toString(address), expected,
+                    trie.contains(toString(address)));
+        }
+    }
+
+    public void testIpFilteringRule() {
+        FirewallIpFilteringRule rule = new FirewallIpFilteringRule(
+                Arrays.asList("10.0.0.0/8", "2001:db8::/32"), false);
+        Request request = new Request(Method.GET, "http://localhost/test");
+        request.getClientInfo().setAddress("10.20.30.40");
+        assertEquals(Filter.STOP,
+                rule.beforeHandle(request, new Response(request)));
+        request.getClientInfo().setAddress("11.20.30.40");
+        assertEquals(Filter.CONTINUE,
+                rule.beforeHandle(request, new Response(request)));
+
+        // Lists are replaced atomically
+        rule.setFilteredAddresses(new HashSet<String>(Arrays
+                .asList("11.0.0.0/8")));
+        assertEquals(Filter.STOP,
+                rule.beforeHandle(request, new Response(request)));
+        request.getClientInfo().setAddress("10.20.30.40");
+        assertEquals(Filter.CONTINUE,
+                rule.beforeHandle(request, new Response(request)));
+    }
+
+    public void testRefund() {
+        long start = 10 * SECOND;
+        SlidingWindowCounter window = new SlidingWindowCounter(1,
+                TimeUnit.SECONDS);
+        assertEquals(1, window.increment(start).getConsumed());
+        CounterResult result = window.increment(start);
+        assertEquals(2, result.getConsumed());
+        window.refund(result, start);
+        assertEquals(2, window.increment(start).getConsumed());
+
+        TokenBucketCounter bucket = new TokenBucketCounter(2, 2,
+                TimeUnit.SECONDS);
+        assertEquals(1, bucket.increment(start).getConsumed());
+        result = bucket.increment(start);
+        assertEquals(2, result.getConsumed());
+        bucket.refund(result, start);
+        assertEquals(2, bucket.increment(start).getConsumed());
+
+        // Refused without consuming a token, nothing to give back
+        result = bucket.increment(start);
+        assertEquals(3, result.getConsumed());
+        bucket.refund(result, start);
+        assertEquals(3, bucket.increment(start).getConsumed());
+    }
+
+    public void testSharedCounters() {
+        MemoryCounterStore memoryStore = new MemoryCounterStore();
+        CounterStore store = new RemoteCounterStore(new CounterStoreRestlet(
+                null, memoryStore), new Reference("riap://component/counters"));
+        CounterSynchronizer node1 = new CounterSynchronizer(store, 0, 0);
+        CounterSynchronizer node2 = new CounterSynchronizer(store, 0, 0);
+        FirewallCounterRule rule1 = createSharedRule(node1, 3);
+        FirewallCounterRule rule2 = createSharedRule(node2, 3);
+
+        assertEquals(Filter.CONTINUE, handle(rule1, "10.0.0.1"));
+        assertEquals(Filter.CONTINUE, handle(rule1, "10.0.0.1"));
+
+        // Each node enforces the limit locally until the next flush
+        assertEquals(Filter.CONTINUE, handle(rule2, "10.0.0.1"));
+        node1.flush();
+        node2.flush();
+        node1.flush();
+        assertEquals(1, memoryStore.getSize());
+        assertEquals(Filter.SKIP, handle(rule1, "10.0.0.1"));
+        assertEquals(Filter.SKIP, handle(rule2, "10.0.0.1"));
+        assertEquals(Filter.CONTINUE, handle(rule2, "10.0.0.2"));
+        node2.flush();
+        node1.flush();
+        assertEquals(2, memoryStore.getSize());
+    }
+
+    public void testSharedCountersFlush() {
+        final List<Map<String, Long>> sent = new ArrayList<Map<String, Long>>();
+        final CounterStore memoryStore = new MemoryCounterStore();
+        CounterSynchronizer synchronizer = new CounterSynchronizer(
+                new CounterStore() {
+                    @Override
+                    public Map<String, Long> add(Map<String, Long> deltas,
+                            long expirationTime) {
+                        sent.add(new HashMap<String, Long>(deltas));
+                        return memoryStore.add(deltas, expirationTime);
+                    }
+                }, 0, 60000);
+        long now = System.currentTimeMillis();
+
+        synchronizer.add("active", 1, now + 60000);
+        synchronizer.add("idle", 1, now + 60000);
+        synchronizer.flush();
+        assertEquals(1, sent.size());
+
+        // Counters without pending increments are not sent again
+        synchronizer.add("active", 1, now + 60000);
+        synchronizer.flush();
+        assertEquals(2, sent.size());
+        assertEquals(Collections.singletonMap("active", 1L), sent.get(1));
+        synchronizer.flush();
+        assertEquals(2, sent.size());
+
+        // Expired counters send their last increments
+        synchronizer.add("expired", 1, now - 1);
+        synchronizer.flush();
+        assertEquals(3, sent.size());
+        assertEquals(Collections.singletonMap("expired", 1L), sent.get(2));
+        assertEquals(0, synchronizer.get("expired"));
+    }
+
+    public void testSharedCountersConcurrency() throws Exception {
+        final AtomicLong stored = new AtomicLong();
+        final CounterSynchronizer synchronizer = new CounterSynchronizer(
+                new CounterStore() {
+                    @Override
+                    public Map<String, Long> add(Map<String, Long> deltas,
+                            long expirationTime) {
+                        for (Long delta : deltas.values()) {
+                            stored.addAndGet(delta);
+                        }
+
+                        return deltas;
+                    }
+                }, 0, 0);
+        final int count = 20000;
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < count; j++) {
+                        // Expires right away to race with the removals
+                        synchronizer.add("key", 1, System.currentTimeMillis());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        boolean running = true;
+
+        while (running) {
+            synchronizer.flush();
+            running = false;
+
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Thread.sleep(2);
+        synchronizer.flush();
+        assertEquals(count * threads.length, stored.get());
+    }
+
+    public void testSharedCountersFailure() {
+        final boolean[] broken = { true };
+        final CounterStore memoryStore = new MemoryCounterStore();
+        CounterSynchronizer synchronizer = new CounterSynchronizer(
+                new CounterStore() {
+                    @Override
+                    public Map<String, Long> add(Map<String, Long> deltas,
+                            long expirationTime) {
+                        if (broken[0]) {
+                            throw new IllegalStateException("Store down");
+                        }
+
+                        return memoryStore.add(deltas, expirationTime);
+                    }
+                }, 0);
+        long expirationTime = System.currentTimeMillis() + 60000;
+
+        assertEquals(1, synchronizer.add("key", 1, expirationTime));
+        synchronizer.flush();
+        assertEquals(2, synchronizer.add("key", 1, expirationTime));
+        broken[0] = false;
+        synchronizer.flush();
+        assertEquals(2, synchronizer.get("key"));
+        assertEquals(Long.valueOf(2),
+                memoryStore.add(Collections.singletonMap("key", 0L),
+                        expirationTime).get("key"));
+    }
+
+    public void testSlidingWindowCounter() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1,
+                TimeUnit.SECONDS);
+        long start = 10 * SECOND;
+
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, counter.increment(start).getConsumed());
+        }
+
+        // Half of the previous period still overlaps the window
+        assertEquals(4, counter.increment(start + 3 * SECOND / 2)
+                .getConsumed());
+        assertEquals(1, counter.increment(start + 3 * SECOND).getConsumed());
+        assertFalse(counter.expire(start + 3 * SECOND));
+        assertTrue(counter.expire(start + 5 * SECOND));
+        assertNull(counter.increment(start + 5 * SECOND));
+    }
+
+    public void testSlidingWindowCounterConcurrency() throws Exception {
+        final RateCounter counter = new SlidingWindowCounter(1,
+                TimeUnit.MINUTES);
+        final long now = System.nanoTime();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment(now);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80001, counter.increment(now).getConsumed());
+    }
+
+    public void testSlidingWindowRule() {
+        SlidingWindowFirewallCounterRule rule = new SlidingWindowFirewallCounterRule(
+                1, TimeUnit.HOURS, new IpAddressCountingPolicy());
+        BlockingHandler handler = new BlockingHandler(new UniqueLimitPolicy(2));
+        rule.addHandler(handler);
+
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Filter.SKIP, handle(rule, "10.0.0.1"));
+        }
+
+        // Refused requests were not counted
+        handler.setLimitPolicy(new UniqueLimitPolicy(3));
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+        assertEquals(Filter.SKIP, handle(rule, "10.0.0.1"));
+        assertEquals(1, rule.getCounterCount());
+    }
+
+    public void testTokenBucketCounter() {
+        TokenBucketCounter counter = new TokenBucketCounter(3, 3,
+                TimeUnit.SECONDS);
+        long start = System.nanoTime();
+
+        assertEquals(1, counter.increment(start).getConsumed());
+        assertEquals(2, counter.increment(start).getConsumed());
+        assertEquals(3, counter.increment(start).getConsumed());
+        assertEquals(4, counter.increment(start).getConsumed());
+        assertEquals(4, counter.increment(start).getConsumed());
+
+        // One token is refilled every second
+        assertEquals(3, counter.increment(start + SECOND).getConsumed());
+        assertEquals(4, counter.increment(start + SECOND).getConsumed());
+        assertFalse(counter.expire(start + 2 * SECOND));
+        assertTrue(counter.expire(start + 4 * SECOND));
+        assertNull(counter.increment(start + 4 * SECOND));
+    }
+
+    public void testTokenBucketRule() {
+        TokenBucketFirewallCounterRule rule = new TokenBucketFirewallCounterRule(
+                2, 1, TimeUnit.HOURS, new IpAddressCountingPolicy());
+        rule.addHandler(new BlockingHandler(new UniqueLimitPolicy(rule
+                .getCapacity())));
+
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+        assertEquals(Filter.SKIP, handle(rule, "10.0.0.1"));
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.2"));
+        assertEquals(2, rule.getCounterCount());
+
+        rule.purge(System.nanoTime());
+        assertEquals(2, rule.getCounterCount());
+        rule.purge(System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+        assertEquals(0, rule.getCounterCount());
+        assertEquals(Filter.CONTINUE, handle(rule, "10.0.0.1"));
+    }
+
+}
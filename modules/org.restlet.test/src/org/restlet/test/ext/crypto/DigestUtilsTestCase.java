@@ -0,0 +1,105 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.crypto;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.restlet.ext.crypto.DigestUtils;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link DigestUtils} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class DigestUtilsTestCase extends RestletTestCase {
+
+    /**
+     * Converts a byte array to its lower case hexadecimal representation.
+     * 
+     * @param bytes
+     *            The bytes to convert.
+     * @return The hexadecimal string.
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+
+        return sb.toString();
+    }
+
+    public void testDigests() {
+        assertEquals("68e109f0f40ca72a15e05cc22786f8e6",
+                DigestUtils.toMd5("HelloWorld"));
+        assertEquals("68e109f0f40ca72a15e05cc22786f8e6",
+                DigestUtils.toMd5("HelloWorld"));
+        assertEquals("RuPXcqGIjq3/JsetpH/XUC15bgc=",
+                DigestUtils.toSha1("tiger"));
+        assertEquals("RuPXcqGIjq3/JsetpH/XUC15bgc=",
+                DigestUtils.toSha1("tiger"));
+    }
+
+    public void testHMacKeys() {
+        // RFC 2202 and RFC 4231 test case 2, interleaved with other keys
+        for (int i = 0; i < 3; i++) {
+            assertEquals("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79",
+                    toHex(DigestUtils.toHMacSha1("what do ya want for nothing?",
+                            "Jefe")));
+            assertEquals(
+                    "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                    toHex(DigestUtils.toHMacSha256(
+                            "what do ya want for nothing?", "Jefe")));
+            assertFalse(Arrays.equals(
+                    DigestUtils.toHMacSha1("what do ya want for nothing?",
+                            "Jefe"),
+                    DigestUtils.toHMacSha1("what do ya want for nothing?",
+                            "key" + i)));
+        }
+    }
+
+    public void testHMacThreads() throws Exception {
+        final String expected = toHex(DigestUtils.toHMacSha256("message",
+                "secret"));
+        final AtomicReference<String> actual = new AtomicReference<String>();
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                actual.set(toHex(DigestUtils.toHMacSha256("message", "secret")));
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(expected, actual.get());
+        assertEquals(expected, toHex(DigestUtils.toHMacSha256("message",
+                "secret")));
+    }
+
+}
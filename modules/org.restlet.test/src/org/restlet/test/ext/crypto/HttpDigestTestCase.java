@@ -39,6 +39,7 @@ import org.restlet.data.Method;
 import org.restlet.data.Protocol;
 import org.restlet.data.Status;
 import org.restlet.ext.crypto.DigestAuthenticator;
+import org.restlet.ext.crypto.NonceStore;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.restlet.routing.Router;
@@ -66,6 +67,7 @@ public class HttpDigestTestCase extends RestletTestCase {
             MapVerifier mapVerifier = new MapVerifier();
             mapVerifier.getLocalSecrets().put("scott", "tiger".toCharArray());
             da.setWrappedVerifier(mapVerifier);
+            da.setNonceStore(new NonceStore(da.getMaxServerNonceAge()));
 
             Restlet restlet = new Restlet(getContext()) {
                 @Override
@@ -79,6 +81,58 @@ public class HttpDigestTestCase extends RestletTestCase {
         }
     }
 
+    /**
+     * Returns the HTTP DIGEST challenge request of a response.
+     * 
+     * @param cr
+     *            The client resource that received the response.
+     * @return The HTTP DIGEST challenge request.
+     */
+    private static ChallengeRequest getDigestChallenge(ClientResource cr) {
+        for (ChallengeRequest challengeRequest : cr.getChallengeRequests()) {
+            if (ChallengeScheme.HTTP_DIGEST.equals(challengeRequest
+                    .getScheme())) {
+                return challengeRequest;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sends an authenticated request with quality of protection.
+     * 
+     * @param challenge
+     *            The challenge request sent by the server.
+     * @param response
+     *            The response carrying the challenge request.
+     * @param clientNonce
+     *            The client nonce.
+     * @param nonceCount
+     *            The nonce count.
+     * @return The status of the response.
+     */
+    private Status get(ChallengeRequest challenge, Response response,
+            String clientNonce, int nonceCount) {
+        ClientResource cr = new ClientResource("http://localhost:" + port + "/");
+        ChallengeResponse c2 = new ChallengeResponse(challenge, response,
+                "scott", "tiger".toCharArray());
+        c2.setQuality("auth");
+        c2.setClientNonce(clientNonce);
+        c2.setServerNounceCount(nonceCount);
+        cr.setChallengeResponse(c2);
+
+        try {
+            cr.get();
+        } catch (ResourceException re) {
+            // The status is checked by the caller
+        } finally {
+            cr.release();
+        }
+
+        return cr.getStatus();
+    }
+
     @Override
     protected void setUp() throws Exception {
         super.setUp();
@@ -134,4 +188,27 @@ public class HttpDigestTestCase extends RestletTestCase {
             assertTrue(cr.getStatus().isSuccess());
         }
     }
+
+    public void testSharedNonce() throws Exception {
+        ClientResource cr = new ClientResource("http://localhost:" + port + "/");
+
+        try {
+            cr.get();
+            fail("An unauthenticated request must be challenged");
+        } catch (ResourceException re) {
+            assertEquals(Status.CLIENT_ERROR_UNAUTHORIZED, cr.getStatus());
+        }
+
+        ChallengeRequest challenge = getDigestChallenge(cr);
+        Response response = cr.getResponse();
+
+        // Two clients challenged with the same server nonce
+        assertEquals(Status.SUCCESS_OK, get(challenge, response, "c1", 1));
+        assertEquals(Status.SUCCESS_OK, get(challenge, response, "c2", 1));
+        assertEquals(Status.SUCCESS_OK, get(challenge, response, "c1", 2));
+
+        // Replayed nonce count
+        assertEquals(Status.CLIENT_ERROR_UNAUTHORIZED,
+                get(challenge, response, "c2", 1));
+    }
 }
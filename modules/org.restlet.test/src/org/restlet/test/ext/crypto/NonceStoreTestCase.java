@@ -0,0 +1,118 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.crypto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.ext.crypto.NonceStore;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link NonceStore} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class NonceStoreTestCase extends RestletTestCase {
+
+    public void testConcurrentUpdates() throws Exception {
+        final NonceStore store = new NonceStore(60000L);
+        final long now = System.currentTimeMillis();
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int nc = 1; nc <= 1000; nc++) {
+                        if (store.update("nonce", now, nc)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Each count can only be accepted once
+        assertTrue(accepted.get() >= 1000);
+        assertTrue(accepted.get() <= 1000 * threads.length);
+        assertFalse(store.update("nonce", now, 1000));
+        assertTrue(store.update("nonce", now, 1001));
+    }
+
+    public void testExpiration() {
+        NonceStore store = new NonceStore(1000L, 4);
+        long duration = store.getBucketDuration();
+        assertEquals(334L, duration);
+
+        assertTrue(store.update("old", 0L, 1));
+        assertTrue(store.update("recent", 3 * duration, 1));
+        assertEquals(2, store.size());
+
+        // Reuses the bucket of the oldest nonce
+        assertTrue(store.update("new", 4 * duration, 1));
+        assertEquals(2, store.size());
+        assertFalse(store.update("old", 0L, 2));
+        assertTrue(store.update("recent", 3 * duration, 2));
+
+        store.clear();
+        assertEquals(0, store.size());
+    }
+
+    public void testReplay() {
+        NonceStore store = new NonceStore(60000L);
+        long now = System.currentTimeMillis();
+
+        assertTrue(store.update("a", now, 1));
+        assertFalse(store.update("a", now, 1));
+        assertTrue(store.update("a", now, 2));
+        assertTrue(store.update("a", now, 5));
+        assertFalse(store.update("a", now, 3));
+        assertTrue(store.update("b", now, 1));
+        assertFalse(store.update("c", now, 0));
+        assertFalse(store.update(null, now, 1));
+        assertEquals(2, store.size());
+    }
+
+    public void testSharedNonce() {
+        NonceStore store = new NonceStore(60000L);
+        long now = System.currentTimeMillis();
+
+        // Clients challenged with the same nonce are tracked separately
+        assertTrue(store.update("a", "c1", now, 1));
+        assertTrue(store.update("a", "c2", now, 1));
+        assertFalse(store.update("a", "c1", now, 1));
+        assertTrue(store.update("a", "c2", now, 2));
+        assertTrue(store.update("a", null, now, 1));
+        assertFalse(store.update("a", null, now, 1));
+        assertEquals(3, store.size());
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.jaxrs.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+import org.restlet.ext.jaxrs.internal.util.Invoker;
+
+/**
+ * @author Jerome Louvel
+ * @see Invoker
+ */
+public class InvokerTests extends TestCase {
+
+    public static class Target {
+
+        public static String concat(String a, String b) {
+            return a + b;
+        }
+
+        private int count;
+
+        private String name;
+
+        public Target() {
+            this("default");
+        }
+
+        public Target(String name) {
+            if (name == null) {
+                throw new IllegalStateException("no name");
+            }
+            this.name = name;
+        }
+
+        public int add(int a, Integer b) {
+            return this.count += a + b;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private static Method method(String name, Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        return Target.class.getMethod(name, parameterTypes);
+    }
+
+    public void testConstructor() throws Exception {
+        Invoker invoker = Invoker.forConstructor(Target.class
+                .getConstructor(String.class));
+        assertTrue(invoker.isCompiled());
+        assertEquals("abc", ((Target) invoker.newInstance("abc")).getName());
+
+        invoker = Invoker.forConstructor(Target.class.getConstructor());
+        assertEquals("default", ((Target) invoker.newInstance()).getName());
+        assertEquals("default",
+                ((Target) invoker.newInstance((Object[]) null)).getName());
+    }
+
+    public void testConstructorException() throws Exception {
+        Invoker invoker = Invoker.forConstructor(Target.class
+                .getConstructor(String.class));
+        try {
+            invoker.newInstance((Object) null);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testFieldSetter() throws Exception {
+        Field field = Target.class.getDeclaredField("name");
+        field.setAccessible(true);
+        Invoker invoker = Invoker.forSetter(field);
+        assertTrue(invoker.isCompiled());
+        assertSame(field, invoker.getMember());
+
+        Target target = new Target();
+        assertNull(invoker.invoke(target, "xyz"));
+        assertEquals("xyz", target.getName());
+
+        try {
+            invoker.invoke(target, Integer.valueOf(1));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testInvalidArguments() throws Exception {
+        Invoker invoker = Invoker.forMethod(method("add", int.class,
+                Integer.class));
+        Target target = new Target();
+        try {
+            invoker.invoke(target, "1", Integer.valueOf(2));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            invoker.invoke(target, null, Integer.valueOf(2));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            invoker.invoke(target, Integer.valueOf(1));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            invoker.invoke("not a target", Integer.valueOf(1),
+                    Integer.valueOf(2));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMethod() throws Exception {
+        Invoker invoker = Invoker.forMethod(method("add", int.class,
+                Integer.class));
+        assertTrue(invoker.isCompiled());
+        Target target = new Target();
+        assertEquals(3, invoker.invoke(target, 1, 2));
+        assertEquals(6, invoker.invoke(target, 1, 2));
+
+        invoker = Invoker.forSetter(method("setName", String.class));
+        assertNull(invoker.invoke(target, "abc"));
+        assertEquals("abc", target.getName());
+    }
+
+    public void testMethodException() throws Exception {
+        Invoker invoker = Invoker.forMethod(method("fail", String.class));
+        try {
+            invoker.invoke(new Target(), "boom");
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("boom", e.getCause().getMessage());
+        }
+
+        // a null argument is passed to the method, as with reflection
+        invoker = Invoker.forMethod(method("add", int.class, Integer.class));
+        try {
+            invoker.invoke(new Target(), 1, null);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
+    public void testStaticMethod() throws Exception {
+        Invoker invoker = Invoker.forMethod(method("concat", String.class,
+                String.class));
+        assertEquals("ab", invoker.invoke(null, "a", "b"));
+    }
+}
@@ -87,6 +87,25 @@ public class PathRegExpTests extends TestCase {
 
     private final PathRegExp regExpOneSegment2 = newPathRegExp(PATH_PATTERN_2);
 
+    /**
+     * Test method for
+     * {@link org.restlet.ext.jaxrs.internal.util.PathRegExp#getFirstLiteralSegment()}
+     * .
+     */
+    public void testFirstLiteralSegment() {
+        assertEquals("abc", this.regExpMultipleSegments1
+                .getFirstLiteralSegment());
+        assertEquals("abc", newPathRegExp("abc").getFirstLiteralSegment());
+        assertEquals("a-b_c~1", newPathRegExp("/a-b_c~1/{x}")
+                .getFirstLiteralSegment());
+        assertNull(newPathRegExp("").getFirstLiteralSegment());
+        assertNull(newPathRegExp("/").getFirstLiteralSegment());
+        assertNull(newPathRegExp("/{x}/abc").getFirstLiteralSegment());
+        assertNull(newPathRegExp("/abc{x}").getFirstLiteralSegment());
+        assertNull(newPathRegExp("/a.b").getFirstLiteralSegment());
+        assertNull(newPathRegExp("/a%20b").getFirstLiteralSegment());
+    }
+
     /**
      * Test method for
      * {@link org.restlet.ext.jaxrs.internal.util.PathRegExp#match(java.lang.String)}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.oauth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.ext.oauth.OAuthException;
+import org.restlet.ext.oauth.internal.AuthSession;
+import org.restlet.ext.oauth.internal.Client;
+import org.restlet.ext.oauth.internal.Client.ClientType;
+import org.restlet.ext.oauth.internal.Token;
+import org.restlet.ext.oauth.internal.memory.MemoryClientManager;
+import org.restlet.ext.oauth.internal.memory.MemoryTokenManager;
+import org.restlet.ext.oauth.internal.memory.TimeWheel;
+
+/**
+ * Tests the indexes and expiration of {@link MemoryTokenManager}.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemoryTokenManagerTest {
+
+    private Client client;
+
+    private Client otherClient;
+
+    private MemoryTokenManager tokens;
+
+    @Before
+    public void setUp() {
+        MemoryClientManager clients = new MemoryClientManager();
+        client = clients.createClient(ClientType.CONFIDENTIAL,
+                new String[] { "http://example.com/cb" }, null);
+        otherClient = clients.createClient(ClientType.CONFIDENTIAL,
+                new String[] { "http://example.com/cb" }, null);
+        tokens = new MemoryTokenManager();
+    }
+
+    @Test
+    public void testConcurrentRefresh() throws Exception {
+        final Token token = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        final AtomicInteger refreshed = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        tokens.refreshToken(client, token.getRefreshToken(),
+                                null);
+                        refreshed.incrementAndGet();
+                    } catch (OAuthException e) {
+                        // Lost the race
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, refreshed.get());
+        assertEquals(1, tokens.findTokens(client).length);
+    }
+
+    @Test
+    public void testIndexes() throws Exception {
+        Token alice = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        Token bob = tokens.generateToken(client, "bob", new String[] { "a" });
+        Token other = tokens.generateToken(otherClient, "alice",
+                new String[] { "a" });
+        Token anonymous = tokens.generateToken(client, new String[] { "a" });
+
+        assertSame(alice, tokens.findToken(client, "alice"));
+        assertSame(anonymous, tokens.findToken(client));
+        assertEquals(3, tokens.findTokens(client).length);
+        assertEquals(2, tokens.findTokens("alice").length);
+
+        // Generating a new token revokes the previous one of the owner
+        Token alice2 = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        assertSame(alice2, tokens.findToken(client, "alice"));
+        assertEquals(3, tokens.findTokens(client).length);
+
+        Token refreshed = tokens.refreshToken(client, bob.getRefreshToken(),
+                null);
+        assertSame(refreshed, tokens.validateToken(refreshed.getAccessToken()));
+        assertSame(refreshed, tokens.findToken(client, "bob"));
+
+        try {
+            tokens.validateToken(bob.getAccessToken());
+            fail("Refreshed token still valid");
+        } catch (OAuthException e) {
+            // Expected
+        }
+
+        tokens.revokeAllTokens("alice");
+        assertEquals(0, tokens.findTokens("alice").length);
+        assertNull(tokens.findToken(client, "alice"));
+        assertEquals(2, tokens.findTokens(client).length);
+        assertNotNull(tokens.validateToken(anonymous.getAccessToken()));
+
+        tokens.revokeAllTokens(client);
+        assertEquals(0, tokens.findTokens(client).length);
+        assertEquals(0, tokens.findTokens(otherClient).length);
+        assertNull(tokens.findToken(otherClient, "alice"));
+
+        try {
+            tokens.validateToken(other.getAccessToken());
+            fail("Revoked token still valid");
+        } catch (OAuthException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        AuthSession session = AuthSession.newAuthSession();
+        String code = tokens.storeSession(session);
+        assertSame(session, tokens.restoreSession(code));
+
+        try {
+            tokens.restoreSession(code);
+            fail("Session restored twice");
+        } catch (OAuthException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTimeWheel() {
+        long now = 1000000L;
+        TimeWheel<String> wheel = new TimeWheel<String>(10L, 4, now);
+        wheel.schedule("a", now + 5);
+        wheel.schedule("b", now + 25);
+        wheel.schedule("c", now + 100);
+        wheel.schedule("d", now - 100);
+        TimeWheel.Timeout<String> e = wheel.schedule("e", now + 5);
+        e.cancel();
+        assertTrue(e.isCancelled());
+
+        assertEquals(0, wheel.advance(now).size());
+
+        List<String> expired = wheel.advance(now + 30);
+        assertTrue(expired.contains("a"));
+        assertTrue(expired.contains("d"));
+        assertTrue(!expired.contains("c"));
+        assertTrue(!expired.contains("e"));
+
+        expired.addAll(wheel.advance(now + 40));
+        assertTrue(expired.contains("b"));
+        assertTrue(!expired.contains("c"));
+
+        // Visited once per rotation before its deadline
+        assertEquals(1, wheel.advance(now + 120).size());
+        assertEquals(0, wheel.advance(now + 200).size());
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.oauth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.restlet.ext.oauth.internal.StripedSecureRandom;
+
+/**
+ * Tests the {@link StripedSecureRandom} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class StripedSecureRandomTest {
+
+    @Test
+    public void testNextBytes() {
+        // Small buffer and reseed interval to cover refills and reseedings
+        StripedSecureRandom random = new StripedSecureRandom(
+                StripedSecureRandom.DEFAULT_ALGORITHM, 10, 2, 16);
+        Set<String> values = new HashSet<String>();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = random.nextBytes(40);
+            assertEquals(40, bytes.length);
+            values.add(Arrays.toString(bytes));
+        }
+
+        assertEquals(100, values.size());
+        assertFalse(Arrays.equals(new byte[40], random.nextBytes(40)));
+        assertEquals(0, random.nextBytes(0).length);
+    }
+
+}
@@ -24,11 +24,19 @@
 
 package org.restlet.test.ext.odata;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.restlet.Component;
 import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
 import org.restlet.ext.odata.Query;
+import org.restlet.ext.odata.internal.MetadataCache;
+import org.restlet.ext.odata.internal.edm.EntityType;
+import org.restlet.ext.odata.internal.edm.Metadata;
+import org.restlet.resource.ClientResource;
 import org.restlet.test.RestletTestCase;
 import org.restlet.test.ext.odata.cafe.Cafe;
 import org.restlet.test.ext.odata.cafe.CafeService;
@@ -69,6 +77,32 @@ public class ODataCafeTestCase extends RestletTestCase {
         super.tearDown();
     }
 
+    /**
+     * Tests the sharing of the parsed metadata and its lookup maps.
+     */
+    public void testMetadataCache() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        cache.setMaxAge(60000);
+        Metadata metadata = cache.get(new ClientResource(
+                "http://localhost:8111/Cafe.svc/$metadata"));
+        assertSame(metadata, cache.get(new ClientResource(
+                "http://localhost:8111/Cafe.svc/$metadata")));
+
+        EntityType type = metadata.getEntityType(Cafe.class);
+        assertNotNull(type);
+        assertEquals("/Cafes", metadata.getEntitySetSubpath(type));
+        assertSame(type, metadata.getEntitySet("Cafes").getType());
+        assertNull(metadata.getEntitySet("Unknown"));
+
+        Cafe cafe = new Cafe();
+        cafe.setId("1");
+        assertEquals("/Cafes('1')", metadata.getSubpath(cafe));
+
+        cache.remove(new Reference("http://localhost:8111/Cafe.svc/$metadata"));
+        assertNotSame(metadata, cache.get(new ClientResource(
+                "http://localhost:8111/Cafe.svc/$metadata")));
+    }
+
     /**
      * Tests the parsing of Feed element.
      */
@@ -91,6 +125,9 @@ public class ODataCafeTestCase extends RestletTestCase {
         assertEquals("Cafe inc.", cafe.getCompanyName());
         assertEquals("Marly Le Roi", cafe.getCity());
         assertEquals(78310, cafe.getZipCode());
+
+        assertFalse(iterator.hasNext());
+        assertNull(query.getNextPage());
     }
 
     /**
@@ -193,6 +230,23 @@ public class ODataCafeTestCase extends RestletTestCase {
         assertEquals("Chief", contact.getTitle());
     }
 
+    /**
+     * Tests the server paging feature with prefetching of the next page.
+     */
+    public void testServerPagingPrefetch() {
+        Query<Cafe> query1 = service.createCafeQuery("/Cafes");
+        Query<Cafe> query2 = query1.skipToken("Skip1").prefetch(true);
+        assertTrue(query2.isPrefetch());
+        assertTrue(query2.top(2).isPrefetch());
+
+        List<String> ids = new ArrayList<String>();
+        for (Cafe cafe : query2) {
+            ids.add(cafe.getId());
+        }
+
+        assertEquals(Arrays.asList("1", "2", "1", "2"), ids);
+    }
+
     /**
      * Tests the server paging feature.
      */
@@ -24,7 +24,18 @@
 
 package org.restlet.test.ext.rdf;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.rdf.BatchGraphHandler;
+import org.restlet.ext.rdf.Graph;
+import org.restlet.ext.rdf.GraphBuilder;
+import org.restlet.ext.rdf.Link;
+import org.restlet.ext.rdf.Literal;
 import org.restlet.ext.rdf.RdfRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
@@ -35,6 +46,130 @@ import org.restlet.test.RestletTestCase;
  */
 public class RdfTestCase extends RestletTestCase {
 
+    public void testGraphIndex() throws Exception {
+        Graph graph = new Graph();
+        Link name = graph.addLiteral("http://example.com/a",
+                "http://xmlns.com/foaf/0.1/name", "A");
+        Link knows = graph.addReference("http://example.com/a",
+                "http://xmlns.com/foaf/0.1/knows", "http://example.com/b");
+        Link other = graph.addLiteral("http://example.com/b",
+                "http://xmlns.com/foaf/0.1/name", "B");
+        assertEquals(3, graph.size());
+
+        // Equal terms are shared
+        assertSame(name.getSourceAsReference(), knows.getSourceAsReference());
+        assertSame(name.getTypeRef(), other.getTypeRef());
+        assertSame(knows.getTargetAsReference(), other.getSourceAsReference());
+
+        Reference a = new Reference("http://example.com/a");
+        Reference nameRef = new Reference("http://xmlns.com/foaf/0.1/name");
+        assertEquals(2, graph.getLinks(a, null, null).size());
+        assertEquals(2, graph.getLinks(null, nameRef, null).size());
+        assertEquals(3, graph.getLinks(null, null, null).size());
+
+        List<Link> links = graph.getLinks(null, nameRef, new Literal("B"));
+        assertEquals(1, links.size());
+        assertSame(other, links.get(0));
+
+        links = graph.getLinks(a, null, new Reference("http://example.com/b"));
+        assertEquals(1, links.size());
+        assertSame(knows, links.get(0));
+
+        assertTrue(graph.getLinks(a, nameRef, new Literal("B")).isEmpty());
+        assertEquals(1, graph.getLinks(a, nameRef, new Literal("A")).size());
+
+        assertTrue(graph.remove(knows));
+        assertFalse(graph.contains(knows));
+        assertEquals(2, graph.size());
+        assertEquals(1, graph.getLinks(a, null, null).size());
+        assertTrue(graph.getLinks(null, null,
+                new Reference("http://example.com/b")).isEmpty());
+    }
+
+    public void testGraphBuilder() throws Exception {
+        Graph graph = new Graph();
+        GraphBuilder builder = new GraphBuilder(graph);
+        builder.startGraph();
+        Reference typeRef = new Reference("http://example.com/p");
+
+        for (int i = 0; i < 3000; i++) {
+            builder.link(new Reference("http://example.com/s" + i), typeRef,
+                    new Literal(Integer.toString(i)));
+        }
+
+        // The last batch is only added at the end of the graph
+        assertTrue(graph.size() < 3000);
+        builder.endGraph();
+        assertEquals(3000, graph.size());
+        assertEquals(3000, graph.getLinks(null, typeRef, null).size());
+
+        List<Link> links = graph.getLinks(new Reference(
+                "http://example.com/s42"), null, null);
+        assertEquals(1, links.size());
+        assertEquals("42", links.get(0).getTargetAsLiteral().getValue());
+    }
+
+    public void testNTriples() throws Exception {
+        Graph graph = new Graph();
+        Reference typeRef = new Reference("http://example.com/p");
+        graph.add(new Reference("http://example.com/s"), typeRef, new Literal(
+                "a \"quoted\"\tvalue\non two lines \\"));
+        graph.add(new Reference("http://example.com/s"), typeRef, new Literal(
+                "12", new Reference("http://www.w3.org/2001/XMLSchema#int")));
+        graph.add(new Reference("http://example.com/s"), typeRef, new Literal(
+                "chat", null, Language.valueOf("fr")));
+        graph.add(Link.createBlankRef("b1"), typeRef, new Reference(
+                "http://example.com/o"));
+
+        // Write the links on the fly then parse them back
+        List<Link> links = new ArrayList<Link>(graph);
+        String text = new RdfRepresentation(links, MediaType.TEXT_RDF_NTRIPLES)
+                .getText();
+        Graph parsed = new RdfRepresentation(new StringRepresentation(text,
+                MediaType.TEXT_RDF_NTRIPLES)).getGraph();
+        assertEquals(4, parsed.size());
+
+        Iterator<Link> iterator = parsed.iterator();
+        Literal literal = iterator.next().getTargetAsLiteral();
+        assertEquals("a \"quoted\"\tvalue\non two lines \\",
+                literal.getValue());
+        literal = iterator.next().getTargetAsLiteral();
+        assertEquals("12", literal.getValue());
+        assertEquals("http://www.w3.org/2001/XMLSchema#int", literal
+                .getDatatypeRef().toString());
+        literal = iterator.next().getTargetAsLiteral();
+        assertEquals("chat", literal.getValue());
+        assertEquals(Language.valueOf("fr"), literal.getLanguage());
+        assertEquals(Link.createBlankRef("b1"), iterator.next()
+                .getSourceAsReference());
+    }
+
+    public void testNTriplesBatches() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("<http://example.com/s").append(i)
+                    .append("> <http://example.com/p> \"value \\u00e9")
+                    .append(i).append("\" .\n");
+        }
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+        final List<Link> links = new ArrayList<Link>();
+        new RdfRepresentation(new StringRepresentation(sb.toString(),
+                MediaType.TEXT_RDF_NTRIPLES)).parse(new BatchGraphHandler(
+                1000) {
+            @Override
+            public void link(List<Link> batch) {
+                sizes.add(batch.size());
+                links.addAll(batch);
+            }
+        });
+
+        assertEquals(5, sizes.size());
+        assertEquals(5000, links.size());
+        assertEquals("value \u00e94999", links.get(4999).getTargetAsLiteral()
+                .getValue());
+    }
+
     public void testN3() throws Exception {
         Representation rep = new StringRepresentation(
                 "@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> ."
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.routing;
+
+import org.restlet.Component;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.engine.component.HostRoute;
+import org.restlet.engine.component.ServerRouter;
+import org.restlet.routing.VirtualHost;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the selection of virtual hosts by the server router.
+ * 
+ * @author Jerome Louvel
+ */
+public class VirtualHostTestCase extends RestletTestCase {
+
+    private Component component;
+
+    private VirtualHost addHost(String name, String hostDomain) {
+        VirtualHost host = new VirtualHost(this.component.getContext()
+                .createChildContext());
+        host.setName(name);
+        host.setHostDomain(hostDomain);
+        this.component.getHosts().add(host);
+        return host;
+    }
+
+    private String route(ServerRouter router, String uri) {
+        Request request = new Request(Method.GET, uri);
+        request.setHostRef(new Reference(uri).getHostIdentifier());
+        Response response = new Response(request);
+        response.getServerInfo().setAddress("127.0.0.1");
+        response.getServerInfo().setPort(8182);
+        Restlet next = router.getNext(request, response);
+        return (next instanceof HostRoute) ? ((HostRoute) next)
+                .getVirtualHost().getName() : null;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.component = new Component();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.component = null;
+        super.tearDown();
+    }
+
+    public void testHostDomainLiterals() {
+        VirtualHost host = addHost("a", "www\\.a\\.com|A\\.com");
+        HostRoute route = new HostRoute(null, host);
+        assertEquals(2, route.getHostDomainLiterals().length);
+        assertEquals("www.a.com", route.getHostDomainLiterals()[0]);
+        assertEquals("a.com", route.getHostDomainLiterals()[1]);
+
+        host.setHostDomain("www.a.com");
+        assertNull(route.getHostDomainLiterals());
+        host.setHostDomain("api\\d\\.a\\.com");
+        assertNull(route.getHostDomainLiterals());
+    }
+
+    public void testRuntimeChanges() throws Exception {
+        VirtualHost a = addHost("a", "www\\.a\\.com");
+        addHost("b", "www\\.b\\.com");
+        this.component.getDefaultHost().setName("default");
+
+        ServerRouter router = new ServerRouter(this.component);
+        router.start();
+        assertEquals("a", route(router, "http://www.a.com/path"));
+
+        // Changing a host domain is taken into account
+        a.setHostDomain("www\\.c\\.com");
+        assertEquals("default", route(router, "http://www.a.com/path"));
+        assertEquals("a", route(router, "http://www.c.com/path"));
+
+        // Swapping a route keeps the size of the list
+        VirtualHost d = new VirtualHost(this.component.getContext()
+                .createChildContext());
+        d.setName("d");
+        d.setHostDomain("www\\.a\\.com");
+        router.getRoutes().set(0, new HostRoute(router, d));
+        assertEquals("d", route(router, "http://www.a.com/path"));
+        assertEquals("default", route(router, "http://www.c.com/path"));
+    }
+
+    public void testSelection() throws Exception {
+        addHost("literal", "www\\.a\\.com|a\\.com");
+        addHost("regex", "api[0-9]\\.a\\.com");
+        addHost("dot", "www.b.com");
+        addHost("other", "www\\.c\\.com").setServerPort("9999");
+        VirtualHost port = addHost("port", "www\\.c\\.com");
+        port.setServerPort("8182");
+        addHost("first", "www\\.d\\.com");
+        addHost("second", "www\\.d\\.com");
+        this.component.getDefaultHost().setName("default");
+
+        ServerRouter router = new ServerRouter(this.component);
+        router.start();
+
+        assertEquals("literal", route(router, "http://www.a.com/path"));
+        assertEquals("literal", route(router, "http://A.COM/path"));
+        assertEquals("regex", route(router, "http://API2.a.com/path"));
+        assertEquals("dot", route(router, "http://www.b.com/path"));
+        assertEquals("dot", route(router, "http://wwwxb.com/path"));
+        assertEquals("port", route(router, "http://www.c.com/path"));
+        assertEquals("first", route(router, "http://www.d.com/path"));
+        assertEquals("default", route(router, "http://www.e.com/path"));
+
+        // Without the index, the selection is the same
+        router.setMaxAttempts(2);
+        assertEquals("literal", route(router, "http://A.COM/path"));
+        assertEquals("port", route(router, "http://www.c.com/path"));
+        assertEquals("default", route(router, "http://www.e.com/path"));
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.security;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.security.Pbkdf2Verifier;
+import org.restlet.security.VerificationCache;
+import org.restlet.security.Verifier;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the hashed secret verifiers and the verification cache.
+ * 
+ * @author Jerome Louvel
+ */
+public class VerifierTestCase extends RestletTestCase {
+
+    /**
+     * PBKDF2 verifier counting the hash verifications.
+     */
+    private static class CountingVerifier extends Pbkdf2Verifier {
+
+        private volatile int count;
+
+        @Override
+        public boolean matches(char[] secret, String hash) {
+            count++;
+            return super.matches(secret, hash);
+        }
+    }
+
+    private static Request createRequest(String identifier, String secret) {
+        Request result = new Request();
+        result.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, identifier, secret));
+        return result;
+    }
+
+    public void testPbkdf2() {
+        Pbkdf2Verifier verifier = new Pbkdf2Verifier();
+        verifier.setIterations(1000);
+        verifier.setLocalSecret("scott", "tiger".toCharArray());
+
+        String hash = verifier.getLocalHash("scott");
+        assertTrue(hash.startsWith(Pbkdf2Verifier.DEFAULT_ALGORITHM + ":1000:"));
+        assertFalse(hash.contains("tiger"));
+
+        assertEquals(Verifier.RESULT_VALID,
+                verifier.verify("scott", "tiger".toCharArray()));
+        assertEquals(Verifier.RESULT_INVALID,
+                verifier.verify("scott", "lion".toCharArray()));
+        assertEquals(Verifier.RESULT_INVALID,
+                verifier.verify("bob", "tiger".toCharArray()));
+        assertEquals(Verifier.RESULT_INVALID, verifier.verify("scott", null));
+
+        // Existing hashes remain valid after changing the settings
+        verifier.setIterations(2000);
+        assertEquals(Verifier.RESULT_VALID,
+                verifier.verify("scott", "tiger".toCharArray()));
+        assertFalse(verifier.matches("tiger".toCharArray(), "invalid"));
+    }
+
+    public void testCache() throws Exception {
+        CountingVerifier verifier = new CountingVerifier();
+        verifier.setIterations(1000);
+        verifier.setCache(new VerificationCache());
+        verifier.setLocalSecret("scott", "tiger".toCharArray());
+
+        Request request = createRequest("scott", "tiger");
+        assertEquals(Verifier.RESULT_VALID,
+                verifier.verify(request, new Response(request)));
+        assertEquals("scott", request.getClientInfo().getUser()
+                .getIdentifier());
+        assertEquals(1, verifier.count);
+
+        request = createRequest("scott", "tiger");
+        assertEquals(Verifier.RESULT_VALID,
+                verifier.verify(request, new Response(request)));
+        assertEquals("scott", request.getClientInfo().getUser()
+                .getIdentifier());
+        assertEquals(1, verifier.count);
+
+        // Failed verifications aren't cached
+        request = createRequest("scott", "lion");
+        assertEquals(Verifier.RESULT_INVALID,
+                verifier.verify(request, new Response(request)));
+        request = createRequest("scott", "lion");
+        assertEquals(Verifier.RESULT_INVALID,
+                verifier.verify(request, new Response(request)));
+        assertEquals(3, verifier.count);
+
+        // Changing the secret invalidates the cached verifications
+        verifier.setLocalSecret("scott", "lion".toCharArray());
+        request = createRequest("scott", "tiger");
+        assertEquals(Verifier.RESULT_INVALID,
+                verifier.verify(request, new Response(request)));
+        assertEquals(4, verifier.count);
+    }
+
+    public void testCacheExpiration() throws Exception {
+        VerificationCache cache = new VerificationCache(2, 50L);
+        cache.add("scott", "tiger".toCharArray());
+        assertTrue(cache.contains("scott", "tiger".toCharArray()));
+        assertFalse(cache.contains("scott", "lion".toCharArray()));
+        assertFalse(cache.contains("bob", "tiger".toCharArray()));
+
+        // The cache is bounded
+        cache.add("bob", "lion".toCharArray());
+        cache.add("alice", "cat".toCharArray());
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains("alice", "cat".toCharArray()));
+
+        cache.invalidate("bob");
+        assertEquals(1, cache.size());
+
+        Thread.sleep(100);
+        assertFalse(cache.contains("scott", "tiger".toCharArray()));
+        assertEquals(0, cache.size());
+    }
+}
@@ -42,6 +42,89 @@ import org.restlet.test.RestletTestCase;
  */
 public class ConnegServiceTestCase extends RestletTestCase {
 
+    /**
+     * Creates a request accepting the given media types with decreasing
+     * qualities.
+     * 
+     * @param mediaTypes
+     *            The accepted media types.
+     * @return The request.
+     */
+    private static Request createRequest(MediaType... mediaTypes) {
+        Request result = new Request();
+        float quality = 1.0F;
+
+        for (MediaType mediaType : mediaTypes) {
+            result.getClientInfo().getAcceptedMediaTypes()
+                    .add(new Preference<MediaType>(mediaType, quality));
+            quality -= 0.1F;
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a list of variants for the given media types.
+     * 
+     * @param mediaTypes
+     *            The media types of the variants.
+     * @return The list of variants.
+     */
+    private static List<Variant> createVariants(MediaType... mediaTypes) {
+        List<Variant> result = new ArrayList<Variant>();
+
+        for (MediaType mediaType : mediaTypes) {
+            result.add(new Variant(mediaType));
+        }
+
+        return result;
+    }
+
+    public void testCache() {
+        MetadataService metadataService = new MetadataService();
+        ConnegService cached = new ConnegService();
+        ConnegService uncached = new ConnegService();
+        uncached.setCacheSize(0);
+
+        MediaType[][] accepts = {
+                { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML },
+                { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON },
+                { MediaType.TEXT_HTML }, { MediaType.TEXT_ALL },
+                { MediaType.ALL } };
+
+        for (int i = 0; i < 3; i++) {
+            for (boolean strict : new boolean[] { false, true }) {
+                cached.setStrict(strict);
+                uncached.setStrict(strict);
+
+                for (MediaType[] accept : accepts) {
+                    List<Variant> variants = createVariants(
+                            MediaType.APPLICATION_XML,
+                            MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN);
+                    Variant expected = uncached.getPreferredVariant(variants,
+                            createRequest(accept), metadataService);
+                    Variant actual = cached.getPreferredVariant(variants,
+                            createRequest(accept), metadataService);
+                    assertSame(expected, actual);
+                }
+            }
+        }
+
+        // The memoized index is resolved against the given list
+        cached.setStrict(false);
+        List<Variant> variants = createVariants(MediaType.APPLICATION_XML,
+                MediaType.APPLICATION_JSON);
+        Variant variant = cached.getPreferredVariant(variants,
+                createRequest(MediaType.APPLICATION_JSON), metadataService);
+        assertSame(variants.get(1), variant);
+
+        variants = createVariants(MediaType.APPLICATION_JSON,
+                MediaType.APPLICATION_XML);
+        variant = cached.getPreferredVariant(variants,
+                createRequest(MediaType.APPLICATION_JSON), metadataService);
+        assertSame(variants.get(0), variant);
+    }
+
     public void testStrict() {
         List<Variant> variants = new ArrayList<Variant>();
         Variant variant = new Variant(MediaType.APPLICATION_XML);
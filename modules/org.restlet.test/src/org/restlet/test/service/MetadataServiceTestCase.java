@@ -24,6 +24,7 @@
 
 package org.restlet.test.service;
 
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
 import org.restlet.service.MetadataService;
 import org.restlet.test.RestletTestCase;
@@ -35,6 +36,26 @@ import org.restlet.test.RestletTestCase;
  */
 public class MetadataServiceTestCase extends RestletTestCase {
 
+    public void testIndexUpdates() {
+        MetadataService ms = new MetadataService();
+        assertEquals(MediaType.TEXT_XML, ms.getMetadata("xml"));
+        assertEquals(2, ms.getAllMediaTypes("xml").size());
+        assertEquals("txt", ms.getExtension(MediaType.TEXT_PLAIN));
+
+        ms.addExtension("text", MediaType.TEXT_PLAIN, true);
+        assertEquals("text", ms.getExtension(MediaType.TEXT_PLAIN));
+        assertEquals(MediaType.TEXT_PLAIN, ms.getMediaType("text"));
+
+        ms.addExtension("xml", Language.ENGLISH, true);
+        assertEquals(Language.ENGLISH, ms.getMetadata("xml"));
+        assertEquals(2, ms.getAllMediaTypes("xml").size());
+
+        ms.clearExtensions();
+        assertNull(ms.getMetadata("xml"));
+        assertNull(ms.getExtension(MediaType.TEXT_PLAIN));
+        assertTrue(ms.getAllExtensionNames().isEmpty());
+    }
+
     public void testStrict() {
         MetadataService ms = new MetadataService();
         MediaType ma = ms.getMediaType("ma");
@@ -38,6 +38,7 @@ public class ServiceTestSuite {
         // [ifndef jee]
         suite.addTestSuite(StatusServiceTestCase.class);
         // [enddef]
+        suite.addTestSuite(TaskServiceTestCase.class);
 
         // $JUnit-END$
 
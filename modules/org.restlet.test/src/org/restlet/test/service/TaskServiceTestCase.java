@@ -0,0 +1,103 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.engine.util.VirtualThreadExecutorService;
+import org.restlet.service.TaskService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the {@link TaskService}.
+ * 
+ * @author Jerome Louvel
+ */
+public class TaskServiceTestCase extends RestletTestCase {
+
+    /**
+     * Executes a task and checks that the thread local variables of the
+     * calling thread were propagated.
+     * 
+     * @param taskService
+     *            The task service to test.
+     * @return The name of the thread that executed the task.
+     */
+    private String execute(TaskService taskService) throws Exception {
+        final Application application = new Application();
+        final Context context = new Context();
+        final Object[] current = new Object[3];
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Application.setCurrent(application);
+        Context.setCurrent(context);
+
+        try {
+            taskService.execute(new Runnable() {
+                public void run() {
+                    current[0] = Application.getCurrent();
+                    current[1] = Context.getCurrent();
+                    current[2] = Thread.currentThread().getName();
+                    latch.countDown();
+                }
+            });
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            Application.setCurrent(null);
+            Context.setCurrent(null);
+            taskService.setShutdownAllowed(true);
+            taskService.stop();
+        }
+
+        assertSame(application, current[0]);
+        assertSame(context, current[1]);
+        return (String) current[2];
+    }
+
+    public void testPlatformThreads() throws Exception {
+        TaskService taskService = new TaskService();
+        assertFalse(taskService.isVirtualThreads());
+        assertTrue(execute(taskService).startsWith("restlet-"));
+    }
+
+    public void testVirtualThreads() throws Exception {
+        TaskService taskService = new TaskService();
+        taskService.setVirtualThreads(true);
+        String threadName = execute(taskService);
+
+        if (VirtualThreadExecutorService.isSupported()) {
+            assertTrue(threadName.startsWith("restlet-virtual-"));
+        } else {
+            // Falls back to the pool of platform threads
+            assertTrue(threadName.startsWith("restlet-"));
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import org.restlet.engine.Engine;
 import org.restlet.routing.Template;
 import org.restlet.routing.Variable;
 import org.restlet.test.RestletTestCase;
+import org.restlet.util.Resolver;
 
 /**
  * Test case for URI templates.
@@ -81,6 +82,61 @@ public class TemplateTestCase extends RestletTestCase {
         assertEquals("123/456", variables3.get("v1"));
     }
 
+    public void testSegmentMatching() {
+        Template template = new Template("/users/{user}/orders/{order}",
+                Template.MODE_STARTS_WITH, Variable.TYPE_URI_SEGMENT, "",
+                true, false);
+        template.getVariables().put("order", new Variable(Variable.TYPE_DIGIT));
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        assertEquals(25,
+                template.parse("/users/j%20doe/orders/123/items", variables));
+        assertEquals("j%20doe", variables.get("user"));
+        assertEquals("123", variables.get("order"));
+
+        variables.clear();
+        assertEquals(-1, template.parse("/users/jdoe/orders/abc", variables));
+        assertTrue(variables.isEmpty());
+        assertEquals(-1, template.match("/users//orders/123"));
+
+        template.setMatchingMode(Template.MODE_EQUALS);
+        assertEquals(-1, template.match("/users/jdoe/orders/123/items"));
+        assertEquals(22, template.match("/users/jdoe/orders/123"));
+
+        // The variable can consume the literal, the match requires
+        // backtracking
+        Template extension = new Template("/files/{name}.{ext}",
+                Template.MODE_EQUALS, Variable.TYPE_URI_SEGMENT, "", true,
+                false);
+        variables.clear();
+        assertEquals(17, extension.parse("/files/a.b.c.json", variables));
+        assertEquals("a.b.c", variables.get("name"));
+        assertEquals("json", variables.get("ext"));
+
+        Template alpha = new Template("{a}-{b}", Template.MODE_EQUALS,
+                Variable.TYPE_ALPHA, "", false, false);
+        variables.clear();
+        assertEquals(1, alpha.parse("-", variables));
+        assertEquals("", variables.get("a"));
+        assertEquals("", variables.get("b"));
+        assertEquals(-1, alpha.match("a1-b"));
+    }
+
+    public void testFormatToBuffer() {
+        Template template = new Template("/users/{user}/orders/{order}");
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("user", "jdoe");
+        values.put("order", 123);
+
+        StringBuilder sb = new StringBuilder("http://localhost");
+        template.format(Resolver.createResolver(values), sb);
+        assertEquals("http://localhost/users/jdoe/orders/123", sb.toString());
+        assertEquals("/users/jdoe/orders/123", template.format(values));
+
+        template.setPattern("/{user}/{missing}");
+        assertEquals("/jdoe/", template.format(values));
+    }
+
     public void testVariableNames() throws Exception {
         Template tpl = new Template(
                 "http://{userId}.restlet.com/invoices/{invoiceId}");
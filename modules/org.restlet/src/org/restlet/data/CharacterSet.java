@@ -24,12 +24,17 @@
 
 package org.restlet.data;
 
+import org.restlet.engine.util.InternCache;
+
 /**
  * Metadata used to specify the character set of textual representations.
  * 
  * @author Jerome Louvel
  */
 public final class CharacterSet extends Metadata {
+    /** Cache of the character sets resolved by name. */
+    private static final InternCache<CharacterSet> _values = new InternCache<CharacterSet>();
+
     /** All character sets acceptable. */
     public static final CharacterSet ALL = new CharacterSet("*",
             "All character sets");
@@ -215,14 +220,14 @@ public final class CharacterSet extends Metadata {
     }
 
     /**
-     * Returns the character set associated to a name. If an existing constant
-     * exists then it is returned, otherwise a new instance is created.
+     * Creates the character set associated to a name. If an existing constant exists
+     * then it is returned, otherwise a new instance is created.
      * 
      * @param name
      *            The name.
      * @return The associated character set.
      */
-    public static CharacterSet valueOf(String name) {
+    private static CharacterSet create(String name) {
         CharacterSet result = null;
         name = getIanaName(name);
 
@@ -249,6 +254,25 @@ public final class CharacterSet extends Metadata {
         return result;
     }
 
+    /**
+     * Returns the character set associated to a name. If an existing constant exists
+     * then it is returned, otherwise a new instance is created. Resolved
+     * names are served from a bounded cache of shared instances.
+     * 
+     * @param name
+     *            The name.
+     * @return The associated character set.
+     */
+    public static CharacterSet valueOf(final String name) {
+        CharacterSet result = _values.get(name);
+
+        if (result == null) {
+            result = _values.intern(name, create(name));
+        }
+
+        return result;
+    }
+
     // [ifndef gwt] method
     /**
      * Constructor.
@@ -286,9 +310,9 @@ public final class CharacterSet extends Metadata {
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object object) {
-        return (object instanceof CharacterSet)
-                && getName()
-                        .equalsIgnoreCase(((CharacterSet) object).getName());
+        return (object == this)
+                || ((object instanceof CharacterSet) && getName()
+                        .equalsIgnoreCase(((CharacterSet) object).getName()));
     }
 
     @Override
@@ -321,7 +345,8 @@ public final class CharacterSet extends Metadata {
      * @see #isCompatible(Metadata)
      */
     public boolean includes(Metadata included) {
-        return equals(ALL) || (included == null) || equals(included);
+        return (included == this) || (included == null) || equals(ALL)
+                || equals(included);
     }
 
     // [ifndef gwt] method
@@ -24,6 +24,8 @@
 
 package org.restlet.data;
 
+import org.restlet.engine.util.InternCache;
+
 /**
  * Modifier of a representation's media type. Useful to apply compression
  * without losing the identity of the underlying media type.
@@ -31,6 +33,9 @@ package org.restlet.data;
  * @author Jerome Louvel
  */
 public final class Encoding extends Metadata {
+    /** Cache of the encodings resolved by name. */
+    private static final InternCache<Encoding> _values = new InternCache<Encoding>();
+
     /** All encodings acceptable. */
     public static final Encoding ALL = new Encoding("*", "All encodings");
 
@@ -66,14 +71,14 @@ public final class Encoding extends Metadata {
     public static final Encoding ZIP = new Encoding("zip", "Zip compression");
 
     /**
-     * Returns the encoding associated to a name. If an existing constant exists
+     * Creates the encoding associated to a name. If an existing constant exists
      * then it is returned, otherwise a new instance is created.
      * 
      * @param name
      *            The name.
      * @return The associated encoding.
      */
-    public static Encoding valueOf(final String name) {
+    private static Encoding create(final String name) {
         Encoding result = null;
 
         if ((name != null) && !name.equals("")) {
@@ -103,6 +108,25 @@ public final class Encoding extends Metadata {
         return result;
     }
 
+    /**
+     * Returns the encoding associated to a name. If an existing constant exists
+     * then it is returned, otherwise a new instance is created. Resolved
+     * names are served from a bounded cache of shared instances.
+     * 
+     * @param name
+     *            The name.
+     * @return The associated encoding.
+     */
+    public static Encoding valueOf(final String name) {
+        Encoding result = _values.get(name);
+
+        if (result == null) {
+            result = _values.intern(name, create(name));
+        }
+
+        return result;
+    }
+
     /**
      * Constructor.
      * 
@@ -128,8 +152,9 @@ public final class Encoding extends Metadata {
     /** {@inheritDoc} */
     @Override
     public boolean equals(final Object object) {
-        return (object instanceof Encoding)
-                && getName().equalsIgnoreCase(((Encoding) object).getName());
+        return (object == this)
+                || ((object instanceof Encoding) && getName()
+                        .equalsIgnoreCase(((Encoding) object).getName()));
     }
 
     @Override
@@ -161,6 +186,7 @@ public final class Encoding extends Metadata {
      * @see #isCompatible(Metadata)
      */
     public boolean includes(Metadata included) {
-        return equals(ALL) || (included == null) || equals(included);
+        return (included == this) || (included == null) || equals(ALL)
+                || equals(included);
     }
 }
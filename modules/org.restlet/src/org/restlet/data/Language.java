@@ -28,6 +28,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.restlet.engine.util.InternCache;
+
 /**
  * Language used in representations and preferences. A language tag is composed
  * of one or more parts: A primary language tag and a possibly empty series of
@@ -36,6 +38,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @author Jerome Louvel
  */
 public final class Language extends Metadata {
+    /** Cache of the languages resolved by name. */
+    private static final InternCache<Language> _values = new InternCache<Language>();
+
     /** All languages acceptable. */
     public static final Language ALL = new Language("*", "All languages");
 
@@ -72,14 +77,14 @@ public final class Language extends Metadata {
             "Spanish language");
 
     /**
-     * Returns the language associated to a name. If an existing constant exists
+     * Creates the language associated to a name. If an existing constant exists
      * then it is returned, otherwise a new instance is created.
      * 
      * @param name
      *            The name.
      * @return The associated language.
      */
-    public static Language valueOf(final String name) {
+    private static Language create(final String name) {
         Language result = null;
 
         if ((name != null) && !name.equals("")) {
@@ -103,6 +108,25 @@ public final class Language extends Metadata {
         return result;
     }
 
+    /**
+     * Returns the language associated to a name. If an existing constant exists
+     * then it is returned, otherwise a new instance is created. Resolved
+     * names are served from a bounded cache of shared instances.
+     * 
+     * @param name
+     *            The name.
+     * @return The associated language.
+     */
+    public static Language valueOf(final String name) {
+        Language result = _values.get(name);
+
+        if (result == null) {
+            result = _values.intern(name, create(name));
+        }
+
+        return result;
+    }
+
     /** The metadata main list of subtags taken from the metadata name. */
     private volatile List<String> subTags;
 
@@ -132,8 +156,9 @@ public final class Language extends Metadata {
     /** {@inheritDoc} */
     @Override
     public boolean equals(final Object object) {
-        return (object instanceof Language)
-                && getName().equalsIgnoreCase(((Language) object).getName());
+        return (object == this)
+                || ((object instanceof Language) && getName()
+                        .equalsIgnoreCase(((Language) object).getName()));
     }
 
     @Override
@@ -217,7 +242,8 @@ public final class Language extends Metadata {
      * @see #isCompatible(Metadata)
      */
     public boolean includes(Metadata included) {
-        boolean result = equals(ALL) || (included == null) || equals(included);
+        boolean result = (included == this) || (included == null)
+                || equals(ALL) || equals(included);
 
         if (!result && (included instanceof Language)) {
             Language includedLanguage = (Language) included;
@@ -25,12 +25,13 @@
 package org.restlet.data;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.restlet.Context;
 import org.restlet.engine.header.HeaderWriter;
+import org.restlet.engine.util.InternCache;
 import org.restlet.engine.util.SystemUtils;
 import org.restlet.util.Series;
 
@@ -59,6 +60,9 @@ public final class MediaType extends Metadata {
      */
     private static volatile Map<String, MediaType> _types = null;
 
+    /** Cache of the media types resolved by name, including parameters. */
+    private static final InternCache<MediaType> _values = new InternCache<MediaType>();
+
     public static final MediaType ALL = register("*/*", "All media");
 
     public static final MediaType APPLICATION_ALL = register("application/*",
@@ -586,6 +590,10 @@ public final class MediaType extends Metadata {
     public static final MediaType MULTIPART_ALL = register("multipart/*",
             "All multipart data");
 
+    // [ifndef gwt] member
+    public static final MediaType MULTIPART_BYTERANGES = register(
+            "multipart/byteranges", "Multipart byte ranges");
+
     // [ifndef gwt] member
     public static final MediaType MULTIPART_FORM_DATA = register(
             "multipart/form-data", "Multipart form data");
@@ -733,7 +741,7 @@ public final class MediaType extends Metadata {
      */
     private static Map<String, MediaType> getTypes() {
         if (_types == null) {
-            _types = new HashMap<String, MediaType>();
+            _types = new ConcurrentHashMap<String, MediaType>();
         }
         return _types;
     }
@@ -851,6 +859,7 @@ public final class MediaType extends Metadata {
         if (!getTypes().containsKey(name)) {
             final MediaType type = new MediaType(name, description);
             getTypes().put(name, type);
+            _values.clear();
         }
 
         return getTypes().get(name);
@@ -859,6 +868,9 @@ public final class MediaType extends Metadata {
     /**
      * Returns the media type associated to a name. If an existing constant
      * exists then it is returned, otherwise a new instance is created.
+     * Resolved names, including parameterized ones such as
+     * "text/html; charset=UTF-8", are served from a bounded cache of shared
+     * instances.
      * 
      * @param name
      *            The name.
@@ -869,8 +881,13 @@ public final class MediaType extends Metadata {
 
         if ((name != null) && !name.equals("")) {
             result = getTypes().get(name);
+
             if (result == null) {
-                result = new MediaType(name);
+                result = _values.get(name);
+
+                if (result == null) {
+                    result = _values.intern(name, new MediaType(name));
+                }
             }
         }
 
@@ -1137,7 +1154,7 @@ public final class MediaType extends Metadata {
      * @see #isCompatible(Metadata)
      */
     public boolean includes(Metadata included, boolean ignoreParameters) {
-        boolean result = equals(ALL) || equals(included);
+        boolean result = (included == this) || equals(ALL) || equals(included);
 
         if (!result && (included instanceof MediaType)) {
             MediaType includedMediaType = (MediaType) included;
@@ -71,8 +71,9 @@ public abstract class Metadata {
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object object) {
-        return (object instanceof Metadata)
-                && ((Metadata) object).getName().equals(getName());
+        return (object == this)
+                || ((object instanceof Metadata) && ((Metadata) object)
+                        .getName().equals(getName()));
     }
 
     /**
@@ -141,8 +142,9 @@ public abstract class Metadata {
      * @see #includes(Metadata)
      */
     public boolean isCompatible(Metadata otherMetadata) {
-        boolean result = (otherMetadata != null)
-                && (includes(otherMetadata) || otherMetadata.includes(this));
+        boolean result = (otherMetadata == this)
+                || ((otherMetadata != null) && (includes(otherMetadata) || otherMetadata
+                        .includes(this)));
         return result;
     }
 
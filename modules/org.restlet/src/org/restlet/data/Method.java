@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.restlet.engine.Engine;
+import org.restlet.engine.util.InternCache;
 
 /**
  * Method to execute when handling a call.
@@ -42,6 +43,9 @@ public final class Method implements Comparable<Method> {
     /** Map of registered methods. */
     private static final Map<String, Method> _methods = new ConcurrentHashMap<String, Method>();
 
+    /** Cache of the methods resolved by name. */
+    private static final InternCache<Method> _values = new InternCache<Method>();
+
     /**
      * Pseudo-method use to match all methods.
      */
@@ -175,6 +179,7 @@ public final class Method implements Comparable<Method> {
         String name = (method == null) ? null : method.getName().toLowerCase();
         if ((name != null) && !name.equals("")) {
             _methods.put(name, method);
+            _values.clear();
         }
     }
 
@@ -195,19 +200,23 @@ public final class Method implements Comparable<Method> {
     /**
      * Returns the method associated to a given method name. If an existing
      * constant exists then it is returned, otherwise a new instance is created.
+     * Resolved names are served from a bounded cache of shared instances.
      * 
      * @param name
      *            The method name.
      * @return The associated method.
      */
     public static Method valueOf(final String name) {
-        Method result = null;
+        Method result = _values.get(name);
 
-        if ((name != null) && !name.equals("")) {
+        if ((result == null) && (name != null) && !name.equals("")) {
             result = Method._methods.get(name.toLowerCase());
+
             if (result == null) {
                 result = new Method(name);
             }
+
+            result = _values.intern(name, result);
         }
 
         return result;
@@ -114,6 +114,93 @@ import org.restlet.engine.Edition;
  */
 public class Reference {
 
+    /**
+     * Internal class holding the components parsed from a given internal
+     * reference. Instances are shared by copies of the same reference and are
+     * discarded as soon as the internal reference changes.
+     */
+    private static final class Components {
+        /** The authority component. */
+        private final String authority;
+
+        /** The decoded path component, lazily computed. */
+        private volatile String decodedPath;
+
+        /** The decoded query component, lazily computed. */
+        private volatile String decodedQuery;
+
+        /** The host domain component. */
+        private final String hostDomain;
+
+        /** The internal reference the components were parsed from. */
+        private final String internalRef;
+
+        /** The path component. */
+        private final String path;
+
+        /** The query component. */
+        private final String query;
+
+        /** The resolved target reference, lazily computed. */
+        private volatile Target target;
+
+        /**
+         * Constructor.
+         * 
+         * @param reference
+         *            The reference to parse.
+         */
+        public Components(Reference reference) {
+            this.internalRef = reference.internalRef;
+            this.authority = reference.parseAuthority();
+            this.hostDomain = parseHostDomain(this.authority);
+            this.path = reference.parsePath();
+            this.query = reference.parseQuery();
+        }
+    }
+
+    /**
+     * Internal class holding a resolved target reference with the state of the
+     * base reference it was resolved against.
+     */
+    private static final class Target {
+        /** The base reference. */
+        private final Reference baseRef;
+
+        /** The internal reference of the base reference. */
+        private final String baseInternalRef;
+
+        /** The resolved and normalized target reference. */
+        private final Reference targetRef;
+
+        /**
+         * Constructor.
+         * 
+         * @param baseRef
+         *            The base reference.
+         * @param targetRef
+         *            The resolved and normalized target reference.
+         */
+        public Target(Reference baseRef, Reference targetRef) {
+            this.baseRef = baseRef;
+            this.baseInternalRef = (baseRef == null) ? null
+                    : baseRef.internalRef;
+            this.targetRef = targetRef;
+        }
+
+        /**
+         * Indicates if the target is still valid for the given base reference.
+         * 
+         * @param baseRef
+         *            The current base reference.
+         * @return True if the target is still valid.
+         */
+        public boolean isValid(Reference baseRef) {
+            return (this.baseRef == baseRef)
+                    && ((baseRef == null) || (this.baseInternalRef == baseRef.internalRef));
+        }
+    }
+
     /** Helps to map characters and their validity as URI characters. */
     private static final boolean[] charValidityMap = new boolean[127];
 
@@ -126,6 +213,13 @@ public class Reference {
         }
     }
 
+    /**
+     * The commonly used scheme names, returned as shared instances to avoid
+     * extracting the scheme at each call.
+     */
+    private static final String[] schemes = { "http", "https", "riap",
+            "file", "clap", "war", "jar", "zip", "ftp", "sip", "sips" };
+
     /**
      * Decodes a given string using the standard URI encoding mechanism and the
      * UTF-8 character set.
@@ -381,6 +475,53 @@ public class Reference {
                 || (character == '~');
     }
 
+    /**
+     * Indicates if the given path contains "." or ".." segments.
+     * 
+     * @param path
+     *            The path to test.
+     * @return True if the given path contains "." or ".." segments.
+     */
+    private static boolean hasDotSegments(String path) {
+        final int length = path.length();
+        int start = 0;
+        int end;
+
+        while (start <= length) {
+            end = path.indexOf('/', start);
+
+            if (end == -1) {
+                end = length;
+            }
+
+            if ((path.startsWith(".", start) && (end - start == 1))
+                    || (path.startsWith("..", start) && (end - start == 2))) {
+                return true;
+            }
+
+            start = end + 1;
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates if the given string contains upper case characters (A-Z).
+     * 
+     * @param value
+     *            The string to test.
+     * @return True if the given string contains upper case characters.
+     */
+    private static boolean hasUpperCase(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (isUpperCase(value.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Indicates if the given character is upper case (A-Z).
      * 
@@ -403,6 +544,149 @@ public class Reference {
         return character >= 0 && character < 127 && charValidityMap[character];
     }
 
+    /**
+     * Parses the host domain name component from an authority component.
+     * 
+     * @param authority
+     *            The authority component or null.
+     * @return The host domain name component or null.
+     */
+    private static String parseHostDomain(String authority) {
+        String result = null;
+
+        if (authority != null) {
+            // We must prevent the case where the userinfo part contains ':'
+            // and the case of IPV6 addresses
+            int indexUI = authority.indexOf('@'); // user info
+            int indexIPV6 = authority.indexOf(']'); // IPV6
+            int indexP = authority.indexOf(':', (indexIPV6 == -1) ? indexUI
+                    : indexIPV6);
+
+            if (indexUI != -1) {
+                // User info found
+                if (indexP != -1) {
+                    // Port found
+                    result = authority.substring(indexUI + 1, indexP);
+                } else {
+                    // No port found
+                    result = authority.substring(indexUI + 1);
+                }
+            } else {
+                // No user info found
+                if (indexP != -1) {
+                    // Port found
+                    result = authority.substring(0, indexP);
+                } else {
+                    // No port found
+                    result = authority;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the "." and ".." segments from a path, as specified by the
+     * section 5.2.4 of the RFC 3986.
+     * 
+     * @param path
+     *            The path to process.
+     * @return The path without dot segments.
+     */
+    private static String removeDotSegments(String path) {
+        // 1. The input buffer is initialized with the now-appended path
+        // components and the output buffer is initialized to the empty string.
+        // The input buffer is the part of the path starting at the index.
+        final StringBuilder output = new StringBuilder(path.length());
+        final int length = path.length();
+        int index = 0;
+
+        // 2. While the input buffer is not empty, loop as follows:
+        while (index < length) {
+            // A. If the input buffer begins with a prefix of "../" or "./",
+            // then remove that prefix from the input buffer; otherwise,
+            if (path.startsWith("../", index)) {
+                index += 3;
+            } else if (path.startsWith("./", index)) {
+                index += 2;
+            }
+
+            // B. if the input buffer begins with a prefix of "/./" or "/.",
+            // where "." is a complete path segment, then replace that
+            // prefix with "/" in the input buffer; otherwise,
+            else if (path.startsWith("/./", index)) {
+                index += 2;
+            } else if ((length - index == 2) && path.startsWith("/.", index)) {
+                output.append('/');
+                index = length;
+            }
+
+            // C. if the input buffer begins with a prefix of "/../" or "/..",
+            // where ".." is a complete path segment, then replace that prefix
+            // with "/" in the input buffer and remove the last segment and its
+            // preceding "/" (if any) from the output buffer; otherwise,
+            else if (path.startsWith("/../", index)) {
+                index += 3;
+                removeLastSegment(output);
+            } else if ((length - index == 3) && path.startsWith("/..", index)) {
+                removeLastSegment(output);
+                output.append('/');
+                index = length;
+            }
+
+            // D. if the input buffer consists only of "." or "..", then remove
+            // that from the input buffer; otherwise,
+            else if (((length - index == 1) && (path.charAt(index) == '.'))
+                    || ((length - index == 2) && path.startsWith("..", index))) {
+                index = length;
+            }
+
+            // E. move the first path segment in the input buffer to the end of
+            // the output buffer, including the initial "/" character (if any)
+            // and any subsequent characters up to, but not including, the next
+            // "/" character or the end of the input buffer.
+            else {
+                int max = path.indexOf('/', index + 1);
+
+                if (max == -1) {
+                    // End of input buffer reached
+                    max = length;
+                }
+
+                output.append(path, index, max);
+                index = max;
+            }
+        }
+
+        // Finally, the output buffer is returned as the result
+        return output.toString();
+    }
+
+    /**
+     * Removes the last segement from the output builder.
+     * 
+     * @param output
+     *            The output builder to update.
+     */
+    private static void removeLastSegment(StringBuilder output) {
+        int min = -1;
+        for (int i = output.length() - 1; (min == -1) && (i >= 0); i--) {
+            if (output.charAt(i) == '/') {
+                min = i;
+            }
+        }
+
+        if (min != -1) {
+            // We found the previous "/" character.
+            output.delete(min, output.length());
+        } else {
+            // End of output buffer reached
+            output.delete(0, output.length());
+        }
+
+    }
+
     /**
      * Creates a reference string from its parts.
      * 
@@ -515,6 +799,9 @@ public class Reference {
     /** The base reference for relative references. */
     private volatile Reference baseRef;
 
+    /** The components parsed from the internal reference. */
+    private volatile Components components;
+
     /** The fragment separator index. */
     private volatile int fragmentIndex;
 
@@ -790,6 +1077,7 @@ public class Reference {
             newRef.baseRef = this.baseRef.clone();
         }
 
+        newRef.components = this.components;
         newRef.fragmentIndex = this.fragmentIndex;
         newRef.internalRef = this.internalRef;
         newRef.queryIndex = this.queryIndex;
@@ -885,26 +1173,7 @@ public class Reference {
      * @return The authority component for hierarchical identifiers.
      */
     public String getAuthority() {
-        final String part = isRelative() ? getRelativePart()
-                : getSchemeSpecificPart();
-
-        if ((part != null) && part.startsWith("//")) {
-            int index = part.indexOf('/', 2);
-
-            if (index != -1) {
-                return part.substring(2, index);
-            }
-
-            index = part.indexOf('?');
-            if (index != -1) {
-                return part.substring(2, index);
-            }
-
-            return part.substring(2);
-
-        }
-
-        return null;
+        return getComponents().authority;
     }
 
     /**
@@ -929,6 +1198,24 @@ public class Reference {
         return this.baseRef;
     }
 
+    /**
+     * Returns the components parsed from the current internal reference.
+     * Parses them again if the internal reference has changed since the last
+     * call.
+     * 
+     * @return The components parsed from the current internal reference.
+     */
+    private Components getComponents() {
+        Components result = this.components;
+
+        if ((result == null) || (result.internalRef != this.internalRef)) {
+            result = new Components(this);
+            this.components = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the optional extensions for hierarchical identifiers. An
      * extensions part starts after the first '.' character of the last path
@@ -1072,39 +1359,7 @@ public class Reference {
      *         identifiers.
      */
     public String getHostDomain() {
-        String result = null;
-        final String authority = getAuthority();
-
-        if (authority != null) {
-            // We must prevent the case where the userinfo part contains ':'
-            // and the case of IPV6 addresses
-            int indexUI = authority.indexOf('@'); // user info
-            int indexIPV6 = authority.indexOf(']'); // IPV6
-            int indexP = authority.indexOf(':', (indexIPV6 == -1) ? indexUI
-                    : indexIPV6);
-
-            if (indexUI != -1) {
-                // User info found
-                if (indexP != -1) {
-                    // Port found
-                    result = authority.substring(indexUI + 1, indexP);
-                } else {
-                    // No port found
-                    result = authority.substring(indexUI + 1);
-                }
-            } else {
-                // No user info found
-                if (indexP != -1) {
-                    // Port found
-                    result = authority.substring(0, indexP);
-                } else {
-                    // No port found
-                    result = authority;
-                }
-            }
-        }
-
-        return result;
+        return getComponents().hostDomain;
     }
 
     /**
@@ -1373,59 +1628,32 @@ public class Reference {
      * @return The path component for hierarchical identifiers.
      */
     public String getPath() {
-        String result = null;
-        String part = isRelative() ? getRelativePart()
-                : getSchemeSpecificPart();
+        return getComponents().path;
+    }
 
-        if (part != null) {
-            if (part.startsWith("//")) {
-                // Authority found
-                int index1 = part.indexOf('/', 2);
+    /**
+     * Returns the optionnally decoded path component. If not path is available
+     * it returns null.
+     * 
+     * @param decode
+     *            Indicates if the result should be decoded using the
+     *            {@link #decode(String)} method.
+     * @return The optionnally decoded path component.
+     * @see #getPath()
+     */
+    public String getPath(boolean decode) {
+        if (decode) {
+            Components c = getComponents();
+            String result = c.decodedPath;
 
-                if (index1 != -1) {
-                    // Path found
-                    int index2 = part.indexOf('?');
+            if ((result == null) && (c.path != null)) {
+                c.decodedPath = result = decode(c.path);
+            }
 
-                    if (index2 != -1) {
-                        // Query found
-                        result = part.substring(Math.min(index1, index2),
-                                index2);
-                    } else {
-                        // No query found
-                        result = part.substring(index1);
-                    }
-                } else {
-                    // Path must be empty in this case
-                }
-            } else {
-                // No authority found
-                int index = part.indexOf('?');
-
-                if (index != -1) {
-                    // Query found
-                    result = part.substring(0, index);
-                } else {
-                    // No query found
-                    result = part;
-                }
-            }
+            return result;
         }
 
-        return result;
-    }
-
-    /**
-     * Returns the optionnally decoded path component. If not path is available
-     * it returns null.
-     * 
-     * @param decode
-     *            Indicates if the result should be decoded using the
-     *            {@link #decode(String)} method.
-     * @return The optionnally decoded path component.
-     * @see #getPath()
-     */
-    public String getPath(boolean decode) {
-        return decode ? decode(getPath()) : getPath();
+        return getPath();
     }
 
     /**
@@ -1435,24 +1663,7 @@ public class Reference {
      * @return The query component or null.
      */
     public String getQuery() {
-        if (hasQuery()) {
-            // Query found
-            if (hasFragment()) {
-                if (this.queryIndex < this.fragmentIndex) {
-                    // Fragment found and query sign not inside fragment
-                    return this.internalRef.substring(this.queryIndex + 1,
-                            this.fragmentIndex);
-                }
-
-                return null;
-            }
-
-            // No fragment found
-            return this.internalRef.substring(this.queryIndex + 1);
-        }
-
-        // No query found
-        return null;
+        return getComponents().query;
     }
 
     /**
@@ -1465,7 +1676,18 @@ public class Reference {
      * @see #getQuery()
      */
     public String getQuery(boolean decode) {
-        return decode ? decode(getQuery()) : getQuery();
+        if (decode) {
+            Components c = getComponents();
+            String result = c.decodedQuery;
+
+            if ((result == null) && (c.query != null)) {
+                c.decodedQuery = result = decode(c.query);
+            }
+
+            return result;
+        }
+
+        return getQuery();
     }
 
     /**
@@ -1784,7 +2006,14 @@ public class Reference {
      */
     public String getScheme() {
         if (hasScheme()) {
-            // Scheme found
+            // Scheme found, reuse the common scheme names if possible
+            for (String scheme : schemes) {
+                if ((scheme.length() == this.schemeIndex)
+                        && this.internalRef.startsWith(scheme)) {
+                    return scheme;
+                }
+            }
+
             return this.internalRef.substring(0, this.schemeIndex);
         }
 
@@ -1932,90 +2161,28 @@ public class Reference {
      * @return The target reference.
      */
     public Reference getTargetRef() {
-        Reference result = null;
-
-        // Step 1 - Resolve relative reference against their base reference
-        if (isRelative() && (this.baseRef != null)) {
-            Reference baseReference = null;
+        final Reference base = isRelative() ? this.baseRef : null;
+        final Components c = getComponents();
+        Target target = c.target;
 
-            if (this.baseRef.isAbsolute()) {
-                baseReference = this.baseRef;
-            } else {
-                baseReference = this.baseRef.getTargetRef();
-            }
+        if ((target == null) || !target.isValid(base)) {
+            target = new Target(base, resolveTargetRef(base));
 
-            if (baseReference.isRelative()) {
-                throw new IllegalArgumentException(
-                        "The base reference must have an absolute hierarchical path component");
+            // The resolution can only be reused if it doesn't depend on the
+            // resolution of the base reference itself
+            if ((base == null) || base.isAbsolute()) {
+                target.targetRef.getComponents();
+                c.target = target;
             }
-
-            // Relative URI detected
-            String authority = getAuthority();
-            String path = getPath();
-            String query = getQuery();
-            String fragment = getFragment();
-
-            // Create an empty reference
-            result = new Reference();
-            result.setScheme(baseReference.getScheme());
-
-            if (authority != null) {
-                result.setAuthority(authority);
-                result.setPath(path);
-                result.setQuery(query);
-            } else {
-                result.setAuthority(baseReference.getAuthority());
-
-                if ((path == null) || (path.equals(""))) {
-                    result.setPath(baseReference.getPath());
-
-                    if (query != null) {
-                        result.setQuery(query);
-                    } else {
-                        result.setQuery(baseReference.getQuery());
-                    }
-                } else {
-                    if (path.startsWith("/")) {
-                        result.setPath(path);
-                    } else {
-                        final String basePath = baseReference.getPath();
-                        String mergedPath = null;
-
-                        if ((baseReference.getAuthority() != null)
-                                && ((basePath == null) || (basePath.equals("")))) {
-                            mergedPath = "/" + path;
-                        } else {
-                            // Remove the last segment which may be empty if
-                            // the path is ending with a slash
-                            final int lastSlash = basePath.lastIndexOf('/');
-                            if (lastSlash == -1) {
-                                mergedPath = path;
-                            } else {
-                                mergedPath = basePath.substring(0,
-                                        lastSlash + 1) + path;
-                            }
-                        }
-
-                        result.setPath(mergedPath);
-                    }
-
-                    result.setQuery(query);
-                }
-            }
-
-            result.setFragment(fragment);
-        } else if (isRelative()) {
-            // Relative reference with no baseRef detected
-            throw new IllegalArgumentException(
-                    "Relative references are only usable when a base reference is set.");
-        } else {
-            // Absolute URI detected
-            result = new Reference(this.internalRef);
         }
 
-        // Step 2 - Normalize the target reference
-        result.normalize();
-
+        // Return a copy as the target reference is mutable
+        final Reference result = new Reference();
+        result.internalRef = target.targetRef.internalRef;
+        result.components = target.targetRef.components;
+        result.fragmentIndex = target.targetRef.fragmentIndex;
+        result.queryIndex = target.targetRef.queryIndex;
+        result.schemeIndex = target.targetRef.schemeIndex;
         return result;
     }
 
@@ -2203,131 +2370,236 @@ public class Reference {
      * @return The current reference.
      */
     public Reference normalize() {
-        // 1. The input buffer is initialized with the now-appended path
-        // components and the output buffer is initialized to the empty string.
-        StringBuilder output = new StringBuilder();
-        StringBuilder input = new StringBuilder();
-        String path = getPath();
+        final String path = getPath();
 
-        if (path != null) {
-            input.append(path);
+        if ((path == null) || (path.length() == 0)) {
+            // Let the setter rebuild the relative or scheme specific part
+            setPath("");
+        } else if (hasDotSegments(path)) {
+            setPath(removeDotSegments(path));
         }
 
-        // 2. While the input buffer is not empty, loop as follows:
-        while (input.length() > 0) {
-            // A. If the input buffer begins with a prefix of "../" or "./",
-            // then remove that prefix from the input buffer; otherwise,
-            if ((input.length() >= 3) && input.substring(0, 3).equals("../")) {
-                input.delete(0, 3);
-            } else if ((input.length() >= 2)
-                    && input.substring(0, 2).equals("./")) {
-                input.delete(0, 2);
-            }
+        // Ensure that the scheme and host names are reset in lower case
+        final String scheme = getScheme();
 
-            // B. if the input buffer begins with a prefix of "/./" or "/.",
-            // where "." is a complete path segment, then replace that
-            // prefix with "/" in the input buffer; otherwise,
-            else if ((input.length() >= 3)
-                    && input.substring(0, 3).equals("/./")) {
-                input.delete(0, 2);
-            } else if ((input.length() == 2)
-                    && input.substring(0, 2).equals("/.")) {
-                input.delete(1, 2);
+        if ((scheme != null) && hasUpperCase(scheme)) {
+            setScheme(scheme);
+        }
+
+        final String hostDomain = getHostDomain();
+
+        if ((hostDomain == null) || hasUpperCase(hostDomain)) {
+            setHostDomain(hostDomain);
+        }
+
+        // Remove the port if it is equal to the default port of the reference's
+        // Protocol.
+        final int hostPort = getHostPort();
+        if (hostPort != -1) {
+            final int defaultPort = Protocol.valueOf(getScheme())
+                    .getDefaultPort();
+            if (hostPort == defaultPort) {
+                setHostPort(null);
             }
+        }
 
-            // C. if the input buffer begins with a prefix of "/../" or "/..",
-            // where ".." is a complete path segment, then replace that prefix
-            // with "/" in the input buffer and remove the last segment and its
-            // preceding "/" (if any) from the output buffer; otherwise,
-            else if ((input.length() >= 4)
-                    && input.substring(0, 4).equals("/../")) {
-                input.delete(0, 3);
-                removeLastSegment(output);
-            } else if ((input.length() == 3)
-                    && input.substring(0, 3).equals("/..")) {
-                input.delete(1, 3);
-                removeLastSegment(output);
+        return this;
+    }
+
+    /**
+     * Parses the authority component from the internal reference.
+     * 
+     * @return The authority component or null.
+     */
+    private String parseAuthority() {
+        final String part = isRelative() ? getRelativePart()
+                : getSchemeSpecificPart();
+
+        if ((part != null) && part.startsWith("//")) {
+            int index = part.indexOf('/', 2);
+
+            if (index != -1) {
+                return part.substring(2, index);
             }
 
-            // D. if the input buffer consists only of "." or "..", then remove
-            // that from the input buffer; otherwise,
-            else if ((input.length() == 1) && input.substring(0, 1).equals(".")) {
-                input.delete(0, 1);
-            } else if ((input.length() == 2)
-                    && input.substring(0, 2).equals("..")) {
-                input.delete(0, 2);
+            index = part.indexOf('?');
+            if (index != -1) {
+                return part.substring(2, index);
             }
 
-            // E. move the first path segment in the input buffer to the end of
-            // the output buffer, including the initial "/" character (if any)
-            // and any subsequent characters up to, but not including, the next
-            // "/" character or the end of the input buffer.
-            else {
-                int max = -1;
-                for (int i = 1; (max == -1) && (i < input.length()); i++) {
-                    if (input.charAt(i) == '/') {
-                        max = i;
+            return part.substring(2);
+
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the path component from the internal reference.
+     * 
+     * @return The path component or null.
+     */
+    private String parsePath() {
+        String result = null;
+        String part = isRelative() ? getRelativePart()
+                : getSchemeSpecificPart();
+
+        if (part != null) {
+            if (part.startsWith("//")) {
+                // Authority found
+                int index1 = part.indexOf('/', 2);
+
+                if (index1 != -1) {
+                    // Path found
+                    int index2 = part.indexOf('?');
+
+                    if (index2 != -1) {
+                        // Query found
+                        result = part.substring(Math.min(index1, index2),
+                                index2);
+                    } else {
+                        // No query found
+                        result = part.substring(index1);
                     }
+                } else {
+                    // Path must be empty in this case
                 }
+            } else {
+                // No authority found
+                int index = part.indexOf('?');
 
-                if (max != -1) {
-                    // We found the next "/" character.
-                    output.append(input.substring(0, max));
-                    input.delete(0, max);
+                if (index != -1) {
+                    // Query found
+                    result = part.substring(0, index);
                 } else {
-                    // End of input buffer reached
-                    // [ifndef gwt] instruction
-                    output.append(input);
-                    // [ifdef gwt] instruction uncomment
-                    // output.append(input.toString());
-                    input.delete(0, input.length());
+                    // No query found
+                    result = part;
                 }
             }
         }
 
-        // Finally, the output buffer is returned as the result
-        setPath(output.toString());
+        return result;
+    }
 
-        // Ensure that the scheme and host names are reset in lower case
-        setScheme(getScheme());
-        setHostDomain(getHostDomain());
+    /**
+     * Parses the query component from the internal reference.
+     * 
+     * @return The query component or null.
+     */
+    private String parseQuery() {
+        if (hasQuery()) {
+            // Query found
+            if (hasFragment()) {
+                if (this.queryIndex < this.fragmentIndex) {
+                    // Fragment found and query sign not inside fragment
+                    return this.internalRef.substring(this.queryIndex + 1,
+                            this.fragmentIndex);
+                }
 
-        // Remove the port if it is equal to the default port of the reference's
-        // Protocol.
-        final int hostPort = getHostPort();
-        if (hostPort != -1) {
-            final int defaultPort = Protocol.valueOf(getScheme())
-                    .getDefaultPort();
-            if (hostPort == defaultPort) {
-                setHostPort(null);
+                return null;
             }
+
+            // No fragment found
+            return this.internalRef.substring(this.queryIndex + 1);
         }
 
-        return this;
+        // No query found
+        return null;
     }
 
     /**
-     * Removes the last segement from the output builder.
+     * Resolves the reference against a base reference and normalizes it.
      * 
-     * @param output
-     *            The output builder to update.
+     * @param base
+     *            The base reference or null if the reference is absolute.
+     * @return The new target reference.
      */
-    private void removeLastSegment(StringBuilder output) {
-        int min = -1;
-        for (int i = output.length() - 1; (min == -1) && (i >= 0); i--) {
-            if (output.charAt(i) == '/') {
-                min = i;
+    private Reference resolveTargetRef(Reference base) {
+        Reference result = null;
+
+        // Step 1 - Resolve relative reference against their base reference
+        if (isRelative() && (base != null)) {
+            Reference baseReference = null;
+
+            if (base.isAbsolute()) {
+                baseReference = base;
+            } else {
+                baseReference = base.getTargetRef();
             }
-        }
 
-        if (min != -1) {
-            // We found the previous "/" character.
-            output.delete(min, output.length());
+            if (baseReference.isRelative()) {
+                throw new IllegalArgumentException(
+                        "The base reference must have an absolute hierarchical path component");
+            }
+
+            // Relative URI detected
+            String authority = getAuthority();
+            String path = getPath();
+            String query = getQuery();
+            String fragment = getFragment();
+
+            // Create an empty reference
+            result = new Reference();
+            result.setScheme(baseReference.getScheme());
+
+            if (authority != null) {
+                result.setAuthority(authority);
+                result.setPath(path);
+                result.setQuery(query);
+            } else {
+                result.setAuthority(baseReference.getAuthority());
+
+                if ((path == null) || (path.equals(""))) {
+                    result.setPath(baseReference.getPath());
+
+                    if (query != null) {
+                        result.setQuery(query);
+                    } else {
+                        result.setQuery(baseReference.getQuery());
+                    }
+                } else {
+                    if (path.startsWith("/")) {
+                        result.setPath(path);
+                    } else {
+                        final String basePath = baseReference.getPath();
+                        String mergedPath = null;
+
+                        if ((baseReference.getAuthority() != null)
+                                && ((basePath == null) || (basePath.equals("")))) {
+                            mergedPath = "/" + path;
+                        } else {
+                            // Remove the last segment which may be empty if
+                            // the path is ending with a slash
+                            final int lastSlash = basePath.lastIndexOf('/');
+                            if (lastSlash == -1) {
+                                mergedPath = path;
+                            } else {
+                                mergedPath = basePath.substring(0,
+                                        lastSlash + 1) + path;
+                            }
+                        }
+
+                        result.setPath(mergedPath);
+                    }
+
+                    result.setQuery(query);
+                }
+            }
+
+            result.setFragment(fragment);
+        } else if (isRelative()) {
+            // Relative reference with no baseRef detected
+            throw new IllegalArgumentException(
+                    "Relative references are only usable when a base reference is set.");
         } else {
-            // End of output buffer reached
-            output.delete(0, output.length());
+            // Absolute URI detected
+            result = new Reference(this.internalRef);
         }
 
+        // Step 2 - Normalize the target reference
+        result.normalize();
+
+        return result;
     }
 
     /**
@@ -0,0 +1,328 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
+import org.restlet.data.Range;
+import org.restlet.engine.header.RangeWriter;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Representation that exposes several ranges of the content of a wrapped
+ * representation as a "multipart/byteranges" entity. The ranges must be
+ * absolute, sorted and disjoint, as returned by
+ * {@link #getSatisfiableRanges(List, long)}, so that the wrapped content is
+ * read in a single pass, seeking between the ranges when it is backed by a file
+ * or by a file channel.
+ * 
+ * @author Jerome Louvel
+ */
+public class ByteRangesRepresentation extends OutputRepresentation {
+
+    /** The line separator of the part headers. */
+    private static final String CRLF = "\r\n";
+
+    /**
+     * Creates the "multipart/byteranges" media type with a given boundary.
+     * 
+     * @param boundary
+     *            The multipart boundary.
+     * @return The multipart media type.
+     */
+    private static MediaType createMediaType(String boundary) {
+        Series<Parameter> params = new Series<Parameter>(Parameter.class);
+        params.add("boundary", boundary);
+        return new MediaType(MediaType.MULTIPART_BYTERANGES.getName(), params);
+    }
+
+    /**
+     * Returns the satisfiable ranges among the requested ones as absolute
+     * ranges, sorted by index, with overlapping and adjacent ranges coalesced.
+     * 
+     * @param ranges
+     *            The requested ranges.
+     * @param size
+     *            The known size of the entity.
+     * @return The satisfiable ranges, possibly empty.
+     */
+    public static List<Range> getSatisfiableRanges(List<Range> ranges,
+            long size) {
+        List<Range> absolute = new ArrayList<Range>(ranges.size());
+
+        for (Range range : ranges) {
+            long start;
+            long end;
+
+            if (range.getIndex() == Range.INDEX_LAST) {
+                if (range.getSize() == Range.SIZE_MAX) {
+                    start = 0;
+                } else {
+                    start = Math.max(0, size - range.getSize());
+                }
+
+                end = size - 1;
+            } else {
+                start = range.getIndex();
+
+                if ((range.getSize() == Range.SIZE_MAX)
+                        || (range.getSize() > size - start)) {
+                    end = size - 1;
+                } else {
+                    end = start + range.getSize() - 1;
+                }
+            }
+
+            if ((start < size) && (start <= end)) {
+                absolute.add(new Range(start, end - start + 1));
+            }
+        }
+
+        Collections.sort(absolute, new Comparator<Range>() {
+            public int compare(Range range1, Range range2) {
+                return Long.compare(range1.getIndex(), range2.getIndex());
+            }
+        });
+
+        List<Range> result = new ArrayList<Range>(absolute.size());
+        Range last = null;
+
+        for (Range range : absolute) {
+            if ((last != null)
+                    && (range.getIndex() <= last.getIndex() + last.getSize())) {
+                long end = Math.max(last.getIndex() + last.getSize(),
+                        range.getIndex() + range.getSize());
+                last.setSize(end - last.getIndex());
+            } else {
+                last = range;
+                result.add(range);
+            }
+        }
+
+        return result;
+    }
+
+    /** The boundary separating the parts. */
+    private final String boundary;
+
+    /** The absolute, sorted and disjoint ranges to expose. */
+    private final List<Range> ranges;
+
+    /** The wrapped representation with a complete content. */
+    private final Representation wrappedRepresentation;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation with a complete content and a
+     *            known size.
+     * @param ranges
+     *            The absolute, sorted and disjoint ranges to expose.
+     */
+    public ByteRangesRepresentation(Representation wrappedRepresentation,
+            List<Range> ranges) {
+        this(wrappedRepresentation, ranges, Long.toHexString(ThreadLocalRandom
+                .current().nextLong())
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation with a complete content and a
+     *            known size.
+     * @param ranges
+     *            The absolute, sorted and disjoint ranges to expose.
+     * @param boundary
+     *            The boundary separating the parts.
+     */
+    public ByteRangesRepresentation(Representation wrappedRepresentation,
+            List<Range> ranges, String boundary) {
+        super(createMediaType(boundary));
+        this.boundary = boundary;
+        this.ranges = ranges;
+        this.wrappedRepresentation = wrappedRepresentation;
+        setExpirationDate(wrappedRepresentation.getExpirationDate());
+        setModificationDate(wrappedRepresentation.getModificationDate());
+        setTag(wrappedRepresentation.getTag());
+
+        long size = getTrailer().length();
+
+        for (Range range : ranges) {
+            size += getHeader(range).length() + range.getSize()
+                    + CRLF.length();
+        }
+
+        setSize(size);
+    }
+
+    /**
+     * Returns the boundary separating the parts.
+     * 
+     * @return The boundary separating the parts.
+     */
+    public String getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Returns the boundary and headers preceding the content of a part.
+     * 
+     * @param range
+     *            The range of the part.
+     * @return The boundary and headers of the part.
+     */
+    private String getHeader(Range range) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--").append(this.boundary).append(CRLF);
+
+        if (this.wrappedRepresentation.getMediaType() != null) {
+            sb.append("Content-Type: ")
+                    .append(this.wrappedRepresentation.getMediaType())
+                    .append(CRLF);
+        }
+
+        sb.append("Content-Range: ")
+                .append(RangeWriter.write(range,
+                        this.wrappedRepresentation.getSize())).append(CRLF);
+        sb.append(CRLF);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the absolute, sorted and disjoint ranges exposed.
+     * 
+     * @return The ranges exposed.
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns the closing boundary.
+     * 
+     * @return The closing boundary.
+     */
+    private String getTrailer() {
+        return "--" + this.boundary + "--" + CRLF;
+    }
+
+    /**
+     * Returns the wrapped representation with a complete content.
+     * 
+     * @return The wrapped representation.
+     */
+    public Representation getWrappedRepresentation() {
+        return wrappedRepresentation;
+    }
+
+    @Override
+    public void release() {
+        this.wrappedRepresentation.release();
+        super.release();
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        FileChannel channel = RangeRepresentation
+                .getFileChannel(this.wrappedRepresentation);
+        InputStream in = (channel == null) ? this.wrappedRepresentation
+                .getStream() : Channels.newInputStream(channel);
+        byte[] buffer = new byte[IoUtils.BUFFER_SIZE];
+        long position = 0;
+
+        try {
+            for (Range range : this.ranges) {
+                outputStream.write(getHeader(range).getBytes("US-ASCII"));
+
+                // Reach the start of the range
+                if (channel != null) {
+                    channel.position(range.getIndex());
+                    position = range.getIndex();
+                }
+
+                while (position < range.getIndex()) {
+                    long skipped = in.skip(range.getIndex() - position);
+
+                    if (skipped <= 0) {
+                        if (in.read() == -1) {
+                            throw new IOException(
+                                    "The content ended before the range "
+                                            + range.getIndex());
+                        }
+
+                        skipped = 1;
+                    }
+
+                    position += skipped;
+                }
+
+                // Copy the content of the range
+                long remaining = range.getSize();
+
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0,
+                            (int) Math.min(buffer.length, remaining));
+
+                    if (read == -1) {
+                        throw new IOException(
+                                "The content ended before the end of the range "
+                                        + range.getIndex());
+                    }
+
+                    outputStream.write(buffer, 0, read);
+                    position += read;
+                    remaining -= read;
+                }
+
+                outputStream.write(CRLF.getBytes("US-ASCII"));
+            }
+
+            outputStream.write(getTrailer().getBytes("US-ASCII"));
+            outputStream.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+}
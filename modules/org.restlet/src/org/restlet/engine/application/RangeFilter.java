@@ -24,11 +24,14 @@
 
 package org.restlet.engine.application;
 
+import java.util.List;
+
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Range;
 import org.restlet.data.Status;
+import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 import org.restlet.service.RangeService;
 
@@ -71,12 +74,13 @@ public class RangeFilter extends Filter {
                             // properly ranged.
                         }
                     } else {
-                        // At this time, list of ranges are not supported.
-                        if (request.getRanges().size() == 1
-                                && (!request.getConditions().hasSomeRange() || request
-                                        .getConditions()
+                        boolean rangeMatched = !request.getConditions()
+                                .hasSomeRange()
+                                || request.getConditions()
                                         .getRangeStatus(response.getEntity())
-                                        .isSuccess())) {
+                                        .isSuccess();
+
+                        if (request.getRanges().size() == 1 && rangeMatched) {
                             Range requestedRange = request.getRanges().get(0);
 
                             if ((!response.getEntity().hasKnownSize())
@@ -107,14 +111,9 @@ public class RangeFilter extends Filter {
                                         response.getEntity(), requestedRange));
                                 response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
                             }
-                        } else if (request.getRanges().size() > 1) {
-                            // Return a server error as this feature isn't
-                            // supported yet
-                            response.setStatus(Status.SERVER_ERROR_NOT_IMPLEMENTED);
-                            getLogger()
-                                    .warning(
-                                            "Multiple ranges are not supported at this time.");
-                            response.setEntity(null);
+                        } else if (request.getRanges().size() > 1
+                                && rangeMatched) {
+                            handleRanges(request, response);
                         }
                     }
                 } else {
@@ -124,6 +123,42 @@ public class RangeFilter extends Filter {
         }
     }
 
+    /**
+     * Ranges the response entity according to several requested ranges. The
+     * satisfiable ranges are coalesced and returned either as a single range
+     * or as a "multipart/byteranges" entity. When the size of the entity isn't
+     * known or when the entity is encoded, the complete entity is returned.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    protected void handleRanges(Request request, Response response) {
+        Representation entity = response.getEntity();
+
+        if (!entity.hasKnownSize() || (entity.getRange() != null)
+                || !entity.getEncodings().isEmpty()) {
+            getLogger()
+                    .fine("Unable to serve these ranges, the complete entity is returned.");
+        } else {
+            List<Range> ranges = ByteRangesRepresentation
+                    .getSatisfiableRanges(request.getRanges(), entity.getSize());
+
+            if (ranges.isEmpty()) {
+                response.setStatus(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setEntity(null);
+            } else if (ranges.size() == 1) {
+                response.setEntity(new RangeRepresentation(entity, ranges
+                        .get(0)));
+                response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+            } else {
+                response.setEntity(new ByteRangesRepresentation(entity, ranges));
+                response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+            }
+        }
+    }
+
     /**
      * Returns the Range service of the parent application.
      * 
@@ -28,23 +28,60 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 import org.restlet.data.Range;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.engine.io.RangeInputStream;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.ReadableRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.util.WrapperRepresentation;
 
 // [excludes gwt]
 /**
  * Representation that exposes only a range of the content of a wrapped
- * representation.
+ * representation. When the wrapped representation is backed by a file or by a
+ * file channel, the start of the range is reached by seeking instead of
+ * reading and discarding the preceding bytes.
  * 
  * @author Jerome Louvel
  */
 public class RangeRepresentation extends WrapperRepresentation {
 
+    /**
+     * Returns a file channel on the content of a representation or null if it
+     * isn't backed by a file or by a file channel.
+     * 
+     * @param representation
+     *            The representation.
+     * @return A file channel or null.
+     * @throws IOException
+     */
+    static FileChannel getFileChannel(Representation representation)
+            throws IOException {
+        FileChannel result = null;
+
+        if (representation instanceof FileRepresentation) {
+            result = ((FileRepresentation) representation).getChannel();
+        } else if (representation instanceof ReadableRepresentation) {
+            ReadableByteChannel channel = representation.getChannel();
+
+            if (channel instanceof FileChannel) {
+                result = (FileChannel) channel;
+            } else {
+                // The channel can only be obtained once, give it back
+                ((ReadableRepresentation) representation).setChannel(channel);
+                representation.setAvailable(channel != null);
+            }
+        }
+
+        return result;
+    }
+
     /** The range specific to this wrapper. */
     private volatile Range range;
 
@@ -103,8 +140,40 @@ public class RangeRepresentation extends WrapperRepresentation {
         return IoUtils.getReader(getStream(), getCharacterSet());
     }
 
+    /**
+     * Returns the index of the first byte of the range in the wrapped
+     * representation, or -1 if it can't be computed.
+     * 
+     * @return The index of the first byte of the range.
+     */
+    private long getStartIndex() {
+        long result = -1;
+
+        if (getRange().getIndex() != Range.INDEX_LAST) {
+            result = getRange().getIndex();
+        } else if (getRange().getSize() == Range.SIZE_MAX) {
+            result = 0;
+        } else if (hasKnownSize()) {
+            result = Math.max(0, getSize() - getRange().getSize());
+        }
+
+        return result;
+    }
+
     @Override
     public InputStream getStream() throws IOException {
+        long startIndex = getStartIndex();
+
+        if (startIndex > 0) {
+            FileChannel channel = getFileChannel(getWrappedRepresentation());
+
+            if (channel != null) {
+                channel.position(startIndex);
+                return new RangeInputStream(Channels.newInputStream(channel),
+                        getSize(), getRange(), startIndex);
+            }
+        }
+
         return new RangeInputStream(super.getStream(), getSize(), getRange());
     }
 
@@ -140,6 +209,31 @@ public class RangeRepresentation extends WrapperRepresentation {
 
     @Override
     public void write(WritableByteChannel writableChannel) throws IOException {
+        long startIndex = getStartIndex();
+        long count = getAvailableSize();
+
+        if ((startIndex >= 0) && (count >= 0)
+                && (getWrappedRepresentation() instanceof FileRepresentation)) {
+            // Let the file channel transfer the range directly
+            FileChannel channel = ((FileRepresentation) getWrappedRepresentation())
+                    .getChannel();
+
+            try {
+                long transferred;
+
+                while ((count > 0)
+                        && ((transferred = channel.transferTo(startIndex,
+                                count, writableChannel)) > 0)) {
+                    startIndex += transferred;
+                    count -= transferred;
+                }
+            } finally {
+                channel.close();
+            }
+
+            return;
+        }
+
         OutputStream os = IoUtils.getStream(writableChannel);
         write(os);
         os.flush();
@@ -24,17 +24,24 @@
 
 package org.restlet.engine.component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Reference;
 import org.restlet.routing.Route;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 
 /**
- * Route based on a target VirtualHost.
+ * Route based on a target VirtualHost. The regular expressions of the virtual
+ * host criteria are compiled once, and recompiled only when the virtual host
+ * properties change. Criteria matching everything (".*") are skipped and
+ * literal criteria (such as "www\\.example\\.com") are matched without regular
+ * expressions.
  * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -43,6 +50,224 @@ import org.restlet.routing.VirtualHost;
  * @author Jerome Louvel
  */
 public class HostRoute extends Route {
+
+    /**
+     * Precompiled virtual host criterion.
+     */
+    private static final class Criterion {
+
+        /** Indicates if the criterion matches everything. */
+        private final boolean any;
+
+        /** The lower case literal alternatives or null. */
+        private final String[] literals;
+
+        /** The compiled pattern if the criterion isn't literal. */
+        private final Pattern pattern;
+
+        /** The source regular expression. */
+        private final String regex;
+
+        /**
+         * Constructor.
+         * 
+         * @param regex
+         *            The source regular expression.
+         */
+        private Criterion(String regex) {
+            this.regex = regex;
+            this.any = ".*".equals(regex);
+            this.literals = this.any ? null : parseLiterals(regex);
+            this.pattern = (this.any || (this.literals != null)) ? null
+                    : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        }
+
+        /**
+         * Matches a formatted string against the criterion, in a case
+         * insensitive manner.
+         * 
+         * @param formattedString
+         *            The formatted string to match.
+         * @return True if the formatted string matched the criterion.
+         */
+        private boolean matches(String formattedString) {
+            if (this.any) {
+                return true;
+            }
+
+            if (this.literals == null) {
+                return this.pattern.matcher(formattedString).matches();
+            }
+
+            for (String literal : this.literals) {
+                if (matchesLiteral(literal, formattedString)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /** Index of the host domain criterion. */
+    private static final int HOST_DOMAIN = 0;
+
+    /** Index of the host port criterion. */
+    private static final int HOST_PORT = 1;
+
+    /** Index of the host scheme criterion. */
+    private static final int HOST_SCHEME = 2;
+
+    /** Index of the resource domain criterion. */
+    private static final int RESOURCE_DOMAIN = 3;
+
+    /** Index of the resource port criterion. */
+    private static final int RESOURCE_PORT = 4;
+
+    /** Index of the resource scheme criterion. */
+    private static final int RESOURCE_SCHEME = 5;
+
+    /** Index of the server address criterion. */
+    private static final int SERVER_ADDRESS = 6;
+
+    /** Index of the server port criterion. */
+    private static final int SERVER_PORT = 7;
+
+    /**
+     * Returns the address of the server connector or an empty string.
+     * 
+     * @param response
+     *            The response.
+     * @return The address of the server connector or an empty string.
+     */
+    private static String getAddress(Response response) {
+        String result = response.getServerInfo().getAddress();
+        return (result == null) ? "" : result;
+    }
+
+    /**
+     * Returns the domain of a reference or an empty string.
+     * 
+     * @param ref
+     *            The reference.
+     * @return The domain of the reference or an empty string.
+     */
+    private static String getDomain(Reference ref) {
+        String result = (ref == null) ? null : ref.getHostDomain();
+        return (result == null) ? "" : result;
+    }
+
+    /**
+     * Returns the port of a reference, or the default port of its scheme, or
+     * an empty string.
+     * 
+     * @param ref
+     *            The reference.
+     * @return The port of a reference or an empty string.
+     */
+    private static String getPort(Reference ref) {
+        if (ref == null) {
+            return "";
+        }
+
+        int port = ref.getHostPort();
+
+        if (port == -1) {
+            port = ref.getSchemeProtocol().getDefaultPort();
+        }
+
+        return Integer.toString(port);
+    }
+
+    /**
+     * Returns the scheme of a reference or an empty string.
+     * 
+     * @param ref
+     *            The reference.
+     * @return The scheme of the reference or an empty string.
+     */
+    private static String getScheme(Reference ref) {
+        String result = (ref == null) ? null : ref.getScheme();
+        return (result == null) ? "" : result;
+    }
+
+    /**
+     * Matches a string against a lower case literal, ignoring the case of
+     * ASCII letters like a case insensitive regular expression.
+     * 
+     * @param literal
+     *            The lower case literal.
+     * @param value
+     *            The string to match.
+     * @return True if the string matches the literal.
+     */
+    private static boolean matchesLiteral(String literal, String value) {
+        if (literal.length() != value.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < literal.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c >= 'A') && (c <= 'Z')) {
+                c += 'a' - 'A';
+            }
+
+            if (c != literal.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a regular expression made of literal ASCII alternatives separated
+     * by '|', where only non alphanumeric characters can be escaped.
+     * 
+     * @param regex
+     *            The regular expression.
+     * @return The lower case alternatives or null if the regular expression
+     *         isn't literal.
+     */
+    private static String[] parseLiterals(String regex) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (++i == regex.length()) {
+                    return null;
+                }
+
+                c = regex.charAt(i);
+
+                if (Character.isLetterOrDigit(c) || (c > 127)) {
+                    return null;
+                }
+
+                literal.append(c);
+            } else if (c == '|') {
+                result.add(literal.toString());
+                literal.setLength(0);
+            } else if ((c > 127) || ("[](){}.*+?^$".indexOf(c) != -1)) {
+                return null;
+            } else if ((c >= 'A') && (c <= 'Z')) {
+                literal.append((char) (c + 'a' - 'A'));
+            } else {
+                literal.append(c);
+            }
+        }
+
+        result.add(literal.toString());
+        return result.toArray(new String[result.size()]);
+    }
+
+    /** The precompiled criteria of the virtual host. */
+    private volatile Criterion[] criteria;
+
     /**
      * Constructor.
      * 
@@ -86,27 +311,58 @@ public class HostRoute extends Route {
     }
 
     /**
-     * Returns the target virtual host.
+     * Returns the precompiled criteria of the virtual host, compiling them
+     * again if the virtual host properties changed.
      * 
-     * @return The target virtual host.
+     * @return The precompiled criteria of the virtual host.
      */
-    public VirtualHost getVirtualHost() {
-        return (VirtualHost) getNext();
+    private Criterion[] getCriteria() {
+        VirtualHost host = getVirtualHost();
+        Criterion[] result = this.criteria;
+
+        if ((result == null)
+                || (result[HOST_DOMAIN].regex != host.getHostDomain())
+                || (result[HOST_PORT].regex != host.getHostPort())
+                || (result[HOST_SCHEME].regex != host.getHostScheme())
+                || (result[RESOURCE_DOMAIN].regex != host.getResourceDomain())
+                || (result[RESOURCE_PORT].regex != host.getResourcePort())
+                || (result[RESOURCE_SCHEME].regex != host.getResourceScheme())
+                || (result[SERVER_ADDRESS].regex != host.getServerAddress())
+                || (result[SERVER_PORT].regex != host.getServerPort())) {
+            result = new Criterion[8];
+            result[HOST_DOMAIN] = new Criterion(host.getHostDomain());
+            result[HOST_PORT] = new Criterion(host.getHostPort());
+            result[HOST_SCHEME] = new Criterion(host.getHostScheme());
+            result[RESOURCE_DOMAIN] = new Criterion(host.getResourceDomain());
+            result[RESOURCE_PORT] = new Criterion(host.getResourcePort());
+            result[RESOURCE_SCHEME] = new Criterion(host.getResourceScheme());
+            result[SERVER_ADDRESS] = new Criterion(host.getServerAddress());
+            result[SERVER_PORT] = new Criterion(host.getServerPort());
+            this.criteria = result;
+        }
+
+        return result;
     }
 
     /**
-     * Matches a formatted string against a regex pattern, in a case insensitive
-     * manner.
+     * Returns the lower case literal host domains matched by the virtual host,
+     * or null if its host domain is a regular expression that isn't made of
+     * literal alternatives.
      * 
-     * @param regex
-     *            The pattern to use.
-     * @param formattedString
-     *            The formatted string to match.
-     * @return True if the formatted string matched the pattern.
+     * @return The lower case literal host domains or null.
+     */
+    public String[] getHostDomainLiterals() {
+        String[] literals = getCriteria()[HOST_DOMAIN].literals;
+        return (literals == null) ? null : literals.clone();
+    }
+
+    /**
+     * Returns the target virtual host.
+     * 
+     * @return The target virtual host.
      */
-    private boolean matches(String regex, String formattedString) {
-        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-                .matcher(formattedString).matches();
+    public VirtualHost getVirtualHost() {
+        return (VirtualHost) getNext();
     }
 
     /**
@@ -121,83 +377,30 @@ public class HostRoute extends Route {
     @Override
     public float score(Request request, Response response) {
         float result = 0F;
-
-        // Prepare the value to be matched
-        String hostDomain = "";
-        String hostPort = "";
-        String hostScheme = "";
-
-        if (request.getHostRef() != null) {
-            hostDomain = request.getHostRef().getHostDomain();
-
-            if (hostDomain == null) {
-                hostDomain = "";
-            }
-
-            int basePortValue = request.getHostRef().getHostPort();
-
-            if (basePortValue == -1) {
-                basePortValue = request.getHostRef().getSchemeProtocol()
-                        .getDefaultPort();
-            }
-
-            hostPort = Integer.toString(basePortValue);
-
-            hostScheme = request.getHostRef().getScheme();
-
-            if (hostScheme == null) {
-                hostScheme = "";
-            }
-        }
-
-        if (request.getResourceRef() != null) {
-            String resourceDomain = request.getResourceRef().getHostDomain();
-
-            if (resourceDomain == null) {
-                resourceDomain = "";
-            }
-
-            int resourcePortValue = request.getResourceRef().getHostPort();
-
-            if (resourcePortValue == -1) {
-                resourcePortValue = request.getResourceRef()
-                        .getSchemeProtocol().getDefaultPort();
-            }
-
-            String resourcePort = Integer.toString(resourcePortValue);
-            String resourceScheme = request.getResourceRef().getScheme();
-
-            if (resourceScheme == null) {
-                resourceScheme = "";
-            }
-
-            String serverAddress = response.getServerInfo().getAddress();
-
-            if (serverAddress == null) {
-                serverAddress = "";
-            }
-
-            int serverPortValue = response.getServerInfo().getPort();
-
-            if (serverPortValue == -1) {
-                serverPortValue = request.getProtocol().getDefaultPort();
-            }
-
-            String serverPort = Integer.toString(response.getServerInfo()
-                    .getPort());
-
-            // Check if all the criteria match
-            if (matches(getVirtualHost().getHostDomain(), hostDomain)
-                    && matches(getVirtualHost().getHostPort(), hostPort)
-                    && matches(getVirtualHost().getHostScheme(), hostScheme)
-                    && matches(getVirtualHost().getResourceDomain(),
-                            resourceDomain)
-                    && matches(getVirtualHost().getResourcePort(), resourcePort)
-                    && matches(getVirtualHost().getResourceScheme(),
-                            resourceScheme)
-                    && matches(getVirtualHost().getServerAddress(),
-                            serverAddress)
-                    && matches(getVirtualHost().getServerPort(), serverPort)) {
+        Reference hostRef = request.getHostRef();
+        Reference resourceRef = request.getResourceRef();
+
+        if (resourceRef != null) {
+            Criterion[] criteria = getCriteria();
+
+            // Check if all the criteria match, only formatting the values
+            // that need to be matched
+            if (criteria[HOST_DOMAIN].matches(getDomain(hostRef))
+                    && (criteria[HOST_PORT].any || criteria[HOST_PORT]
+                            .matches(getPort(hostRef)))
+                    && (criteria[HOST_SCHEME].any || criteria[HOST_SCHEME]
+                            .matches(getScheme(hostRef)))
+                    && (criteria[RESOURCE_DOMAIN].any || criteria[RESOURCE_DOMAIN]
+                            .matches(getDomain(resourceRef)))
+                    && (criteria[RESOURCE_PORT].any || criteria[RESOURCE_PORT]
+                            .matches(getPort(resourceRef)))
+                    && (criteria[RESOURCE_SCHEME].any || criteria[RESOURCE_SCHEME]
+                            .matches(getScheme(resourceRef)))
+                    && (criteria[SERVER_ADDRESS].any || criteria[SERVER_ADDRESS]
+                            .matches(getAddress(response)))
+                    && (criteria[SERVER_PORT].any || criteria[SERVER_PORT]
+                            .matches(Integer.toString(response.getServerInfo()
+                                    .getPort())))) {
                 result = 1F;
             }
         }
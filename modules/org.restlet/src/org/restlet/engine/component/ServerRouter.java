@@ -24,6 +24,11 @@
 
 package org.restlet.engine.component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.restlet.Component;
@@ -31,13 +36,24 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Status;
+import org.restlet.routing.Route;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
+import org.restlet.util.RouteList;
 
 /**
  * Router that collects calls from all server connectors and dispatches them to
  * the appropriate host routers. The host routers then dispatch them to the user
- * applications.
+ * applications.<br>
+ * <br>
+ * When started, the router indexes the virtual hosts whose host domain is
+ * literal (for example "www\\.example\\.com") by their domain. In the first
+ * match routing mode, only the virtual hosts indexed under the domain of the
+ * request's host reference and the ones that aren't indexed are then scored,
+ * in their original order. The index is checked against the current routes
+ * and host domains of their virtual hosts before each use, and rebuilt when
+ * they changed, so that changing a virtual host at runtime is taken into
+ * account without calling {@link Component#updateHosts()}.
  * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -47,9 +63,188 @@ import org.restlet.routing.VirtualHost;
  */
 public class ServerRouter extends Router {
 
+    /**
+     * Index of the routes by literal host domain.
+     */
+    private static final class HostIndex {
+
+        /**
+         * The host domains of the virtual hosts when the routes were indexed,
+         * or null for the routes that don't target a virtual host.
+         */
+        private final String[] hostDomains;
+
+        /** The positions of the routes indexed by lower case host domain. */
+        private final Map<String, int[]> indexedRoutes;
+
+        /** The positions of the routes that aren't indexed. */
+        private final int[] otherRoutes;
+
+        /** The list of routes indexed. */
+        private final RouteList routeList;
+
+        /** The routes indexed. */
+        private final Route[] routes;
+
+        /**
+         * Constructor.
+         * 
+         * @param routeList
+         *            The list of routes to index.
+         */
+        private HostIndex(RouteList routeList) {
+            Map<String, List<Integer>> indexed = new HashMap<String, List<Integer>>();
+            List<Integer> others = new ArrayList<Integer>();
+
+            this.routeList = routeList;
+            this.routes = routeList.toArray(new Route[routeList.size()]);
+            this.hostDomains = new String[this.routes.length];
+
+            for (int i = 0; i < this.routes.length; i++) {
+                if (this.routes[i] instanceof HostRoute) {
+                    this.hostDomains[i] = ((HostRoute) this.routes[i])
+                            .getVirtualHost().getHostDomain();
+                }
+
+                String[] literals = (this.routes[i] instanceof HostRoute) ? ((HostRoute) this.routes[i])
+                        .getHostDomainLiterals() : null;
+
+                if (literals == null) {
+                    others.add(i);
+                } else {
+                    for (String literal : literals) {
+                        List<Integer> positions = indexed.get(literal);
+
+                        if (positions == null) {
+                            positions = new ArrayList<Integer>();
+                            indexed.put(literal, positions);
+                        }
+
+                        if (positions.isEmpty()
+                                || (positions.get(positions.size() - 1) != i)) {
+                            positions.add(i);
+                        }
+                    }
+                }
+            }
+
+            this.indexedRoutes = new HashMap<String, int[]>();
+
+            for (Map.Entry<String, List<Integer>> entry : indexed.entrySet()) {
+                this.indexedRoutes.put(entry.getKey(),
+                        toArray(entry.getValue()));
+            }
+
+            this.otherRoutes = toArray(others);
+        }
+
+        /**
+         * Returns the first route whose score is greater or equal to the
+         * required score, only scoring the routes that may match the domain
+         * of the request's host reference.
+         * 
+         * @param request
+         *            The request to score.
+         * @param response
+         *            The response to score.
+         * @param requiredScore
+         *            The minimum score required to have a match.
+         * @return The first matching route or null.
+         */
+        private Route getFirst(Request request, Response response,
+                float requiredScore) {
+            String domain = (request.getHostRef() == null) ? null : request
+                    .getHostRef().getHostDomain();
+            int[] indexed = this.indexedRoutes.get((domain == null) ? ""
+                    : domain.toLowerCase(Locale.ENGLISH));
+            int[] others = this.otherRoutes;
+            int indexedCount = (indexed == null) ? 0 : indexed.length;
+            int i = 0;
+            int j = 0;
+
+            // Merge both lists of positions to preserve the routes order
+            while ((i < others.length) || (j < indexedCount)) {
+                int position;
+
+                if ((j == indexedCount)
+                        || ((i < others.length) && (others[i] < indexed[j]))) {
+                    position = others[i++];
+                } else {
+                    position = indexed[j++];
+                }
+
+                if (this.routes[position].score(request, response) >= requiredScore) {
+                    return this.routes[position];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Indicates if the index still reflects the given list of routes, by
+         * checking that the same routes are listed in the same order and that
+         * the host domains of their virtual hosts didn't change. The host
+         * domains are compared by identity, as the routes do when checking
+         * their precompiled criteria.
+         * 
+         * @param routeList
+         *            The current list of routes.
+         * @return True if the index is still valid.
+         */
+        private boolean isValid(RouteList routeList) {
+            if ((routeList != this.routeList)
+                    || (routeList.size() != this.routes.length)) {
+                return false;
+            }
+
+            for (int i = 0; i < this.routes.length; i++) {
+                Route route;
+
+                try {
+                    route = routeList.get(i);
+                } catch (IndexOutOfBoundsException e) {
+                    // The list was concurrently shortened
+                    return false;
+                }
+
+                if ((route != this.routes[i])
+                        || ((this.hostDomains[i] != null) && (((HostRoute) route)
+                                .getVirtualHost().getHostDomain() != this.hostDomains[i]))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Converts a list of positions into an array.
+         * 
+         * @param positions
+         *            The list of positions.
+         * @return The array of positions.
+         */
+        private static int[] toArray(List<Integer> positions) {
+            int[] result = new int[positions.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = positions.get(i);
+            }
+
+            return result;
+        }
+    }
+
     /** The parent component. */
     private volatile Component component;
 
+    /**
+     * The index of the host routes, built when the router starts and rebuilt
+     * when the routes or their virtual hosts change.
+     */
+    private volatile HostIndex hostIndex;
+
     /**
      * Constructor.
      * 
@@ -72,6 +267,54 @@ public class ServerRouter extends Router {
         return this.component;
     }
 
+    /**
+     * Returns the next Restlet if available. In the first match routing mode,
+     * uses the index of the host routes by literal host domain.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The next Restlet if available or null.
+     */
+    @Override
+    public Restlet getNext(Request request, Response response) {
+        HostIndex index = this.hostIndex;
+
+        if ((index == null) || (getRoutingMode() != MODE_FIRST_MATCH)
+                || (getMaxAttempts() > 1)) {
+            return super.getNext(request, response);
+        }
+
+        if (!index.isValid(getRoutes())) {
+            index = new HostIndex(getRoutes());
+
+            if (isStarted()) {
+                this.hostIndex = index;
+            }
+        }
+
+        Route result = index.getFirst(request, response, getRequiredScore());
+
+        if (result == null) {
+            // If nothing matched in the routes list,
+            // check the default route
+            if ((getDefaultRoute() != null)
+                    && (getDefaultRoute().score(request, response) >= getRequiredScore())) {
+                result = getDefaultRoute();
+            } else {
+                // No route could be found
+                response.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+            }
+        }
+
+        if (request.isLoggable()) {
+            logRoute(result);
+        }
+
+        return result;
+    }
+
     @Override
     protected void logRoute(org.restlet.routing.Route route) {
         if (getLogger().isLoggable(Level.FINE)) {
@@ -118,6 +361,7 @@ public class ServerRouter extends Router {
 
         setDefaultRoute(new org.restlet.routing.TemplateRoute(this, "",
                 noHostMatched));
+        this.hostIndex = new HostIndex(getRoutes());
 
         // Start the router
         super.start();
@@ -125,6 +369,7 @@ public class ServerRouter extends Router {
 
     @Override
     public synchronized void stop() throws Exception {
+        this.hostIndex = null;
         getRoutes().clear();
         super.stop();
     }
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.connector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Adaptive admission control of the calls serviced by a server connector. The
+ * number of calls serviced concurrently is bounded by a limit that adapts to
+ * the observed latency: it is additively increased while the latency stays
+ * close to the lowest latency observed, and multiplicatively decreased as soon
+ * as the latency exceeds it by a given tolerance factor, which means the
+ * server is queuing work.<br>
+ * <br>
+ * Calls are admitted in priority lanes. High priority calls may use the full
+ * limit, normal priority calls 90% of it, and low priority calls half of it, so
+ * that low priority traffic is shed first when the server is overloaded. The
+ * lane of a call is selected by matching its route, made of the host name and
+ * port followed by the path (for example "api.example.com:8182/orders/12"),
+ * against lists of regular expressions.
+ * 
+ * @author Jerome Louvel
+ */
+public class AdmissionController {
+
+    /** Multiplicative factor applied to the limit when decreasing it. */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /** The share of the limit that low priority calls may use. */
+    private static final double LOW_PRIORITY_RATIO = 0.5;
+
+    /** The share of the limit that normal priority calls may use. */
+    private static final double NORMAL_PRIORITY_RATIO = 0.9;
+
+    /** High priority lane. */
+    public static final int PRIORITY_HIGH = 0;
+
+    /** Low priority lane. */
+    public static final int PRIORITY_LOW = 2;
+
+    /** Normal priority lane. */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /** The number of calls admitted. */
+    private final AtomicLong admittedCount;
+
+    /** The lowest latency observed, slowly drifting upward, in nanoseconds. */
+    private final AtomicLong baselineLatency;
+
+    /** The number of calls completed since the last limit decrease. */
+    private final AtomicInteger completedSinceDecrease;
+
+    /** The patterns of the routes serviced in the high priority lane. */
+    private final List<Pattern> highPriorityRoutes;
+
+    /** The number of calls currently serviced. */
+    private final AtomicInteger inFlightCount;
+
+    /** The latency ratio above which the limit is decreased. */
+    private final double latencyTolerance;
+
+    /** The bits of the current concurrency limit, stored as a double. */
+    private final AtomicLong limit;
+
+    /** The patterns of the routes serviced in the low priority lane. */
+    private final List<Pattern> lowPriorityRoutes;
+
+    /** The maximum concurrency limit. */
+    private final int maxLimit;
+
+    /** The minimum concurrency limit. */
+    private final int minLimit;
+
+    /** The number of calls rejected, per priority lane. */
+    private final AtomicLong[] rejectedCounts;
+
+    /**
+     * Constructor.
+     * 
+     * @param initialLimit
+     *            The initial concurrency limit.
+     * @param minLimit
+     *            The minimum concurrency limit.
+     * @param maxLimit
+     *            The maximum concurrency limit.
+     * @param latencyTolerance
+     *            The latency ratio above which the limit is decreased.
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit,
+            double latencyTolerance) {
+        if ((minLimit < 1) || (maxLimit < minLimit)) {
+            throw new IllegalArgumentException(
+                    "The concurrency limits must verify 1 <= min <= max");
+        }
+
+        this.admittedCount = new AtomicLong();
+        this.baselineLatency = new AtomicLong();
+        this.completedSinceDecrease = new AtomicInteger();
+        this.highPriorityRoutes = new CopyOnWriteArrayList<Pattern>();
+        this.inFlightCount = new AtomicInteger();
+        this.latencyTolerance = latencyTolerance;
+        this.limit = new AtomicLong(Double.doubleToLongBits(Math.max(
+                minLimit, Math.min(maxLimit, initialLimit))));
+        this.lowPriorityRoutes = new CopyOnWriteArrayList<Pattern>();
+        this.maxLimit = maxLimit;
+        this.minLimit = minLimit;
+        this.rejectedCounts = new AtomicLong[] { new AtomicLong(),
+                new AtomicLong(), new AtomicLong() };
+    }
+
+    /**
+     * Returns the number of calls admitted.
+     * 
+     * @return The number of calls admitted.
+     */
+    public long getAdmittedCount() {
+        return this.admittedCount.get();
+    }
+
+    /**
+     * Returns the lowest latency observed, slowly drifting upward, in
+     * nanoseconds.
+     * 
+     * @return The baseline latency in nanoseconds.
+     */
+    public long getBaselineLatency() {
+        return this.baselineLatency.get();
+    }
+
+    /**
+     * Returns the modifiable list of patterns of the routes serviced in the
+     * high priority lane.
+     * 
+     * @return The patterns of the routes serviced in the high priority lane.
+     */
+    public List<Pattern> getHighPriorityRoutes() {
+        return this.highPriorityRoutes;
+    }
+
+    /**
+     * Returns the number of calls currently serviced.
+     * 
+     * @return The number of calls currently serviced.
+     */
+    public int getInFlightCount() {
+        return this.inFlightCount.get();
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     * 
+     * @return The current concurrency limit.
+     */
+    public int getLimit() {
+        return (int) getLimitValue();
+    }
+
+    /**
+     * Returns the number of calls that a given priority lane may service
+     * concurrently.
+     * 
+     * @param priority
+     *            The priority lane.
+     * @return The number of calls that the lane may service concurrently.
+     */
+    private int getLimit(int priority) {
+        double result = getLimitValue();
+
+        if (priority == PRIORITY_NORMAL) {
+            result *= NORMAL_PRIORITY_RATIO;
+        } else if (priority == PRIORITY_LOW) {
+            result *= LOW_PRIORITY_RATIO;
+        }
+
+        return Math.max(1, (int) result);
+    }
+
+    /**
+     * Returns the current concurrency limit, with its fractional part.
+     * 
+     * @return The current concurrency limit.
+     */
+    private double getLimitValue() {
+        return Double.longBitsToDouble(this.limit.get());
+    }
+
+    /**
+     * Returns the modifiable list of patterns of the routes serviced in the
+     * low priority lane.
+     * 
+     * @return The patterns of the routes serviced in the low priority lane.
+     */
+    public List<Pattern> getLowPriorityRoutes() {
+        return this.lowPriorityRoutes;
+    }
+
+    /**
+     * Returns the priority lane of a route. High priority patterns are checked
+     * first, then low priority ones. Other routes have a normal priority.
+     * 
+     * @param route
+     *            The route, made of the host name and port followed by the
+     *            path.
+     * @return The priority lane.
+     */
+    public int getPriority(String route) {
+        for (Pattern pattern : this.highPriorityRoutes) {
+            if (pattern.matcher(route).matches()) {
+                return PRIORITY_HIGH;
+            }
+        }
+
+        for (Pattern pattern : this.lowPriorityRoutes) {
+            if (pattern.matcher(route).matches()) {
+                return PRIORITY_LOW;
+            }
+        }
+
+        return PRIORITY_NORMAL;
+    }
+
+    /**
+     * Returns the total number of calls rejected.
+     * 
+     * @return The total number of calls rejected.
+     */
+    public long getRejectedCount() {
+        long result = 0;
+
+        for (AtomicLong count : this.rejectedCounts) {
+            result += count.get();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of calls rejected in a given priority lane.
+     * 
+     * @param priority
+     *            The priority lane.
+     * @return The number of calls rejected in the lane.
+     */
+    public long getRejectedCount(int priority) {
+        return this.rejectedCounts[priority].get();
+    }
+
+    /**
+     * Records a call rejected for another reason than the concurrency limit,
+     * for example by a saturated worker pool.
+     * 
+     * @param priority
+     *            The priority lane of the call.
+     */
+    public void reject(int priority) {
+        this.rejectedCounts[priority].incrementAndGet();
+    }
+
+    /**
+     * Releases the slot of a completed call and adapts the limit to its
+     * latency.
+     * 
+     * @param latency
+     *            The latency of the call, in nanoseconds.
+     */
+    public void release(long latency) {
+        int inFlight = this.inFlightCount.getAndDecrement();
+        update(latency, inFlight);
+    }
+
+    @Override
+    public String toString() {
+        return "limit=" + getLimit() + ", inFlight=" + getInFlightCount()
+                + ", admitted=" + getAdmittedCount() + ", rejected="
+                + getRejectedCount();
+    }
+
+    /**
+     * Tries to admit a call in the given priority lane.
+     * 
+     * @param priority
+     *            The priority lane of the call.
+     * @return True if the call is admitted, in which case
+     *         {@link #release(long)} must be invoked once it is completed.
+     */
+    public boolean tryAcquire(int priority) {
+        int limit = getLimit(priority);
+
+        for (;;) {
+            int inFlight = this.inFlightCount.get();
+
+            if (inFlight >= limit) {
+                this.rejectedCounts[priority].incrementAndGet();
+                return false;
+            }
+
+            if (this.inFlightCount.compareAndSet(inFlight, inFlight + 1)) {
+                this.admittedCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adapts the limit to the latency of a completed call. The state is only
+     * updated with compare-and-set operations, so that releasing a call never
+     * locks.
+     * 
+     * @param latency
+     *            The latency of the call, in nanoseconds.
+     * @param inFlight
+     *            The number of calls serviced when the call completed.
+     */
+    private void update(long latency, int inFlight) {
+        long current;
+        long baseline;
+
+        do {
+            current = this.baselineLatency.get();
+
+            if ((current == 0) || (latency < current)) {
+                baseline = latency;
+            } else {
+                // Drift upward so that the baseline follows lasting changes
+                baseline = current + ((latency - current) >> 8);
+            }
+        } while ((baseline != current)
+                && !this.baselineLatency.compareAndSet(current, baseline));
+
+        double limit = getLimitValue();
+
+        if (latency > (baseline * this.latencyTolerance)) {
+            // Decrease at most once per window of calls
+            int completed = this.completedSinceDecrease.incrementAndGet();
+
+            if ((completed >= limit)
+                    && this.completedSinceDecrease.compareAndSet(completed, 0)) {
+                updateLimit(Math.max(this.minLimit, limit * BACKOFF_RATIO),
+                        true);
+            }
+        } else if ((inFlight * 2) >= limit) {
+            // Only probe for more capacity when the limit is being used
+            updateLimit(Math.min(this.maxLimit, limit + (1 / limit)), false);
+        }
+    }
+
+    /**
+     * Atomically moves the limit toward a new value. A decrease always
+     * applies, while an increase is dropped if the limit changed in between,
+     * which only delays the probing of one call.
+     * 
+     * @param value
+     *            The new limit.
+     * @param decrease
+     *            True if the limit is decreased.
+     */
+    private void updateLimit(double value, boolean decrease) {
+        long bits = Double.doubleToLongBits(value);
+        long current = this.limit.get();
+
+        if (decrease) {
+            while ((Double.longBitsToDouble(current) > value)
+                    && !this.limit.compareAndSet(current, bits)) {
+                current = this.limit.get();
+            }
+        } else if (Double.longBitsToDouble(current) < value) {
+            this.limit.compareAndSet(current, bits);
+        }
+    }
+
+}
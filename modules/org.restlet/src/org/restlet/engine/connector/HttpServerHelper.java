@@ -61,12 +61,11 @@ public class HttpServerHelper extends NetServerHelper {
         server.createContext("/", new HttpHandler() {
             @Override
             public void handle(HttpExchange httpExchange) throws IOException {
-                HttpServerHelper.this.handle(new HttpExchangeCall(getHelped(),
-                        httpExchange));
+                HttpServerHelper.this.handle(httpExchange, false);
             }
         });
         // creates a default executor
-        server.setExecutor(createThreadPool());
+        server.setExecutor(createExecutor());
         server.start();
 
         setConfidential(false);
@@ -122,12 +122,11 @@ public class HttpsServerHelper extends NetServerHelper {
         server.createContext("/", new HttpHandler() {
             @Override
             public void handle(HttpExchange httpExchange) throws IOException {
-                HttpsServerHelper.this.handle(new HttpExchangeCall(getHelped(),
-                        httpExchange, true));
+                HttpsServerHelper.this.handle(httpExchange, true);
             }
         });
         // creates a default executor
-        server.setExecutor(createThreadPool());
+        server.setExecutor(createExecutor());
         server.start();
 
         setConfidential(true);
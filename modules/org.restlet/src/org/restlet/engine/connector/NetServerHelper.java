@@ -24,18 +24,26 @@
 
 package org.restlet.engine.connector;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.restlet.Server;
+import org.restlet.data.Status;
 import org.restlet.engine.adapter.HttpServerHelper;
+import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.engine.util.VirtualThreadExecutorService;
+
+import com.sun.net.httpserver.HttpExchange;
 
 /**
  * Abstract Internal web server connector based on com.sun.net.httpserver
@@ -82,21 +90,109 @@ import org.restlet.engine.log.LoggingThreadFactory;
  * <td>300 000</td>
  * <td>Time for an idle thread to wait for an operation before being collected.</td>
  * </tr>
+ * <tr>
+ * <td>useVirtualThreads</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if each call should be serviced by a new virtual thread instead
+ * of a pooled worker thread. Only taken into account if the JVM supports
+ * virtual threads, in which case the "minThreads", "maxThreads", "maxQueued"
+ * and "maxThreadIdleTimeMs" parameters are ignored.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionControl</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the number of calls serviced concurrently should be limited
+ * by an {@link AdmissionController} adapting to the observed latency. Calls
+ * exceeding the limit, or rejected by a saturated worker pool, are answered
+ * with a "503 Service Unavailable" status and a "Retry-After" header.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionInitialLimit</td>
+ * <td>int</td>
+ * <td>maxThreads</td>
+ * <td>Initial number of calls serviced concurrently.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionMinLimit</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Minimum number of calls serviced concurrently.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionMaxLimit</td>
+ * <td>int</td>
+ * <td>1000</td>
+ * <td>Maximum number of calls serviced concurrently.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionLatencyTolerance</td>
+ * <td>double</td>
+ * <td>2.0</td>
+ * <td>Ratio between the latency of a call and the lowest latency observed
+ * above which the limit is decreased.</td>
+ * </tr>
+ * <tr>
+ * <td>highPriorityRoutes</td>
+ * <td>String</td>
+ * <td>null</td>
+ * <td>Regular expressions, separated by spaces, matching the routes of the
+ * calls to service in the high priority lane. A route is made of the host name
+ * and port followed by the path, for example "api.example.com:8182/orders/12".
+ * This parameter can be repeated.</td>
+ * </tr>
+ * <tr>
+ * <td>lowPriorityRoutes</td>
+ * <td>String</td>
+ * <td>null</td>
+ * <td>Regular expressions, separated by spaces, matching the routes of the
+ * calls to service in the low priority lane, which is shed first. This
+ * parameter can be repeated.</td>
+ * </tr>
+ * <tr>
+ * <td>retryAfter</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Number of seconds after which rejected clients are invited to retry.</td>
+ * </tr>
  * </table>
  * 
  * @author Jerome Louvel
  */
 public abstract class NetServerHelper extends HttpServerHelper {
+
+    /**
+     * Indicates if the current thread services calls rejected by the worker
+     * pool.
+     */
+    private static final ThreadLocal<Boolean> REJECTING = new ThreadLocal<Boolean>();
+
+    /**
+     * The maximum number of rejected calls waiting to be answered with a 503
+     * status.
+     */
+    private static final int REJECTION_QUEUE_SIZE = 256;
+
     /**
      * Socket this server is listening to.
      */
     private volatile InetSocketAddress address;
 
+    /** The optional admission controller. */
+    private volatile AdmissionController admissionController;
+
     /**
      * Indicates if this service is acting in HTTP or HTTPS mode.
      */
     private volatile boolean confidential;
 
+    /**
+     * The executor answering the calls rejected by the worker pool, so that
+     * the dispatcher thread of the underlying server never services them.
+     */
+    private volatile ThreadPoolExecutor rejectionExecutor;
+
     /**
      * Constructor.
      * 
@@ -107,6 +203,94 @@ public abstract class NetServerHelper extends HttpServerHelper {
         super(server);
     }
 
+    /**
+     * Creates the admission controller if the "admissionControl" parameter is
+     * true.
+     * 
+     * @return The admission controller or null.
+     */
+    protected AdmissionController createAdmissionController() {
+        AdmissionController result = null;
+
+        if (isAdmissionControl()) {
+            result = new AdmissionController(getAdmissionInitialLimit(),
+                    getAdmissionMinLimit(), getAdmissionMaxLimit(),
+                    getAdmissionLatencyTolerance());
+
+            for (String routes : getHelpedParameters().getValuesArray(
+                    "highPriorityRoutes")) {
+                for (String route : routes.split(" ")) {
+                    if (route.length() > 0) {
+                        result.getHighPriorityRoutes().add(
+                                Pattern.compile(route));
+                    }
+                }
+            }
+
+            for (String routes : getHelpedParameters().getValuesArray(
+                    "lowPriorityRoutes")) {
+                for (String route : routes.split(" ")) {
+                    if (route.length() > 0) {
+                        result.getLowPriorityRoutes().add(
+                                Pattern.compile(route));
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the executor servicing the calls. If
+     * {@link #isUseVirtualThreads()} is true and the JVM supports virtual
+     * threads, each call is serviced by a new virtual thread. Otherwise, the
+     * thread pool returned by {@link #createThreadPool()} is used.
+     * 
+     * @return The executor servicing the calls.
+     */
+    protected ExecutorService createExecutor() {
+        ExecutorService result = null;
+
+        if (isUseVirtualThreads()) {
+            result = VirtualThreadExecutorService
+                    .createExecutorService("restlet-server-");
+
+            if (result == null) {
+                getLogger()
+                        .info("Virtual threads aren't supported by this JVM. A thread pool will be used instead.");
+            }
+        }
+
+        if (result == null) {
+            result = createThreadPool();
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the single thread executor answering the calls rejected by the
+     * worker pool with a 503 status. When its bounded queue is full, the
+     * rejected calls are dropped and logged.
+     * 
+     * @return The rejection executor.
+     */
+    protected ThreadPoolExecutor createRejectionExecutor() {
+        ThreadPoolExecutor result = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+                        REJECTION_QUEUE_SIZE), new LoggingThreadFactory(
+                        getLogger(), true));
+        result.setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable r,
+                    ThreadPoolExecutor executor) {
+                getLogger().warning(
+                        "Unable to answer a rejected call, dropping it: " + r);
+            }
+        });
+        return result;
+    }
+
     /**
      * Creates the handler service.
      * 
@@ -129,11 +313,33 @@ public abstract class NetServerHelper extends HttpServerHelper {
         ThreadPoolExecutor result = new ThreadPoolExecutor(minThreads,
                 maxThreads, getMaxThreadIdleTimeMs(), TimeUnit.MILLISECONDS,
                 queue, new LoggingThreadFactory(getLogger(), true));
+        this.rejectionExecutor = createRejectionExecutor();
         result.setRejectedExecutionHandler(new RejectedExecutionHandler() {
-            public void rejectedExecution(Runnable r,
+            public void rejectedExecution(final Runnable r,
                     ThreadPoolExecutor executor) {
-                getLogger().warning(
-                        "Unable to run the following server-side task: " + r);
+                ThreadPoolExecutor rejection = getRejectionExecutor();
+
+                if (executor.isShutdown() || (rejection == null)
+                        || rejection.isShutdown()) {
+                    getLogger().warning(
+                            "Unable to run the following server-side task: "
+                                    + r);
+                } else {
+                    // Answer the call with a 503 status in a dedicated thread
+                    getLogger().fine(
+                            "Worker pool saturated, rejecting the call");
+                    rejection.execute(new Runnable() {
+                        public void run() {
+                            REJECTING.set(Boolean.TRUE);
+
+                            try {
+                                r.run();
+                            } finally {
+                                REJECTING.remove();
+                            }
+                        }
+                    });
+                }
             }
         });
 
@@ -151,6 +357,60 @@ public abstract class NetServerHelper extends HttpServerHelper {
         return this.address;
     }
 
+    /**
+     * Returns the admission controller, if the "admissionControl" parameter is
+     * true.
+     * 
+     * @return The admission controller or null.
+     */
+    public AdmissionController getAdmissionController() {
+        return this.admissionController;
+    }
+
+    /**
+     * Returns the initial number of calls serviced concurrently when the
+     * admission control is enabled. Defaults to {@link #getMaxThreads()}.
+     * 
+     * @return The initial number of calls serviced concurrently.
+     */
+    public int getAdmissionInitialLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionInitialLimit", Integer.toString(getMaxThreads())));
+    }
+
+    /**
+     * Returns the ratio between the latency of a call and the lowest latency
+     * observed above which the admission limit is decreased.
+     * 
+     * @return The latency tolerance ratio.
+     */
+    public double getAdmissionLatencyTolerance() {
+        return Double.parseDouble(getHelpedParameters().getFirstValue(
+                "admissionLatencyTolerance", "2.0"));
+    }
+
+    /**
+     * Returns the maximum number of calls serviced concurrently when the
+     * admission control is enabled.
+     * 
+     * @return The maximum number of calls serviced concurrently.
+     */
+    public int getAdmissionMaxLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionMaxLimit", "1000"));
+    }
+
+    /**
+     * Returns the minimum number of calls serviced concurrently when the
+     * admission control is enabled.
+     * 
+     * @return The minimum number of calls serviced concurrently.
+     */
+    public int getAdmissionMinLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionMinLimit", "1"));
+    }
+
     /**
      * Returns the maximum number of calls that can be queued if there aren't
      * any worker thread available to service them. If the value is '0', then no
@@ -202,6 +462,97 @@ public abstract class NetServerHelper extends HttpServerHelper {
                 "minThreads", "1"));
     }
 
+    /**
+     * Returns the executor answering the calls rejected by the worker pool.
+     * 
+     * @return The rejection executor or null.
+     */
+    protected ThreadPoolExecutor getRejectionExecutor() {
+        return this.rejectionExecutor;
+    }
+
+    /**
+     * Returns the number of seconds after which rejected clients are invited
+     * to retry.
+     * 
+     * @return The number of seconds after which rejected clients may retry.
+     */
+    public int getRetryAfter() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "retryAfter", "1"));
+    }
+
+    /**
+     * Returns the route of an exchange used to select its priority lane, made
+     * of the host name and port followed by the path.
+     * 
+     * @param httpExchange
+     *            The exchange.
+     * @return The route of the exchange.
+     */
+    protected String getRoute(HttpExchange httpExchange) {
+        String host = httpExchange.getRequestHeaders().getFirst(
+                HeaderConstants.HEADER_HOST);
+        String path = httpExchange.getRequestURI().getRawPath();
+        return ((host == null) ? "" : host) + ((path == null) ? "" : path);
+    }
+
+    /**
+     * Handles an exchange received by the underlying server. If the admission
+     * control is enabled, the call is only serviced if the limit of its
+     * priority lane isn't reached. Otherwise, and if the call was rejected by
+     * the worker pool, it is answered with a "503 Service Unavailable" status.
+     * 
+     * @param httpExchange
+     *            The exchange to handle.
+     * @param confidential
+     *            True if the exchange was received in HTTPS mode.
+     * @throws IOException
+     */
+    protected void handle(HttpExchange httpExchange, boolean confidential)
+            throws IOException {
+        AdmissionController controller = getAdmissionController();
+        boolean rejecting = (REJECTING.get() != null);
+
+        if (controller == null) {
+            if (rejecting) {
+                reject(httpExchange);
+            } else {
+                handle(new HttpExchangeCall(getHelped(), httpExchange,
+                        confidential));
+            }
+        } else {
+            int priority = controller.getPriority(getRoute(httpExchange));
+
+            if (rejecting) {
+                controller.reject(priority);
+                reject(httpExchange);
+            } else if (controller.tryAcquire(priority)) {
+                long start = System.nanoTime();
+
+                try {
+                    handle(new HttpExchangeCall(getHelped(), httpExchange,
+                            confidential));
+                } finally {
+                    controller.release(System.nanoTime() - start);
+                }
+            } else {
+                reject(httpExchange);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the number of calls serviced concurrently should be limited
+     * by an adaptive admission controller.
+     * 
+     * @return True if the admission control is enabled.
+     */
+    public boolean isAdmissionControl() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "admissionControl", "false"));
+    }
+
     /**
      * Indicates if this service is acting in HTTP or HTTPS mode.
      * 
@@ -211,6 +562,37 @@ public abstract class NetServerHelper extends HttpServerHelper {
         return this.confidential;
     }
 
+    /**
+     * Indicates if each call should be serviced by a new virtual thread
+     * instead of a pooled worker thread, when supported by the JVM.
+     * 
+     * @return True if each call should be serviced by a new virtual thread.
+     */
+    public boolean isUseVirtualThreads() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "useVirtualThreads", "false"));
+    }
+
+    /**
+     * Answers an exchange with a "503 Service Unavailable" status and a
+     * "Retry-After" header, without servicing it.
+     * 
+     * @param httpExchange
+     *            The exchange to reject.
+     * @throws IOException
+     */
+    protected void reject(HttpExchange httpExchange) throws IOException {
+        try {
+            httpExchange.getResponseHeaders().set(
+                    HeaderConstants.HEADER_RETRY_AFTER,
+                    Integer.toString(getRetryAfter()));
+            httpExchange.sendResponseHeaders(
+                    Status.SERVER_ERROR_SERVICE_UNAVAILABLE.getCode(), -1);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
     /**
      * Sets the socket address this server is listening to.
      * 
@@ -233,6 +615,7 @@ public abstract class NetServerHelper extends HttpServerHelper {
 
     @Override
     public synchronized void start() throws Exception {
+        this.admissionController = createAdmissionController();
         super.start();
         getLogger().info(
                 "Starting the internal " + getProtocols() + " server on port "
@@ -242,6 +625,12 @@ public abstract class NetServerHelper extends HttpServerHelper {
     @Override
     public synchronized void stop() throws Exception {
         getLogger().info("Stopping the internal server");
+        ThreadPoolExecutor rejection = getRejectionExecutor();
+
+        if (rejection != null) {
+            rejection.shutdown();
+            this.rejectionExecutor = null;
+        }
     }
 
 }
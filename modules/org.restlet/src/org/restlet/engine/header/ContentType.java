@@ -28,6 +28,7 @@ import java.io.IOException;
 
 import org.restlet.data.CharacterSet;
 import org.restlet.data.MediaType;
+import org.restlet.engine.util.InternCache;
 import org.restlet.representation.Representation;
 
 /**
@@ -37,6 +38,9 @@ import org.restlet.representation.Representation;
  */
 public class ContentType {
 
+    /** Cache of the content types parsed from header values. */
+    private static final InternCache<ContentType> _values = new InternCache<ContentType>();
+
     /**
      * Parses the given content type header and returns the character set.
      * 
@@ -128,23 +132,28 @@ public class ContentType {
     }
 
     /**
-     * Constructor.
+     * Constructor. Header values parsed previously resolve to the same shared
+     * media type and character set instances.
      * 
      * @param headerValue
      *            The "Content-type" header to parse.
      */
     public ContentType(String headerValue) {
-        try {
-            ContentTypeReader ctr = new ContentTypeReader(headerValue);
-            ContentType ct = ctr.readValue();
-
-            if (ct != null) {
-                this.mediaType = ct.getMediaType();
-                this.characterSet = ct.getCharacterSet();
+        ContentType ct = _values.get(headerValue);
+
+        if (ct == null) {
+            try {
+                ContentTypeReader ctr = new ContentTypeReader(headerValue);
+                ct = _values.intern(headerValue, ctr.readValue());
+            } catch (IOException ioe) {
+                throw new IllegalArgumentException(
+                        "The Content Type could not be read.", ioe);
             }
-        } catch (IOException ioe) {
-            throw new IllegalArgumentException(
-                    "The Content Type could not be read.", ioe);
+        }
+
+        if (ct != null) {
+            this.mediaType = ct.getMediaType();
+            this.characterSet = ct.getCharacterSet();
         }
     }
 
@@ -74,7 +74,7 @@ public class ContentTypeReader extends HeaderReader<ContentType> {
                     parameters), characterSet);
         }
 
-        return new ContentType(new MediaType(mediaType.toString()), null);
+        return new ContentType(MediaType.valueOf(mediaType.toString()), null);
     }
 
     @Override
@@ -68,9 +68,28 @@ public class RangeInputStream extends FilterInputStream {
      *            The range to satisfy.
      */
     public RangeInputStream(InputStream in, long totalSize, Range range) {
+        this(in, totalSize, range, 0);
+    }
+
+    /**
+     * Constructs a stream exposing only a range of a given source stream,
+     * already positioned at a given index, for example after seeking a file
+     * channel.
+     * 
+     * @param in
+     *            The source input stream.
+     * @param totalSize
+     *            The total size of the source stream.
+     * @param range
+     *            The range to satisfy.
+     * @param position
+     *            The current position of the source stream.
+     */
+    public RangeInputStream(InputStream in, long totalSize, Range range,
+            long position) {
         super(in);
         this.range = range;
-        this.position = 0;
+        this.position = position;
         this.totalSize = totalSize;
         this.availableSize = (int) range.getSize();
 
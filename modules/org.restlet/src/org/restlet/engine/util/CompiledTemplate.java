@@ -0,0 +1,712 @@
+/**
+ * Copyright 2005-2014 Restlet
+ *
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ *
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ *
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ *
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ *
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ *
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.restlet.data.Reference;
+import org.restlet.routing.Template;
+import org.restlet.routing.Variable;
+
+/**
+ * Immutable compiled form of a {@link Template} pattern. The pattern is split
+ * into a sequence of literal and variable segments. When all variables are of
+ * the {@link Variable#TYPE_URI_SEGMENT}, {@link Variable#TYPE_DIGIT} or
+ * {@link Variable#TYPE_ALPHA} types and can be delimited without backtracking,
+ * matching is done by scanning the segments directly. Otherwise, an equivalent
+ * Regex pattern is compiled and used instead.<br>
+ * <br>
+ * Concurrency note: instances of this class are immutable and can be shared by
+ * several threads without synchronization.
+ *
+ * @author Jerome Louvel
+ */
+public final class CompiledTemplate {
+
+    /**
+     * Table of the characters below 128 that are allowed in an URI segment,
+     * except for the percent-encoded sequences.
+     */
+    private static final boolean[] SEGMENT_CHARS = new boolean[128];
+
+    static {
+        for (int i = 0; i < SEGMENT_CHARS.length; i++) {
+            SEGMENT_CHARS[i] = Reference.isUnreserved(i)
+                    || Reference.isSubDelimiter(i) || (i == ':') || (i == '@');
+        }
+    }
+
+    /**
+     * Appends to a pattern a repeating group of a given content based on a
+     * class of characters.
+     *
+     * @param pattern
+     *            The pattern to append to.
+     * @param content
+     *            The content of the group.
+     * @param required
+     *            Indicates if the group is required.
+     */
+    private static void appendClass(StringBuilder pattern, String content,
+            boolean required) {
+
+        pattern.append("(");
+
+        if (content.equals(".")) {
+            // Special case for the TYPE_ALL variable type because the
+            // dot looses its meaning inside a character class
+            pattern.append(content);
+        } else {
+            pattern.append("[").append(content).append(']');
+        }
+
+        if (required) {
+            pattern.append("+");
+        } else {
+            pattern.append("*");
+        }
+
+        pattern.append(")");
+    }
+
+    /**
+     * Appends to a pattern a repeating group of a given content based on a
+     * non-capturing group.
+     *
+     * @param pattern
+     *            The pattern to append to.
+     * @param content
+     *            The content of the group.
+     * @param required
+     *            Indicates if the group is required.
+     */
+    private static void appendGroup(StringBuilder pattern, String content,
+            boolean required) {
+        pattern.append("((?:").append(content).append(')');
+
+        if (required) {
+            pattern.append("+");
+        } else {
+            pattern.append("*");
+        }
+
+        pattern.append(")");
+    }
+
+    /**
+     * Indicates if a variable of the given type could consume the given
+     * character as its first character.
+     *
+     * @param type
+     *            The variable type. See {@link Variable} TYPE_* constants.
+     * @param character
+     *            The character to test.
+     * @return True if a variable of the given type could consume the given
+     *         character.
+     */
+    private static boolean canStart(int type, char character) {
+        return (character == '%') ? (type == Variable.TYPE_URI_SEGMENT)
+                : scan(type, String.valueOf(character), 0) == 1;
+    }
+
+    /**
+     * Returns the Regex pattern string corresponding to a variable.
+     *
+     * @param variable
+     *            The variable.
+     * @return The Regex pattern string corresponding to a variable.
+     */
+    private static String getVariableRegex(Variable variable) {
+        String result = null;
+
+        if (variable.isFixed()) {
+            result = "(" + Pattern.quote(variable.getDefaultValue()) + ")";
+        } else {
+            // Expressions to create character classes
+            final String ALL = ".";
+            final String ALPHA = "a-zA-Z";
+            final String DIGIT = "\\d";
+            final String ALPHA_DIGIT = ALPHA + DIGIT;
+            final String HEXA = DIGIT + "ABCDEFabcdef";
+            final String URI_UNRESERVED = ALPHA_DIGIT + "\\-\\.\\_\\~";
+            final String URI_GEN_DELIMS = "\\:\\/\\?\\#\\[\\]\\@";
+            final String URI_SUB_DELIMS = "\\!\\$\\&\\'\\(\\)\\*\\+\\,\\;\\=";
+            final String URI_RESERVED = URI_GEN_DELIMS + URI_SUB_DELIMS;
+            final String WORD = "\\w";
+
+            // Basic rules expressed by the HTTP rfc.
+            final String CRLF = "\\r\\n";
+            final String CTL = "\\p{Cntrl}";
+            final String LWS = CRLF + "\\ \\t";
+            final String SEPARATOR = "\\(\\)\\<\\>\\@\\,\\;\\:\\[\\]\"\\/\\\\?\\=\\{\\}\\ \\t";
+            final String TOKEN = "[^" + SEPARATOR + "]";
+            final String COMMENT = "[^" + CTL + "]" + "[^\\(\\)]" + LWS;
+            final String COMMENT_ATTRIBUTE = "[^\\;\\(\\)]";
+
+            // Expressions to create non-capturing groups
+            final String PCT_ENCODED = "\\%[" + HEXA + "][" + HEXA + "]";
+            // final String PCHAR = "[" + URI_UNRESERVED + "]|(?:" + PCT_ENCODED
+            // + ")|[" + URI_SUB_DELIMS + "]|\\:|\\@";
+            final String PCHAR = "[" + URI_UNRESERVED + URI_SUB_DELIMS
+                    + "\\:\\@]|(?:" + PCT_ENCODED + ")";
+            final String QUERY = PCHAR + "|\\/|\\?";
+            final String FRAGMENT = QUERY;
+            final String URI_PATH = PCHAR + "|\\/";
+            final String URI_ALL = "[" + URI_RESERVED + URI_UNRESERVED
+                    + "]|(?:" + PCT_ENCODED + ")";
+
+            // Special case of query parameter characters
+            final String QUERY_PARAM_DELIMS = "\\!\\$\\'\\(\\)\\*\\+\\,\\;";
+            final String QUERY_PARAM_CHAR = "[" + URI_UNRESERVED
+                    + QUERY_PARAM_DELIMS + "\\:\\@]|(?:" + PCT_ENCODED + ")";
+            final String QUERY_PARAM = QUERY_PARAM_CHAR + "|\\/|\\?";
+
+            final StringBuilder coreRegex = new StringBuilder();
+
+            switch (variable.getType()) {
+            case Variable.TYPE_ALL:
+                appendClass(coreRegex, ALL, variable.isRequired());
+                break;
+            case Variable.TYPE_ALPHA:
+                appendClass(coreRegex, ALPHA, variable.isRequired());
+                break;
+            case Variable.TYPE_DIGIT:
+                appendClass(coreRegex, DIGIT, variable.isRequired());
+                break;
+            case Variable.TYPE_ALPHA_DIGIT:
+                appendClass(coreRegex, ALPHA_DIGIT, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_ALL:
+                appendGroup(coreRegex, URI_ALL, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_UNRESERVED:
+                appendClass(coreRegex, URI_UNRESERVED, variable.isRequired());
+                break;
+            case Variable.TYPE_WORD:
+                appendClass(coreRegex, WORD, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_FRAGMENT:
+                appendGroup(coreRegex, FRAGMENT, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_PATH:
+                appendGroup(coreRegex, URI_PATH, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_QUERY:
+                appendGroup(coreRegex, QUERY, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_QUERY_PARAM:
+                appendGroup(coreRegex, QUERY_PARAM, variable.isRequired());
+                break;
+            case Variable.TYPE_URI_SEGMENT:
+                appendGroup(coreRegex, PCHAR, variable.isRequired());
+                break;
+            case Variable.TYPE_TOKEN:
+                appendClass(coreRegex, TOKEN, variable.isRequired());
+                break;
+            case Variable.TYPE_COMMENT:
+                appendClass(coreRegex, COMMENT, variable.isRequired());
+                break;
+            case Variable.TYPE_COMMENT_ATTRIBUTE:
+                appendClass(coreRegex, COMMENT_ATTRIBUTE, variable.isRequired());
+                break;
+            }
+
+            result = coreRegex.toString();
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a variable can be matched by scanning, without relying on
+     * a Regex.
+     *
+     * @param variable
+     *            The variable descriptor.
+     * @return True if a variable can be matched by scanning.
+     */
+    private static boolean isScannable(Variable variable) {
+        return !variable.isFixed()
+                && ((variable.getType() == Variable.TYPE_URI_SEGMENT)
+                        || (variable.getType() == Variable.TYPE_DIGIT) || (variable
+                        .getType() == Variable.TYPE_ALPHA));
+    }
+
+    /**
+     * Indicates if the given character is an hexadecimal digit.
+     *
+     * @param character
+     *            The character to test.
+     * @return True if the given character is an hexadecimal digit.
+     */
+    private static boolean isHexa(char character) {
+        return ((character >= '0') && (character <= '9'))
+                || ((character >= 'a') && (character <= 'f'))
+                || ((character >= 'A') && (character <= 'F'));
+    }
+
+    /**
+     * Quotes special characters that could be taken for special Regex
+     * characters.
+     *
+     * @param character
+     *            The character to quote if necessary.
+     * @return The quoted character.
+     */
+    private static String quote(char character) {
+        switch (character) {
+        case '[':
+            return "\\[";
+        case ']':
+            return "\\]";
+        case '.':
+            return "\\.";
+        case '\\':
+            return "\\\\";
+        case '$':
+            return "\\$";
+        case '^':
+            return "\\^";
+        case '?':
+            return "\\?";
+        case '*':
+            return "\\*";
+        case '|':
+            return "\\|";
+        case '(':
+            return "\\(";
+        case ')':
+            return "\\)";
+        case ':':
+            return "\\:";
+        case '-':
+            return "\\-";
+        case '!':
+            return "\\!";
+        case '<':
+            return "\\<";
+        case '>':
+            return "\\>";
+        default:
+            return Character.toString(character);
+        }
+    }
+
+    /**
+     * Scans the longest run of characters matching a scannable variable type.
+     *
+     * @param type
+     *            The variable type. See {@link Variable} TYPE_* constants.
+     * @param value
+     *            The string to scan.
+     * @param start
+     *            The index where to start scanning.
+     * @return The index following the last matched character.
+     */
+    private static int scan(int type, String value, int start) {
+        final int length = value.length();
+        int i = start;
+        char next;
+
+        switch (type) {
+        case Variable.TYPE_DIGIT:
+            while ((i < length) && ((next = value.charAt(i)) >= '0')
+                    && (next <= '9')) {
+                i++;
+            }
+            break;
+        case Variable.TYPE_ALPHA:
+            while ((i < length)
+                    && ((((next = value.charAt(i)) >= 'a') && (next <= 'z')) || ((next >= 'A') && (next <= 'Z')))) {
+                i++;
+            }
+            break;
+        case Variable.TYPE_URI_SEGMENT:
+            while (i < length) {
+                next = value.charAt(i);
+
+                if ((next < 128) && SEGMENT_CHARS[next]) {
+                    i++;
+                } else if ((next == '%') && (i + 2 < length)
+                        && isHexa(value.charAt(i + 1))
+                        && isHexa(value.charAt(i + 2))) {
+                    i += 3;
+                } else {
+                    break;
+                }
+            }
+            break;
+        }
+
+        return i;
+    }
+
+    /**
+     * The literal of each segment or null for variable segments.
+     */
+    private final String[] literals;
+
+    /** The variable name of each segment or null for literal segments. */
+    private final String[] names;
+
+    /** The Regex pattern or null if the segments can be scanned directly. */
+    private final Pattern regexPattern;
+
+    /** The variable type of each segment. */
+    private final int[] types;
+
+    /** The required flag of each segment. */
+    private final boolean[] required;
+
+    /** The sequence of variable descriptors, in capturing order. */
+    private final Variable[] variableDescriptors;
+
+    /** The sequence of distinct variable names, in capturing order. */
+    private final String[] variableNames;
+
+    /**
+     * Constructor.
+     *
+     * @param pattern
+     *            The pattern to compile.
+     * @param variables
+     *            The map of variable descriptors.
+     * @param defaultVariable
+     *            The default variable descriptor.
+     * @param logger
+     *            The logger to use.
+     */
+    public CompiledTemplate(String pattern, Map<String, Variable> variables,
+            Variable defaultVariable, Logger logger) {
+        final List<String> segmentLiterals = new ArrayList<String>();
+        final List<String> segmentNames = new ArrayList<String>();
+        final List<Variable> segmentVariables = new ArrayList<Variable>();
+        final List<String> distinctNames = new ArrayList<String>();
+        final StringBuilder patternBuffer = new StringBuilder();
+        final StringBuilder literalBuffer = new StringBuilder();
+        StringBuilder varBuffer = null;
+        boolean scannable = true;
+        boolean inVariable = false;
+        char next;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            next = pattern.charAt(i);
+
+            if (inVariable) {
+                if (Reference.isUnreserved(next)) {
+                    // Append to the variable name
+                    varBuffer.append(next);
+                } else if (next == '}') {
+                    // End of variable detected
+                    if (varBuffer.length() == 0) {
+                        logger.warning("Empty pattern variables are not allowed : "
+                                + pattern);
+                    } else {
+                        final String varName = varBuffer.toString();
+                        final int varIndex = distinctNames.indexOf(varName);
+                        Variable var = variables.get(varName);
+
+                        if (var == null) {
+                            var = defaultVariable;
+                        }
+
+                        if (literalBuffer.length() > 0) {
+                            segmentLiterals.add(literalBuffer.toString());
+                            segmentNames.add(null);
+                            segmentVariables.add(null);
+                            literalBuffer.setLength(0);
+                        }
+
+                        if (varIndex != -1) {
+                            // The variable is used several times in the
+                            // pattern, ensure that this constraint is
+                            // enforced when parsing.
+                            patternBuffer.append("\\" + (varIndex + 1));
+                            scannable = false;
+                        } else {
+                            // New variable detected. Insert a capturing group.
+                            distinctNames.add(varName);
+                            patternBuffer.append(getVariableRegex(var));
+                            scannable = scannable && isScannable(var);
+                        }
+
+                        segmentLiterals.add(null);
+                        segmentNames.add(varName);
+                        segmentVariables.add(var);
+                    }
+
+                    inVariable = false;
+                } else {
+                    logger.warning("An invalid character was detected inside a pattern variable : "
+                            + pattern);
+                }
+            } else {
+                if (next == '{') {
+                    inVariable = true;
+                    varBuffer = new StringBuilder();
+                } else if (next == '}') {
+                    logger.warning("An invalid character was detected inside a pattern variable : "
+                            + pattern);
+                } else {
+                    // The '+' character isn't quoted and therefore acts as a
+                    // Regex quantifier.
+                    scannable = scannable && (next != '+');
+                    literalBuffer.append(next);
+                    patternBuffer.append(quote(next));
+                }
+            }
+        }
+
+        if (literalBuffer.length() > 0) {
+            segmentLiterals.add(literalBuffer.toString());
+            segmentNames.add(null);
+            segmentVariables.add(null);
+        }
+
+        final int count = segmentNames.size();
+        this.literals = segmentLiterals.toArray(new String[count]);
+        this.names = segmentNames.toArray(new String[count]);
+        this.types = new int[count];
+        this.required = new boolean[count];
+
+        for (int i = 0; i < count; i++) {
+            Variable var = segmentVariables.get(i);
+
+            if (var != null) {
+                this.types[i] = var.getType();
+                this.required[i] = var.isRequired();
+
+                // Scanning is only equivalent to the greedy Regex matching if
+                // the next segment can't be consumed by the variable
+                if (i + 1 < count) {
+                    scannable = scannable
+                            && (this.literals[i + 1] != null)
+                            && !canStart(this.types[i],
+                                    this.literals[i + 1].charAt(0));
+                }
+            }
+        }
+
+        this.variableNames = distinctNames.toArray(new String[distinctNames
+                .size()]);
+        this.variableDescriptors = new Variable[this.variableNames.length];
+
+        for (int i = 0; i < this.variableNames.length; i++) {
+            this.variableDescriptors[i] = variables.get(this.variableNames[i]);
+        }
+
+        this.regexPattern = scannable ? null : Pattern.compile(patternBuffer
+                .toString());
+    }
+
+    /**
+     * Returns the literal of a given segment.
+     *
+     * @param index
+     *            The segment index.
+     * @return The literal or null if it is a variable segment.
+     */
+    public String getLiteral(int index) {
+        return this.literals[index];
+    }
+
+    /**
+     * Returns the number of literal and variable segments.
+     *
+     * @return The number of literal and variable segments.
+     */
+    public int getSegmentCount() {
+        return this.literals.length;
+    }
+
+    /**
+     * Returns the variable name of a given segment.
+     *
+     * @param index
+     *            The segment index.
+     * @return The variable name or null if it is a literal segment.
+     */
+    public String getVariableName(int index) {
+        return this.names[index];
+    }
+
+    /**
+     * Indicates if the pattern is matched by scanning its segments rather than
+     * by a Regex.
+     *
+     * @return True if the pattern is matched by scanning its segments.
+     */
+    public boolean isScanning() {
+        return this.regexPattern == null;
+    }
+
+    /**
+     * Indicates if the pattern matches the given formatted string.
+     *
+     * @param formattedString
+     *            The formatted string to match.
+     * @param matchingMode
+     *            The matching mode. See {@link Template} MODE_* constants.
+     * @return The number of matched characters or -1 if the match failed.
+     */
+    public int match(String formattedString, int matchingMode) {
+        int result = -1;
+
+        if (isScanning()) {
+            result = scan(formattedString, matchingMode, null);
+        } else {
+            final Matcher matcher = this.regexPattern.matcher(formattedString);
+
+            if (((matchingMode == Template.MODE_EQUALS) && matcher.matches())
+                    || ((matchingMode == Template.MODE_STARTS_WITH) && matcher
+                            .lookingAt())) {
+                result = matcher.end();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Attempts to parse a formatted string. If the parsing succeeds, the given
+     * map of variables is updated.
+     *
+     * @param formattedString
+     *            The string to parse.
+     * @param matchingMode
+     *            The matching mode. See {@link Template} MODE_* constants.
+     * @param variables
+     *            The map of variables to update.
+     * @param logger
+     *            The logger to use or null if the parsing shouldn't be logged.
+     * @return The number of matched characters or -1 if no character matched.
+     */
+    public int parse(String formattedString, int matchingMode,
+            Map<String, Object> variables, Logger logger) {
+        int result = -1;
+        Matcher matcher = null;
+        int[] bounds = null;
+
+        if (isScanning()) {
+            bounds = new int[this.variableNames.length * 2];
+            result = scan(formattedString, matchingMode, bounds);
+        } else {
+            matcher = this.regexPattern.matcher(formattedString);
+
+            if (((matchingMode == Template.MODE_EQUALS) && matcher.matches())
+                    || ((matchingMode == Template.MODE_STARTS_WITH) && matcher
+                            .lookingAt())) {
+                result = matcher.end();
+            }
+        }
+
+        if (result != -1) {
+            // Update the attributes with the variables value
+            String attributeName = null;
+            String attributeValue = null;
+
+            for (int i = 0; i < this.variableNames.length; i++) {
+                attributeName = this.variableNames[i];
+                attributeValue = (matcher == null) ? formattedString
+                        .substring(bounds[2 * i], bounds[2 * i + 1]) : matcher
+                        .group(i + 1);
+                Variable var = this.variableDescriptors[i];
+
+                if ((var != null) && var.isDecodingOnParse()) {
+                    attributeValue = Reference.decode(attributeValue);
+                }
+
+                if (logger != null) {
+                    logger.fine("Template variable \"" + attributeName
+                            + "\" matched with value \"" + attributeValue
+                            + "\"");
+                }
+
+                variables.put(attributeName, attributeValue);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Matches the formatted string by scanning the segments.
+     *
+     * @param formattedString
+     *            The formatted string to match.
+     * @param matchingMode
+     *            The matching mode. See {@link Template} MODE_* constants.
+     * @param bounds
+     *            The array receiving the start and end index of each variable
+     *            value or null.
+     * @return The number of matched characters or -1 if the match failed.
+     */
+    private int scan(String formattedString, int matchingMode, int[] bounds) {
+        if ((matchingMode != Template.MODE_EQUALS)
+                && (matchingMode != Template.MODE_STARTS_WITH)) {
+            return -1;
+        }
+
+        int index = 0;
+        int variable = 0;
+
+        for (int i = 0; i < this.literals.length; i++) {
+            if (this.literals[i] != null) {
+                if (!formattedString.startsWith(this.literals[i], index)) {
+                    return -1;
+                }
+
+                index += this.literals[i].length();
+            } else {
+                int end = scan(this.types[i], formattedString, index);
+
+                if (this.required[i] && (end == index)) {
+                    return -1;
+                }
+
+                if (bounds != null) {
+                    bounds[variable * 2] = index;
+                    bounds[variable * 2 + 1] = end;
+                }
+
+                variable++;
+                index = end;
+            }
+        }
+
+        if ((matchingMode == Template.MODE_EQUALS)
+                && (index != formattedString.length())) {
+            return -1;
+        }
+
+        return index;
+    }
+
+}
@@ -52,12 +52,18 @@ public class FormReader {
     /** Indicates if the parameters should be decoded. */
     private volatile boolean decode;
 
+    /** The buffer of the parameter name being read. */
+    private final StringBuilder nameBuffer;
+
     /** The separator character used between parameters. */
     private volatile char separator;
 
     /** The form stream. */
     private volatile InputStream stream;
 
+    /** The buffer of the parameter value being read. */
+    private final StringBuilder valueBuffer;
+
     /**
      * Constructor.<br>
      * In case the representation does not define a character set, the UTF-8
@@ -88,7 +94,22 @@ public class FormReader {
     public FormReader(Representation representation, boolean decode)
             throws IOException {
         this.decode = decode;
-        this.stream = representation.getStream();
+        this.nameBuffer = new StringBuilder();
+        this.valueBuffer = new StringBuilder();
+        // [ifndef gwt]
+        InputStream stream = representation.getStream();
+
+        // Avoid reading the entity byte by byte from the underlying stream
+        if ((stream != null)
+                && !(stream instanceof java.io.BufferedInputStream)
+                && !(stream instanceof ByteArrayInputStream)) {
+            stream = new java.io.BufferedInputStream(stream);
+        }
+
+        this.stream = stream;
+        // [enddef]
+        // [ifdef gwt] instruction uncomment
+        // this.stream = representation.getStream();
         this.separator = '&';
 
         if (representation.getCharacterSet() != null) {
@@ -143,6 +164,8 @@ public class FormReader {
     public FormReader(String parametersString, CharacterSet characterSet,
             char separator, boolean decode) {
         this.decode = decode;
+        this.nameBuffer = new StringBuilder();
+        this.valueBuffer = new StringBuilder();
         // [ifndef gwt] instruction
         this.stream = new ByteArrayInputStream(parametersString.getBytes());
         // [ifdef gwt] instruction uncomment
@@ -217,6 +240,30 @@ public class FormReader {
         return result;
     }
 
+    /**
+     * Reads the parameters one at a time and gives them to a handler, without
+     * keeping them in memory. The reading stops at the end of the form or when
+     * the handler returns false.
+     * 
+     * @param handler
+     *            The parameter handler.
+     * @throws IOException
+     *             If the parameters could not be read.
+     */
+    public void read(ParameterHandler handler) throws IOException {
+        if (this.stream != null) {
+            try {
+                Parameter param = readNextParameter();
+
+                while ((param != null) && handler.handle(param)) {
+                    param = readNextParameter();
+                }
+            } finally {
+                this.stream.close();
+            }
+        }
+    }
+
     /**
      * Reads the first parameter with the given name.
      * 
@@ -259,9 +306,11 @@ public class FormReader {
             try {
                 boolean readingName = true;
                 boolean readingValue = false;
-                StringBuilder nameBuffer = new StringBuilder();
-                StringBuilder valueBuffer = new StringBuilder();
+                StringBuilder nameBuffer = this.nameBuffer;
+                StringBuilder valueBuffer = this.valueBuffer;
                 int nextChar = 0;
+                nameBuffer.setLength(0);
+                valueBuffer.setLength(0);
 
                 while ((result == null) && (nextChar != -1)) {
                     nextChar = this.stream.read();
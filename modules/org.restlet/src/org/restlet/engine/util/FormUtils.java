@@ -306,6 +306,29 @@ public class FormUtils {
         }
     }
 
+    /**
+     * Reads the parameters of a posted form one at a time and gives them to a
+     * handler, without building a complete {@link Form} in memory.
+     * 
+     * @param post
+     *            The posted form.
+     * @param decode
+     *            Indicates if the parameters should be decoded.
+     * @param handler
+     *            The parameter handler.
+     * @throws IOException
+     *             If the parameters could not be read.
+     */
+    public static void read(Representation post, boolean decode,
+            ParameterHandler handler) throws IOException {
+        if (!post.isAvailable()) {
+            throw new IllegalStateException(
+                    "The Web form cannot be parsed as no fresh content is available. If this entity has been already read once, caching of the entity is required");
+        }
+
+        new FormReader(post, decode).read(handler);
+    }
+
     /**
      * Private constructor to ensure that the class acts as a true utility class
      * i.e. it isn't instantiable and extensible.
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache canonicalizing values parsed from strings, such as metadata
+ * found in header values, so that repeated strings resolve to a shared
+ * immutable instance. Lookups are lock-free. Once the capacity is reached, the
+ * cache is cleared before caching a new value, so that arbitrary client input
+ * can't grow it indefinitely while the values still in use are cached again on
+ * their next lookup.<br>
+ * <br>
+ * Note that only the get and put operations of the concurrent map are used in
+ * order to stay compatible with the GWT edition. Two threads interning the
+ * same string at the same time may therefore briefly obtain distinct but
+ * equal values.
+ * 
+ * @author Jerome Louvel
+ * 
+ * @param <T>
+ *            The type of cached values.
+ */
+public class InternCache<T> {
+
+    /** The default maximum number of cached values. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The maximum number of cached values. */
+    private final int capacity;
+
+    /** The cached values indexed by their source string. */
+    private final ConcurrentMap<String, T> values;
+
+    /**
+     * Default constructor, using the {@link #DEFAULT_CAPACITY}.
+     */
+    public InternCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The maximum number of cached values.
+     */
+    public InternCache(int capacity) {
+        this.capacity = capacity;
+        this.values = new ConcurrentHashMap<String, T>();
+    }
+
+    /**
+     * Clears the cached values.
+     */
+    public void clear() {
+        this.values.clear();
+    }
+
+    /**
+     * Returns the value cached for a source string.
+     * 
+     * @param key
+     *            The source string.
+     * @return The cached value or null.
+     */
+    public T get(String key) {
+        return (key == null) ? null : this.values.get(key);
+    }
+
+    /**
+     * Returns the maximum number of cached values.
+     * 
+     * @return The maximum number of cached values.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Caches a value parsed from a source string unless another value is
+     * already cached for the same string. If the capacity is reached, the
+     * cache is cleared first.
+     * 
+     * @param key
+     *            The source string.
+     * @param value
+     *            The value parsed from the source string.
+     * @return The canonical value to use.
+     */
+    public T intern(String key, T value) {
+        T result = value;
+
+        if ((key != null) && (value != null)) {
+            T previous = this.values.get(key);
+
+            if (previous != null) {
+                result = previous;
+            } else {
+                if (this.values.size() >= this.capacity) {
+                    this.values.clear();
+                }
+
+                this.values.put(key, value);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of cached values.
+     * 
+     * @return The number of cached values.
+     */
+    public int size() {
+        return this.values.size();
+    }
+
+}
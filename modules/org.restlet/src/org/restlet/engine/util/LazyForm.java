@@ -0,0 +1,268 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.util;
+
+import java.util.List;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Form;
+import org.restlet.data.Parameter;
+
+/**
+ * Form backed by an unparsed parameters string. The parameters are only parsed
+ * into a list when the form is first accessed as a list or modified. Until
+ * then, lookups by name and containment checks directly scan the string and
+ * only decode the matching parameters, which avoids materializing large query
+ * strings when a single parameter is needed.
+ * 
+ * @author Jerome Louvel
+ */
+public class LazyForm extends Form {
+
+    /** The supported character encoding. */
+    private final CharacterSet characterSet;
+
+    /** Indicates if the parameters should be decoded. */
+    private final boolean decode;
+
+    /** The parameters string to parse. */
+    private final String parametersString;
+
+    /** Indicates if the parameters string has been parsed into the list. */
+    private volatile boolean parsed;
+
+    /** Indicates if the parameters string can be scanned without parsing. */
+    private final boolean scannable;
+
+    /** The separator character used between parameters. */
+    private final char separator;
+
+    /**
+     * Constructor.
+     * 
+     * @param parametersString
+     *            The parameters string to parse.
+     * @param characterSet
+     *            The supported character encoding.
+     * @param separator
+     *            The separator character used between parameters.
+     * @param decode
+     *            Indicates if the names and values should be automatically
+     *            decoded.
+     */
+    public LazyForm(String parametersString, CharacterSet characterSet,
+            char separator, boolean decode) {
+        super();
+        this.characterSet = characterSet;
+        this.decode = decode;
+        this.parametersString = parametersString;
+        this.separator = separator;
+        this.scannable = isScannable(parametersString);
+    }
+
+    /**
+     * Indicates if the given parameter is contained, scanning the parameters
+     * string if it hasn't been parsed yet.
+     * 
+     * @param element
+     *            The parameter to look for.
+     * @return True if the parameter is contained.
+     */
+    @Override
+    public boolean contains(Object element) {
+        if (this.parsed || !this.scannable) {
+            return super.contains(element);
+        }
+
+        if (element instanceof Parameter) {
+            Parameter searched = (Parameter) element;
+            return (searched.getName() != null)
+                    && (scan(searched.getName(), false, searched) != null);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the list of parameters, parsing the parameters string on first
+     * access.
+     * 
+     * @return The list of parameters.
+     */
+    @Override
+    protected List<Parameter> getDelegate() {
+        List<Parameter> result = super.getDelegate();
+
+        if (!this.parsed) {
+            synchronized (this) {
+                if (!this.parsed) {
+                    FormUtils.parse(new Form(result), this.parametersString,
+                            this.characterSet, this.decode, this.separator);
+                    this.parsed = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the first parameter found with the given name, scanning the
+     * parameters string if it hasn't been parsed yet.
+     * 
+     * @param name
+     *            The parameter name.
+     * @param ignoreCase
+     *            Indicates if the name comparison is case insensitive.
+     * @return The first parameter found with the given name.
+     */
+    @Override
+    public Parameter getFirst(String name, boolean ignoreCase) {
+        if (this.parsed || !this.scannable || (name == null)) {
+            return super.getFirst(name, ignoreCase);
+        }
+
+        return scan(name, ignoreCase, null);
+    }
+
+    /**
+     * Indicates if the given string only contains ASCII characters. The form
+     * reader works on the bytes of the string, so other characters are left to
+     * the full parsing to keep the same results.
+     * 
+     * @param parametersString
+     *            The parameters string.
+     * @return True if the string can be scanned.
+     */
+    private static boolean isScannable(String parametersString) {
+        if (parametersString != null) {
+            for (int i = 0; i < parametersString.length(); i++) {
+                if (parametersString.charAt(i) > 127) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates if the raw name located in the parameters string matches the
+     * given name once decoded.
+     * 
+     * @param start
+     *            The start index of the raw name.
+     * @param end
+     *            The end index of the raw name.
+     * @param name
+     *            The searched name.
+     * @param ignoreCase
+     *            Indicates if the name comparison is case insensitive.
+     * @return True if the names match.
+     */
+    private boolean matches(int start, int end, String name, boolean ignoreCase) {
+        boolean encoded = false;
+
+        if (this.decode) {
+            for (int i = start; !encoded && (i < end); i++) {
+                char c = this.parametersString.charAt(i);
+                encoded = (c == '%') || (c == '+');
+            }
+        }
+
+        if (!encoded) {
+            return ((end - start) == name.length())
+                    && this.parametersString.regionMatches(ignoreCase, start,
+                            name, 0, name.length());
+        }
+
+        String decoded = FormUtils.create(
+                this.parametersString.substring(start, end), null,
+                this.decode, this.characterSet).getName();
+        return ignoreCase ? name.equalsIgnoreCase(decoded) : name
+                .equals(decoded);
+    }
+
+    /**
+     * Scans the parameters string for the first parameter with the given name,
+     * following the same rules as the {@link FormReader}. Only the matching
+     * parameters are decoded.
+     * 
+     * @param name
+     *            The searched name.
+     * @param ignoreCase
+     *            Indicates if the name comparison is case insensitive.
+     * @param searched
+     *            The optional parameter that must also be equal to the
+     *            matching one.
+     * @return The first matching parameter found or null.
+     */
+    private Parameter scan(String name, boolean ignoreCase, Parameter searched) {
+        String string = this.parametersString;
+
+        if ((string == null) || (string.length() == 0)) {
+            return null;
+        }
+
+        int length = string.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = string.indexOf(this.separator, start);
+
+            if (end == -1) {
+                end = length;
+            }
+
+            int equals = start;
+
+            while ((equals < end) && (string.charAt(equals) != '=')) {
+                equals++;
+            }
+
+            if (equals == start) {
+                if (equals < end) {
+                    // Empty parameter name, the form reader stops here
+                    return null;
+                }
+            } else if (matches(start, equals, name, ignoreCase)) {
+                Parameter result = FormUtils.create(
+                        string.substring(start, equals),
+                        (equals < end) ? string.substring(equals + 1, end)
+                                : null, this.decode, this.characterSet);
+
+                if ((searched == null) || searched.equals(result)) {
+                    return result;
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+
+/**
+ * Scheduled executor service running each submitted task on a new virtual
+ * thread. Delayed and periodic tasks are still triggered and run by the
+ * wrapped scheduler, which only needs a few platform threads.<br>
+ * <br>
+ * Virtual threads are only available on recent JVMs (Java 21 and above), so
+ * they are looked up by reflection. Use the {@link #isSupported()} method to
+ * check if the current JVM supports them.
+ * 
+ * @author Jerome Louvel
+ */
+public class VirtualThreadExecutorService extends
+        WrapperScheduledExecutorService {
+
+    /** The virtual thread builder factory method, if supported. */
+    private static final Method FACTORY;
+
+    /** The virtual thread builder name method, if supported. */
+    private static final Method NAME;
+
+    /** The factory method of thread-per-task executors, if supported. */
+    private static final Method NEW_EXECUTOR;
+
+    /** The virtual thread builder creation method, if supported. */
+    private static final Method OF_VIRTUAL;
+
+    static {
+        Method newExecutor = null;
+        Method name = null;
+        Method factory = null;
+        Method ofVirtual = null;
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+
+            // Make sure that virtual threads aren't a disabled preview
+            ofVirtual.invoke(null);
+        } catch (Throwable t) {
+            newExecutor = null;
+        }
+
+        NEW_EXECUTOR = newExecutor;
+        NAME = name;
+        FACTORY = factory;
+        OF_VIRTUAL = ofVirtual;
+    }
+
+    /**
+     * Creates a new executor service running each task on a new virtual
+     * thread.
+     * 
+     * @param prefix
+     *            The thread name prefix.
+     * @return The new executor service or null if virtual threads aren't
+     *         supported.
+     */
+    public static ExecutorService createExecutorService(String prefix) {
+        ExecutorService result = null;
+        ThreadFactory threadFactory = createThreadFactory(prefix);
+
+        if (threadFactory != null) {
+            try {
+                result = (ExecutorService) NEW_EXECUTOR.invoke(null,
+                        threadFactory);
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to create a virtual thread executor", e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new thread factory producing virtual threads named with the
+     * given prefix followed by a counter.
+     * 
+     * @param prefix
+     *            The thread name prefix.
+     * @return The new thread factory or null if virtual threads aren't
+     *         supported.
+     */
+    public static ThreadFactory createThreadFactory(String prefix) {
+        ThreadFactory result = null;
+
+        if (isSupported()) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = NAME.invoke(builder, prefix, 0L);
+                result = (ThreadFactory) FACTORY.invoke(builder);
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to create a virtual thread factory", e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the current JVM supports virtual threads.
+     * 
+     * @return True if the current JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /** The executor service running tasks on virtual threads. */
+    private final ExecutorService virtualExecutor;
+
+    /**
+     * Constructor.
+     * 
+     * @param scheduler
+     *            The scheduler of delayed and periodic tasks.
+     * @param virtualExecutor
+     *            The executor service running tasks on virtual threads.
+     */
+    public VirtualThreadExecutorService(ScheduledExecutorService scheduler,
+            ExecutorService virtualExecutor) {
+        super(scheduler);
+        this.virtualExecutor = virtualExecutor;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return getVirtualExecutor().awaitTermination(timeout, unit)
+                && getWrapped().awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        getVirtualExecutor().execute(command);
+    }
+
+    /**
+     * Returns the executor service running tasks on virtual threads.
+     * 
+     * @return The executor service running tasks on virtual threads.
+     */
+    protected ExecutorService getVirtualExecutor() {
+        return virtualExecutor;
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException {
+        return getVirtualExecutor().invokeAll(tasks);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(
+            Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return getVirtualExecutor().invokeAll(tasks, timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return getVirtualExecutor().invokeAny(tasks);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks,
+            long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        return getVirtualExecutor().invokeAny(tasks, timeout, unit);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return getVirtualExecutor().isShutdown() && getWrapped().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return getVirtualExecutor().isTerminated()
+                && getWrapped().isTerminated();
+    }
+
+    @Override
+    public void shutdown() {
+        getVirtualExecutor().shutdown();
+        getWrapped().shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>(getVirtualExecutor()
+                .shutdownNow());
+        result.addAll(getWrapped().shutdownNow());
+        return result;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return getVirtualExecutor().submit(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return getVirtualExecutor().submit(task);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return getVirtualExecutor().submit(task, result);
+    }
+
+}
@@ -39,6 +39,7 @@ import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.Uniform;
 import org.restlet.data.ChallengeRequest;
+import org.restlet.data.CharacterSet;
 import org.restlet.data.CookieSetting;
 import org.restlet.data.Dimension;
 import org.restlet.data.Form;
@@ -51,6 +52,7 @@ import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
 import org.restlet.engine.resource.MethodAnnotationInfo;
 import org.restlet.engine.resource.VariantInfo;
+import org.restlet.engine.util.LazyForm;
 import org.restlet.representation.Representation;
 import org.restlet.representation.RepresentationInfo;
 import org.restlet.representation.Variant;
@@ -898,6 +900,20 @@ public abstract class ServerResource extends Resource {
         return result;
     }
 
+    /**
+     * Returns the resource reference's optional query. The query parameters
+     * are only parsed when the returned form is iterated or modified, lookups
+     * by name directly scan the query string.
+     * 
+     * @return The resource reference's optional query.
+     * @see Reference#getQueryAsForm()
+     */
+    @Override
+    public Form getQuery() {
+        return getReference() == null ? null : new LazyForm(getReference()
+                .getQuery(), CharacterSet.UTF_8, '&', true);
+    }
+
     /**
      * Retrieves an existing role or creates a new one if needed based on its
      * name. Note that a null description will be set if the role has to be
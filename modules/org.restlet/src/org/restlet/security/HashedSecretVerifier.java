@@ -0,0 +1,68 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.security;
+
+/**
+ * Verifier of identifier/secret couples against locally stored secret hashes.
+ * Unlike {@link LocalVerifier}, the secrets themselves aren't available, only
+ * hashes computed by deliberately slow functions such as PBKDF2 or bcrypt.
+ * Subclasses provide the stored hashes and the matching function, for example
+ * based on a bcrypt library. As verifying such hashes is expensive, consider
+ * setting a {@link VerificationCache}.
+ * 
+ * @author Jerome Louvel
+ * @see Pbkdf2Verifier
+ */
+public abstract class HashedSecretVerifier extends SecretVerifier {
+
+    /**
+     * Returns the local secret hash associated to a given identifier.
+     * 
+     * @param identifier
+     *            The identifier to lookup.
+     * @return The secret hash associated to the identifier or null.
+     */
+    public abstract String getLocalHash(String identifier);
+
+    /**
+     * Indicates if a secret matches a secret hash.
+     * 
+     * @param secret
+     *            The secret to verify.
+     * @param hash
+     *            The secret hash to match.
+     * @return True if the secret matches the hash.
+     */
+    public abstract boolean matches(char[] secret, String hash);
+
+    @Override
+    public int verify(String identifier, char[] secret) {
+        String hash = getLocalHash(identifier);
+        return ((secret != null) && (hash != null) && matches(secret, hash)) ? RESULT_VALID
+                : RESULT_INVALID;
+    }
+
+}
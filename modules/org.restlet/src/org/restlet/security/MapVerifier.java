@@ -72,7 +72,8 @@ public class MapVerifier extends LocalVerifier {
 
     /**
      * Sets the modifiable map of local secrets. This method clears the current
-     * map and puts all entries in the parameter map.
+     * map and puts all entries in the parameter map. Cached verifications are
+     * cleared.
      * 
      * @param localSecrets
      *            A map of local secrets.
@@ -87,6 +88,10 @@ public class MapVerifier extends LocalVerifier {
                 }
             }
         }
+
+        if (getCache() != null) {
+            getCache().clear();
+        }
     }
 
 }
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.security;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.restlet.Context;
+import org.restlet.engine.util.Base64;
+
+/**
+ * Verifier based on a map of PBKDF2 secret hashes. Hashes are formatted as
+ * "algorithm:iterations:salt:hash", with Base64 encoded salt and hash, so that
+ * the algorithm and the number of iterations used to create new hashes can
+ * change without invalidating the existing ones.
+ * 
+ * @author Jerome Louvel
+ */
+public class Pbkdf2Verifier extends HashedSecretVerifier {
+
+    /** The default PBKDF2 algorithm. */
+    public static final String DEFAULT_ALGORITHM = "PBKDF2WithHmacSHA1";
+
+    /** The default number of PBKDF2 iterations. */
+    public static final int DEFAULT_ITERATIONS = 100000;
+
+    /** The length of the derived keys in bits. */
+    private static final int KEY_LENGTH = 160;
+
+    /** The length of the salts in bytes. */
+    private static final int SALT_LENGTH = 16;
+
+    /**
+     * Derives a key from a secret.
+     * 
+     * @param algorithm
+     *            The PBKDF2 algorithm.
+     * @param secret
+     *            The secret.
+     * @param salt
+     *            The salt.
+     * @param iterations
+     *            The number of iterations.
+     * @param keyLength
+     *            The length of the key in bits.
+     * @return The derived key.
+     * @throws GeneralSecurityException
+     */
+    private static byte[] derive(String algorithm, char[] secret, byte[] salt,
+            int iterations, int keyLength) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(secret, salt, iterations, keyLength);
+
+        try {
+            return SecretKeyFactory.getInstance(algorithm).generateSecret(spec)
+                    .getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /** The PBKDF2 algorithm used to create new hashes. */
+    private volatile String algorithm;
+
+    /** The number of iterations used to create new hashes. */
+    private volatile int iterations;
+
+    /** The map of local secret hashes. */
+    private final ConcurrentMap<String, String> localHashes;
+
+    /** The generator of salts. */
+    private final SecureRandom random;
+
+    /**
+     * Default constructor.
+     */
+    public Pbkdf2Verifier() {
+        this(new ConcurrentHashMap<String, String>());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param localHashes
+     *            The map of local secret hashes.
+     */
+    public Pbkdf2Verifier(ConcurrentMap<String, String> localHashes) {
+        this.algorithm = DEFAULT_ALGORITHM;
+        this.iterations = DEFAULT_ITERATIONS;
+        this.localHashes = localHashes;
+        this.random = new SecureRandom();
+    }
+
+    /**
+     * Returns the PBKDF2 algorithm used to create new hashes. Default value is
+     * {@link #DEFAULT_ALGORITHM}.
+     * 
+     * @return The PBKDF2 algorithm used to create new hashes.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the number of iterations used to create new hashes. Default
+     * value is {@link #DEFAULT_ITERATIONS}.
+     * 
+     * @return The number of iterations used to create new hashes.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String getLocalHash(String identifier) {
+        return (identifier == null) ? null : getLocalHashes().get(identifier);
+    }
+
+    /**
+     * Returns the map of local secret hashes.
+     * 
+     * @return The map of local secret hashes.
+     */
+    public ConcurrentMap<String, String> getLocalHashes() {
+        return localHashes;
+    }
+
+    /**
+     * Hashes a secret with a new random salt.
+     * 
+     * @param secret
+     *            The secret to hash.
+     * @return The formatted secret hash.
+     */
+    public String hash(char[] secret) {
+        byte[] salt = new byte[SALT_LENGTH];
+        this.random.nextBytes(salt);
+        String algorithm = getAlgorithm();
+        int iterations = getIterations();
+
+        try {
+            return algorithm + ":" + iterations + ":"
+                    + Base64.encode(salt, false) + ":"
+                    + Base64.encode(derive(algorithm, secret, salt,
+                            iterations, KEY_LENGTH), false);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to hash the secret", e);
+        }
+    }
+
+    @Override
+    public boolean matches(char[] secret, String hash) {
+        boolean result = false;
+        String[] parts = hash.split(":");
+
+        if (parts.length == 4) {
+            try {
+                byte[] expected = Base64.decode(parts[3]);
+                byte[] actual = derive(parts[0], secret,
+                        Base64.decode(parts[2]), Integer.parseInt(parts[1]),
+                        expected.length * 8);
+                result = MessageDigest.isEqual(expected, actual);
+            } catch (GeneralSecurityException e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to verify the secret hash", e);
+            } catch (IllegalArgumentException e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Invalid secret hash", e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the PBKDF2 algorithm used to create new hashes.
+     * 
+     * @param algorithm
+     *            The PBKDF2 algorithm used to create new hashes.
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Sets the number of iterations used to create new hashes.
+     * 
+     * @param iterations
+     *            The number of iterations used to create new hashes.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Sets the map of local secret hashes. Cached verifications are cleared.
+     * 
+     * @param localHashes
+     *            The map of local secret hashes.
+     */
+    public void setLocalHashes(Map<String, String> localHashes) {
+        synchronized (getLocalHashes()) {
+            if (localHashes != getLocalHashes()) {
+                getLocalHashes().clear();
+
+                if (localHashes != null) {
+                    getLocalHashes().putAll(localHashes);
+                }
+            }
+        }
+
+        if (getCache() != null) {
+            getCache().clear();
+        }
+    }
+
+    /**
+     * Hashes and stores the secret of an identifier. Cached verifications of
+     * the identifier are invalidated.
+     * 
+     * @param identifier
+     *            The identifier.
+     * @param secret
+     *            The secret to hash.
+     */
+    public void setLocalSecret(String identifier, char[] secret) {
+        getLocalHashes().put(identifier, hash(secret));
+
+        if (getCache() != null) {
+            getCache().invalidate(identifier);
+        }
+    }
+
+}
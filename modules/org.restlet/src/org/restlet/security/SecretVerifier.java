@@ -33,7 +33,11 @@ import org.restlet.data.ClientInfo;
  * Verifier of identifier/secret couples. By default, it extracts the identifier
  * and the secret from the {@link ChallengeResponse}. If the verification is
  * successful, it automatically adds a new {@link User} for the given
- * identifier.
+ * identifier.<br>
+ * <br>
+ * When a {@link VerificationCache} is set, successful verifications are
+ * remembered for a short time so that clients repeatedly sending the same
+ * credentials don't pay the cost of the verification on each request.
  * 
  * @author Jerome Louvel
  */
@@ -66,6 +70,9 @@ public abstract class SecretVerifier implements Verifier {
         return result;
     }
 
+    /** The optional cache of successful verifications. */
+    private volatile VerificationCache cache;
+
     /**
      * Called back to create a new user when valid credentials are provided.
      * 
@@ -82,6 +89,15 @@ public abstract class SecretVerifier implements Verifier {
         return new User(identifier);
     }
 
+    /**
+     * Returns the optional cache of successful verifications.
+     * 
+     * @return The optional cache of successful verifications.
+     */
+    public VerificationCache getCache() {
+        return cache;
+    }
+
     /**
      * Returns the user identifier.
      * 
@@ -108,12 +124,24 @@ public abstract class SecretVerifier implements Verifier {
         return request.getChallengeResponse().getSecret();
     }
 
+    /**
+     * Sets the optional cache of successful verifications.
+     * 
+     * @param cache
+     *            The optional cache of successful verifications.
+     */
+    public void setCache(VerificationCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Verifies that the proposed secret is correct for the specified request.
      * By default, it compares the inputSecret of the request's authentication
      * response with the one obtain by the {@link ChallengeResponse#getSecret()}
      * method and sets the {@link org.restlet.security.User} instance of the
-     * request's {@link ClientInfo} if successful.
+     * request's {@link ClientInfo} if successful. If a fresh successful
+     * verification of the same credentials is cached, the secret isn't
+     * verified again.
      * 
      * @param request
      *            The request to inspect.
@@ -129,7 +157,17 @@ public abstract class SecretVerifier implements Verifier {
         } else {
             String identifier = getIdentifier(request, response);
             char[] secret = getSecret(request, response);
-            result = verify(identifier, secret);
+            VerificationCache cache = getCache();
+
+            if ((cache != null) && cache.contains(identifier, secret)) {
+                result = RESULT_VALID;
+            } else {
+                result = verify(identifier, secret);
+
+                if ((cache != null) && (result == RESULT_VALID)) {
+                    cache.add(identifier, secret);
+                }
+            }
 
             if (result == RESULT_VALID) {
                 request.getClientInfo().setUser(
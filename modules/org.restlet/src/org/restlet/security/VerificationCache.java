@@ -0,0 +1,309 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.security;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.restlet.engine.util.Base64;
+
+/**
+ * Short-lived cache of successful identifier/secret verifications. It spares
+ * the cost of expensive verifications, such as slow password hashes, for
+ * clients that repeatedly send the same credentials, for example with HTTP
+ * Basic authentication.<br>
+ * <br>
+ * Secrets are never stored. Entries are keyed by an HMAC of the identifier and
+ * secret, computed with a random key generated for each cache instance. The
+ * number of entries is bounded and entries expire after a time to live. When a
+ * secret changes or a user is revoked, call {@link #invalidate(String)} so that
+ * the previous secret stops being accepted before the entries expire.
+ * 
+ * @author Jerome Louvel
+ * @see SecretVerifier#setCache(VerificationCache)
+ */
+public class VerificationCache {
+
+    /** The identifier and expiration time of a cached verification. */
+    private static final class Entry {
+
+        /** The expiration time in milliseconds. */
+        private final long expiration;
+
+        /** The verified identifier. */
+        private final String identifier;
+
+        /**
+         * Constructor.
+         * 
+         * @param identifier
+         *            The verified identifier.
+         * @param expiration
+         *            The expiration time in milliseconds.
+         */
+        private Entry(String identifier, long expiration) {
+            this.identifier = identifier;
+            this.expiration = expiration;
+        }
+    }
+
+    /** The HMAC algorithm used to compute the keys. */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** The charset used to encode identifiers and secrets. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The cached verifications indexed by their key. */
+    private final ConcurrentMap<String, Entry> entries;
+
+    /** The random HMAC key of this cache. */
+    private final SecretKeySpec key;
+
+    /** The HMAC instance of each thread. */
+    private final ThreadLocal<Mac> macs;
+
+    /** The maximum number of cached verifications. */
+    private volatile int maxSize;
+
+    /** The time to live of cached verifications in milliseconds. */
+    private volatile long timeToLive;
+
+    /**
+     * Default constructor. Caches up to 1000 verifications for 60 seconds.
+     */
+    public VerificationCache() {
+        this(1000, 60000L);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum number of cached verifications.
+     * @param timeToLive
+     *            The time to live of cached verifications in milliseconds.
+     */
+    public VerificationCache(int maxSize, long timeToLive) {
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.macs = new ThreadLocal<Mac>();
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Adds a successful verification.
+     * 
+     * @param identifier
+     *            The verified identifier.
+     * @param secret
+     *            The verified secret.
+     */
+    public void add(String identifier, char[] secret) {
+        String cacheKey = getKey(identifier, secret);
+
+        if (cacheKey != null) {
+            if (this.entries.size() >= getMaxSize()) {
+                purge();
+            }
+
+            if (this.entries.size() < getMaxSize()) {
+                this.entries.put(cacheKey, new Entry(identifier,
+                        System.currentTimeMillis() + getTimeToLive()));
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached verifications.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Indicates if a verification of an identifier/secret couple is cached and
+     * still fresh.
+     * 
+     * @param identifier
+     *            The identifier to verify.
+     * @param secret
+     *            The secret to verify.
+     * @return True if a fresh verification is cached.
+     */
+    public boolean contains(String identifier, char[] secret) {
+        boolean result = false;
+        String cacheKey = getKey(identifier, secret);
+        Entry entry = (cacheKey == null) ? null : this.entries.get(cacheKey);
+
+        if (entry != null) {
+            if (entry.expiration > System.currentTimeMillis()) {
+                result = true;
+            } else {
+                this.entries.remove(cacheKey, entry);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cache key of an identifier/secret couple, or null if it
+     * can't be computed.
+     * 
+     * @param identifier
+     *            The identifier.
+     * @param secret
+     *            The secret.
+     * @return The cache key or null.
+     */
+    private String getKey(String identifier, char[] secret) {
+        if ((identifier == null) || (secret == null)) {
+            return null;
+        }
+
+        try {
+            Mac mac = this.macs.get();
+
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(this.key);
+                this.macs.set(mac);
+            }
+
+            byte[] id = identifier.getBytes(UTF_8);
+            mac.update((byte) (id.length >>> 24));
+            mac.update((byte) (id.length >>> 16));
+            mac.update((byte) (id.length >>> 8));
+            mac.update((byte) id.length);
+            mac.update(id);
+
+            ByteBuffer encodedSecret = UTF_8.encode(CharBuffer.wrap(secret));
+            mac.update(encodedSecret);
+
+            if (encodedSecret.hasArray()) {
+                // Don't leave a copy of the secret behind
+                Arrays.fill(encodedSecret.array(), (byte) 0);
+            }
+
+            return Base64.encode(mac.doFinal(), false);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached verifications.
+     * 
+     * @return The maximum number of cached verifications.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time to live of cached verifications in milliseconds.
+     * 
+     * @return The time to live of cached verifications in milliseconds.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Removes the cached verifications of an identifier, for example after
+     * its secret was changed or revoked.
+     * 
+     * @param identifier
+     *            The identifier to invalidate.
+     */
+    public void invalidate(String identifier) {
+        for (Iterator<Map.Entry<String, Entry>> iter = this.entries.entrySet()
+                .iterator(); iter.hasNext();) {
+            if (iter.next().getValue().identifier.equals(identifier)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the expired verifications.
+     */
+    public void purge() {
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Entry> iter = this.entries.values().iterator(); iter
+                .hasNext();) {
+            if (iter.next().expiration <= now) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of cached verifications.
+     * 
+     * @param maxSize
+     *            The maximum number of cached verifications.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Sets the time to live of cached verifications in milliseconds.
+     * 
+     * @param timeToLive
+     *            The time to live of cached verifications in milliseconds.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the number of cached verifications, including expired ones not
+     * yet purged.
+     * 
+     * @return The number of cached verifications.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+}
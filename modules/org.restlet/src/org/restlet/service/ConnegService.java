@@ -24,23 +24,63 @@
 
 package org.restlet.service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.restlet.Request;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Metadata;
+import org.restlet.data.Preference;
 import org.restlet.engine.application.Conneg;
 import org.restlet.engine.application.FlexibleConneg;
 import org.restlet.engine.application.StrictConneg;
+import org.restlet.engine.resource.MethodAnnotationInfo;
+import org.restlet.engine.resource.VariantInfo;
 import org.restlet.representation.Variant;
 
 /**
  * Application service negotiating the preferred resource variants. This service
  * is leveraged by server-side and client-side content negotiation, annotated
- * method dispatching, and so on.
+ * method dispatching, and so on.<br>
+ * <br>
+ * As the same client preferences are usually negotiated against the same
+ * variants over and over, the index of the preferred variant is memoized in a
+ * bounded cache, keyed by the client preferences and by the metadata and
+ * annotations of the variants. See {@link #setCacheSize(int)}.
  * 
  * @author Jerome Louvel
  */
 public class ConnegService extends Service {
 
+    /** The default maximum number of memoized negotiations. */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * Adds a list of preferences to a negotiation key.
+     * 
+     * @param key
+     *            The negotiation key to update.
+     * @param preferences
+     *            The preferences to add.
+     */
+    private static <T extends Metadata> void addPreferences(List<Object> key,
+            List<Preference<T>> preferences) {
+        key.add(preferences.size());
+
+        for (Preference<T> preference : preferences) {
+            key.add(preference.getMetadata());
+            key.add(preference.getQuality());
+        }
+    }
+
+    /** The maximum number of memoized negotiations. */
+    private volatile int cacheSize;
+
+    /** The index of the preferred variant for each negotiation key. */
+    private final Map<List<Object>, Integer> negotiations;
+
     /**
      * Indicates if the conneg algorithm should strictly respect client
      * preferences or be more flexible.
@@ -62,9 +102,98 @@ public class ConnegService extends Service {
      */
     public ConnegService(boolean enabled) {
         super(enabled);
+        this.cacheSize = DEFAULT_CACHE_SIZE;
+        this.negotiations = new ConcurrentHashMap<List<Object>, Integer>();
         this.strict = false;
     }
 
+    /**
+     * Clears the memoized negotiations.
+     */
+    public void clearCache() {
+        this.negotiations.clear();
+    }
+
+    /**
+     * Returns the maximum number of memoized negotiations. A value of zero
+     * disables the cache. Default value is {@link #DEFAULT_CACHE_SIZE}.
+     * 
+     * @return The maximum number of memoized negotiations.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the key identifying a negotiation, made of the client
+     * preferences, of the metadata and annotations of the variants, and when
+     * the variants come from annotations, of the query constraints. Returns
+     * null if the negotiation can't be memoized.
+     * 
+     * @param variants
+     *            The list of variants to compare.
+     * @param request
+     *            The request including client preferences.
+     * @param metadataService
+     *            The metadata service used to get default metadata values.
+     * @return The negotiation key or null.
+     */
+    protected List<Object> getNegotiationKey(List<? extends Variant> variants,
+            Request request, MetadataService metadataService) {
+        ClientInfo clientInfo = request.getClientInfo();
+
+        if (clientInfo == null) {
+            return null;
+        }
+
+        List<Object> result = new ArrayList<Object>(16 + 8 * variants.size());
+        result.add(isStrict());
+        addPreferences(result, clientInfo.getAcceptedMediaTypes());
+        addPreferences(result, clientInfo.getAcceptedLanguages());
+        addPreferences(result, clientInfo.getAcceptedCharacterSets());
+        addPreferences(result, clientInfo.getAcceptedEncodings());
+
+        if (!isStrict() && (metadataService != null)) {
+            result.add(metadataService.getDefaultMediaType());
+            result.add(metadataService.getDefaultLanguage());
+            result.add(metadataService.getDefaultCharacterSet());
+            result.add(metadataService.getDefaultEncoding());
+        }
+
+        boolean annotated = false;
+        boolean queryConstrained = false;
+
+        for (Variant variant : variants) {
+            result.add(variant.getMediaType());
+            result.add(variant.getCharacterSet());
+            result.add(variant.getLanguages().size());
+            result.addAll(variant.getLanguages());
+            result.add(variant.getEncodings().size());
+            result.addAll(variant.getEncodings());
+
+            if (variant instanceof VariantInfo) {
+                MethodAnnotationInfo annotation = ((VariantInfo) variant)
+                        .getAnnotationInfo();
+                annotated = true;
+                queryConstrained = queryConstrained
+                        || ((annotation != null) && (annotation.getQuery() != null));
+                result.add(annotation);
+                result.add(((VariantInfo) variant).getInputScore());
+            } else {
+                result.add(Boolean.FALSE);
+            }
+        }
+
+        if (annotated) {
+            // The annotations are scored against the query
+            String query = (request.getResourceRef() == null) ? null : request
+                    .getResourceRef().getQuery();
+            result.add(queryConstrained ? query : Boolean.valueOf(query != null));
+        }
+
+        return result;
+    }
+
     /**
      * Returns the best variant representation for a given resource according
      * the the client preferences.<br>
@@ -84,9 +213,42 @@ public class ConnegService extends Service {
      */
     public Variant getPreferredVariant(List<? extends Variant> variants,
             Request request, MetadataService metadataService) {
+        List<Object> key = null;
+
+        if ((getCacheSize() > 0) && (variants != null) && !variants.isEmpty()) {
+            key = getNegotiationKey(variants, request, metadataService);
+
+            if (key != null) {
+                Integer index = this.negotiations.get(key);
+
+                if (index != null) {
+                    return (index < 0) ? null : variants.get(index);
+                }
+            }
+        }
+
         Conneg conneg = isStrict() ? new StrictConneg(request, metadataService)
                 : new FlexibleConneg(request, metadataService);
-        return conneg.getPreferredVariant(variants);
+        Variant result = conneg.getPreferredVariant(variants);
+
+        if (key != null) {
+            int index = -1;
+
+            for (int i = 0; (index == -1) && (i < variants.size()); i++) {
+                if (variants.get(i) == result) {
+                    index = i;
+                }
+            }
+
+            if (this.negotiations.size() >= getCacheSize()) {
+                // Start over rather than tracking the least used entries
+                this.negotiations.clear();
+            }
+
+            this.negotiations.put(key, index);
+        }
+
+        return result;
     }
 
     /**
@@ -100,6 +262,21 @@ public class ConnegService extends Service {
         return strict;
     }
 
+    /**
+     * Sets the maximum number of memoized negotiations. A value of zero
+     * disables the cache.
+     * 
+     * @param cacheSize
+     *            The maximum number of memoized negotiations.
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+
+        if (cacheSize <= 0) {
+            clearCache();
+        }
+    }
+
     /**
      * Indicates if the conneg algorithm should strictly respect client
      * preferences or be more flexible.
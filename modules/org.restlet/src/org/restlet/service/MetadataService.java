@@ -25,7 +25,10 @@
 package org.restlet.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.data.CharacterSet;
@@ -41,10 +44,53 @@ import org.restlet.engine.application.MetadataExtension;
  * {@link #addCommonExtensions()} method.<br>
  * <br>
  * Internally, the mappings are stored as a list of "extension, metadata" pairs.
+ * Lookups are served by hash indexes from extension names to metadata and from
+ * metadata to their first extension name, rebuilt after the mappings change.
  * 
  * @author Jerome Louvel
  */
 public class MetadataService extends Service {
+
+    /**
+     * Immutable indexes of the mappings, for concurrent lookups.
+     */
+    private static final class Index {
+
+        /** The first extension name mapped to each metadata. */
+        private final Map<Metadata, String> extensions;
+
+        /** The metadata mapped to each extension name, in mapping order. */
+        private final Map<String, List<Metadata>> metadata;
+
+        /**
+         * Constructor.
+         * 
+         * @param mappings
+         *            The ordered list of mappings to index.
+         */
+        private Index(List<MetadataExtension> mappings) {
+            this.extensions = new HashMap<Metadata, String>();
+            this.metadata = new LinkedHashMap<String, List<Metadata>>();
+
+            for (MetadataExtension mapping : mappings) {
+                List<Metadata> list = this.metadata.get(mapping.getName());
+
+                if (list == null) {
+                    list = new ArrayList<Metadata>(1);
+                    this.metadata.put(mapping.getName(), list);
+                }
+
+                list.add(mapping.getMetadata());
+
+                if ((mapping.getMetadata() != null)
+                        && !this.extensions.containsKey(mapping.getMetadata())) {
+                    this.extensions.put(mapping.getMetadata(),
+                            mapping.getName());
+                }
+            }
+        }
+    }
+
     /** The default character set for textual representations. */
     private volatile CharacterSet defaultCharacterSet;
 
@@ -57,6 +103,9 @@ public class MetadataService extends Service {
     /** The default media type for representations. */
     private volatile MediaType defaultMediaType;
 
+    /** The indexes of the mappings, rebuilt lazily after they change. */
+    private volatile Index index;
+
     /** The list of mappings between extension names and metadata. */
     private final List<MetadataExtension> mappings;
 
@@ -214,7 +263,7 @@ public class MetadataService extends Service {
      * <li>zip: Zip archive</li>
      * </ul>
      */
-    public void addCommonExtensions() {
+    public synchronized void addCommonExtensions() {
         List<MetadataExtension> dm = new ArrayList<MetadataExtension>();
 
         ext(dm, "en", Language.ENGLISH);
@@ -367,6 +416,7 @@ public class MetadataService extends Service {
 
         // Add all those mappings
         this.mappings.addAll(dm);
+        this.index = null;
     }
 
     /**
@@ -393,8 +443,8 @@ public class MetadataService extends Service {
      * @param preferred
      *            indicates if this mapping is the preferred one.
      */
-    public void addExtension(String extension, Metadata metadata,
-            boolean preferred) {
+    public synchronized void addExtension(String extension,
+            Metadata metadata, boolean preferred) {
         if (preferred) {
             // Add the mapping at the beginning of the list
             this.mappings.add(0, new MetadataExtension(extension, metadata));
@@ -402,13 +452,16 @@ public class MetadataService extends Service {
             // Add the mapping at the end of the list
             this.mappings.add(new MetadataExtension(extension, metadata));
         }
+
+        this.index = null;
     }
 
     /**
      * clears the mappings for all extensions.
      */
-    public void clearExtensions() {
+    public synchronized void clearExtensions() {
         this.mappings.clear();
+        this.index = null;
     }
 
     /**
@@ -481,17 +534,17 @@ public class MetadataService extends Service {
      */
     public List<CharacterSet> getAllCharacterSets(String extension) {
         List<CharacterSet> result = null;
+        List<Metadata> metadata = (extension == null) ? null : getIndex().metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof CharacterSet)) {
+        if (metadata != null) {
+            for (Metadata item : metadata) {
+                if (item instanceof CharacterSet) {
                     if (result == null) {
                         result = new ArrayList<CharacterSet>();
                     }
 
-                    result.add(metadataExtension.getCharacterSet());
+                    result.add((CharacterSet) item);
                 }
             }
         }
@@ -523,15 +576,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names.
      */
     public List<String> getAllExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if (!result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(getIndex().metadata.keySet());
     }
 
     /**
@@ -562,17 +607,17 @@ public class MetadataService extends Service {
      */
     public List<Language> getAllLanguages(String extension) {
         List<Language> result = null;
+        List<Metadata> metadata = (extension == null) ? null : getIndex().metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof Language)) {
+        if (metadata != null) {
+            for (Metadata item : metadata) {
+                if (item instanceof Language) {
                     if (result == null) {
                         result = new ArrayList<Language>();
                     }
 
-                    result.add(metadataExtension.getLanguage());
+                    result.add((Language) item);
                 }
             }
         }
@@ -608,17 +653,17 @@ public class MetadataService extends Service {
      */
     public List<MediaType> getAllMediaTypes(String extension) {
         List<MediaType> result = null;
+        List<Metadata> metadata = (extension == null) ? null : getIndex().metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof MediaType)) {
+        if (metadata != null) {
+            for (Metadata item : metadata) {
+                if (item instanceof MediaType) {
                     if (result == null) {
                         result = new ArrayList<MediaType>();
                     }
 
-                    result.add(metadataExtension.getMediaType());
+                    result.add((MediaType) item);
                 }
             }
         }
@@ -635,22 +680,9 @@ public class MetadataService extends Service {
      * @return The list of metadata associated to this extension.
      */
     public List<Metadata> getAllMetadata(String extension) {
-        List<Metadata> result = null;
-
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    if (result == null) {
-                        result = new ArrayList<Metadata>();
-                    }
-
-                    result.add(metadataExtension.getMetadata());
-                }
-            }
-        }
-
-        return result;
+        List<Metadata> metadata = (extension == null) ? null : getIndex().metadata
+                .get(extension);
+        return (metadata == null) ? null : new ArrayList<Metadata>(metadata);
     }
 
     /**
@@ -744,15 +776,30 @@ public class MetadataService extends Service {
      * @return The first extension mapping to this metadata.
      */
     public String getExtension(Metadata metadata) {
-        if (metadata != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (metadata.equals(metadataExtension.getMetadata())) {
-                    return metadataExtension.getName();
+        return (metadata == null) ? null : getIndex().extensions.get(metadata);
+    }
+
+    /**
+     * Returns the indexes of the mappings, rebuilding them if the mappings
+     * changed.
+     * 
+     * @return The indexes of the mappings.
+     */
+    private Index getIndex() {
+        Index result = this.index;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.index;
+
+                if (result == null) {
+                    result = new Index(this.mappings);
+                    this.index = result;
                 }
             }
         }
-        return null;
+
+        return result;
     }
 
     /**
@@ -814,16 +861,9 @@ public class MetadataService extends Service {
      * @return The metadata associated to this extension.
      */
     public Metadata getMetadata(String extension) {
-        if (extension != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    return metadataExtension.getMetadata();
-                }
-            }
-        }
-
-        return null;
+        List<Metadata> metadata = (extension == null) ? null : getIndex().metadata
+                .get(extension);
+        return (metadata == null) ? null : metadata.get(0);
     }
 
     // [ifndef gwt] method
@@ -45,6 +45,7 @@ import org.restlet.Context;
 import org.restlet.Response;
 import org.restlet.engine.Engine;
 import org.restlet.engine.util.ContextualRunnable;
+import org.restlet.engine.util.VirtualThreadExecutorService;
 import org.restlet.routing.VirtualHost;
 
 /**
@@ -61,7 +62,11 @@ import org.restlet.routing.VirtualHost;
  * Resources that are part of your context. In general this context corresponds
  * to a parent Application's context. If you want to have your own service
  * instance, you can use the {@link TaskService#wrap(ScheduledExecutorService)}
- * method to ensure that thread local variables are correctly set.
+ * method to ensure that thread local variables are correctly set.<br>
+ * <br>
+ * When the JVM supports them, tasks can also be run on virtual threads (see
+ * {@link #setVirtualThreads(boolean)}), which allows many blocking tasks to run
+ * concurrently without sizing a pool of platform threads for them.
  * 
  * @author Jerome Louvel
  * @author Doug Lea (docs of ExecutorService in public domain)
@@ -250,6 +255,12 @@ public class TaskService extends Service implements ScheduledExecutorService {
      */
     private volatile boolean shutdownAllowed;
 
+    /**
+     * Indicates if the tasks are run on virtual threads, when supported by the
+     * JVM. False by default.
+     */
+    private volatile boolean virtualThreads;
+
     /** The wrapped JDK executor service. */
     private volatile ScheduledExecutorService wrapped;
 
@@ -328,16 +339,34 @@ public class TaskService extends Service implements ScheduledExecutorService {
 
     /**
      * Creates a new JDK executor service that will be wrapped. By default it
-     * calls {@link Executors#newCachedThreadPool(ThreadFactory)}, passing the
-     * result of {@link #createThreadFactory()} as a parameter.
+     * calls {@link Executors#newScheduledThreadPool(int, ThreadFactory)},
+     * passing the result of {@link #createThreadFactory()} as a parameter. If
+     * {@link #isVirtualThreads()} is true and the JVM supports it, the tasks
+     * are then executed on virtual threads while this pool only triggers the
+     * delayed and periodic ones.
      * 
      * @param corePoolSize
      *            The core pool size defining the maximum number of threads.
      * @return A new JDK executor service.
      */
     protected ScheduledExecutorService createExecutorService(int corePoolSize) {
-        return Executors.newScheduledThreadPool(corePoolSize,
-                createThreadFactory());
+        ScheduledExecutorService result = Executors.newScheduledThreadPool(
+                corePoolSize, createThreadFactory());
+
+        if (isVirtualThreads()) {
+            ExecutorService virtualExecutor = VirtualThreadExecutorService
+                    .createExecutorService("restlet-virtual-");
+
+            if (virtualExecutor != null) {
+                result = new VirtualThreadExecutorService(result,
+                        virtualExecutor);
+            } else {
+                Context.getCurrentLogger()
+                        .info("Virtual threads aren't supported by this JVM. Platform threads will be used by the task service.");
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -517,6 +546,16 @@ public class TaskService extends Service implements ScheduledExecutorService {
         return (getWrapped() == null) || getWrapped().isTerminated();
     }
 
+    /**
+     * Indicates if the tasks are run on virtual threads, when supported by the
+     * JVM. False by default.
+     * 
+     * @return True if the tasks are run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * Creates and executes a ScheduledFuture that becomes enabled after the
      * given delay.
@@ -659,6 +698,17 @@ public class TaskService extends Service implements ScheduledExecutorService {
         this.shutdownAllowed = allowShutdown;
     }
 
+    /**
+     * Indicates if the tasks should be run on virtual threads, when supported
+     * by the JVM. Only taken into account when the service is (re)started.
+     * 
+     * @param virtualThreads
+     *            True if the tasks should be run on virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     /**
      * Sets the wrapped JDK executor service.
      * 